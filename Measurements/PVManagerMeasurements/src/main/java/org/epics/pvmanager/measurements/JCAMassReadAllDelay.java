@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.measurements;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.PVReader;
+import org.epics.pvmanager.PVReaderEvent;
+import org.epics.pvmanager.PVReaderGroup;
+import org.epics.pvmanager.PVReaderListener;
+import org.epics.pvmanager.expression.SourceRateExpression;
+import org.epics.pvmanager.jca.JCADataSource;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import static org.epics.util.time.TimeDuration.*;
+
+/**
+ * Measures the time to receive the first value of a large number of channels,
+ * opening one reader at a time and opening all readers in a single call.
+ * Compare with {@link JCAMassConnectionDelay}, which gives the time taken
+ * by JCA alone.
+ * <p>
+ * Each measurement uses a new data source, so that no channel is already
+ * connected, and the two are run in alternating order, so that neither
+ * always runs second.
+ *
+ */
+public class JCAMassReadAllDelay
+{
+    private static final int ROUNDS = 4;
+
+    public static void main( String[] args ) throws Exception {
+        StopWatch oneByOneWatch = new StopWatch();
+        StopWatch readAllWatch = new StopWatch();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            if (round % 2 == 0) {
+                readOneByOne(args, oneByOneWatch);
+                readAll(args, readAllWatch);
+            } else {
+                readAll(args, readAllWatch);
+                readOneByOne(args, oneByOneWatch);
+            }
+        }
+
+        System.out.println("One read per channel");
+        oneByOneWatch.printStatisticsMS(System.out);
+        System.out.println("Read all channels");
+        readAllWatch.printStatisticsMS(System.out);
+    }
+
+    private static void readOneByOne(String[] channelNames, StopWatch watch) throws InterruptedException {
+        JCADataSource dataSource = new JCADataSource();
+        final CountDownLatch latch = new CountDownLatch(channelNames.length);
+        PVReaderListener<Object> listener = new PVReaderListener<Object>() {
+
+            @Override
+            public void pvChanged(PVReaderEvent<Object> event) {
+                if (event.isValueChanged() && event.getPvReader().getValue() != null) {
+                    event.getPvReader().removePVReaderListener(this);
+                    latch.countDown();
+                }
+            }
+        };
+        List<PVReader<Object>> readers = new ArrayList<PVReader<Object>>();
+        try {
+            watch.start();
+            for (String channelName : channelNames) {
+                readers.add(PVManager.read(channel(channelName)).readListener(listener).from(dataSource).maxRate(ofMillis(5)));
+            }
+            latch.await();
+            watch.stop();
+        } finally {
+            for (PVReader<Object> reader : readers) {
+                reader.close();
+            }
+            dataSource.close();
+        }
+    }
+
+    private static void readAll(String[] channelNames, StopWatch watch) throws InterruptedException {
+        JCADataSource dataSource = new JCADataSource();
+        final CountDownLatch latch = new CountDownLatch(channelNames.length);
+        PVReaderListener<Object> listener = new PVReaderListener<Object>() {
+
+            @Override
+            public void pvChanged(PVReaderEvent<Object> event) {
+                if (event.isValueChanged() && event.getPvReader().getValue() != null) {
+                    event.getPvReader().removePVReaderListener(this);
+                    latch.countDown();
+                }
+            }
+        };
+        PVReaderGroup<Object> group = null;
+        try {
+            watch.start();
+            List<SourceRateExpression<Object>> expressions = new ArrayList<SourceRateExpression<Object>>();
+            for (String channelName : channelNames) {
+                expressions.add(channel(channelName));
+            }
+            group = PVManager.readAll(expressions).readListener(listener).from(dataSource).maxRate(ofMillis(5));
+            latch.await();
+            watch.stop();
+        } finally {
+            if (group != null) {
+                group.close();
+            }
+            dataSource.close();
+        }
+    }
+}
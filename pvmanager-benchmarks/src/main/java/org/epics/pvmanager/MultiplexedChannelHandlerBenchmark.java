@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fans out a message from a multiplexed channel to its subscribers.
+ * It is in the pvmanager package to access the handler internals.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiplexedChannelHandlerBenchmark {
+    
+    private static class BenchmarkChannelHandler extends MultiplexedChannelHandler<Object, Object> {
+
+        public BenchmarkChannelHandler(String channelName) {
+            super(channelName);
+        }
+
+        @Override
+        protected void connect() {
+            processConnection(new Object());
+        }
+
+        @Override
+        protected void disconnect() {
+            processConnection(null);
+        }
+
+        @Override
+        protected void write(Object newValue, ChannelWriteCallback callback) {
+            throw new UnsupportedOperationException("Not supported.");
+        }
+        
+        public void process(Object message) {
+            processMessage(message);
+        }
+    }
+    
+    private static final WriteFunction<Exception> exceptionFunction = new WriteFunction<Exception>() {
+
+        @Override
+        public void writeValue(Exception newValue) {
+        }
+    };
+    
+    private static final WriteFunction<Boolean> connectionFunction = new WriteFunction<Boolean>() {
+
+        @Override
+        public void writeValue(Boolean newValue) {
+        }
+    };
+    
+    @Param({"1", "10", "100"})
+    public int nSubscribers;
+    
+    private BenchmarkChannelHandler handler;
+    private double value;
+    
+    @Setup
+    public void createHandler() {
+        handler = new BenchmarkChannelHandler("benchmark");
+        for (int i = 0; i < nSubscribers; i++) {
+            handler.addReader(new ChannelHandlerReadSubscription(new ValueCacheImpl<>(Object.class),
+                    exceptionFunction, connectionFunction));
+        }
+    }
+
+    @Benchmark
+    public void processMessage() {
+        value += 1.0;
+        handler.process(value);
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.test.MockDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Calculates a new value and notifies the reader, with the notification
+ * executed on the calling thread. It is in the pvmanager package to access
+ * the director internals.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PVReaderDirectorBenchmark {
+    
+    private PVReaderImpl<Object> pv;
+    private PVReaderDirector<Object> director;
+    private double value;
+    private int notifications;
+    
+    @Setup
+    public void createDirector() {
+        BasicTypeSupport.install();
+        pv = new PVReaderImpl<>("benchmark", false);
+        pv.addPVReaderListener(new PVReaderListener<Object>() {
+
+            @Override
+            public void pvChanged(PVReaderEvent<Object> event) {
+                notifications++;
+            }
+        });
+        ReadFunction<Object> function = new ReadFunction<Object>() {
+
+            @Override
+            public Object readValue() {
+                value += 1.0;
+                return value;
+            }
+        };
+        Executor sameThread = new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        director = new PVReaderDirector<>(pv, function, PVManager.getReadScannerExecutorService(),
+                sameThread, new MockDataSource(), null);
+        pv.setDirector(director);
+    }
+
+    @Benchmark
+    public int notifyPv() {
+        director.notifyPv();
+        return notifications;
+    }
+}
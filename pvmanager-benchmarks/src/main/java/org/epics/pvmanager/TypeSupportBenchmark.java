@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looks up the type support for a class that is registered directly
+ * and for one that is found through its superclasses.
+ * It is in the pvmanager package to access the lookup.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeSupportBenchmark {
+    
+    @Setup
+    public void install() {
+        BasicTypeSupport.install();
+    }
+
+    @Benchmark
+    public Object directlySupported() {
+        return TypeSupport.findTypeSupportFor(NotificationSupport.class, Double.class);
+    }
+
+    @Benchmark
+    public Object supportedBySuperclass() {
+        return TypeSupport.findTypeSupportFor(NotificationSupport.class, ArrayList.class);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.ReadExpressionTester;
+import org.epics.util.array.ArrayDouble;
+import org.epics.util.array.ArrayFloat;
+import org.epics.util.array.ArrayInt;
+import org.epics.util.array.ListNumber;
+import org.epics.vtype.VNumberArray;
+import org.epics.vtype.ValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.epics.pvmanager.formula.ExpressionLanguage.*;
+
+/**
+ * Evaluates the array operators of the array and numeric operator sets
+ * on waveforms of different size and element type.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayFormulaBenchmark {
+    
+    @Param({"='a' + 'b'", "='a' * 2", "=arraySum('a', 1)", "=arrayMult('a', 'b') - 'a'"})
+    public String formula;
+    
+    @Param({"1000", "1000000"})
+    public int size;
+    
+    @Param({"double", "float", "int"})
+    public String elementType;
+    
+    private ReadExpressionTester exp;
+    private VNumberArray a1;
+    private VNumberArray a2;
+    private boolean first;
+    
+    @Setup
+    public void createFormula() {
+        FormulaBenchmark.registerFunctionSets();
+        Random rand = new Random(1);
+        a1 = ValueFactory.newVNumberArray(randomArray(rand), ValueFactory.alarmNone(), ValueFactory.timeNow(), ValueFactory.displayNone());
+        a2 = ValueFactory.newVNumberArray(randomArray(rand), ValueFactory.alarmNone(), ValueFactory.timeNow(), ValueFactory.displayNone());
+        exp = new ReadExpressionTester(formula(formula));
+        if (exp.recipeFor("b") != null) {
+            exp.writeValue("b", a2);
+        }
+    }
+    
+    private ListNumber randomArray(Random rand) {
+        switch (elementType) {
+            case "double":
+                double[] doubles = new double[size];
+                for (int i = 0; i < size; i++) {
+                    doubles[i] = rand.nextDouble();
+                }
+                return new ArrayDouble(doubles);
+            case "float":
+                float[] floats = new float[size];
+                for (int i = 0; i < size; i++) {
+                    floats[i] = rand.nextFloat();
+                }
+                return new ArrayFloat(floats);
+            default:
+                int[] ints = new int[size];
+                for (int i = 0; i < size; i++) {
+                    ints[i] = rand.nextInt(1000) + 1;
+                }
+                return new ArrayInt(ints);
+        }
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        // Alternate between two values so that the result is always recalculated
+        first = !first;
+        exp.writeValue("a", first ? a1 : a2);
+        return exp.getValue();
+    }
+}
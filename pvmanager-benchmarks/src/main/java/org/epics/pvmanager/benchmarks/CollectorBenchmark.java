@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.CacheCollector;
+import org.epics.pvmanager.Collector;
+import org.epics.pvmanager.QueueCollector;
+import org.epics.pvmanager.RingBufferCacheCollector;
+import org.epics.pvmanager.RingBufferQueueCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writes and reads on the queue and cache collectors. The write benchmark
+ * on a full collector shows the cost of discarding the oldest value.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectorBenchmark {
+    
+    @Param({"QueueCollector", "CacheCollector", "RingBufferQueueCollector", "RingBufferCacheCollector"})
+    public String collectorType;
+    
+    @Param({"100", "10000"})
+    public int maxSize;
+    
+    private Collector<Integer, List<Integer>> collector;
+    private final Integer value = 42;
+    
+    @Setup
+    public void createCollector() {
+        switch (collectorType) {
+            case "QueueCollector":
+                collector = new QueueCollector<>(maxSize);
+                break;
+            case "CacheCollector":
+                collector = new CacheCollector<>(maxSize);
+                break;
+            case "RingBufferQueueCollector":
+                collector = new RingBufferQueueCollector<>(maxSize);
+                break;
+            case "RingBufferCacheCollector":
+                collector = new RingBufferCacheCollector<>(maxSize);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown collector " + collectorType);
+        }
+        // Start full
+        for (int i = 0; i < maxSize; i++) {
+            collector.writeValue(value);
+        }
+    }
+
+    @Benchmark
+    public void writeFull() {
+        collector.writeValue(value);
+    }
+
+    @Benchmark
+    public int writeAndRead() {
+        for (int i = 0; i < 100; i++) {
+            collector.writeValue(value);
+        }
+        return collector.readValue().size();
+    }
+}
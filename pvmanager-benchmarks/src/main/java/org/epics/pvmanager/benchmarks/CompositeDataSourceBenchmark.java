@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.CompositeDataSource;
+import org.epics.pvmanager.ReadExpressionTester;
+import org.epics.pvmanager.ReadRecipe;
+import org.epics.pvmanager.sim.SimulationDataSource;
+import org.epics.pvmanager.test.MockDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+
+/**
+ * Connects and disconnects a recipe that the composite data source
+ * needs to split between a mock data source and the simulation data source.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeDataSourceBenchmark {
+    
+    @Param({"10", "1000"})
+    public int nChannels;
+    
+    private CompositeDataSource dataSource;
+    private ReadRecipe recipe;
+    
+    @Setup
+    public void createRecipe() {
+        dataSource = new CompositeDataSource();
+        dataSource.putDataSource("mock", new MockDataSource());
+        dataSource.putDataSource("sim", new SimulationDataSource());
+        
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < nChannels; i++) {
+            if (i % 2 == 0) {
+                names.add("mock://channel" + i);
+            } else {
+                names.add("sim://const(" + i + ")");
+            }
+        }
+        recipe = new ReadExpressionTester(mapOf(latestValueOf(channels(names)))).getReadRecipe();
+    }
+    
+    @TearDown
+    public void close() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public void connectDisconnect() {
+        dataSource.connectRead(recipe);
+        dataSource.disconnectRead(recipe);
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.ReadExpressionTester;
+import org.epics.pvmanager.formula.ArrayFunctionSet;
+import org.epics.pvmanager.formula.FormulaFunctionSet;
+import org.epics.pvmanager.formula.FormulaRegistry;
+import org.epics.pvmanager.formula.MathFunctionSet;
+import org.epics.pvmanager.formula.NumberOperatorFunctionSet;
+import org.epics.vtype.ValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.epics.pvmanager.formula.ExpressionLanguage.*;
+
+/**
+ * Parses formulas and evaluates them on new input values.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormulaBenchmark {
+    
+    @Param({"='x' + 2", "=('x' + 2) * 'y' / 3 - sqrt('x')", "=abs('x') > 10 ? 'x' : 'y'"})
+    public String formula;
+    
+    private ReadExpressionTester exp;
+    private double x;
+    
+    static void registerFunctionSets() {
+        registerFunctionSet(new MathFunctionSet());
+        registerFunctionSet(new NumberOperatorFunctionSet());
+        registerFunctionSet(new ArrayFunctionSet());
+    }
+    
+    private static void registerFunctionSet(FormulaFunctionSet functionSet) {
+        if (FormulaRegistry.getDefault().findFunctionSet(functionSet.getName()) == null) {
+            FormulaRegistry.getDefault().registerFormulaFunctionSet(functionSet);
+        }
+    }
+    
+    @Setup
+    public void createFormula() {
+        registerFunctionSets();
+        exp = new ReadExpressionTester(formula(formula));
+        if (exp.recipeFor("x") != null) {
+            exp.writeValue("x", ValueFactory.newVDouble(1.0));
+        }
+        if (exp.recipeFor("y") != null) {
+            exp.writeValue("y", ValueFactory.newVDouble(2.0));
+        }
+    }
+
+    @Benchmark
+    public Object parse() {
+        return formula(formula);
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        x += 1.0;
+        exp.writeValue("x", ValueFactory.newVDouble(x));
+        return exp.getValue();
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.PVWriter;
+import org.epics.pvmanager.expression.WriteMap;
+import org.epics.pvmanager.test.TestDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+
+/**
+ * Writes a map of delayed write channels, split in levels where each
+ * level must be written after the previous one. Measures the cost
+ * of planning and scheduling the writes across the levels.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteMapBenchmark {
+
+    @Param({"100", "2000"})
+    public int nChannels;
+
+    @Param({"1", "10"})
+    public int nLevels;
+
+    @Param({"0", "1"})
+    public int delayMs;
+
+    private TestDataSource dataSource;
+    private PVWriter<Map<String, Object>> pvWriter;
+    private Map<String, Object> values;
+
+    @Setup
+    public void createWriter() {
+        dataSource = new TestDataSource();
+        WriteMap<Object> map = writeMapOf(Object.class);
+        values = new HashMap<>();
+        String[] previousLevel = new String[0];
+        for (int level = 0; level < nLevels; level++) {
+            List<String> names = new ArrayList<>();
+            for (int i = level; i < nChannels; i += nLevels) {
+                String name = "delayedWrite/" + delayMs + "/" + i;
+                names.add(name);
+                values.put(name, i);
+            }
+            map.add(channels(names).after(previousLevel));
+            previousLevel = names.toArray(new String[names.size()]);
+        }
+        pvWriter = PVManager.write(map).from(dataSource).sync();
+    }
+
+    @TearDown
+    public void close() {
+        pvWriter.close();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public void writeMap() {
+        pvWriter.write(values);
+    }
+}
@@ -11,12 +11,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import org.epics.pvmanager.expression.MapDelta;
 
 /**
  * Implements support for basic standard java types.
  * <p>
  * For Number and String the immutable type support is used. For List and Map,
  * we check whether any element need notification; if so, a copy is made.
+ * A MapDelta is already an immutable snapshot, and a new instance is created
+ * only when something changed, so the immutable type support is used.
  *
  * @author carcassi
  */
@@ -44,6 +47,7 @@ public class BasicTypeSupport {
         // Add support for numbers and strings
         TypeSupport.addTypeSupport(NotificationSupport.immutableTypeSupport(Number.class));
         TypeSupport.addTypeSupport(NotificationSupport.immutableTypeSupport(String.class));
+        TypeSupport.addTypeSupport(NotificationSupport.immutableTypeSupport(MapDelta.class));
 
         installed = true;
     }
@@ -6,51 +6,67 @@ package org.epics.pvmanager;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A specialized collector to handle multiple channels that can be added/removed
  * dynamically and which gets translated to a single connection flag for a
  * reader or writer.
+ * <p>
+ * The collector keeps count of the channels that are not connected, so that
+ * the overall connection flag can be read in constant time without locking.
+ * Each channel has its own lock, so that connection changes on different
+ * channels do not contend.
  *
  * @author carcassi
  */
 public class ConnectionCollector implements ReadFunction<Boolean> {
 
     private final Object lock = new Object();
-    private final Map<String, Boolean> channelConnected = new HashMap<>();
     private final Map<String, ConnectionWriteFunction> writeFunctions = new HashMap<>();
-    private Boolean connected;
+    private final AtomicInteger disconnectedCount = new AtomicInteger();
     
     private class ConnectionWriteFunction implements WriteFunction<Boolean> {
         
         private final String name;
         private int counter = 1;
+        private boolean connected = false;
 
         public ConnectionWriteFunction(String name) {
             this.name = name;
+            disconnectedCount.incrementAndGet();
         }
 
         @Override
-        public void writeValue(Boolean newValue) {
-            synchronized(lock) {
-                if (isClosed()) {
-                    throw new IllegalStateException("ConnectionCollector for '" + name + "' was closed.");
+        public synchronized void writeValue(Boolean newValue) {
+            if (isClosed()) {
+                throw new IllegalStateException("ConnectionCollector for '" + name + "' was closed.");
+            }
+            boolean newConnected = Boolean.TRUE.equals(newValue);
+            if (newConnected != connected) {
+                connected = newConnected;
+                if (connected) {
+                    disconnectedCount.decrementAndGet();
+                } else {
+                    disconnectedCount.incrementAndGet();
                 }
-                channelConnected.put(name, newValue);
-                connected = null;
             }
         }
         
-        private void open() {
+        private synchronized void open() {
             counter++;
         }
         
-        private boolean isClosed() {
+        private synchronized boolean isClosed() {
             return counter == 0;
         }
 
-        private void close() {
+        private synchronized void close() {
             counter--;
+            if (isClosed() && !connected) {
+                // The channel no longer counts
+                disconnectedCount.decrementAndGet();
+            }
         }
         
     }
@@ -64,15 +80,13 @@ public class ConnectionCollector implements ReadFunction<Boolean> {
      */
     WriteFunction<Boolean> addChannel(final String name) {
         synchronized (lock) {
-            if (channelConnected.containsKey(name)) {
-                ConnectionWriteFunction writeFunction = writeFunctions.get(name);
+            ConnectionWriteFunction writeFunction = writeFunctions.get(name);
+            if (writeFunction != null) {
                 writeFunction.open();
                 return writeFunction;
             } else {
-                channelConnected.put(name, false);
-                ConnectionWriteFunction writeFunction = new ConnectionWriteFunction(name);
+                writeFunction = new ConnectionWriteFunction(name);
                 writeFunctions.put(name, writeFunction);
-                connected = null;
                 return writeFunction;
             }
         }
@@ -80,32 +94,7 @@ public class ConnectionCollector implements ReadFunction<Boolean> {
 
     @Override
     public Boolean readValue() {
-        synchronized (lock) {
-            if (connected == null) {
-                connected = calculate(channelConnected);
-            }
-
-            return connected;
-        }
-    }
-
-    /**
-     * Calculates the overall connection status based on the status of each
-     * channel.
-     * <p>
-     * For future development, this is the method that one could
-     * override to implement a different connection logic.
-     * 
-     * @param channelConnected the connection status of each channel
-     * @return the overall connection status
-     */
-    boolean calculate(Map<String, Boolean> channelConnected) {
-        for (Boolean conn : channelConnected.values()) {
-            if (conn != Boolean.TRUE) {
-                return false;
-            }
-        }
-        return true;
+        return disconnectedCount.get() == 0;
     }
 
     /**
@@ -121,9 +110,7 @@ public class ConnectionCollector implements ReadFunction<Boolean> {
             } else {
                 function.close();
                 if (function.isClosed()) {
-                    channelConnected.remove(channelName);
                     writeFunctions.remove(channelName);
-                    connected = null;
                 }
             }
         }
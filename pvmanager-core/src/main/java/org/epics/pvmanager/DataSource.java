@@ -6,10 +6,14 @@ package org.epics.pvmanager;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import static org.epics.pvmanager.util.Executors.*;
+import org.epics.pvmanager.util.ShardStatistics;
+import org.epics.pvmanager.util.ShardedExecutor;
+import org.epics.util.time.TimeDuration;
 
 /**
  * A source for data that is going to be processed by the PVManager.
@@ -24,6 +28,12 @@ import static org.epics.pvmanager.util.Executors.*;
  * Channel handlers can be implemented from scratch, or one can use the {@link MultiplexedChannelHandler}
  * for handlers that want to open a single connection which is going to be
  * shared by all readers and writers.
+ * <p>
+ * By default, the channel handlers are kept for the lifetime of the data source.
+ * Long running applications that open many different channels can use
+ * {@link #setIdleChannelEviction(org.epics.util.time.TimeDuration, int) }
+ * so that the handlers that are no longer used by any reader or writer
+ * are eventually removed from the cache.
  *
  * @author carcassi
  */
@@ -44,16 +54,56 @@ public abstract class DataSource {
     }
     
     /**
-     * Creates a new data source.
+     * Creates a new data source that uses a single thread
+     * to connect, disconnect and write channels.
      * 
      * @param writeable whether the data source implements write operations
      */
     public DataSource(boolean writeable) {
+        this(writeable, 1);
+    }
+    
+    /**
+     * Creates a new data source that uses the given number of threads
+     * to connect, disconnect and write channels.
+     * <p>
+     * All the operations on the same channel are executed in order on the
+     * same thread, while operations on different channels can proceed in
+     * parallel. Only data sources whose channel handlers are safe to use
+     * from different threads should use more than one worker thread.
+     * 
+     * @param writeable whether the data source implements write operations
+     * @param workerThreads the number of worker threads
+     */
+    public DataSource(boolean writeable, int workerThreads) {
         this.writeable = writeable;
+        this.exec = new ShardedExecutor("PVMgr DataSource Worker ", workerThreads);
     }
 
     // Keeps track of the currently created channels
     private Map<String, ChannelHandler> usedChannels = new ConcurrentHashMap<String, ChannelHandler>();
+    
+    // Keeps track of how many recipes are using each channel, and
+    // since when the channels with no recipes are idle (oldest first).
+    // All guarded by channelLock.
+    private final Object channelLock = new Object();
+    private final Map<ChannelHandler, String> registeredNames = new HashMap<>();
+    private final Map<ChannelHandler, Integer> channelReferences = new HashMap<>();
+    private final LinkedHashMap<ChannelHandler, Long> idleChannels = new LinkedHashMap<>();
+    
+    // Eviction policy: negative values mean no eviction
+    private long idleGracePeriodNanos = -1;
+    private int maxIdleChannels = -1;
+    
+    // Evicts the channels past the grace period when nothing else
+    // happens on the data source: created with the first grace period,
+    // at most one eviction is scheduled at a time
+    private ScheduledExecutorService evictionTimer;
+    private ScheduledFuture<?> scheduledEviction;
+    
+    private final AtomicLong createdChannelCount = new AtomicLong();
+    private final AtomicLong evictedChannelCount = new AtomicLong();
+    private final AtomicLong revivedChannelCount = new AtomicLong();
 
     /**
      * Returns a channel from the given name, either cached or it
@@ -65,14 +115,196 @@ public abstract class DataSource {
     ChannelHandler channel(String channelName) {
         ChannelHandler channel = usedChannels.get(channelHandlerLookupName(channelName));
         if (channel == null) {
-            channel = createChannel(channelName);
-            if (channel == null)
-                return null;
-            usedChannels.put(channelHandlerRegisterName(channelName, channel), channel);
+            synchronized (channelLock) {
+                // Check again, since the channel may have been created
+                // while waiting for the lock
+                channel = usedChannels.get(channelHandlerLookupName(channelName));
+                if (channel == null) {
+                    channel = createChannel(channelName);
+                    if (channel == null)
+                        return null;
+                    String registerName = channelHandlerRegisterName(channelName, channel);
+                    usedChannels.put(registerName, channel);
+                    registeredNames.put(channel, registerName);
+                    // Not used by any recipe yet
+                    idleChannels.put(channel, System.nanoTime());
+                    createdChannelCount.incrementAndGet();
+                    evictIdleChannels();
+                }
+            }
         }
         return channel;
     }
     
+    /**
+     * Marks the channel as used by one more recipe, so that it is
+     * not evicted.
+     * 
+     * @param channel a channel returned by {@link #channel(java.lang.String) }
+     */
+    private void acquireChannel(ChannelHandler channel) {
+        synchronized (channelLock) {
+            Integer references = channelReferences.get(channel);
+            if (references == null) {
+                // First time the channel is used
+                references = 0;
+            } else if (references == 0) {
+                // The channel was used, released and is now used again
+                revivedChannelCount.incrementAndGet();
+            }
+            idleChannels.remove(channel);
+            channelReferences.put(channel, references + 1);
+        }
+    }
+    
+    /**
+     * Marks the channel as used by one less recipe. When no recipe uses
+     * the channel, it becomes a candidate for eviction.
+     * 
+     * @param channel a channel previously acquired
+     */
+    private void releaseChannel(ChannelHandler channel) {
+        synchronized (channelLock) {
+            Integer references = channelReferences.get(channel);
+            if (references == null || references == 0) {
+                log.log(Level.WARNING, "Channel {0} was released more times than acquired", registeredNames.get(channel));
+                return;
+            }
+            channelReferences.put(channel, references - 1);
+            if (references == 1) {
+                idleChannels.put(channel, System.nanoTime());
+            }
+            evictIdleChannels();
+        }
+    }
+    
+    /**
+     * Removes from the cache the idle channels that are past the grace
+     * period or that exceed the maximum number of idle channels, and
+     * schedules the eviction of the remaining ones at the end of their
+     * grace period.
+     * The handlers are not closed here: a handler with no readers or
+     * writers has already disconnected or will do so when the pending
+     * removals are processed.
+     */
+    private void evictIdleChannels() {
+        if (idleGracePeriodNanos < 0 && maxIdleChannels < 0) {
+            return;
+        }
+        
+        long now = System.nanoTime();
+        Iterator<Map.Entry<ChannelHandler, Long>> iter = idleChannels.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<ChannelHandler, Long> entry = iter.next();
+            boolean tooMany = maxIdleChannels >= 0 && idleChannels.size() > maxIdleChannels;
+            boolean expired = idleGracePeriodNanos >= 0 && now - entry.getValue() >= idleGracePeriodNanos;
+            // Channels are ordered by idle time: if the oldest need not be
+            // evicted, neither do the others
+            if (!tooMany && !expired) {
+                break;
+            }
+            ChannelHandler channel = entry.getKey();
+            iter.remove();
+            channelReferences.remove(channel);
+            usedChannels.remove(registeredNames.remove(channel), channel);
+            evictedChannelCount.incrementAndGet();
+        }
+        scheduleEviction();
+    }
+    
+    /**
+     * Schedules the eviction of the oldest idle channel at the end
+     * of its grace period, unless one is already scheduled.
+     */
+    private void scheduleEviction() {
+        if (idleGracePeriodNanos < 0 || idleChannels.isEmpty() || scheduledEviction != null) {
+            return;
+        }
+        if (evictionTimer == null) {
+            evictionTimer = Executors.newSingleThreadScheduledExecutor(org.epics.pvmanager.util.Executors.namedPool("PVMgr DataSource Eviction "));
+        } else if (evictionTimer.isShutdown()) {
+            return;
+        }
+        
+        long oldestIdle = idleChannels.values().iterator().next();
+        long delay = Math.max(0, oldestIdle + idleGracePeriodNanos - System.nanoTime());
+        scheduledEviction = evictionTimer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (channelLock) {
+                    scheduledEviction = null;
+                    evictIdleChannels();
+                }
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Sets the policy for removing from the cache the channel handlers
+     * that are not used by any reader or writer. A handler can be evicted
+     * when it has been idle for longer than the grace period, or when
+     * there are more idle handlers than the maximum, in which case
+     * the ones idle for longer are evicted first. Either
+     * criteria can be disabled, and both are disabled by default.
+     * <p>
+     * A channel that is opened again before being evicted reuses the same
+     * handler. Eviction is checked when channels are opened and closed
+     * and, with a grace period, when the oldest idle handler expires,
+     * so idle handlers are removed even if no other channel is used.
+     * 
+     * @param gracePeriod how long an idle handler is kept; null to keep
+     * idle handlers indefinitely
+     * @param maxIdleChannels the maximum number of idle handlers kept;
+     * negative for no limit
+     */
+    public void setIdleChannelEviction(TimeDuration gracePeriod, int maxIdleChannels) {
+        synchronized (channelLock) {
+            if (gracePeriod == null) {
+                this.idleGracePeriodNanos = -1;
+            } else if (gracePeriod.isNegative()) {
+                throw new IllegalArgumentException("Grace period must not be negative (was " + gracePeriod + ")");
+            } else {
+                this.idleGracePeriodNanos = gracePeriod.toNanosLong();
+            }
+            this.maxIdleChannels = maxIdleChannels;
+            // The eviction scheduled was for the previous grace period
+            if (scheduledEviction != null) {
+                scheduledEviction.cancel(false);
+                scheduledEviction = null;
+            }
+            evictIdleChannels();
+        }
+    }
+    
+    /**
+     * The number of channel handlers created by this data source.
+     * 
+     * @return the number of handlers created
+     */
+    public long getCreatedChannelCount() {
+        return createdChannelCount.get();
+    }
+    
+    /**
+     * The number of idle channel handlers removed from the cache.
+     * 
+     * @return the number of handlers evicted
+     */
+    public long getEvictedChannelCount() {
+        return evictedChannelCount.get();
+    }
+    
+    /**
+     * The number of times an idle channel handler was used again
+     * before being evicted.
+     * 
+     * @return the number of handlers revived
+     */
+    public long getRevivedChannelCount() {
+        return revivedChannelCount.get();
+    }
+    
     /**
      * Returns the lookup name to use to find the channel handler in
      * the cache. By default, it returns the channel name itself.
@@ -115,11 +347,10 @@ public abstract class DataSource {
     protected abstract ChannelHandler createChannel(String channelName);
 
     // The executor used by the data source to perform asynchronous operations,
-    // such as connections and writes. I am current using a single thread for
-    // all data sources, which can be changed if needed.
-    // Since it's a single executor for all data sources, it should not be
-    // shut down at data source close.
-    private static ExecutorService exec = Executors.newSingleThreadExecutor(namedPool("PVMgr DataSource Worker "));
+    // such as connections and writes. The operations are sharded by
+    // channel handler, so that the operations on the same channel are
+    // serialized, while a slow channel does not stall the others.
+    private final ShardedExecutor exec;
     
     // Keeps track of the recipes that were opened with
     // this data source.
@@ -148,9 +379,13 @@ public abstract class DataSource {
         for (final ChannelReadRecipe channelRecipe : readRecipe.getChannelReadRecipes()) {
             try {
                 String channelName = channelRecipe.getChannelName();
-                ChannelHandler channelHandler = channel(channelName);
-                if (channelHandler == null) {
-                    throw new RuntimeException("Channel named '" + channelName + "' not found");
+                ChannelHandler channelHandler;
+                synchronized (channelLock) {
+                    channelHandler = channel(channelName);
+                    if (channelHandler == null) {
+                        throw new RuntimeException("Channel named '" + channelName + "' not found");
+                    }
+                    acquireChannel(channelHandler);
                 }
                 Collection<ChannelReadRecipe> channelSubscriptions = handlersWithSubscriptions.get(channelHandler);
                 if (channelSubscriptions == null) {
@@ -168,13 +403,13 @@ public abstract class DataSource {
         
         // Now that we went through all channels,
         // add a monitor to the ones that were found
-        exec.execute(new Runnable() {
+        for (Map.Entry<ChannelHandler, Collection<ChannelReadRecipe>> entry : handlersWithSubscriptions.entrySet()) {
+            final ChannelHandler channelHandler = entry.getKey();
+            final Collection<ChannelReadRecipe> channelRecipes = entry.getValue();
+            exec.execute(channelHandler, new Runnable() {
 
-            @Override
-            public void run() {
-                for (Map.Entry<ChannelHandler, Collection<ChannelReadRecipe>> entry : handlersWithSubscriptions.entrySet()) {
-                    ChannelHandler channelHandler = entry.getKey();
-                    Collection<ChannelReadRecipe> channelRecipes = entry.getValue();
+                @Override
+                public void run() {
                     for (ChannelReadRecipe channelRecipe : channelRecipes) {
                         try {
                             channelHandler.addReader(channelRecipe.getReadSubscription());
@@ -185,8 +420,8 @@ public abstract class DataSource {
                         }
                     }
                 }
-            }
-        });
+            });
+        }
     }
 
     /**
@@ -209,7 +444,18 @@ public abstract class DataSource {
                 // connection and a proper notification was sent then. Silently
                 // ignore it.
                 if (channelHandler != null) {
-                    channelHandler.removeReader(channelRecipe.getReadSubscription());
+                    // Remove on the same thread that added the reader,
+                    // so that the operations are kept in order
+                    final ChannelHandler handler = channelHandler;
+                    final ChannelHandlerReadSubscription subscription = channelRecipe.getReadSubscription();
+                    exec.execute(handler, new Runnable() {
+
+                        @Override
+                        public void run() {
+                            handler.removeReader(subscription);
+                        }
+                    });
+                    releaseChannel(handler);
                 }
                 readRecipes.remove(channelRecipe);
             }
@@ -239,9 +485,13 @@ public abstract class DataSource {
         for (ChannelWriteRecipe channelWriteRecipe : writeRecipe.getChannelWriteRecipes()) {
             try {
                 String channelName = channelWriteRecipe.getChannelName();
-                ChannelHandler handler = channel(channelName);
-                if (handler == null) {
-                    throw new RuntimeException("Channel " + channelName + " does not exist");
+                ChannelHandler handler;
+                synchronized (channelLock) {
+                    handler = channel(channelName);
+                    if (handler == null) {
+                        throw new RuntimeException("Channel " + channelName + " does not exist");
+                    }
+                    acquireChannel(handler);
                 }
                 Collection<ChannelHandlerWriteSubscription> channelSubscriptions = handlers.get(handler);
                 if (channelSubscriptions == null) {
@@ -255,13 +505,13 @@ public abstract class DataSource {
         }
 
         // Connect using another thread
-        exec.execute(new Runnable() {
+        for (Map.Entry<ChannelHandler, Collection<ChannelHandlerWriteSubscription>> entry : handlers.entrySet()) {
+            final ChannelHandler channelHandler = entry.getKey();
+            final Collection<ChannelHandlerWriteSubscription> subscriptions = entry.getValue();
+            exec.execute(channelHandler, new Runnable() {
 
-            @Override
-            public void run() {
-                for (Map.Entry<ChannelHandler, Collection<ChannelHandlerWriteSubscription>> entry : handlers.entrySet()) {
-                    ChannelHandler channelHandler = entry.getKey();
-                    Collection<ChannelHandlerWriteSubscription> subscriptions = entry.getValue();
+                @Override
+                public void run() {
                     for (ChannelHandlerWriteSubscription subscription : subscriptions) {
                         try {
                             channelHandler.addWriter(subscription);
@@ -272,8 +522,8 @@ public abstract class DataSource {
                         }
                     }
                 }
-            }
-        });
+            });
+        }
     }
     
     /**
@@ -301,6 +551,7 @@ public abstract class DataSource {
                     // notification has already been sent
                     if (handler != null) {
                         handlers.put(handler, channelWriteRecipe.getWriteSubscription());
+                        releaseChannel(handler);
                     }
                 } catch (Exception ex) {
                     // No point in sending the exception through the exception handler:
@@ -311,18 +562,18 @@ public abstract class DataSource {
             }
         }
 
-        // Connect using another thread
-        exec.execute(new Runnable() {
+        // Disconnect using another thread
+        for (Map.Entry<ChannelHandler, ChannelHandlerWriteSubscription> entry : handlers.entrySet()) {
+            final ChannelHandler channelHandler = entry.getKey();
+            final ChannelHandlerWriteSubscription channelHandlerWriteSubscription = entry.getValue();
+            exec.execute(channelHandler, new Runnable() {
 
-            @Override
-            public void run() {
-                for (Map.Entry<ChannelHandler, ChannelHandlerWriteSubscription> entry : handlers.entrySet()) {
-                    ChannelHandler channelHandler = entry.getKey();
-                    ChannelHandlerWriteSubscription channelHandlerWriteSubscription = entry.getValue();
+                @Override
+                public void run() {
                     channelHandler.removeWrite(channelHandlerWriteSubscription);
                 }
-            }
-        });
+            });
+        }
     }
     
     /**
@@ -340,54 +591,126 @@ public abstract class DataSource {
         if (!isWriteable())
             throw new UnsupportedOperationException("This data source is read only");
         
-        final WritePlanner planner = new WritePlanner();
-        for (ChannelWriteRecipe channelWriteRecipe : writeRecipe.getChannelWriteRecipes()) {
-            ChannelHandler channel = channel(channelWriteRecipe.getChannelName());
-            planner.addChannel(channel, channelWriteRecipe.getWriteSubscription().getWriteCache().getValue(),
-                    channelWriteRecipe.getWriteSubscription().getWriteCache().getPrecedingChannels());
+        // The levels only depend on the recipe: the values are
+        // taken from the caches at each write
+        List<Map<ChannelHandler, Object>> levels = new ArrayList<>();
+        for (List<ChannelWriteRecipe> channelWriteRecipes : writeRecipe.getLevels()) {
+            Map<ChannelHandler, Object> level = new HashMap<>(channelWriteRecipes.size() * 2);
+            for (ChannelWriteRecipe channelWriteRecipe : channelWriteRecipes) {
+                ChannelHandler channel = channel(channelWriteRecipe.getChannelName());
+                level.put(channel, channelWriteRecipe.getWriteSubscription().getWriteCache().getValue());
+            }
+            levels.add(level);
         }
 
-        // Connect using another thread
-        exec.execute(new Runnable() {
+        new PlannedWrite(levels, callback, exceptionHandler).writeNextLevel();
+    }
+    
+    /**
+     * Writes a group of channels that do not depend on each other.
+     * <p>
+     * This is called once for each level of a write, with all the channels
+     * of the level, and the callback must be called once for each channel
+     * when its write is concluded. The next level is written only when all
+     * the channels have been written.
+     * <p>
+     * The default implementation writes each channel on the worker
+     * thread of its handler. Data sources whose protocol can pipeline
+     * the requests (e.g. queue all the puts and flush them once) can override
+     * this method to send all the writes of the level together. This method
+     * is called on the thread that concluded the previous level, so it
+     * should not block, and the requests should still be issued on the
+     * workers (see {@link #executeOnWorker(org.epics.pvmanager.ChannelHandler, java.lang.Runnable) })
+     * so that they do not race the disconnection of the channels.
+     * 
+     * @param values the channels to write and the values to write
+     * @param callback the callback to call for each channel
+     */
+    protected void writeChannels(Map<ChannelHandler, Object> values, final ChannelWriteCallback callback) {
+        for (Map.Entry<ChannelHandler, Object> entry : values.entrySet()) {
+            final ChannelHandler channelHandler = entry.getKey();
+            final Object value = entry.getValue();
+            exec.execute(channelHandler, new Runnable() {
 
-            private void scheduleNext() {
-                for (Map.Entry<ChannelHandler, Object> entry : planner.nextChannels().entrySet()) {
-                    final String channelName = entry.getKey().getChannelName();
+                @Override
+                public void run() {
                     try {
-                        entry.getKey().write(entry.getValue(), new ChannelWriteCallback() {
-
-                            AtomicInteger counter = new AtomicInteger();
-
-                            @Override
-                            public void channelWritten(Exception ex) {
-                                planner.removeChannel(channelName);
-
-                                // If there was an error, notify the exception
-                                // and don't schedule anything else
-                                if (ex != null) {
-                                    exceptionHandler.handleException(ex);
-                                    return;
-                                }
-
-                                // Notify only when the last channel was written
-                                if (planner.isDone()) {
-                                    callback.run();
-                                } else {
-                                    scheduleNext();
-                                }
-                            }
-                        });
+                        channelHandler.write(value, callback);
                     } catch (RuntimeException ex) {
-                        exceptionHandler.handleException(ex);
+                        callback.channelWritten(ex);
                     }
                 }
+            });
+        }
+    }
+    
+    /**
+     * Executes the task on the worker thread of the given channel, after
+     * the connections, disconnections and writes already submitted
+     * for that channel.
+     * 
+     * @param channelHandler the channel the task operates on
+     * @param task the task to execute
+     */
+    protected void executeOnWorker(ChannelHandler channelHandler, Runnable task) {
+        exec.execute(channelHandler, task);
+    }
+    
+    /**
+     * Executes the writes prepared by the planner, one level at a time.
+     * The callbacks of the channels of a level only decrement a counter:
+     * the last one starts the next level.
+     */
+    private class PlannedWrite {
+        
+        private final List<Map<ChannelHandler, Object>> levels;
+        private final Runnable callback;
+        private final ExceptionHandler exceptionHandler;
+        private final AtomicInteger remainingChannels = new AtomicInteger();
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private int nextLevel = 0;
+
+        public PlannedWrite(List<Map<ChannelHandler, Object>> levels, Runnable callback, ExceptionHandler exceptionHandler) {
+            this.levels = levels;
+            this.callback = callback;
+            this.exceptionHandler = exceptionHandler;
+        }
+
+        private void writeNextLevel() {
+            // Only called by the last callback of the previous level,
+            // so there is no concurrent access
+            if (nextLevel == levels.size()) {
+                callback.run();
+                return;
             }
+            
+            Map<ChannelHandler, Object> level = levels.get(nextLevel);
+            nextLevel++;
+            ChannelWriteCallback levelCallback = new ChannelWriteCallback() {
 
-            @Override
-            public void run() {
-                scheduleNext();
+                @Override
+                public void channelWritten(Exception ex) {
+                    // If there was an error, notify the exception
+                    // and don't schedule anything else
+                    if (ex != null) {
+                        if (failed.compareAndSet(false, true)) {
+                            exceptionHandler.handleException(ex);
+                        }
+                        return;
+                    }
+                    
+                    if (remainingChannels.decrementAndGet() == 0 && !failed.get()) {
+                        writeNextLevel();
+                    }
+                }
+            };
+            remainingChannels.set(level.size());
+            try {
+                writeChannels(level, levelCallback);
+            } catch (RuntimeException ex) {
+                levelCallback.channelWritten(ex);
             }
-        });
+        }
     }
 
     /**
@@ -398,11 +721,27 @@ public abstract class DataSource {
     public Map<String, ChannelHandler> getChannels() {
         return Collections.unmodifiableMap(usedChannels);
     }
+    
+    /**
+     * Returns the queue depth and latency for each of the worker
+     * threads used to connect, disconnect and write channels.
+     * 
+     * @return the statistics for each worker; never null
+     */
+    public List<ShardStatistics> getWorkerStatistics() {
+        return exec.getStatistics();
+    }
 
     /**
      * Closes the DataSource and the resources associated with it.
      */
     public void close() {
+        exec.shutdown();
+        synchronized (channelLock) {
+            if (evictionTimer != null) {
+                evictionTimer.shutdownNow();
+            }
+        }
     }
     
 }
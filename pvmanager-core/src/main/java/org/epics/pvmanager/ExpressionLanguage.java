@@ -172,6 +172,27 @@ public class ExpressionLanguage {
                 new QueueCollector<T>(maxValues),
                 expression.getName());
     }
+
+    /**
+     * Returns up to maxValues new values generated by the expression source rate,
+     * collected in a lock-free ring buffer.
+     * <p>
+     * Same as {@link #newValuesOf(org.epics.pvmanager.expression.SourceRateExpression, int) },
+     * but the values are collected by a {@link RingBufferQueueCollector}:
+     * the space for maxValues is allocated upfront and the source is never
+     * blocked by the reader. Suitable for high rate sources with large queues.
+     *
+     * @param <T> type being read
+     * @param expression source rate expression
+     * @param maxValues maximum number of values to send with each notification
+     * @return a new expression
+     */
+    public static <T> DesiredRateExpression<List<T>>
+            ringBufferOf(SourceRateExpression<T> expression, int maxValues) {
+        return new DesiredRateExpressionImpl<List<T>>(expression,
+                new RingBufferQueueCollector<T>(maxValues),
+                expression.getName());
+    }
     
     /**
      * Expression that returns (only) the latest value computed
@@ -575,6 +596,39 @@ public class ExpressionLanguage {
         return new ReadMap<R>().add(expressions);
     }
     
+    /**
+     * An empty map that can manage expressions of the given type, and
+     * that returns only the changes at each notification.
+     * <p>
+     * The returned expression is dynamic, which means child expressions
+     * can be added or removed from the map. Only the child expressions
+     * that received new values are read, which makes it suitable for
+     * large maps where only a few values change at each scan.
+     * 
+     * @param <R> the type of the values
+     * @param clazz the type of the values
+     * @return an expression representing a map from name to results
+     */
+    public static <R> DeltaReadMap<R> deltaReadMapOf(Class<R> clazz){
+        return new DeltaReadMap<>();
+    }
+    
+    /**
+     * An expression that returns a key/value map where the key is the
+     * expression name and the value is the expression value, together
+     * with the keys that changed since the previous notification.
+     * <p>
+     * The returned expression is dynamic, which means child expressions
+     * can be added or removed from the map.
+     * 
+     * @param <R> the type of the values
+     * @param expressions a list of expressions
+     * @return an expression representing a map from name to results
+     */
+    public static <R> DeltaReadMap<R> deltaMapOf(DesiredRateExpressionList<R> expressions){
+        return new DeltaReadMap<R>().add(expressions);
+    }
+    
     /**
      * An expression that expects a key/value map where the key is the
      * expression name and the value is the expression value.
@@ -4,6 +4,8 @@
  */
 package org.epics.pvmanager;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
@@ -25,7 +27,8 @@ import java.util.logging.Logger;
  * the type chosen as connection payload should be one that stores all the
  * information about the channel of communications</li>
  * <li>every time an event is sent, call {@link #processMessage(java.lang.Object) }, which
- * will trigger the proper value notification mechanism</li>
+ * will trigger the proper value notification mechanism; the payload is converted
+ * once for all the readers that use the same type adapter for the same type</li>
  * <li>implement {@link #isConnected(java.lang.Object) } and {@link #isWriteConnected(java.lang.Object) }
  * with the logic to extract the connection information from the connection payload</li>
  * <li>use {@link #reportExceptionToAllReadersAndWriters(java.lang.Exception) }
@@ -78,6 +81,28 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
                 subscription.getExceptionWriteFunction().writeValue(e);
             }
         }
+
+        public final void processValue(MessagePayload payload, List<ConvertedValue> convertedValues) {
+            if (typeAdapter == null)
+                return;
+            
+            // Reuse the value if another monitor already had it converted
+            // by the same adapter for the same type
+            Class<?> type = subscription.getValueCache().getType();
+            ConvertedValue converted = null;
+            for (ConvertedValue convertedValue : convertedValues) {
+                if (convertedValue.typeAdapter == typeAdapter && convertedValue.type == type) {
+                    converted = convertedValue;
+                    break;
+                }
+            }
+            if (converted == null) {
+                converted = new ConvertedValue(typeAdapter, type);
+                converted.convert(payload);
+                convertedValues.add(converted);
+            }
+            converted.copyTo(subscription);
+        }
         
         public final void findTypeAdapter() {
             if (getConnectionPayload() == null) {
@@ -93,6 +118,61 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
         
     }
     
+    /**
+     * Holds the value converted by a type adapter for a given cache type,
+     * so that it can be given to all the caches that would convert the
+     * message in the same way. Values given to pvmanager are immutable,
+     * so the same instance can be shared.
+     */
+    private class ConvertedValue implements ValueCache<Object> {
+        
+        private final DataSourceTypeAdapter<ConnectionPayload, MessagePayload> typeAdapter;
+        private final Class<?> type;
+        private Object value;
+        private boolean written;
+        private RuntimeException exception;
+
+        public ConvertedValue(DataSourceTypeAdapter<ConnectionPayload, MessagePayload> typeAdapter, Class<?> type) {
+            this.typeAdapter = typeAdapter;
+            this.type = type;
+        }
+        
+        public void convert(MessagePayload payload) {
+            try {
+                typeAdapter.updateCache(this, getConnectionPayload(), payload);
+            } catch (RuntimeException e) {
+                exception = e;
+            }
+        }
+        
+        @SuppressWarnings("unchecked")
+        public void copyTo(ChannelHandlerReadSubscription subscription) {
+            if (exception != null) {
+                subscription.getExceptionWriteFunction().writeValue(exception);
+            } else if (written) {
+                ((ValueCache<Object>) subscription.getValueCache()).writeValue(value);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Class<Object> getType() {
+            return (Class<Object>) type;
+        }
+
+        @Override
+        public Object readValue() {
+            return value;
+        }
+
+        @Override
+        public void writeValue(Object newValue) {
+            value = type.cast(newValue);
+            written = true;
+        }
+        
+    }
+    
     /**
      * Notifies all readers and writers of an error condition.
      * 
@@ -302,8 +382,12 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
         }
         
         lastMessage = payload;
+        
+        // Convert the payload once for each adapter and cache type,
+        // regardless of how many monitors there are
+        List<ConvertedValue> convertedValues = new ArrayList<>();
         for (MonitorHandler monitor : monitors.values()) {
-            monitor.processValue(payload);
+            monitor.processValue(payload, convertedValues);
         }
     }
 
@@ -105,5 +105,10 @@ public class PV<R, W> implements PVReader<R>, PVWriter<W> {
     public boolean isWriteConnected() {
         return writer.isWriteConnected();
     }
+
+    @Override
+    public WriteStatistics getWriteStatistics() {
+        return writer.getWriteStatistics();
+    }
     
 }
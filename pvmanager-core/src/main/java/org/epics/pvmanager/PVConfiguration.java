@@ -121,6 +121,30 @@ public class PVConfiguration<R, W> extends CommonConfiguration {
         return this;
     }
     
+    /**
+     * Scans the read expression only when new data is available.
+     * <p>
+     * For more details, consult {@link PVReaderConfiguration#eventDriven() }.
+     *
+     * @return this expression
+     */
+    public PVConfiguration<R, W> eventDriven() {
+        pvReaderConfiguration.eventDriven();
+        return this;
+    }
+    
+    /**
+     * Coalesces the asynchronous writes.
+     * <p>
+     * For more details, consult {@link PVWriterConfiguration#coalesceWrites() }.
+     *
+     * @return this expression
+     */
+    public PVConfiguration<R, W> coalesceWrites() {
+        pvWriterConfiguration.coalesceWrites();
+        return this;
+    }
+    
     /**
      * Creates the pv such that writes are synchronous and read notifications
      * comes at most at the rate specified.
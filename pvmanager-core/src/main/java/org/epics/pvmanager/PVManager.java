@@ -4,6 +4,8 @@
  */
 package org.epics.pvmanager;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -40,7 +42,10 @@ import org.epics.pvmanager.expression.WriteExpression;
  * <b>ReadScannerExecutorService</b> - This is used to run the periodic
  * scan for new values. By default this uses the internal PVManager work pool. The work
  * submitted here is the calculation of the corresponding {@link DesiredRateExpression}
- * and submission to the NotificationExecutor.
+ * and submission to the NotificationExecutor. When opening a large number
+ * of readers, this can be changed to a {@link org.epics.pvmanager.util.TimerWheelExecutorService},
+ * which has constant scheduling cost and executes all the scans due at the same
+ * time as a single batch.
  *
  * @author carcassi
  */
@@ -114,6 +119,25 @@ public class PVManager {
         return new PVReaderConfiguration<T>(pvExpression);
     }
     
+    /**
+     * Reads each of the given expressions with a separate reader, and returns an object
+     * to configure the parameters for the read. All the readers are created
+     * and connected at once, which is much faster than reading each expression
+     * separately when opening a large number of channels. At each notification
+     * each reader will return its latest value.
+     *
+     * @param <T> type of the read payload
+     * @param pvExpressions the expressions to read
+     * @return the read configuration for the group of readers
+     */
+    public static <T> PVReaderGroupConfiguration<T> readAll(List<? extends SourceRateExpression<T>> pvExpressions) {
+        List<DesiredRateExpression<T>> expressions = new ArrayList<>(pvExpressions.size());
+        for (SourceRateExpression<T> pvExpression : pvExpressions) {
+            expressions.add(ExpressionLanguage.latestValueOf(pvExpression));
+        }
+        return new PVReaderGroupConfiguration<T>(expressions);
+    }
+    
     /**
      * Writes the given expression, and returns an object to configure the parameters
      * for the write.
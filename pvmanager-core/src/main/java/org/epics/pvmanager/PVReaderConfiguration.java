@@ -69,6 +69,7 @@ public class PVReaderConfiguration<T> extends CommonConfiguration {
     
     private DesiredRateExpression<T> aggregatedPVExpression;
     private ExceptionHandler exceptionHandler;
+    private boolean eventDriven = false;
     private List<PVReaderListener<T>> readListeners = new ArrayList<>();
 
     PVReaderConfiguration(DesiredRateExpression<T> aggregatedPVExpression) {
@@ -110,6 +111,23 @@ public class PVReaderConfiguration<T> extends CommonConfiguration {
         return this;
     }
     
+    /**
+     * Scans the expression only when the data source has delivered new
+     * data (values, connection changes or errors) instead of at every period.
+     * <p>
+     * The rate given by {@link #maxRate(org.epics.util.time.TimeDuration) }
+     * is still respected: all the data received within one period is
+     * coalesced in a single notification. This is useful when a large
+     * number of readers are open on channels that do not change often,
+     * as no calculation is performed for the readers that have no new data.
+     * 
+     * @return this expression
+     */
+    public PVReaderConfiguration<T> eventDriven() {
+        this.eventDriven = true;
+        return this;
+    }
+    
     /**
      * Sets the rate of scan of the expression and creates the actual {@link PVReader}
      * object that can be monitored through listeners.
@@ -134,7 +152,7 @@ public class PVReaderConfiguration<T> extends CommonConfiguration {
         ReadFunction<T> aggregatedFunction = aggregatedPVExpression.getFunction();
         
         PVReaderDirector<T> director = new PVReaderDirector<T>(pv, aggregatedFunction, PVManager.getReadScannerExecutorService(),
-                notificationExecutor, dataSource, exceptionHandler);
+                notificationExecutor, dataSource, exceptionHandler, eventDriven);
         pv.setDirector(director);
         if (timeout != null) {
             if (timeoutMessage == null)
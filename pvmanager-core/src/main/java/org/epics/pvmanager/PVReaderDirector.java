@@ -5,13 +5,17 @@
 package org.epics.pvmanager;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.epics.pvmanager.expression.DesiredRateExpression;
@@ -55,6 +59,9 @@ public class PVReaderDirector<T> {
     private final Object lock = new Object();
     private final Map<DesiredRateExpression<?>, ReadRecipe> recipes =
             new HashMap<>();
+    /** Tasks to run once all the expressions are disconnected */
+    private final List<Runnable> closeListeners = new ArrayList<>();
+    private boolean disconnected = false;
 
     // Required for multiple operations
     /** Connection collector required to connect/disconnect expressions and for connection notification */
@@ -63,6 +70,17 @@ public class PVReaderDirector<T> {
     /** Exception queue to be used to connect/disconnect expression and for exception notification */
     private final QueueCollector<Exception> exceptionCollector;
     
+    // Required for event driven scanning
+    /** Whether scans are triggered by the data source instead of polling */
+    private final boolean eventDriven;
+    /** Whether a scan was already scheduled for the data received */
+    private final AtomicBoolean scanPending = new AtomicBoolean(false);
+    /** Whether a scan was skipped because a notification was in flight */
+    private volatile boolean scanMissed = false;
+    private volatile boolean scanStopped = false;
+    private volatile long scanPeriodNanos;
+    private volatile long lastScanNanos;
+    
     
     ReadRecipe getCurrentReadRecipe() {
         ReadRecipeBuilder builder = new ReadRecipeBuilder();
@@ -75,6 +93,38 @@ public class PVReaderDirector<T> {
         return builder.build(exceptionCollector, connCollector);
     }
     
+    /**
+     * The data source used to connect the expressions of this reader.
+     * <p>
+     * Expressions that share state with other readers can use it to share
+     * only with readers connected to the same data source.
+     * 
+     * @return the data source; can be null
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+    
+    /**
+     * Registers a task to run once the reader is closed and all its
+     * expressions are disconnected. If that already happened, the task
+     * runs right away.
+     * <p>
+     * This can be used by expressions that hold resources shared with
+     * other readers, to release them.
+     * 
+     * @param listener the task to run
+     */
+    public void addCloseListener(Runnable listener) {
+        synchronized(lock) {
+            if (!disconnected) {
+                closeListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+    
     /**
      * Connects the given expression.
      * <p>
@@ -85,12 +135,23 @@ public class PVReaderDirector<T> {
      * @param expression the expression to connect
      */
     public void connectExpression(DesiredRateExpression<?> expression) {
-        ReadRecipeBuilder builder = new ReadRecipeBuilder();
-        expression.fillReadRecipe(this, builder);
-        ReadRecipe recipe = builder.build(exceptionCollector, connCollector);
-        synchronized(lock) {
-            recipes.put(expression, recipe);
-        }
+        connectExpression(expression, null);
+    }
+    
+    /**
+     * Connects the given expression, and signals each new value that
+     * its channels receive to the given listener.
+     * <p>
+     * This can be used for dynamic expressions to track which child expressions
+     * may have a new value, instead of reading all of them at each scan.
+     * The listener is called on the data source thread, after the value
+     * is written, and should only record the event.
+     * 
+     * @param expression the expression to connect
+     * @param valueListener called after each new value; can be null
+     */
+    public void connectExpression(DesiredRateExpression<?> expression, Runnable valueListener) {
+        ReadRecipe recipe = prepareExpression(expression, valueListener);
         if (!recipe.getChannelReadRecipes().isEmpty()) {
             try {
                 dataSource.connectRead(recipe);
@@ -100,6 +161,37 @@ public class PVReaderDirector<T> {
         }
     }
     
+    /**
+     * Prepares the recipe for the given expression and registers it,
+     * without connecting it to the data source.
+     * <p>
+     * The caller is responsible to connect the recipe, possibly
+     * together with the recipes of other readers. The expression will
+     * be disconnected as if it was connected with {@link #connectExpression(org.epics.pvmanager.expression.DesiredRateExpression) }.
+     * 
+     * @param expression the expression to prepare
+     * @return the recipe to connect
+     */
+    ReadRecipe prepareExpression(DesiredRateExpression<?> expression) {
+        return prepareExpression(expression, null);
+    }
+    
+    private ReadRecipe prepareExpression(DesiredRateExpression<?> expression, Runnable valueListener) {
+        ReadRecipeBuilder builder = new ReadRecipeBuilder();
+        expression.fillReadRecipe(this, builder);
+        ReadRecipe recipe = builder.build(exceptionCollector, connCollector);
+        if (valueListener != null) {
+            recipe = listenedRecipe(recipe, valueListener);
+        }
+        if (eventDriven) {
+            recipe = eventDrivenRecipe(recipe);
+        }
+        synchronized(lock) {
+            recipes.put(expression, recipe);
+        }
+        return recipe;
+    }
+    
     /**
      * Simulate a static connection in which the channel has one exception
      * and the connection will never change.
@@ -120,6 +212,124 @@ public class PVReaderDirector<T> {
     public void connectStatic(Exception ex, boolean connection, String channelName) {
         exceptionCollector.writeValue(ex);
         connCollector.addChannel(channelName).writeValue(connection);
+        markDirty();
+    }
+    
+    /**
+     * Returns a copy of the recipe where all the caches and write functions
+     * given to the data source mark this director dirty when written.
+     * 
+     * @param recipe the recipe built for the expression
+     * @return the recipe to give to the data source
+     */
+    private ReadRecipe eventDrivenRecipe(ReadRecipe recipe) {
+        Set<ChannelReadRecipe> channelRecipes = new HashSet<>();
+        for (ChannelReadRecipe channelRecipe : recipe.getChannelReadRecipes()) {
+            ChannelHandlerReadSubscription subscription = channelRecipe.getReadSubscription();
+            channelRecipes.add(new ChannelReadRecipe(channelRecipe.getChannelName(),
+                    new ChannelHandlerReadSubscription(new DirtyValueCache<>(subscription.getValueCache()),
+                    new DirtyWriteFunction<>(subscription.getExceptionWriteFunction()),
+                    new DirtyWriteFunction<>(subscription.getConnectionWriteFunction()))));
+        }
+        return new ReadRecipe(channelRecipes);
+    }
+    
+    /**
+     * Returns a copy of the recipe where all the caches given to the data source
+     * call the listener when written.
+     * 
+     * @param recipe the recipe built for the expression
+     * @param valueListener the listener to call
+     * @return the recipe to give to the data source
+     */
+    private static ReadRecipe listenedRecipe(ReadRecipe recipe, Runnable valueListener) {
+        Set<ChannelReadRecipe> channelRecipes = new HashSet<>();
+        for (ChannelReadRecipe channelRecipe : recipe.getChannelReadRecipes()) {
+            ChannelHandlerReadSubscription subscription = channelRecipe.getReadSubscription();
+            channelRecipes.add(new ChannelReadRecipe(channelRecipe.getChannelName(),
+                    new ChannelHandlerReadSubscription(new ListenedValueCache<>(subscription.getValueCache(), valueListener),
+                    subscription.getExceptionWriteFunction(), subscription.getConnectionWriteFunction())));
+        }
+        return new ReadRecipe(channelRecipes);
+    }
+    
+    /**
+     * A cache that calls a listener every time a new value is written.
+     */
+    private static class ListenedValueCache<C> implements ValueCache<C> {
+        
+        private final ValueCache<C> valueCache;
+        private final Runnable valueListener;
+
+        public ListenedValueCache(ValueCache<C> valueCache, Runnable valueListener) {
+            this.valueCache = valueCache;
+            this.valueListener = valueListener;
+        }
+
+        @Override
+        public C readValue() {
+            return valueCache.readValue();
+        }
+
+        @Override
+        public void writeValue(C newValue) {
+            valueCache.writeValue(newValue);
+            valueListener.run();
+        }
+
+        @Override
+        public Class<C> getType() {
+            return valueCache.getType();
+        }
+        
+    }
+    
+    /**
+     * A cache that marks the director dirty every time a new value is written.
+     */
+    private class DirtyValueCache<C> implements ValueCache<C> {
+        
+        private final ValueCache<C> valueCache;
+
+        public DirtyValueCache(ValueCache<C> valueCache) {
+            this.valueCache = valueCache;
+        }
+
+        @Override
+        public C readValue() {
+            return valueCache.readValue();
+        }
+
+        @Override
+        public void writeValue(C newValue) {
+            valueCache.writeValue(newValue);
+            markDirty();
+        }
+
+        @Override
+        public Class<C> getType() {
+            return valueCache.getType();
+        }
+        
+    }
+    
+    /**
+     * A write function that marks the director dirty every time a new value is written.
+     */
+    private class DirtyWriteFunction<C> implements WriteFunction<C> {
+        
+        private final WriteFunction<C> writeFunction;
+
+        public DirtyWriteFunction(WriteFunction<C> writeFunction) {
+            this.writeFunction = writeFunction;
+        }
+
+        @Override
+        public void writeValue(C newValue) {
+            writeFunction.writeValue(newValue);
+            markDirty();
+        }
+        
     }
     
     /**
@@ -152,17 +362,31 @@ public class PVReaderDirector<T> {
     
     void close() {
         closed = true;
+        // Let the scan find out the reader was closed
+        markDirty();
     }
 
     /**
-     * Closed and disconnects all the child expressions.
+     * Closed and disconnects all the child expressions, then runs
+     * the close listeners.
      */
     private void disconnect() {
+        List<Runnable> listeners;
         synchronized(lock) {
             while (!recipes.isEmpty()) {
                 DesiredRateExpression<?> expression = recipes.keySet().iterator().next();
                 disconnectExpression(expression);
             }
+            disconnected = true;
+            listeners = new ArrayList<>(closeListeners);
+            closeListeners.clear();
+        }
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException ex) {
+                log.log(Level.WARNING, "Close listener failed", ex);
+            }
         }
     }
 
@@ -180,6 +404,23 @@ public class PVReaderDirector<T> {
      */
     PVReaderDirector(PVReaderImpl<T> pv, ReadFunction<T> function, ScheduledExecutorService scannerExecutor,
             Executor notificationExecutor, DataSource dataSource, ExceptionHandler exceptionHandler) {
+        this(pv, function, scannerExecutor, notificationExecutor, dataSource, exceptionHandler, false);
+    }
+
+    /**
+     * Creates a new notifier. If eventDriven is true, the function is
+     * calculated only after the data source has written new data (values,
+     * connection or exceptions) instead of at each scan.
+     *
+     * @param pv the pv on which to notify
+     * @param function the function used to calculate new values
+     * @param notificationExecutor the thread switching mechanism
+     * @param eventDriven whether the scan is triggered by new data
+     */
+    PVReaderDirector(PVReaderImpl<T> pv, ReadFunction<T> function, ScheduledExecutorService scannerExecutor,
+            Executor notificationExecutor, DataSource dataSource, ExceptionHandler exceptionHandler,
+            boolean eventDriven) {
+        this.eventDriven = eventDriven;
         this.pvRef = new WeakReference<>(pv);
         this.function = function;
         this.notificationExecutor = notificationExecutor;
@@ -238,8 +479,17 @@ public class PVReaderDirector<T> {
         // Don't even calculate if notification is in flight.
         // This makes pvManager automatically throttle back if the consumer
         // is slower than the producer.
-        if (notificationInFlight)
+        if (notificationInFlight) {
+            if (eventDriven) {
+                // Make sure the data is processed once the notification
+                // is done, since no other event may arrive
+                scanMissed = true;
+                if (!notificationInFlight) {
+                    rescanMissed();
+                }
+            }
             return;
+        }
         
         // Calculate new value
         T newValue = null;
@@ -319,12 +569,77 @@ public class PVReaderDirector<T> {
                     }
                 } finally {
                     notificationInFlight = false;
+                    if (eventDriven) {
+                        rescanMissed();
+                    }
                 }
             }
         });
     }
     
+    private void rescanMissed() {
+        if (scanMissed) {
+            scanMissed = false;
+            markDirty();
+        }
+    }
+    
+    /**
+     * Signals that new data is available and that the reader needs
+     * to be scanned. The scan is scheduled so that it does not happen
+     * sooner than the scan period from the previous scan; multiple calls
+     * before the scan are coalesced into one.
+     * <p>
+     * This does nothing if the reader is not event driven.
+     */
+    void markDirty() {
+        if (!eventDriven || scanStopped) {
+            return;
+        }
+        
+        if (scanPending.compareAndSet(false, true)) {
+            long delay = lastScanNanos + scanPeriodNanos - System.nanoTime();
+            try {
+                scannerExecutor.schedule(eventDrivenScanTask, Math.max(0, delay), TimeUnit.NANOSECONDS);
+            } catch (RuntimeException ex) {
+                scanPending.set(false);
+                throw ex;
+            }
+        }
+    }
+    
+    private final Runnable eventDrivenScanTask = new Runnable() {
+
+        @Override
+        public void run() {
+            // Clear the flag before reading the data, so that
+            // any new data will trigger a new scan
+            scanPending.set(false);
+            if (scanStopped) {
+                return;
+            }
+            try {
+                if (isActive()) {
+                    // If paused, simply skip: the scan will be
+                    // triggered again when resumed
+                    if (!isPaused()) {
+                        notifyPv();
+                    }
+                } else {
+                    stopScan();
+                    disconnect();
+                }
+            } finally {
+                lastScanNanos = System.nanoTime();
+            }
+        }
+    };
+    
     void startScan(TimeDuration duration) {
+        if (eventDriven) {
+            startEventDrivenScan(duration);
+            return;
+        }
         scanTaskHandle = scannerExecutor.scheduleWithFixedDelay(new Runnable() {
 
             @Override
@@ -342,6 +657,35 @@ public class PVReaderDirector<T> {
         }, 0, duration.toNanosLong(), TimeUnit.NANOSECONDS);
     }
     
+    private void startEventDrivenScan(TimeDuration duration) {
+        scanPeriodNanos = duration.toNanosLong();
+        lastScanNanos = System.nanoTime() - scanPeriodNanos;
+        // The liveness check makes sure the connections of reader that
+        // were garbage collected are closed even if no new data comes in.
+        // This is much cheaper than a full scan.
+        scanTaskHandle = scannerExecutor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                if (!isActive()) {
+                    markDirty();
+                }
+            }
+        }, EVENT_DRIVEN_LIVENESS_PERIOD.toNanosLong(), EVENT_DRIVEN_LIVENESS_PERIOD.toNanosLong(), TimeUnit.NANOSECONDS);
+        // First scan to notify the initial state
+        markDirty();
+    }
+    
+    private static final TimeDuration EVENT_DRIVEN_LIVENESS_PERIOD = TimeDuration.ofSeconds(1);
+    
+    /**
+     * Signals that the reader was resumed, so that the data received
+     * while paused can be processed.
+     */
+    void resume() {
+        markDirty();
+    }
+    
     void timeout(TimeDuration timeout, final String timeoutMessage) {
         scannerExecutor.schedule(new Runnable() {
 
@@ -350,12 +694,16 @@ public class PVReaderDirector<T> {
                 PVReaderImpl<T> pv = pvRef.get();
                 if (pv != null && !pv.isSentFirsEvent()) {
                     exceptionCollector.writeValue(new TimeoutException(timeoutMessage));
+                    markDirty();
                 }
             }
         }, timeout.toNanosLong(), TimeUnit.NANOSECONDS);
     }
     
     void stopScan() {
+        if (eventDriven) {
+            scanStopped = true;
+        }
         if (scanTaskHandle != null) {
             scanTaskHandle.cancel(false);
             scanTaskHandle = null;
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of {@link PVReader}s that were opened together.
+ * <p>
+ * Each reader is independent: it has its own value, connection, exception
+ * and listeners, and can be paused or closed on its own. The group
+ * allows to manage all of them at once.
+ *
+ * @param <T> the type of the readers
+ * @author carcassi
+ */
+public class PVReaderGroup<T> {
+    
+    private final List<PVReader<T>> readers;
+
+    PVReaderGroup(List<PVReader<T>> readers) {
+        this.readers = Collections.unmodifiableList(new ArrayList<>(readers));
+    }
+
+    /**
+     * The readers of the group, in the same order as the expressions
+     * they were created from.
+     * 
+     * @return an unmodifiable list of readers
+     */
+    public List<PVReader<T>> getReaders() {
+        return readers;
+    }
+    
+    /**
+     * The reader at the given position.
+     * 
+     * @param index the position of the reader
+     * @return the reader
+     */
+    public PVReader<T> get(int index) {
+        return readers.get(index);
+    }
+    
+    /**
+     * The number of readers in the group.
+     * 
+     * @return the number of readers
+     */
+    public int size() {
+        return readers.size();
+    }
+    
+    /**
+     * Pauses or resumes all the readers of the group.
+     * 
+     * @param paused whether the readers should be paused
+     */
+    public void setPaused(boolean paused) {
+        for (PVReader<T> reader : readers) {
+            reader.setPaused(paused);
+        }
+    }
+    
+    /**
+     * Closes all the readers of the group.
+     */
+    public void close() {
+        for (PVReader<T> reader : readers) {
+            reader.close();
+        }
+    }
+    
+}
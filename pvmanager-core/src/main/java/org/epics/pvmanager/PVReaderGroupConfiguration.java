@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import org.epics.pvmanager.expression.DesiredRateExpression;
+import org.epics.pvmanager.util.Executors;
+import org.epics.util.time.TimeDuration;
+
+/**
+ * An expression used to set the final parameters on how a group of
+ * expressions should be read.
+ * <p>
+ * All the readers are created at once, and all their channels are
+ * given to the data source in a single request. This is much faster than
+ * creating the readers one by one when opening thousands of channels.
+ * 
+ * @param <T> the type of the expressions
+ * @author carcassi
+ */
+public class PVReaderGroupConfiguration<T> extends CommonConfiguration {
+
+    @Override
+    public PVReaderGroupConfiguration<T> from(DataSource dataSource) {
+        super.from(dataSource);
+        return this;
+    }
+
+    @Override
+    public PVReaderGroupConfiguration<T> notifyOn(Executor onThread) {
+        super.notifyOn(onThread);
+        return this;
+    }
+
+    /**
+     * Sets a timeout for no values received on each reader.
+     * <p>
+     * For more details, consult {@link PVReaderConfiguration#timeout(org.epics.util.time.TimeDuration, java.lang.String) }.
+     *
+     * @param timeout the duration of the timeout; can't be null
+     * @return this expression
+     */
+    @Override
+    public PVReaderGroupConfiguration<T> timeout(TimeDuration timeout) {
+        super.timeout(timeout);
+        return this;
+    }
+
+    /**
+     * Sets a timeout for no values received on each reader with the given message.
+     * <p>
+     * For more details, consult {@link PVReaderConfiguration#timeout(org.epics.util.time.TimeDuration, java.lang.String) }.
+     *
+     * @param timeout the duration of the timeout; can't be null
+     * @param timeoutMessage the message for the reported timeout
+     * @return this expression
+     */
+    @Override
+    public PVReaderGroupConfiguration<T> timeout(TimeDuration timeout, String timeoutMessage) {
+        super.timeout(timeout, timeoutMessage);
+        return this;
+    }
+    
+    private final List<DesiredRateExpression<T>> expressions;
+    private ExceptionHandler exceptionHandler;
+    private List<PVReaderListener<T>> readListeners = new ArrayList<>();
+    private boolean eventDriven = false;
+
+    PVReaderGroupConfiguration(List<DesiredRateExpression<T>> expressions) {
+        this.expressions = expressions;
+    }
+    
+    /**
+     * Adds a listener to each reader, notified for any reader event
+     * (values, connection and errors).
+     * <p>
+     * Registering a listener here guarantees that no event is ever missed.
+     * The event can be used to know which reader has changed.
+     * 
+     * @param listener the listener to register
+     * @return this expression
+     */
+    public PVReaderGroupConfiguration<T> readListener(PVReaderListener<? super T> listener) {
+        @SuppressWarnings("unchecked")
+        PVReaderListener<T> convertedListener = (PVReaderListener<T>) listener;
+        readListeners.add(convertedListener);
+        return this;
+    }
+
+    /**
+     * Forwards the exceptions of all readers to the given exception handler.
+     * <p>
+     * For more details, consult {@link PVReaderConfiguration#routeExceptionsTo(org.epics.pvmanager.ExceptionHandler) }.
+     *
+     * @param exceptionHandler an exception handler
+     * @return this
+     */
+    public PVReaderGroupConfiguration<T> routeExceptionsTo(ExceptionHandler exceptionHandler) {
+        if (this.exceptionHandler != null) {
+            throw new IllegalArgumentException("Exception handler already set");
+        }
+        this.exceptionHandler = ExceptionHandler.safeHandler(exceptionHandler);
+        return this;
+    }
+    
+    /**
+     * Scans each reader only when new data is available.
+     * <p>
+     * For more details, consult {@link PVReaderConfiguration#eventDriven() }.
+     * 
+     * @return this expression
+     */
+    public PVReaderGroupConfiguration<T> eventDriven() {
+        this.eventDriven = true;
+        return this;
+    }
+    
+    /**
+     * Sets the rate of scan of the expressions and creates the actual
+     * {@link PVReader}s, one for each expression.
+     * 
+     * @param rate the minimum time distance (i.e. the maximum rate) between two different notifications
+     * @return the group of PVReaders
+     */
+    public PVReaderGroup<T> maxRate(TimeDuration rate) {
+        if (rate.getSec() < 0 && rate.getNanoSec() < 5000000) {
+            throw new IllegalArgumentException("Current implementation limits the rate to >5ms or <200Hz (requested " + rate + "s)");
+        }
+
+        checkDataSourceAndThreadSwitch();
+        if (timeout != null && timeoutMessage == null) {
+            timeoutMessage = "Read timeout";
+        }
+
+        // Create all the readers and prepare their recipes
+        List<PVReader<T>> readers = new ArrayList<>(expressions.size());
+        List<PVReaderDirector<T>> directors = new ArrayList<>(expressions.size());
+        List<ReadRecipe> readerRecipes = new ArrayList<>(expressions.size());
+        Set<ChannelReadRecipe> channelRecipes = new HashSet<>();
+        for (DesiredRateExpression<T> expression : expressions) {
+            PVReaderImpl<T> pv = new PVReaderImpl<T>(expression.getName(), Executors.localThread() == notificationExecutor);
+            for (PVReaderListener<T> pVReaderListener : readListeners) {
+                pv.addPVReaderListener(pVReaderListener);
+            }
+            PVReaderDirector<T> director = new PVReaderDirector<T>(pv, expression.getFunction(), PVManager.getReadScannerExecutorService(),
+                    notificationExecutor, dataSource, exceptionHandler, eventDriven);
+            pv.setDirector(director);
+            if (timeout != null) {
+                director.timeout(timeout, timeoutMessage);
+            }
+            ReadRecipe recipe = director.prepareExpression(expression);
+            channelRecipes.addAll(recipe.getChannelReadRecipes());
+            readerRecipes.add(recipe);
+            readers.add(pv);
+            directors.add(director);
+        }
+        
+        // Connect all the channels in one request
+        if (!channelRecipes.isEmpty()) {
+            try {
+                dataSource.connectRead(new ReadRecipe(channelRecipes));
+            } catch (Exception ex) {
+                for (ReadRecipe recipe : readerRecipes) {
+                    if (!recipe.getChannelReadRecipes().isEmpty()) {
+                        recipe.getChannelReadRecipes().iterator().next().getReadSubscription().getExceptionWriteFunction().writeValue(ex);
+                    }
+                }
+            }
+        }
+        
+        for (PVReaderDirector<T> director : directors) {
+            director.startScan(rate);
+        }
+
+        return new PVReaderGroup<>(readers);
+    }
+}
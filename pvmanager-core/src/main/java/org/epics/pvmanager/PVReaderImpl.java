@@ -257,9 +257,16 @@ class PVReaderImpl<T> implements PVReader<T> {
 
     @Override
     public void setPaused(boolean paused) {
+        PVReaderDirector<T> currentDirector;
         synchronized(lock) {
             this.paused = paused;
         }
+        synchronized(this) {
+            currentDirector = director;
+        }
+        if (!paused && currentDirector != null) {
+            currentDirector.resume();
+        }
     }
 
     @Override
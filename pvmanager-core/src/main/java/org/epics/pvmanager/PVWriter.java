@@ -71,4 +71,12 @@ public interface PVWriter<T> {
      */
     public Exception lastWriteException();
     
+    /**
+     * Returns a snapshot of the write activity: the number of values written,
+     * coalesced and completed, and the latency of the writes.
+     *
+     * @return the write statistics
+     */
+    public WriteStatistics getWriteStatistics();
+    
 }
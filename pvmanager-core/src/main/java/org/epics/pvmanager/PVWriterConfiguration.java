@@ -68,6 +68,7 @@ public class PVWriterConfiguration<T> extends CommonConfiguration {
     private WriteExpression<T> writeExpression;
     private ExceptionHandler exceptionHandler;
     private List<PVWriterListener<T>> writeListeners = new ArrayList<>();
+    private boolean coalesceWrites = false;
 
     PVWriterConfiguration(WriteExpression<T> writeExpression) {
         this.writeExpression = writeExpression;
@@ -104,6 +105,26 @@ public class PVWriterConfiguration<T> extends CommonConfiguration {
         return this;
     }
 
+    /**
+     * Coalesces the asynchronous writes, so that only the latest value
+     * is sent when the channel is ready.
+     * <p>
+     * While a write is in flight, a new value is kept pending instead of
+     * being queued: if another value arrives, it replaces the pending one,
+     * which is never sent nor notified. This keeps the latency bounded when
+     * the values are written faster than the channel can acknowledge them
+     * (e.g. a slider or a feedback loop). The number of values that were
+     * replaced is available in {@link PVWriter#getWriteStatistics() }.
+     * <p>
+     * Synchronous writes are not affected.
+     *
+     * @return this expression
+     */
+    public PVWriterConfiguration<T> coalesceWrites() {
+        this.coalesceWrites = true;
+        return this;
+    }
+
     private PVWriter<T> create(boolean syncWrite) {
         checkDataSourceAndThreadSwitch();
 
@@ -120,7 +141,7 @@ public class PVWriterConfiguration<T> extends CommonConfiguration {
         if (timeoutMessage == null)
             timeoutMessage = "Write timeout";
         PVWriterDirector<T> writerDirector = new PVWriterDirector<T>(pvWriter, writeFunction, dataSource, PVManager.getAsyncWriteExecutor(),
-                notificationExecutor, PVManager.getReadScannerExecutorService(), timeout, timeoutMessage, exceptionHandler);
+                notificationExecutor, PVManager.getReadScannerExecutorService(), timeout, timeoutMessage, exceptionHandler, coalesceWrites && !syncWrite);
         writerDirector.connectExpression(writeExpression);
         writerDirector.startScan(TimeDuration.ofMillis(100));
         pvWriter.setWriteDirector(writerDirector);
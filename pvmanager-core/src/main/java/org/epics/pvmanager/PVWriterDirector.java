@@ -16,6 +16,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -32,7 +33,8 @@ import org.epics.util.time.TimeDuration;
  * <li>Building connection recipes and forwarding them to the datasource<li>
  * <li>Managing the scanning task and notification for connection status
  * or errors</li>
- * <li>Managing the write process, both synchronous and asynchronous</li>
+ * <li>Managing the write process, both synchronous and asynchronous,
+ * optionally coalescing the asynchronous writes</li>
  * <li>Disconnecting the expressions from the datasources if the reader is closed
  * or if it's garbage collected</li>
  * </ul>
@@ -64,6 +66,23 @@ public class PVWriterDirector<T> {
     private final TimeDuration timeout;
     private final String timeoutMessage;
     
+    // Required to coalesce writes
+    
+    private final boolean coalesceWrites;
+    private final Object coalesceLock = new Object();
+    /** Whether an asynchronous write was sent and did not complete yet */
+    private boolean writeInFlight;
+    /** The latest value written while another write was in flight */
+    private WriteTask pendingTask;
+    
+    // Required for write statistics
+    
+    private final AtomicLong requestedWrites = new AtomicLong();
+    private final AtomicLong coalescedWrites = new AtomicLong();
+    private final AtomicLong completedWrites = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+    
     // Required to connect/disconnect expressions
     
     private final Map<WriteExpression<?>, WriteRecipe> recipes =
@@ -81,7 +100,7 @@ public class PVWriterDirector<T> {
     PVWriterDirector(PVWriterImpl<T> pvWriter, WriteFunction<T> writeFunction, DataSource dataSource,
             ScheduledExecutorService writeExecutor, Executor notificationExecutor,
             ScheduledExecutorService scannerExecutor, TimeDuration timeout, String timeoutMessage,
-            ExceptionHandler exceptionHandler) {
+            ExceptionHandler exceptionHandler, boolean coalesceWrites) {
         this.pvRef = new WeakReference<>(pvWriter);
         this.writeFunction = writeFunction;
         this.dataSource = dataSource;
@@ -90,6 +109,7 @@ public class PVWriterDirector<T> {
         this.scannerExecutor = scannerExecutor;
         this.timeout = timeout;
         this.timeoutMessage = timeoutMessage;
+        this.coalesceWrites = coalesceWrites;
         if (exceptionHandler == null) {
             exceptionCollector = new QueueCollector<>(1);
         } else {
@@ -195,23 +215,77 @@ public class PVWriterDirector<T> {
     }
     
     void write(final T newValue, final PVWriterImpl<T> pvWriter) {
+        requestedWrites.incrementAndGet();
         WriteTask newTask = new WriteTask(pvWriter, newValue);
-        writeExecutor.execute(newTask);
+        if (coalesceWrites) {
+            // While a write is in flight, the new value replaces the pending one:
+            // only the latest is sent when the channel is free
+            synchronized(coalesceLock) {
+                if (writeInFlight) {
+                    if (pendingTask != null) {
+                        coalescedWrites.incrementAndGet();
+                    }
+                    pendingTask = newTask;
+                    return;
+                }
+                writeInFlight = true;
+            }
+        }
+        submit(newTask);
+    }
+    
+    private void submit(WriteTask task) {
+        writeExecutor.execute(task);
         if (timeout != null) {
-            writeExecutor.schedule(newTask.timeout(), timeout.toNanosLong(), TimeUnit.NANOSECONDS);
+            writeExecutor.schedule(task.timeout(), timeout.toNanosLong(), TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    /**
+     * Called when a coalesced write is done (or timed out): sends
+     * the pending value, if any.
+     */
+    private void coalescedWriteDone() {
+        WriteTask nextTask;
+        synchronized(coalesceLock) {
+            nextTask = pendingTask;
+            pendingTask = null;
+            if (nextTask == null) {
+                writeInFlight = false;
+                return;
+            }
+        }
+        submit(nextTask);
+    }
+    
+    private void writeCompleted(long startTime) {
+        long latency = System.nanoTime() - startTime;
+        completedWrites.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        long max = maxLatency.get();
+        while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+            max = maxLatency.get();
         }
     }
     
     private class WriteTask implements Runnable {
         final PVWriterImpl<T> pvWriter;
         final T newValue;
+        final long startTime = System.nanoTime();
         private AtomicBoolean done = new AtomicBoolean();
+        private AtomicBoolean released = new AtomicBoolean();
 
         public WriteTask(PVWriterImpl<T> pvWriter, T newValue) {
             this.pvWriter = pvWriter;
             this.newValue = newValue;
         }
         
+        private void release() {
+            if (coalesceWrites && released.compareAndSet(false, true)) {
+                coalescedWriteDone();
+            }
+        }
+        
         private Runnable timeout() {
             return new Runnable() {
 
@@ -219,6 +293,9 @@ public class PVWriterDirector<T> {
                 public void run() {
                     if (!done.get()) {
                         exceptionCollector.writeValue(new TimeoutException(timeoutMessage));
+                        // Do not hold the following writes on a channel
+                        // that does not answer
+                        release();
                     }
                 }
             };
@@ -226,40 +303,52 @@ public class PVWriterDirector<T> {
 
         @Override
         public void run() {
-            synchronized(lock) {
-                writeFunction.writeValue(newValue);
-                dataSource.write(currentWriteRecipe, new Runnable() {
+            ExceptionHandler exceptionHandler = new ExceptionHandler() {
 
-                    @Override
-                    public void run() {
-                        done.set(true);
+                @Override
+                public void handleException(final Exception ex) {
+                    boolean previousDone = done.getAndSet(true);
+                    if (!previousDone) {
+                        writeCompleted(startTime);
+                        release();
                         notificationExecutor.execute(new Runnable() {
 
                             @Override
                             public void run() {
-                                pvWriter.fireWriteSuccess();
+                                pvWriter.fireWriteFailure(ex);
                             }
                         });
+                    } else {
+                        pvWriter.setLastWriteException(ex);
                     }
-                }, new ExceptionHandler() {
+                }
+
+            };
+            try {
+                synchronized(lock) {
+                    writeFunction.writeValue(newValue);
+                    dataSource.write(currentWriteRecipe, new Runnable() {
 
-                    @Override
-                    public void handleException(final Exception ex) {
-                        boolean previousDone = done.getAndSet(true);
-                        if (!previousDone) {
+                        @Override
+                        public void run() {
+                            boolean previousDone = done.getAndSet(true);
+                            if (!previousDone) {
+                                writeCompleted(startTime);
+                            }
+                            release();
                             notificationExecutor.execute(new Runnable() {
 
                                 @Override
                                 public void run() {
-                                    pvWriter.fireWriteFailure(ex);
+                                    pvWriter.fireWriteSuccess();
                                 }
                             });
-                        } else {
-                            pvWriter.setLastWriteException(ex);
                         }
-                    }
-                    
-                });
+                    }, exceptionHandler);
+                }
+            } catch (RuntimeException ex) {
+                // Otherwise a coalesced write would never be released
+                exceptionHandler.handleException(ex);
             }
         }
     
@@ -267,6 +356,8 @@ public class PVWriterDirector<T> {
     
     void syncWrite(final T newValue, final PVWriterImpl<T> pvWriter) {
         log.finest("Sync write: creating latch");
+        requestedWrites.incrementAndGet();
+        final long startTime = System.nanoTime();
         final CountDownLatch latch = new CountDownLatch(1);
         final AtomicReference<Exception> exception = new AtomicReference<Exception>();
         writeExecutor.execute(new Runnable() {
@@ -281,6 +372,7 @@ public class PVWriterDirector<T> {
                             @Override
                             public void run() {
                                 log.finest("Writing done, releasing latch");
+                                writeCompleted(startTime);
                                 notificationExecutor.execute(new Runnable() {
 
                                     @Override
@@ -295,6 +387,7 @@ public class PVWriterDirector<T> {
                             @Override
                             public void handleException(final Exception ex) {
                                 exception.set(ex);
+                                writeCompleted(startTime);
                                 notificationExecutor.execute(new Runnable() {
 
                                     @Override
@@ -425,6 +518,18 @@ public class PVWriterDirector<T> {
         }
     }
 
+    /**
+     * A snapshot of the write activity of this director.
+     * 
+     * @return the write statistics
+     */
+    WriteStatistics getWriteStatistics() {
+        long completed = completedWrites.get();
+        long average = completed == 0 ? 0 : totalLatency.get() / completed;
+        return new WriteStatistics(requestedWrites.get(), coalescedWrites.get(), completed,
+                TimeDuration.ofNanos(average), TimeDuration.ofNanos(maxLatency.get()));
+    }
+
     WriteRecipe getCurrentWriteRecipe() {
         return currentWriteRecipe;
     }
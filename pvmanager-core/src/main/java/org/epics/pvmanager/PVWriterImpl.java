@@ -221,6 +221,15 @@ class PVWriterImpl<T> implements PVWriter<T> {
         }
     }
     
+    @Override
+    public WriteStatistics getWriteStatistics() {
+        PVWriterDirector<T> director;
+        synchronized(lock) {
+            director = writeDirector;
+        }
+        return director.getWriteStatistics();
+    }
+    
     public void setWriteConnected(boolean writeConnected) {
         synchronized(lock) {
             if (this.writeConnected != writeConnected) {
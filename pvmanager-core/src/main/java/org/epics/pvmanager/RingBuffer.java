@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded ring buffer for one writer and one reader, where the writer
+ * never waits and overwrites the oldest values.
+ * <p>
+ * Values are identified by a sequence number that increases with each write.
+ * The reader copies a range of sequence numbers and then checks which
+ * values may have been overwritten by the writer in the meantime.
+ * Writes from different threads must not be concurrent with one another,
+ * though they can happen on different threads if properly synchronized
+ * (e.g. the channel handler lock).
+ *
+ * @param <T> the type of the values
+ * @author carcassi
+ */
+class RingBuffer<T> {
+    
+    private final AtomicReferenceArray<T> buffer;
+    private final int capacity;
+    private final int mask;
+    private final int maxSize;
+    // Sequence number of the next write: only changed by the writer
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Creates a new ring buffer that keeps the last maxSize values.
+     * 
+     * @param maxSize the maximum number of values kept
+     */
+    RingBuffer(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive (was " + maxSize + ")");
+        }
+        if (maxSize > (1 << 30)) {
+            throw new IllegalArgumentException("Max size must be less than 2^30 (was " + maxSize + ")");
+        }
+        int size = 1;
+        while (size < maxSize) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.maxSize = maxSize;
+        this.buffer = new AtomicReferenceArray<>(size);
+    }
+    
+    /**
+     * Adds a value, overwriting the oldest if the buffer is full.
+     * 
+     * @param value the new value
+     */
+    void add(T value) {
+        long index = head.get();
+        buffer.lazySet((int) (index & mask), value);
+        head.lazySet(index + 1);
+    }
+
+    /**
+     * The sequence number of the next value to be written, which is also
+     * the total number of values written.
+     * 
+     * @return the next sequence number
+     */
+    long head() {
+        return head.get();
+    }
+
+    /**
+     * The maximum number of values that can be read.
+     * 
+     * @return the maximum size
+     */
+    int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Copies the values with sequence numbers from start (inclusive) to
+     * end (exclusive) at the end of the given list. The values that
+     * were overwritten during the copy are not added.
+     * 
+     * @param start the first sequence number to copy
+     * @param end the sequence number after the last to copy
+     * @param target the list where to add the values
+     * @return the number of values not copied because they were overwritten
+     */
+    int copy(long start, long end, List<? super T> target) {
+        int offset = target.size();
+        for (long i = start; i < end; i++) {
+            target.add(buffer.get((int) (i & mask)));
+        }
+        
+        // The writer may be writing the value for the current head:
+        // all values it replaces may have been overwritten
+        long overwritten = head.get() - capacity + 1 - start;
+        if (overwritten <= 0) {
+            return 0;
+        }
+        int lost = (int) Math.min(overwritten, end - start);
+        target.subList(offset, offset + lost).clear();
+        return lost;
+    }
+}
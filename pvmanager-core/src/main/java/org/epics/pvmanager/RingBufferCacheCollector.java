@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects value at read rate and keeps the last n, without locking.
+ * <p>
+ * Works as the {@link CacheCollector}, but it is backed by a ring buffer
+ * preallocated to maxSize: writes never wait and overwrite the oldest
+ * value. The collector assumes a single writer and a single reader,
+ * which is the case when it is filled by one channel and read by the scanner.
+ *
+ * @param <T> the type contained in the cache
+ * @author carcassi
+ */
+public class RingBufferCacheCollector<T> implements Collector<T, List<T>> {
+    
+    private final RingBuffer<T> ringBuffer;
+    private final List<T> readBuffer = new ArrayList<>();
+
+    /**
+     * A new cache collector with max size for the cache.
+     * 
+     * @param maxSize maximum number of elements in the cache
+     */
+    public RingBufferCacheCollector(int maxSize) {
+        ringBuffer = new RingBuffer<>(maxSize);
+    }
+
+    @Override
+    public void writeValue(T newValue) {
+        ringBuffer.add(newValue);
+    }
+
+    @Override
+    public List<T> readValue() {
+        readBuffer.clear();
+        long end = ringBuffer.head();
+        long start = Math.max(0, end - ringBuffer.getMaxSize());
+        ringBuffer.copy(start, end, readBuffer);
+        return readBuffer;
+    }
+
+    /**
+     * The maximum number of elements in the cache.
+     * 
+     * @return the maximum number of elements in the cache
+     */
+    public int getMaxSize() {
+        return ringBuffer.getMaxSize();
+    }
+    
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects value at read rate and puts them in a queue, without locking.
+ * <p>
+ * Works as the {@link QueueCollector}, but it is backed by a ring buffer
+ * preallocated to maxSize: writes never wait and never shift elements,
+ * and the oldest values are overwritten when the queue is full.
+ * The collector assumes a single writer and a single reader, which is the
+ * case when it is filled by one channel and read by the scanner.
+ * The number of values overwritten before being read is available from
+ * {@link #getDroppedCount() }.
+ *
+ * @param <T> the type contained in the queue
+ * @author carcassi
+ */
+public class RingBufferQueueCollector<T> implements Collector<T, List<T>> {
+    
+    private final RingBuffer<T> ringBuffer;
+    private final List<T> readBuffer = new ArrayList<>();
+    private final AtomicLong droppedCount = new AtomicLong();
+    // Sequence number of the next value to read: only used by the reader
+    private long tail;
+
+    /**
+     * New queue collector with the given max size for the queue.
+     * 
+     * @param maxSize maximum number of elements in the queue
+     */
+    public RingBufferQueueCollector(int maxSize) {
+        ringBuffer = new RingBuffer<>(maxSize);
+    }
+
+    @Override
+    public void writeValue(T newValue) {
+        ringBuffer.add(newValue);
+    }
+
+    @Override
+    public List<T> readValue() {
+        readBuffer.clear();
+        drainTo(readBuffer);
+        return readBuffer;
+    }
+    
+    /**
+     * Removes all the values from the queue and adds them, oldest first,
+     * to the given list.
+     * 
+     * @param list the list where to add the values
+     * @return the number of values added
+     */
+    public int drainTo(List<? super T> list) {
+        long end = ringBuffer.head();
+        long start = Math.max(tail, end - ringBuffer.getMaxSize());
+        int lost = ringBuffer.copy(start, end, list);
+        long dropped = start - tail + lost;
+        if (dropped != 0) {
+            droppedCount.addAndGet(dropped);
+        }
+        tail = end;
+        return (int) (end - start - lost);
+    }
+
+    /**
+     * The maximum number of elements in the queue.
+     * 
+     * @return the maximum number of elements in the queue
+     */
+    public int getMaxSize() {
+        return ringBuffer.getMaxSize();
+    }
+
+    /**
+     * The number of values that were discarded because the queue was full.
+     * The count is updated when the queue is read.
+     * 
+     * @return the number of values discarded
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+    
+}
@@ -4,67 +4,109 @@
  */
 package org.epics.pvmanager;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
+ * Determines the order of the writes for a set of channels that
+ * may depend on each other.
+ * <p>
+ * The channels are sorted in topological levels: each level contains
+ * the channels whose preceding channels are all in previous levels,
+ * so that the channels of a level can be written together once
+ * the previous level is done. Preceding channels that are not part
+ * of the write are ignored.
  *
  * @author carcassi
  */
 class WritePlanner {
     
-    private Map<String, ChannelHandler> channels = new HashMap<String, ChannelHandler>();
-    private Map<String, Object> values = new HashMap<String, Object>();
-    private Map<String, Set<String>> preceding = new HashMap<String, Set<String>>();
-    private Map<String, Set<String>> succeeding = new HashMap<String, Set<String>>();
-    private Set<String> leafs = new HashSet<String>();
+    private WritePlanner() {
+        // Prevent instances
+    }
     
-    void addChannel(ChannelHandler channel, Object value, Collection<String> precedingChannels) {
-        channels.put(channel.getChannelName(), channel);
-        values.put(channel.getChannelName(), value);
-        preceding.put(channel.getChannelName(), new HashSet<String>(precedingChannels));
-        for (String precedingChannel : precedingChannels) {
-            Set<String> succeedingChannels = succeeding.get(precedingChannel);
-            if (succeedingChannels ==  null) {
-                succeedingChannels = new HashSet<String>();
-                succeeding.put(precedingChannel, succeedingChannels);
-            }
-            succeedingChannels.add(channel.getChannelName());
+    /**
+     * Sorts the channel recipes in topological levels, following
+     * the preceding channels of their write caches.
+     * 
+     * @param channelWriteRecipes the recipes to sort
+     * @return the recipes, one list for each level
+     */
+    static List<List<ChannelWriteRecipe>> levels(Collection<ChannelWriteRecipe> channelWriteRecipes) {
+        Map<String, ChannelWriteRecipe> recipes = new HashMap<String, ChannelWriteRecipe>(channelWriteRecipes.size() * 2);
+        Map<String, Set<String>> preceding = new HashMap<String, Set<String>>(channelWriteRecipes.size() * 2);
+        for (ChannelWriteRecipe channelWriteRecipe : channelWriteRecipes) {
+            recipes.put(channelWriteRecipe.getChannelName(), channelWriteRecipe);
+            preceding.put(channelWriteRecipe.getChannelName(),
+                    new HashSet<String>(channelWriteRecipe.getWriteSubscription().getWriteCache().getPrecedingChannels()));
         }
-        if (precedingChannels.isEmpty()) {
-            leafs.add(channel.getChannelName());
+        List<List<ChannelWriteRecipe>> levels = new ArrayList<List<ChannelWriteRecipe>>();
+        for (List<String> levelNames : levels(preceding)) {
+            List<ChannelWriteRecipe> level = new ArrayList<ChannelWriteRecipe>(levelNames.size());
+            for (String channelName : levelNames) {
+                level.add(recipes.get(channelName));
+            }
+            levels.add(level);
         }
+        return levels;
     }
     
-    void removeChannel(String channelName) {
-        channels.remove(channelName);
-        values.remove(channelName);
-        preceding.remove(channelName);
-        Set<String> succeedingChannels = succeeding.remove(channelName);
-        if (succeedingChannels != null) {
-            for (String succeedingChannel : succeedingChannels) {
-                Set<String> precedingChannels = preceding.get(succeedingChannel);
-                precedingChannels.remove(channelName);
-                if (precedingChannels.isEmpty())
-                    leafs.add(succeedingChannel);
+    private static List<List<String>> levels(Map<String, Set<String>> preceding) {
+        // Count the preceding channels that are part of the write, and
+        // invert the dependencies
+        Map<String, Integer> remainingPreceding = new HashMap<String, Integer>();
+        Map<String, List<String>> succeeding = new HashMap<String, List<String>>();
+        List<String> currentLevel = new ArrayList<String>();
+        for (Map.Entry<String, Set<String>> entry : preceding.entrySet()) {
+            int count = 0;
+            for (String precedingChannel : entry.getValue()) {
+                if (preceding.containsKey(precedingChannel)) {
+                    count++;
+                    List<String> succeedingChannels = succeeding.get(precedingChannel);
+                    if (succeedingChannels == null) {
+                        succeedingChannels = new ArrayList<String>();
+                        succeeding.put(precedingChannel, succeedingChannels);
+                    }
+                    succeedingChannels.add(entry.getKey());
+                }
+            }
+            if (count == 0) {
+                currentLevel.add(entry.getKey());
+            } else {
+                remainingPreceding.put(entry.getKey(), count);
             }
         }
-    }
-
-    Map<ChannelHandler, Object> nextChannels() {
-        Map<ChannelHandler, Object> nextChannels = new HashMap<ChannelHandler, Object>();
-        for (String channelName : leafs) {
-            nextChannels.put(channels.get(channelName), values.get(channelName));
+        
+        List<List<String>> levels = new ArrayList<List<String>>();
+        while (!currentLevel.isEmpty()) {
+            List<String> nextLevel = new ArrayList<String>();
+            for (String channelName : currentLevel) {
+                List<String> succeedingChannels = succeeding.get(channelName);
+                if (succeedingChannels != null) {
+                    for (String succeedingChannel : succeedingChannels) {
+                        int count = remainingPreceding.get(succeedingChannel);
+                        if (count == 1) {
+                            remainingPreceding.remove(succeedingChannel);
+                            nextLevel.add(succeedingChannel);
+                        } else {
+                            remainingPreceding.put(succeedingChannel, count - 1);
+                        }
+                    }
+                }
+            }
+            levels.add(currentLevel);
+            currentLevel = nextLevel;
         }
-        leafs.clear();
-        return nextChannels;
-    }
-    
-    boolean isDone() {
-        return channels.isEmpty();
+        
+        if (!remainingPreceding.isEmpty()) {
+            throw new IllegalArgumentException("Circular dependency between channels " + remainingPreceding.keySet());
+        }
+        return levels;
     }
     
 }
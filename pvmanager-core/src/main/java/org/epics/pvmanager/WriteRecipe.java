@@ -5,6 +5,7 @@
 package org.epics.pvmanager;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -15,6 +16,7 @@ import java.util.Objects;
  */
 public class WriteRecipe {
     private final Collection<ChannelWriteRecipe> channelWriteRecipes;
+    private volatile List<List<ChannelWriteRecipe>> levels;
 
     WriteRecipe(Collection<ChannelWriteRecipe> channelWriteRecipes) {
         this.channelWriteRecipes = channelWriteRecipes;
@@ -29,6 +31,22 @@ public class WriteRecipe {
         return channelWriteRecipes;
     }
 
+    /**
+     * The channel recipes sorted in the levels in which they must be written.
+     * The levels are calculated at the first use, and reused for all
+     * the following writes.
+     * 
+     * @return the channel recipes, one list for each level
+     */
+    List<List<ChannelWriteRecipe>> getLevels() {
+        List<List<ChannelWriteRecipe>> result = levels;
+        if (result == null) {
+            result = WritePlanner.levels(channelWriteRecipes);
+            levels = result;
+        }
+        return result;
+    }
+
     @Override
     public int hashCode() {
         int hash = 3;
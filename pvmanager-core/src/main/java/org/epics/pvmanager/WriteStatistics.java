@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import org.epics.util.time.TimeDuration;
+
+/**
+ * A snapshot of the write activity of a {@link PVWriter}.
+ * <p>
+ * The latency is the time from the call to {@link PVWriter#write(java.lang.Object) }
+ * to the notification of the success or failure of the write. For
+ * coalesced writes, it is measured from the call that gave the value
+ * actually sent.
+ *
+ * @author carcassi
+ */
+public class WriteStatistics {
+
+    private final long requestedWrites;
+    private final long coalescedWrites;
+    private final long completedWrites;
+    private final TimeDuration averageLatency;
+    private final TimeDuration maxLatency;
+
+    WriteStatistics(long requestedWrites, long coalescedWrites, long completedWrites, TimeDuration averageLatency, TimeDuration maxLatency) {
+        this.requestedWrites = requestedWrites;
+        this.coalescedWrites = coalescedWrites;
+        this.completedWrites = completedWrites;
+        this.averageLatency = averageLatency;
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * The number of values given to the writer so far.
+     *
+     * @return the number of write calls
+     */
+    public long getRequestedWrites() {
+        return requestedWrites;
+    }
+
+    /**
+     * The number of values that were replaced by a newer value before
+     * being sent. Always zero if the writer does not coalesce writes.
+     *
+     * @return the number of values never sent
+     */
+    public long getCoalescedWrites() {
+        return coalescedWrites;
+    }
+
+    /**
+     * The number of writes that succeeded or failed so far.
+     *
+     * @return the number of completed writes
+     */
+    public long getCompletedWrites() {
+        return completedWrites;
+    }
+
+    /**
+     * The average latency of the completed writes.
+     *
+     * @return the average latency
+     */
+    public TimeDuration getAverageLatency() {
+        return averageLatency;
+    }
+
+    /**
+     * The maximum latency of the completed writes.
+     *
+     * @return the maximum latency
+     */
+    public TimeDuration getMaxLatency() {
+        return maxLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "requested " + requestedWrites + ", coalesced " + coalescedWrites
+                + ", completed " + completedWrites + ", latency avg " + averageLatency + " max " + maxLatency;
+    }
+}
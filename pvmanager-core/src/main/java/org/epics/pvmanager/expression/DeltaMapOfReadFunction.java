@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.expression;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.epics.pvmanager.QueueCollector;
+import org.epics.pvmanager.ReadFunction;
+
+/**
+ * A function that keeps a map from the values of the child functions,
+ * reading only the ones that were marked as changed.
+ * <p>
+ * Each child function is read once when added, and then only after
+ * {@link #markChanged(java.lang.String) } is called for its key. The map
+ * is updated in place, and a new {@link MapDelta} is returned only if
+ * the map changed.
+ *
+ * @param <T> the type for the values in the map
+ * @author carcassi
+ */
+class DeltaMapOfReadFunction<T> implements ReadFunction<MapDelta<T>> {
+
+    private final Map<String, ReadFunction<T>> functions = new HashMap<>();
+    private final QueueCollector<MapUpdate<T>> mapUpdateCollector;
+    private final Set<String> changedKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final MapSnapshot.Builder<T> map = new MapSnapshot.Builder<>();
+    private MapDelta<T> previousValue;
+
+    public DeltaMapOfReadFunction(QueueCollector<MapUpdate<T>> mapUpdateCollector) {
+        this.mapUpdateCollector = mapUpdateCollector;
+    }
+
+    /**
+     * Marks the function for the given key as changed, so that it
+     * is read at the next scan. Can be called from any thread.
+     *
+     * @param key the name of the child function
+     */
+    public void markChanged(String key) {
+        changedKeys.add(key);
+    }
+
+    @Override
+    public MapDelta<T> readValue() {
+        // Value of each key touched in this scan, before any modification
+        Map<String, T> previousValues = new HashMap<>();
+
+        for (MapUpdate<T> mapUpdate : mapUpdateCollector.readValue()) {
+            for (String name : mapUpdate.getExpressionsToDelete()) {
+                functions.remove(name);
+                update(name, null, previousValues);
+            }
+            for (String name : mapUpdate.getReadFunctionsToAdd().keySet()) {
+                changedKeys.add(name);
+            }
+            functions.putAll(mapUpdate.getReadFunctionsToAdd());
+        }
+
+        Iterator<String> iterator = changedKeys.iterator();
+        while (iterator.hasNext()) {
+            String name = iterator.next();
+            // Remove before reading, so that a new value arriving
+            // during the read marks the key again
+            iterator.remove();
+            ReadFunction<T> function = functions.get(name);
+            if (function != null) {
+                update(name, function.readValue(), previousValues);
+            }
+        }
+
+        if (previousValues.isEmpty() && previousValue != null) {
+            return previousValue;
+        }
+
+        Set<String> added = new HashSet<>();
+        Set<String> changed = new HashSet<>();
+        Set<String> removed = new HashSet<>();
+        for (Map.Entry<String, T> entry : previousValues.entrySet()) {
+            String name = entry.getKey();
+            T oldValue = entry.getValue();
+            T newValue = map.get(name);
+            if (oldValue == null && newValue != null) {
+                added.add(name);
+            } else if (oldValue != null && newValue == null) {
+                removed.add(name);
+            } else if (!Objects.equals(oldValue, newValue)) {
+                changed.add(name);
+            }
+        }
+
+        if (previousValue != null && added.isEmpty() && changed.isEmpty() && removed.isEmpty()) {
+            return previousValue;
+        }
+
+        previousValue = new MapDelta<T>(map.snapshot(), Collections.unmodifiableSet(added),
+                Collections.unmodifiableSet(changed), Collections.unmodifiableSet(removed));
+        return previousValue;
+    }
+
+    private void update(String name, T value, Map<String, T> previousValues) {
+        T oldValue = map.get(name);
+        if (!previousValues.containsKey(name)) {
+            previousValues.put(name, oldValue);
+        }
+        if (value == null) {
+            map.remove(name);
+        } else if (value != oldValue) {
+            map.put(name, value);
+        }
+    }
+
+    public QueueCollector<MapUpdate<T>> getMapUpdateCollector() {
+        return mapUpdateCollector;
+    }
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.expression;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.epics.pvmanager.PVReaderDirector;
+import org.epics.pvmanager.QueueCollector;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.pvmanager.ReadRecipeBuilder;
+
+/**
+ * A read expression for a key/value map that only reads the child expressions
+ * that received new values.
+ * <p>
+ * Like {@link ReadMap}, the child expressions can be added and removed
+ * while the reader is active. Instead of reading all the children at each
+ * scan, this expression tracks which channels received a new value,
+ * reads only the corresponding children and returns a {@link MapDelta} with
+ * the keys that were added, changed or removed. This makes the cost of each
+ * scan proportional to the number of changes instead of the size of the map.
+ * <p>
+ * Child expressions that have no channels are read only once, when added.
+ *
+ * @param <T> the type for the values in the map
+ * @author carcassi
+ */
+public class DeltaReadMap<T> extends DesiredRateExpressionImpl<MapDelta<T>> {
+
+    private final Object lock = new Object();
+    private final Map<String, DesiredRateExpression<T>> expressions = new HashMap<>();
+    private PVReaderDirector<?> director;
+
+    /**
+     * Creates a new map.
+     */
+    public DeltaReadMap() {
+        super(new DesiredRateExpressionListImpl<Object>(), new DeltaMapOfReadFunction<T>(new QueueCollector<MapUpdate<T>>(1000)), "map");
+    }
+
+    DeltaMapOfReadFunction<T> getMapOfFunction() {
+        return (DeltaMapOfReadFunction<T>) getFunction();
+    }
+
+    /**
+     * Removes all the expressions currently in the map.
+     * 
+     * @return this expression
+     */
+    public DeltaReadMap<T> clear() {
+        synchronized(lock) {
+            return remove(new ArrayList<>(expressions.keySet()));
+        }
+    }
+
+    /**
+     * Returns the number of expressions in the map.
+     * 
+     * @return number of expressions in the map
+     */
+    public int size() {
+        synchronized(lock) {
+            return expressions.size();
+        }
+    }
+
+    /**
+     * Adds the expression to the map.
+     * 
+     * @param expression the expression to be added
+     * @return this expression
+     */
+    public DeltaReadMap<T> add(DesiredRateExpression<T> expression) {
+        synchronized(lock) {
+            List<DesiredRateExpression<T>> list = new ArrayList<>();
+            list.add(expression);
+            return add(list);
+        }
+    }
+    
+    /**
+     * Adds the expressions to the map.
+     *
+     * @param expressions the new list of expressions
+     * @return this expression
+     */
+    public DeltaReadMap<T> add(DesiredRateExpressionList<T> expressions) {
+        synchronized(lock) {
+            return add(expressions.getDesiredRateExpressions());
+        }
+    }
+    
+    private DeltaReadMap<T> add(List<DesiredRateExpression<T>> newExpressions) {
+        Map<String, ReadFunction<T>> functions = new LinkedHashMap<>();
+        for (DesiredRateExpression<T> expression : newExpressions) {
+            if (expression.getName() == null) {
+                throw new NullPointerException("Expression has a null name");
+            }
+            if (expressions.containsKey(expression.getName()) || functions.containsKey(expression.getName())) {
+                throw new IllegalArgumentException("MapExpression already contain an expression named '" + expression.getName() + "'");
+            }
+            functions.put(expression.getName(), expression.getFunction());
+        }
+        
+        // All the additions are sent as one update, so that the queue
+        // does not overflow when adding many expressions
+        getMapOfFunction().getMapUpdateCollector().writeValue(MapUpdate.addReadFunctions(functions));
+        for (DesiredRateExpression<T> expression : newExpressions) {
+            expressions.put(expression.getName(), expression);
+            if (director != null) {
+                director.connectExpression(expression, changeListener(expression.getName()));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Removes the expression with the given name.
+     * 
+     * @param name the name of the expression to remove
+     * @return this expression
+     */
+    public DeltaReadMap<T> remove(String name) {
+        synchronized(lock) {
+            List<String> names = new ArrayList<>();
+            names.add(name);
+            return remove(names);
+        }
+    }
+    
+    /**
+     * Removes the expressions from the map.
+     *
+     * @param names the names of the expressions to remove
+     * @return this expression
+     */
+    public DeltaReadMap<T> remove(Collection<String> names) {
+        synchronized(lock) {
+            for (String name : names) {
+                if (!expressions.containsKey(name)) {
+                    throw new IllegalArgumentException("MapExpression does not contain an expression named '" + name + "'");
+                }
+            }
+            
+            getMapOfFunction().getMapUpdateCollector().writeValue(MapUpdate.<T>removeFunctions(new ArrayList<>(names)));
+            for (String name : names) {
+                DesiredRateExpression<T> expression = expressions.remove(name);
+                if (director != null) {
+                    director.disconnectExpression(expression);
+                }
+            }
+            return this;
+        }
+    }
+    
+    private Runnable changeListener(final String name) {
+        final DeltaMapOfReadFunction<T> function = getMapOfFunction();
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                function.markChanged(name);
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void fillReadRecipe(PVReaderDirector director, ReadRecipeBuilder builder) {
+        synchronized(lock) {
+            this.director = director;
+            for (Map.Entry<String, DesiredRateExpression<T>> entry : expressions.entrySet()) {
+                director.connectExpression(entry.getValue(), changeListener(entry.getKey()));
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.expression;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The value of a {@link DeltaReadMap}: an immutable snapshot of the
+ * map, together with the keys that changed since the previous value.
+ * <p>
+ * A key is added if it was not in the previous map, removed if it is not
+ * in the current map and changed if its value is different.
+ * A new value is calculated only if at least one key was added, removed
+ * or changed, so two different instances are always different.
+ *
+ * @param <T> the type for the values in the map
+ * @author carcassi
+ */
+public final class MapDelta<T> {
+
+    private final Map<String, T> map;
+    private final Set<String> addedKeys;
+    private final Set<String> changedKeys;
+    private final Set<String> removedKeys;
+
+    MapDelta(Map<String, T> map, Set<String> addedKeys, Set<String> changedKeys, Set<String> removedKeys) {
+        this.map = map;
+        this.addedKeys = addedKeys;
+        this.changedKeys = changedKeys;
+        this.removedKeys = removedKeys;
+    }
+
+    /**
+     * The snapshot of the map. It is never modified: the next
+     * value will have a new snapshot.
+     *
+     * @return an immutable map; never null
+     */
+    public Map<String, T> getMap() {
+        return map;
+    }
+
+    /**
+     * The keys that were not in the previous map.
+     *
+     * @return an immutable set; never null
+     */
+    public Set<String> getAddedKeys() {
+        return addedKeys;
+    }
+
+    /**
+     * The keys that have a different value from the previous map.
+     *
+     * @return an immutable set; never null
+     */
+    public Set<String> getChangedKeys() {
+        return changedKeys;
+    }
+
+    /**
+     * The keys that were in the previous map and are not in this one.
+     *
+     * @return an immutable set; never null
+     */
+    public Set<String> getRemovedKeys() {
+        return removedKeys;
+    }
+
+    @Override
+    public String toString() {
+        return "MapDelta[added=" + addedKeys + ", changed=" + changedKeys + ", removed=" + removedKeys + "]";
+    }
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.expression;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map split in segments by hash code, so that a modified copy
+ * only needs to copy the segments that were modified.
+ * <p>
+ * The map is built by a {@link Builder}, which is updated in place and
+ * can take an immutable snapshot at any time. Segments are shared
+ * between the snapshot and the builder until the builder modifies them.
+ *
+ * @param <T> the type for the values in the map
+ * @author carcassi
+ */
+class MapSnapshot<T> extends AbstractMap<String, T> {
+
+    private static final int N_SEGMENTS = 256;
+
+    private final Map<String, T>[] segments;
+    private final int size;
+
+    private MapSnapshot(Map<String, T>[] segments, int size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    private static int segmentOf(Object key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & (N_SEGMENTS - 1);
+    }
+
+    @Override
+    public T get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        Map<String, T> segment = segments[segmentOf(key)];
+        return segment == null ? null : segment.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key == null) {
+            return false;
+        }
+        Map<String, T> segment = segments[segmentOf(key)];
+        return segment != null && segment.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, T>> entrySet() {
+        return new AbstractSet<Entry<String, T>>() {
+
+            @Override
+            public Iterator<Entry<String, T>> iterator() {
+                return new Iterator<Entry<String, T>>() {
+
+                    private int nextSegment = 0;
+                    private Iterator<Entry<String, T>> current = Collections.emptyIterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        while (!current.hasNext() && nextSegment < N_SEGMENTS) {
+                            Map<String, T> segment = segments[nextSegment];
+                            nextSegment++;
+                            if (segment != null) {
+                                current = segment.entrySet().iterator();
+                            }
+                        }
+                        return current.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, T> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, T> entry = current.next();
+                        return new SimpleImmutableEntry<>(entry);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("Map is immutable");
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * A map that is modified in place, and from which immutable
+     * snapshots can be taken.
+     *
+     * @param <T> the type for the values in the map
+     */
+    static class Builder<T> {
+
+        @SuppressWarnings("unchecked")
+        private final Map<String, T>[] segments = new Map[N_SEGMENTS];
+        private final boolean[] shared = new boolean[N_SEGMENTS];
+        private int size;
+
+        public T get(String key) {
+            Map<String, T> segment = segments[segmentOf(key)];
+            return segment == null ? null : segment.get(key);
+        }
+
+        public void put(String key, T value) {
+            T oldValue = writableSegment(segmentOf(key)).put(key, value);
+            if (oldValue == null) {
+                size++;
+            }
+        }
+
+        public void remove(String key) {
+            int index = segmentOf(key);
+            if (segments[index] != null && segments[index].containsKey(key)) {
+                writableSegment(index).remove(key);
+                size--;
+            }
+        }
+
+        private Map<String, T> writableSegment(int index) {
+            Map<String, T> segment = segments[index];
+            if (segment == null) {
+                segment = new HashMap<>();
+                segments[index] = segment;
+            } else if (shared[index]) {
+                segment = new HashMap<>(segment);
+                segments[index] = segment;
+            }
+            shared[index] = false;
+            return segment;
+        }
+
+        /**
+         * An immutable copy of the current map. Only the references to
+         * the segments are copied.
+         *
+         * @return a new snapshot
+         */
+        public MapSnapshot<T> snapshot() {
+            for (int i = 0; i < N_SEGMENTS; i++) {
+                shared[i] = true;
+            }
+            return new MapSnapshot<>(segments.clone(), size);
+        }
+    }
+
+}
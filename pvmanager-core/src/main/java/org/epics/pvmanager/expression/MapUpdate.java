@@ -55,6 +55,16 @@ class MapUpdate<T> {
                 null, false);
     }
     
+    public static <T> MapUpdate<T> addReadFunctions(Map<String, ReadFunction<T>> functions) {
+        return new MapUpdate<>(Collections.<String>emptyList(), functions,
+                null, false);
+    }
+    
+    public static <T> MapUpdate<T> removeFunctions(Collection<String> names) {
+        return new MapUpdate<>(names, Collections.<String, ReadFunction<T>>emptyMap(),
+                Collections.<String, WriteFunction<T>>emptyMap(), false);
+    }
+    
     public static <T> MapUpdate<T> addWriteFunction(String name, WriteFunction<T> function) {
         return new MapUpdate<>(Collections.<String>emptyList(), null,
                 Collections.singletonMap(name, function), false);
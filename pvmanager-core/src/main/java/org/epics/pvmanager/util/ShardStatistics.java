@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.util;
+
+import org.epics.util.time.TimeDuration;
+
+/**
+ * A snapshot of the activity of one shard of a {@link ShardedExecutor}.
+ * <p>
+ * The latency is the time a task spent in the queue, from submission
+ * to the start of its execution.
+ *
+ * @author carcassi
+ */
+public class ShardStatistics {
+
+    private final int queueDepth;
+    private final long completedTasks;
+    private final TimeDuration averageLatency;
+    private final TimeDuration maxLatency;
+
+    ShardStatistics(int queueDepth, long completedTasks, TimeDuration averageLatency, TimeDuration maxLatency) {
+        this.queueDepth = queueDepth;
+        this.completedTasks = completedTasks;
+        this.averageLatency = averageLatency;
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * The number of tasks waiting to be executed.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * The number of tasks executed so far.
+     *
+     * @return the number of completed tasks
+     */
+    public long getCompletedTasks() {
+        return completedTasks;
+    }
+
+    /**
+     * The average time the completed tasks waited in the queue.
+     *
+     * @return the average latency
+     */
+    public TimeDuration getAverageLatency() {
+        return averageLatency;
+    }
+
+    /**
+     * The maximum time a completed task waited in the queue.
+     *
+     * @return the maximum latency
+     */
+    public TimeDuration getMaxLatency() {
+        return maxLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "queue " + queueDepth + ", completed " + completedTasks
+                + ", latency avg " + averageLatency + " max " + maxLatency;
+    }
+}
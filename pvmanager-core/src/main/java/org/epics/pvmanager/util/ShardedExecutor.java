@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.epics.util.time.TimeDuration;
+
+/**
+ * An executor made of a set of single threaded shards, where each task
+ * is executed on the shard selected by its key.
+ * <p>
+ * All tasks submitted with the same key (or keys with the same hash) are
+ * executed in order on the same thread, while tasks with unrelated keys
+ * can proceed in parallel. A slow task will only delay the tasks
+ * that share its shard.
+ * <p>
+ * Threads are created only when needed and are released when the shard
+ * is idle, so that an executor that is not used does not hold any thread.
+ *
+ * @author carcassi
+ */
+public class ShardedExecutor {
+
+    private final List<Shard> shards;
+
+    private static class Shard {
+
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong completedTasks = new AtomicLong();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private final AtomicLong maxLatency = new AtomicLong();
+
+        public Shard(ThreadFactory threadFactory) {
+            executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        private void execute(final Runnable command) {
+            final long submitTime = System.nanoTime();
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    long latency = System.nanoTime() - submitTime;
+                    try {
+                        command.run();
+                    } finally {
+                        completedTasks.incrementAndGet();
+                        totalLatency.addAndGet(latency);
+                        long max = maxLatency.get();
+                        while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+                            max = maxLatency.get();
+                        }
+                    }
+                }
+            });
+        }
+
+        private ShardStatistics getStatistics() {
+            long completed = completedTasks.get();
+            long average = completed == 0 ? 0 : totalLatency.get() / completed;
+            return new ShardStatistics(executor.getQueue().size(), completed,
+                    TimeDuration.ofNanos(average), TimeDuration.ofNanos(maxLatency.get()));
+        }
+    }
+
+    /**
+     * Creates a new executor with the given number of shards. The threads
+     * are named poolName + number.
+     *
+     * @param poolName the name of the pool
+     * @param nShards the number of shards; must be positive
+     */
+    public ShardedExecutor(String poolName, int nShards) {
+        if (nShards <= 0) {
+            throw new IllegalArgumentException("Number of shards must be positive (was " + nShards + ")");
+        }
+        ThreadFactory threadFactory = Executors.namedPool(poolName);
+        List<Shard> newShards = new ArrayList<>(nShards);
+        for (int i = 0; i < nShards; i++) {
+            newShards.add(new Shard(threadFactory));
+        }
+        this.shards = Collections.unmodifiableList(newShards);
+    }
+
+    /**
+     * Executes the task on the shard selected by the key.
+     *
+     * @param key the key that selects the shard; can't be null
+     * @param command the task to execute
+     */
+    public void execute(Object key, Runnable command) {
+        shards.get(shardIndex(key)).execute(command);
+    }
+
+    /**
+     * The index of the shard that executes the tasks for the given key.
+     *
+     * @param key the key that selects the shard; can't be null
+     * @return the shard index
+     */
+    public int shardIndex(Object key) {
+        int hash = key.hashCode();
+        // Spread the bits, as the keys may have poorly distributed hashes
+        hash ^= (hash >>> 16);
+        return (hash & 0x7fffffff) % shards.size();
+    }
+
+    /**
+     * The number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * A snapshot of queue depth and latency for each shard.
+     *
+     * @return the statistics, one for each shard
+     */
+    public List<ShardStatistics> getStatistics() {
+        List<ShardStatistics> statistics = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            statistics.add(shard.getStatistics());
+        }
+        return statistics;
+    }
+
+    /**
+     * Stops all the shards. Tasks already submitted are executed.
+     */
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+    }
+}
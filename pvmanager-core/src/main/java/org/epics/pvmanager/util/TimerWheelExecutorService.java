@@ -0,0 +1,381 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.epics.util.time.TimeDuration;
+
+/**
+ * A scheduled executor service based on a hashed timer wheel, optimized
+ * for a large number of periodic tasks.
+ * <p>
+ * The {@link java.util.concurrent.ScheduledThreadPoolExecutor} keeps all
+ * tasks in a heap protected by a single lock, so that scheduling and cancelling
+ * are O(log n) and every task execution causes a separate timer wake up.
+ * This service keeps the tasks in a circular array of buckets, one per tick:
+ * scheduling and cancelling are O(1), and a single timer thread
+ * wakes up once per tick and dispatches all the tasks expired in that
+ * tick as a batch to the worker threads. Tasks that are scheduled with the same
+ * period at the same time (e.g. readers with the same max rate) are therefore
+ * always executed together.
+ * <p>
+ * The price is that tasks are executed with the granularity of a tick,
+ * and never before their deadline. This is appropriate for the
+ * read scan of pvmanager, where the minimum period is a few milliseconds.
+ * It can be installed with {@link org.epics.pvmanager.PVManager#setReadScannerExecutorService(java.util.concurrent.ScheduledExecutorService) }.
+ *
+ * @author carcassi
+ */
+public class TimerWheelExecutorService extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private static final Logger log = Logger.getLogger(TimerWheelExecutorService.class.getName());
+
+    /**
+     * Minimum number of tasks dispatched to the same worker.
+     */
+    private static final int MIN_BATCH_SIZE = 64;
+
+    private final ExecutorService workers;
+    private final int nThreads;
+    private final long tickNanos;
+    private final int mask;
+    private final long startTime;
+    private final Thread timerThread;
+    private final Queue<WheelTask<?>> pendingTasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean shutdown = false;
+    private volatile boolean timerIdle = false;
+
+    // Only accessed by the timer thread
+    private final List<List<WheelTask<?>>> wheel;
+    private long tick = 0;
+    private int nScheduledTasks = 0;
+
+    /**
+     * Creates a new service with the given number of worker threads, 1 ms
+     * tick and 1024 buckets (i.e. the wheel completes a turn every second).
+     *
+     * @param poolName the name of the pool used for the threads
+     * @param nThreads the number of threads that execute the tasks
+     */
+    public TimerWheelExecutorService(String poolName, int nThreads) {
+        this(poolName, nThreads, TimeDuration.ofMillis(1), 1024);
+    }
+
+    /**
+     * Creates a new service with the given number of worker threads, tick
+     * duration and number of buckets.
+     *
+     * @param poolName the name of the pool used for the threads
+     * @param nThreads the number of threads that execute the tasks
+     * @param tickDuration the resolution of the timer
+     * @param ticksPerWheel the number of buckets in the wheel; it's rounded to the next power of two
+     */
+    public TimerWheelExecutorService(String poolName, int nThreads, TimeDuration tickDuration, int ticksPerWheel) {
+        if (nThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive (was " + nThreads + ")");
+        }
+        if (tickDuration.toNanosLong() <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive (was " + tickDuration + ")");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("Ticks per wheel must be between 1 and 2^30 (was " + ticksPerWheel + ")");
+        }
+        int wheelSize = Integer.highestOneBit(ticksPerWheel);
+        if (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ArrayList<WheelTask<?>>());
+        }
+        this.mask = wheelSize - 1;
+        this.tickNanos = tickDuration.toNanosLong();
+        this.nThreads = nThreads;
+        this.workers = java.util.concurrent.Executors.newFixedThreadPool(nThreads, Executors.namedPool(poolName));
+        this.startTime = System.nanoTime();
+        this.timerThread = Executors.namedPool(poolName + "Timer ").newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                runTimer();
+            }
+        });
+        timerThread.start();
+    }
+
+    private class WheelTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        private volatile long deadline;
+        // 0 for one shot, positive for fixed rate, negative for fixed delay
+        private final long period;
+        // Only accessed by the timer thread
+        private long remainingRounds;
+
+        public WheelTask(Callable<V> callable, long deadline) {
+            super(callable);
+            this.deadline = deadline;
+            this.period = 0;
+        }
+
+        public WheelTask(Runnable runnable, V result, long deadline, long period) {
+            super(runnable, result);
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o == this) {
+                return 0;
+            }
+            long diff = getDelay(TimeUnit.NANOSECONDS) - o.getDelay(TimeUnit.NANOSECONDS);
+            return (diff < 0) ? -1 : ((diff > 0) ? 1 : 0);
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (super.runAndReset()) {
+                if (period > 0) {
+                    deadline += period;
+                } else {
+                    deadline = System.nanoTime() - period;
+                }
+                if (!shutdown) {
+                    enqueue(this);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Runs a batch of expired tasks on a worker thread.
+     */
+    private static class Batch implements Runnable {
+
+        private final List<WheelTask<?>> tasks;
+
+        public Batch(List<WheelTask<?>> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        public void run() {
+            for (WheelTask<?> task : tasks) {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    log.log(Level.WARNING, "Unexpected exception in scheduled task", ex);
+                }
+            }
+        }
+
+    }
+
+    private void enqueue(WheelTask<?> task) {
+        pendingTasks.add(task);
+        if (timerIdle) {
+            LockSupport.unpark(timerThread);
+        }
+    }
+
+    private <V> WheelTask<V> schedule(WheelTask<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor was shut down");
+        }
+        enqueue(task);
+        return task;
+    }
+
+    private long deadline(long delay, TimeUnit unit) {
+        return System.nanoTime() + Math.max(0, unit.toNanos(delay));
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(new WheelTask<>(command, null, deadline(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return schedule(new WheelTask<>(callable, deadline(delay, unit)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive (was " + period + ")");
+        }
+        return schedule(new WheelTask<>(command, null, deadline(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Delay must be positive (was " + delay + ")");
+        }
+        return schedule(new WheelTask<>(command, null, deadline(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    private void runTimer() {
+        while (!shutdown) {
+            waitForNextTick();
+            transferPendingTasks();
+            expireTasks();
+            tick++;
+        }
+    }
+
+    private void waitForNextTick() {
+        long tickDeadline = startTime + (tick + 1) * tickNanos;
+        while (!shutdown) {
+            if (nScheduledTasks == 0 && pendingTasks.isEmpty()) {
+                // Nothing to do: wait for a task to be scheduled
+                timerIdle = true;
+                if (pendingTasks.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                timerIdle = false;
+                // Skip the ticks that went by while idle
+                long now = System.nanoTime();
+                tick = Math.max(tick, (now - startTime) / tickNanos);
+                tickDeadline = startTime + (tick + 1) * tickNanos;
+            }
+
+            long sleepTime = tickDeadline - System.nanoTime();
+            if (sleepTime <= 0) {
+                return;
+            }
+            LockSupport.parkNanos(this, sleepTime);
+        }
+    }
+
+    private void transferPendingTasks() {
+        WheelTask<?> task;
+        while ((task = pendingTasks.poll()) != null) {
+            if (task.isCancelled()) {
+                continue;
+            }
+            long taskTick = (task.deadline - startTime + tickNanos - 1) / tickNanos;
+            task.remainingRounds = (taskTick - tick) / wheel.size();
+            wheel.get((int) (Math.max(taskTick, tick) & mask)).add(task);
+            nScheduledTasks++;
+        }
+    }
+
+    private void expireTasks() {
+        List<WheelTask<?>> bucket = wheel.get((int) (tick & mask));
+        List<WheelTask<?>> expired = null;
+        int i = 0;
+        while (i < bucket.size()) {
+            WheelTask<?> task = bucket.get(i);
+            if (task.isCancelled() || task.remainingRounds <= 0) {
+                // Remove by swapping in the last element
+                int last = bucket.size() - 1;
+                bucket.set(i, bucket.get(last));
+                bucket.remove(last);
+                nScheduledTasks--;
+                if (!task.isCancelled()) {
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(task);
+                }
+            } else {
+                task.remainingRounds--;
+                i++;
+            }
+        }
+
+        if (expired != null) {
+            dispatch(expired);
+        }
+    }
+
+    private void dispatch(List<WheelTask<?>> expired) {
+        int batchSize = Math.max(MIN_BATCH_SIZE, (expired.size() + nThreads - 1) / nThreads);
+        try {
+            for (int start = 0; start < expired.size(); start += batchSize) {
+                int end = Math.min(expired.size(), start + batchSize);
+                workers.execute(new Batch(expired.subList(start, end)));
+            }
+        } catch (RejectedExecutionException ex) {
+            if (!shutdown) {
+                log.log(Level.SEVERE, "Couldn't dispatch expired tasks", ex);
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(timerThread);
+        workers.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> notRun = new ArrayList<Runnable>(pendingTasks);
+        pendingTasks.clear();
+        notRun.addAll(workers.shutdownNow());
+        return notRun;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && !timerThread.isAlive() && workers.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        TimeUnit.NANOSECONDS.timedJoin(timerThread, Math.max(0, deadline - System.nanoTime()));
+        return workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                && !timerThread.isAlive();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor was shut down");
+        }
+        workers.execute(command);
+    }
+
+}
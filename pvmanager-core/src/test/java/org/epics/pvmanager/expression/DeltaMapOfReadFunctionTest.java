@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.expression;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.epics.pvmanager.QueueCollector;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.pvmanager.ValueCacheImpl;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class DeltaMapOfReadFunctionTest {
+
+    private final QueueCollector<MapUpdate<Object>> collector = new QueueCollector<>(10);
+    private final DeltaMapOfReadFunction<Object> function = new DeltaMapOfReadFunction<>(collector);
+    private final Map<String, ValueCacheImpl<Object>> caches = new HashMap<>();
+
+    private void add(String... names) {
+        Map<String, ReadFunction<Object>> functions = new LinkedHashMap<>();
+        for (String name : names) {
+            ValueCacheImpl<Object> cache = new ValueCacheImpl<>(Object.class);
+            caches.put(name, cache);
+            functions.put(name, cache);
+        }
+        collector.writeValue(MapUpdate.addReadFunctions(functions));
+    }
+
+    private void write(String name, Object value) {
+        caches.get(name).writeValue(value);
+        function.markChanged(name);
+    }
+
+    @Test
+    public void readValue1() {
+        MapDelta<Object> value = function.readValue();
+        assertThat(value.getMap().isEmpty(), equalTo(true));
+        assertThat(value.getAddedKeys().isEmpty(), equalTo(true));
+        assertThat(function.readValue(), sameInstance(value));
+    }
+
+    @Test
+    public void readValue2() {
+        add("a", "b", "c");
+        write("a", 1);
+        write("b", 2);
+        MapDelta<Object> value = function.readValue();
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("a", 1);
+        expected.put("b", 2);
+        assertThat(value.getMap(), equalTo(expected));
+        assertThat(value.getAddedKeys(), containsInAnyOrder("a", "b"));
+        assertThat(value.getChangedKeys().isEmpty(), equalTo(true));
+        
+        // Nothing changed: same value
+        assertThat(function.readValue(), sameInstance(value));
+        
+        write("b", 3);
+        write("c", 4);
+        MapDelta<Object> newValue = function.readValue();
+        assertThat(newValue.getAddedKeys(), contains("c"));
+        assertThat(newValue.getChangedKeys(), contains("b"));
+        assertThat(newValue.getMap().get("b"), equalTo((Object) 3));
+        assertThat(newValue.getMap().size(), equalTo(3));
+        
+        // The previous snapshot is not modified
+        assertThat(value.getMap().get("b"), equalTo((Object) 2));
+        assertThat(value.getMap().size(), equalTo(2));
+    }
+
+    @Test
+    public void readValue3() {
+        add("a", "b");
+        write("a", 1);
+        write("b", 2);
+        function.readValue();
+        
+        // Same value is not a change
+        write("a", 1);
+        collector.writeValue(MapUpdate.<Object>removeFunctions(Arrays.asList("b")));
+        MapDelta<Object> value = function.readValue();
+        assertThat(value.getRemovedKeys(), contains("b"));
+        assertThat(value.getChangedKeys().isEmpty(), equalTo(true));
+        assertThat(value.getMap().keySet(), contains("a"));
+    }
+
+    @Test
+    public void snapshot1() {
+        MapSnapshot.Builder<Object> builder = new MapSnapshot.Builder<>();
+        for (int i = 0; i < 1000; i++) {
+            builder.put("key" + i, i);
+        }
+        MapSnapshot<Object> snapshot = builder.snapshot();
+        builder.put("key0", -1);
+        builder.remove("key1");
+        MapSnapshot<Object> newSnapshot = builder.snapshot();
+        
+        assertThat(snapshot.size(), equalTo(1000));
+        assertThat(snapshot.get("key0"), equalTo((Object) 0));
+        assertThat(snapshot.containsKey("key1"), equalTo(true));
+        assertThat(newSnapshot.size(), equalTo(999));
+        assertThat(newSnapshot.get("key0"), equalTo((Object) (-1)));
+        assertThat(newSnapshot.containsKey("key1"), equalTo(false));
+        assertThat(newSnapshot.entrySet().size(), equalTo(999));
+        assertThat(new HashMap<>(newSnapshot).size(), equalTo(999));
+    }
+}
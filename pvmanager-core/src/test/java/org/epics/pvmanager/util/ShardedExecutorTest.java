@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the sharded executor.
+ *
+ * @author carcassi
+ */
+public class ShardedExecutorTest {
+
+    @Test
+    public void sameKeyInOrder() throws Exception {
+        ShardedExecutor exec = new ShardedExecutor("Test Shard ", 4);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            final int n = i;
+            exec.execute("channel", new Runnable() {
+
+                @Override
+                public void run() {
+                    order.add(n);
+                    latch.countDown();
+                }
+            });
+        }
+        assertThat(latch.await(1, TimeUnit.SECONDS), equalTo(true));
+        for (int i = 0; i < 100; i++) {
+            assertThat(order.get(i), equalTo(i));
+        }
+        exec.shutdown();
+    }
+
+    @Test
+    public void slowKeyDoesNotBlockOthers() throws Exception {
+        ShardedExecutor exec = new ShardedExecutor("Test Shard ", 2);
+        String slowKey = "slow";
+        String fastKey = "a";
+        while (exec.shardIndex(fastKey) == exec.shardIndex(slowKey)) {
+            fastKey = fastKey + "a";
+        }
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch fastDone = new CountDownLatch(1);
+        exec.execute(slowKey, new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        exec.execute(slowKey, new Runnable() {
+
+            @Override
+            public void run() {
+            }
+        });
+        exec.execute(fastKey, new Runnable() {
+
+            @Override
+            public void run() {
+                fastDone.countDown();
+            }
+        });
+        assertThat(fastDone.await(1, TimeUnit.SECONDS), equalTo(true));
+        assertThat(exec.getStatistics().get(exec.shardIndex(slowKey)).getQueueDepth(), equalTo(1));
+        release.countDown();
+        exec.shutdown();
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.epics.util.time.TimeDuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the timer wheel executor.
+ *
+ * @author carcassi
+ */
+public class TimerWheelExecutorServiceTest {
+
+    private TimerWheelExecutorService exec;
+
+    @Before
+    public void setUp() {
+        exec = new TimerWheelExecutorService("Test Wheel ", 2, TimeDuration.ofMillis(1), 16);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        exec.shutdown();
+        assertThat(exec.awaitTermination(1, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    public void schedule1() throws Exception {
+        long start = System.nanoTime();
+        ScheduledFuture<String> future = exec.schedule(new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                return "Done";
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        assertThat(future.get(1, TimeUnit.SECONDS), equalTo("Done"));
+        assertThat(System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50)));
+    }
+
+    @Test
+    public void schedule2() throws Exception {
+        // Delay longer than a wheel turn
+        long start = System.nanoTime();
+        final CountDownLatch latch = new CountDownLatch(1);
+        exec.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 40, TimeUnit.MILLISECONDS);
+        assertThat(latch.await(1, TimeUnit.SECONDS), equalTo(true));
+        assertThat(System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40)));
+    }
+
+    @Test
+    public void scheduleWithFixedDelay() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(10);
+        ScheduledFuture<?> future = exec.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 0, 5, TimeUnit.MILLISECONDS);
+        assertThat(latch.await(1, TimeUnit.SECONDS), equalTo(true));
+        future.cancel(false);
+        assertThat(future.isCancelled(), equalTo(true));
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        ScheduledFuture<?> future = exec.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                counter.incrementAndGet();
+            }
+        }, 0, 5, TimeUnit.MILLISECONDS);
+        Thread.sleep(50);
+        future.cancel(false);
+        Thread.sleep(20);
+        int count = counter.get();
+        assertThat(count, greaterThan(0));
+        Thread.sleep(50);
+        assertThat(counter.get(), equalTo(count));
+    }
+
+    @Test
+    public void manyTasks() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(10000);
+        for (int i = 0; i < 10000; i++) {
+            exec.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            }, i % 100, TimeUnit.MILLISECONDS);
+        }
+        assertThat(latch.await(1, TimeUnit.SECONDS), equalTo(true));
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.extra;
+
+import org.epics.vtype.Display;
+
+/**
+ * The colors of a {@link ColorScheme} precomputed over the display range,
+ * so that the color of a value is found with an array access instead
+ * of calling the scheme.
+ * <p>
+ * The display range is divided in {@link #SIZE} steps, and each value
+ * is given the color of the closest step. Values outside the display range
+ * and NaNs are passed to the scheme directly.
+ *
+ * @author carcassi
+ */
+class ColorLookupTable {
+
+    static final int SIZE = 1024;
+
+    private final ColorScheme colorScheme;
+    private final double[] limits;
+    private final Display display;
+    private final int[] colors;
+    private final double min;
+    private final double max;
+    private final double scale;
+
+    private ColorLookupTable(ColorScheme colorScheme, Display display, double[] limits) {
+        this.colorScheme = colorScheme;
+        this.display = display;
+        this.limits = limits;
+        this.min = limits[0];
+        this.max = limits[limits.length - 1];
+        if (max > min) {
+            scale = (SIZE - 1) / (max - min);
+            colors = new int[SIZE];
+            for (int i = 0; i < SIZE; i++) {
+                colors[i] = colorScheme.color(min + i / scale, display);
+            }
+        } else {
+            // No range to divide: every value goes to the scheme
+            scale = 0;
+            colors = null;
+        }
+    }
+
+    /**
+     * Returns a table for the given scheme and display. The previous table
+     * is returned if it was calculated for the same scheme and limits.
+     *
+     * @param colorScheme the color scheme
+     * @param display the display limits
+     * @param previous the table previously used; can be null
+     * @return the lookup table
+     */
+    static ColorLookupTable of(ColorScheme colorScheme, Display display, ColorLookupTable previous) {
+        double[] limits = limitsOf(display);
+        if (previous != null && previous.colorScheme == colorScheme && equals(previous.limits, limits)) {
+            return previous;
+        }
+        return new ColorLookupTable(colorScheme, display, limits);
+    }
+
+    private static double[] limitsOf(Display display) {
+        return new double[] {toDouble(display.getLowerDisplayLimit()),
+            toDouble(display.getLowerAlarmLimit()), toDouble(display.getLowerWarningLimit()),
+            toDouble(display.getUpperWarningLimit()), toDouble(display.getUpperAlarmLimit()),
+            toDouble(display.getUpperDisplayLimit())};
+    }
+
+    private static double toDouble(Double value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+        return value;
+    }
+
+    private static boolean equals(double[] limits1, double[] limits2) {
+        for (int i = 0; i < limits1.length; i++) {
+            if (Double.doubleToLongBits(limits1[i]) != Double.doubleToLongBits(limits2[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The RGB color for the given value.
+     *
+     * @param value a value
+     * @return the RGB color
+     */
+    int color(double value) {
+        if (colors != null && value >= min && value <= max) {
+            return colors[(int) ((value - min) * scale + 0.5)];
+        }
+        return colorScheme.color(value, display);
+    }
+
+}
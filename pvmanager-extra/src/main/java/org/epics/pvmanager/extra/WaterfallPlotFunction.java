@@ -4,15 +4,11 @@
  */
 package org.epics.pvmanager.extra;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import org.epics.pvmanager.ReadFunction;
 import org.epics.vtype.Display;
-import org.epics.vtype.ValueUtil;
 import org.epics.vtype.VImage;
 import org.epics.pvmanager.extra.WaterfallPlotParameters.InternalCopy;
 import org.epics.util.array.ListNumber;
@@ -28,7 +24,8 @@ class WaterfallPlotFunction implements ReadFunction<VImage> {
 
     private volatile WaterfallPlotParameters.InternalCopy mutableParameters;
     private WaterfallPlotParameters.InternalCopy previousParameters;
-    private BufferedImage previousBuffer;
+    private WaterfallRaster raster;
+    private ColorLookupTable colorTable;
     private VImage previousImage;
     private Timestamp previousPlotEnd;
     private AdaptiveRange adaptiveRange;
@@ -121,48 +118,52 @@ class WaterfallPlotFunction implements ReadFunction<VImage> {
             redrawAll = true;
         }
         
-        int newWidth = calculateNewWidth(previousBuffer, parameters, newMaxArraySize);
+        int newWidth = calculateNewWidth(raster, parameters, newMaxArraySize);
         if (newWidth == 0) {
             // If all data was zero length, return no image
             return null;
         }
         
         
-        // Create new image. Copy the old image if needed.
-        BufferedImage image = new BufferedImage(newWidth, parameters.height, BufferedImage.TYPE_3BYTE_BGR);
-        if (previousImage != null && !redrawAll) {
-            drawOldImage(image, previousBuffer, nNewPixels, parameters);
+        // Reuse the raster if the size did not change. Copy the old one if needed.
+        boolean scroll = previousImage != null && !redrawAll;
+        if (raster == null || raster.getWidth() != newWidth || raster.getHeight() != parameters.height) {
+            WaterfallRaster newRaster = new WaterfallRaster(newWidth, parameters.height);
+            if (scroll) {
+                newRaster.copyFrom(raster);
+            }
+            raster = newRaster;
+        }
+        if (scroll) {
+            raster.scroll(nNewPixels);
         } else if (parameters.backgroundColor != null) {
-            Graphics2D gc = image.createGraphics();
-            Color background = new Color(parameters.backgroundColor);
-            gc.setColor(background);
-            gc.fillRect(0, 0, newWidth, parameters.height);
-            gc.dispose();
+            raster.fill(parameters.backgroundColor);
+        } else {
+            raster.fill(0);
         }
         
+        if (!dataToPlot.isEmpty()) {
+            Display display = parameters.adaptiveRange ? adaptiveRange : doubleArrayTimeCache.getDisplay();
+            colorTable = ColorLookupTable.of(parameters.colorScheme, display, colorTable);
+        }
         for (DoubleArrayTimeCache.Data data : dataToPlot) {
             int pixelsFromStart = 0;
             if (data.getBegin().compareTo(plotStart) > 0) {
                 pixelsFromStart = data.getBegin().durationFrom(plotStart).dividedBy(parameters.pixelDuration);
             }
-            int y = image.getHeight() - pixelsFromStart - 1;
+            int y = raster.getHeight() - pixelsFromStart - 1;
             Timestamp pixelStart = plotStart.plus(parameters.pixelDuration.multipliedBy(pixelsFromStart));
-            if (parameters.adaptiveRange) {
-                drawSection(image, parameters, null, adaptiveRange, parameters.colorScheme, data, pixelStart, parameters.pixelDuration, y);
-            } else {
-                drawSection(image, parameters, null, doubleArrayTimeCache.getDisplay(), parameters.colorScheme, data, pixelStart, parameters.pixelDuration, y);
-            }
+            drawSection(raster, null, colorTable, data, pixelStart, parameters.pixelDuration, y);
         }
         
-        previousImage = ValueUtil.toVImage(image);
-        previousBuffer = image;
+        previousImage = raster.toVImage(parameters.scrollDown);
         previousPlotEnd = plotEnd;
         previousParameters = parameters;
         return previousImage;
     }
     
-    private static void drawSection(BufferedImage image, InternalCopy parameters,
-            double[] positions, Display display, ColorScheme colorScheme, DoubleArrayTimeCache.Data data,
+    private static void drawSection(WaterfallRaster raster,
+            double[] positions, ColorLookupTable colors, DoubleArrayTimeCache.Data data,
             Timestamp pixelStart, TimeDuration pixelDuration, int y) {
         int usedArrays = 0;
         Timestamp pixelEnd = pixelStart.plus(pixelDuration);
@@ -174,9 +175,9 @@ class WaterfallPlotFunction implements ReadFunction<VImage> {
             // Determine the data to print on screen
             ListNumber dataToDisplay = aggregate(pixelValues);
             if (dataToDisplay == null) {
-                copyPreviousLine(image, y, parameters);
+                raster.copyPreviousRow(y);
             } else {
-                drawLine(y, dataToDisplay, positions, display, colorScheme, image, parameters);
+                drawLine(y, dataToDisplay, positions, colors, raster);
             }
             
             y--;
@@ -185,31 +186,13 @@ class WaterfallPlotFunction implements ReadFunction<VImage> {
         }
     }
     
-    private static int calculateNewWidth(BufferedImage previousBuffer, InternalCopy parameters, int maxArraySize) {
-        if (previousBuffer == null)
+    private static int calculateNewWidth(WaterfallRaster previousRaster, InternalCopy parameters, int maxArraySize) {
+        if (previousRaster == null)
             return maxArraySize;
         
-        return Math.max(previousBuffer.getWidth(), maxArraySize);
+        return Math.max(previousRaster.getWidth(), maxArraySize);
     }
 
-    private static void copyPreviousLine(BufferedImage image, int y, InternalCopy parameters) {
-        if (y < 0 || y >= image.getHeight())
-            return;
-        
-        int previousY = y + 1;
-        if (previousY < 0 || previousY >= image.getHeight())
-            return;
-        if (!parameters.scrollDown) {
-            y = parameters.height - y - 1;
-            previousY = parameters.height - previousY - 1;
-        }
-        if (y >= 0 && y < image.getHeight()) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                image.setRGB(x, y, image.getRGB(x, previousY));
-            }
-        }
-    }
-    
     private static ListNumber aggregate(List<ListNumber> values) {
         if (values.isEmpty())
             return null;
@@ -227,19 +210,11 @@ class WaterfallPlotFunction implements ReadFunction<VImage> {
         return pixelValues;
     }
     
-    private static void drawLine(int y, ListNumber data, double[] positions, Display display, ColorScheme colorScheme, BufferedImage image, InternalCopy parameters) {
+    private static void drawLine(int y, ListNumber data, double[] positions, ColorLookupTable colors, WaterfallRaster raster) {
         if (positions != null)
             throw new RuntimeException("Positions not supported yet");
         
-        if (y < 0 || y >= image.getHeight())
-            return;
-            
-        if (!parameters.scrollDown) {
-            y = parameters.height - y - 1;
-        }
-        for (int i = 0; i < data.size(); i++) {
-            image.setRGB(i, y, colorScheme.color(data.getDouble(i), display));
-        }
+        raster.drawRow(y, data, colors);
     }
 
     @Override
@@ -247,14 +222,4 @@ class WaterfallPlotFunction implements ReadFunction<VImage> {
         return drawImage();
     }
 
-    private void drawOldImage(BufferedImage image, BufferedImage previousBuffer, int nNewPixels, InternalCopy parameters) {
-        Graphics2D gc = image.createGraphics();
-        if (parameters.scrollDown) {
-            gc.drawImage(previousBuffer, 0, nNewPixels, null);
-        } else {
-            gc.drawImage(previousBuffer, 0, -nNewPixels, null);
-        }
-        gc.dispose();
-    }
-
 }
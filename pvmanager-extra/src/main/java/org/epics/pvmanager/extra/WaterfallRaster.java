@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.extra;
+
+import java.util.Arrays;
+import org.epics.util.array.ListNumber;
+import org.epics.vtype.VImage;
+import org.epics.vtype.ValueFactory;
+
+/**
+ * The pixels of the waterfall plot, kept as a circular buffer of rows
+ * in the 3 byte BGR format of {@link VImage}.
+ * <p>
+ * Rows are indexed by age: row 0 is the most recent. Scrolling moves
+ * the offset of the first row instead of moving the pixels, so that only the
+ * new rows need to be written. The buffer is copied in display order
+ * when an image is requested, alternating between two images: the image
+ * returned is valid until two more images are requested.
+ *
+ * @author carcassi
+ */
+class WaterfallRaster {
+
+    private final int width;
+    private final int height;
+    private final int rowSize;
+    private final byte[] pixels;
+    private int firstRow;
+    private final byte[][] imageBuffers = new byte[2][];
+    private final VImage[] images = new VImage[2];
+    private int currentImage = 1;
+
+    /**
+     * Creates a new raster with all the pixels black.
+     *
+     * @param width the width in pixels
+     * @param height the height in pixels
+     */
+    WaterfallRaster(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.rowSize = 3 * width;
+        this.pixels = new byte[rowSize * height];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    private int offsetOf(int row) {
+        int physicalRow = firstRow + row;
+        if (physicalRow >= height) {
+            physicalRow -= height;
+        }
+        return physicalRow * rowSize;
+    }
+
+    private boolean isValidRow(int row) {
+        return row >= 0 && row < height;
+    }
+
+    /**
+     * Fills all the pixels with the given color.
+     *
+     * @param rgb an RGB color
+     */
+    public void fill(int rgb) {
+        if (rgb == 0) {
+            Arrays.fill(pixels, (byte) 0);
+            return;
+        }
+        for (int i = 0; i < width; i++) {
+            setPixel(pixels, 3 * i, rgb);
+        }
+        for (int row = 1; row < height; row++) {
+            System.arraycopy(pixels, 0, pixels, row * rowSize, rowSize);
+        }
+    }
+
+    /**
+     * Copies the rows of another raster, aligned to the left. The pixels
+     * that do not overlap are left unchanged.
+     *
+     * @param other the raster to copy
+     */
+    public void copyFrom(WaterfallRaster other) {
+        int copyHeight = Math.min(height, other.height);
+        int copySize = 3 * Math.min(width, other.width);
+        for (int row = 0; row < copyHeight; row++) {
+            System.arraycopy(other.pixels, other.offsetOf(row), pixels, offsetOf(row), copySize);
+        }
+    }
+
+    /**
+     * Scrolls the raster by the given number of rows: the oldest rows
+     * are discarded and the new rows, at the beginning, are black.
+     *
+     * @param nRows the number of new rows
+     */
+    public void scroll(int nRows) {
+        if (nRows <= 0) {
+            return;
+        }
+        if (nRows >= height) {
+            firstRow = 0;
+            Arrays.fill(pixels, (byte) 0);
+            return;
+        }
+        firstRow -= nRows;
+        if (firstRow < 0) {
+            firstRow += height;
+        }
+        for (int row = 0; row < nRows; row++) {
+            int offset = offsetOf(row);
+            Arrays.fill(pixels, offset, offset + rowSize, (byte) 0);
+        }
+    }
+
+    /**
+     * Copies the next older row into the given row.
+     *
+     * @param row the row index
+     */
+    public void copyPreviousRow(int row) {
+        if (!isValidRow(row) || !isValidRow(row + 1)) {
+            return;
+        }
+        System.arraycopy(pixels, offsetOf(row + 1), pixels, offsetOf(row), rowSize);
+    }
+
+    /**
+     * Writes the colors of the given values in the row, starting from
+     * the left. The pixels past the values are left unchanged.
+     *
+     * @param row the row index
+     * @param values the values to display
+     * @param colors the color of each value
+     */
+    public void drawRow(int row, ListNumber values, ColorLookupTable colors) {
+        if (!isValidRow(row)) {
+            return;
+        }
+        int offset = offsetOf(row);
+        int size = Math.min(width, values.size());
+        for (int i = 0; i < size; i++) {
+            setPixel(pixels, offset + 3 * i, colors.color(values.getDouble(i)));
+        }
+    }
+
+    private static void setPixel(byte[] pixels, int offset, int rgb) {
+        pixels[offset] = (byte) rgb;
+        pixels[offset + 1] = (byte) (rgb >> 8);
+        pixels[offset + 2] = (byte) (rgb >> 16);
+    }
+
+    /**
+     * Copies the raster in the next image. If scrolling down, the most
+     * recent row is at the top; otherwise it is at the bottom.
+     *
+     * @param scrollDown whether the newest data is at the top
+     * @return the image
+     */
+    public VImage toVImage(boolean scrollDown) {
+        currentImage = 1 - currentImage;
+        byte[] buffer = imageBuffers[currentImage];
+        if (buffer == null) {
+            buffer = new byte[pixels.length];
+            imageBuffers[currentImage] = buffer;
+            images[currentImage] = ValueFactory.newVImage(height, width, buffer);
+        }
+        if (scrollDown) {
+            int firstPart = (height - firstRow) * rowSize;
+            System.arraycopy(pixels, firstRow * rowSize, buffer, 0, firstPart);
+            System.arraycopy(pixels, 0, buffer, firstPart, firstRow * rowSize);
+        } else {
+            for (int row = 0; row < height; row++) {
+                System.arraycopy(pixels, offsetOf(row), buffer, (height - row - 1) * rowSize, rowSize);
+            }
+        }
+        return images[currentImage];
+    }
+
+}
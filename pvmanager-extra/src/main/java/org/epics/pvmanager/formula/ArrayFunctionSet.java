@@ -4,7 +4,6 @@
  */
 package org.epics.pvmanager.formula;
 
-import org.epics.util.array.ListMath;
 import org.epics.util.array.ListNumber;
 import org.epics.vtype.VNumberArray;
 
@@ -31,14 +30,14 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
                                 "array", "expon") {
                     @Override
                     ListNumber calculate(ListNumber arg1, Number arg2) {
-                        return ListMath.pow(arg1, arg2.doubleValue());
+                        return ArrayMath.pow(arg1, arg2.doubleValue());
                     }
                 })
                 .addFormulaFunction(
                         new AbstractVNumberVNumberArrayToVNumberArrayFormulaFunction("arrayPow", "Result[x] = pow(base, array[x])", "base", "array") {
                     @Override
                     ListNumber calculate(Number arg1, ListNumber arg2) {
-                        return ListMath.pow(arg1.doubleValue(), arg2);
+                        return ArrayMath.pow(arg1.doubleValue(), arg2);
                     }
                 })
                 .addFormulaFunction(new CaHistogramFormulaFunction())
@@ -50,7 +49,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(ListNumber array1, ListNumber array2) {
-                                return ListMath.multiply(array1, array2);
+                                return ArrayMath.multiply(array1, array2);
                             }
                         })
                 .addFormulaFunction(
@@ -59,7 +58,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(ListNumber array1, ListNumber array2) {
-                                return ListMath.divide(array1, array2);
+                                return ArrayMath.divide(array1, array2);
                             }
                         })
                 .addFormulaFunction(new SubArrayFormulaFunction())
@@ -71,7 +70,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(ListNumber array1, ListNumber array2) {
-                                return ListMath.add(array1, array2);
+                                return ArrayMath.add(array1, array2);
                             }
                         })
                 .addFormulaFunction(
@@ -80,7 +79,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(ListNumber array1, ListNumber array2) {
-                                return ListMath.subtract(array1, array2);
+                                return ArrayMath.subtract(array1, array2);
                             }
                         })
                 .addFormulaFunction(
@@ -89,7 +88,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(ListNumber array, Number offset) {
-                                return ListMath.rescale(array, 1.0, offset.doubleValue());
+                                return ArrayMath.rescale(array, 1.0, offset.doubleValue());
                             }
                         })
                 .addFormulaFunction(
@@ -98,7 +97,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(Number offset, ListNumber array) {
-                                return ListMath.rescale(array, 1.0, offset.doubleValue());
+                                return ArrayMath.rescale(array, 1.0, offset.doubleValue());
                             }
                         })
                 .addFormulaFunction(
@@ -107,7 +106,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(ListNumber array, Number offset) {
-                                return ListMath.rescale(array, 1.0, -offset.doubleValue());
+                                return ArrayMath.rescale(array, 1.0, -offset.doubleValue());
                             }
                         })
                 .addFormulaFunction(
@@ -116,7 +115,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(Number offset, ListNumber array) {
-                                return ListMath.rescale(array, -1.0, offset.doubleValue());
+                                return ArrayMath.rescale(array, -1.0, offset.doubleValue());
                             }
                         })
                 .addFormulaFunction(
@@ -125,7 +124,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(Number numerator, ListNumber array) {
-                                return ListMath.inverseRescale(array, numerator.doubleValue(), 0.0);
+                                return ArrayMath.inverseRescale(array, numerator.doubleValue(), 0.0);
                             }
                         })
                 .addFormulaFunction(
@@ -134,7 +133,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(ListNumber array, Number num) {
-                                return ListMath.rescale(array, num.doubleValue(), 0.0);
+                                return ArrayMath.rescale(array, num.doubleValue(), 0.0);
                             }
                         })
                 .addFormulaFunction(
@@ -143,7 +142,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(Number num, ListNumber array) {
-                                return ListMath.rescale(array, num.doubleValue(), 0.0);
+                                return ArrayMath.rescale(array, num.doubleValue(), 0.0);
                             }
                         })
                 .addFormulaFunction(
@@ -152,7 +151,7 @@ public class ArrayFunctionSet extends FormulaFunctionSet {
 
                             @Override
                             ListNumber calculate(ListNumber array, Number num) {
-                                return ListMath.rescale(array, (1 / num.doubleValue()), 0.0);
+                                return ArrayMath.rescale(array, (1 / num.doubleValue()), 0.0);
                             }
                         })
                 .addFormulaFunction(new DftFormulaFunction())
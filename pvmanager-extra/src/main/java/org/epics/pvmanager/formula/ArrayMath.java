@@ -0,0 +1,351 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.formula;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.epics.util.array.ArrayDouble;
+import org.epics.util.array.CollectionNumbers;
+import org.epics.util.array.ListDouble;
+import org.epics.util.array.ListNumber;
+
+/**
+ * Element-wise arithmetic on numeric arrays, used by the array formula
+ * functions.
+ * <p>
+ * Differently from {@link org.epics.util.array.ListMath}, which returns
+ * views that recalculate each element on every access, the result is
+ * calculated once into a new array. When the arguments are backed
+ * by arrays (e.g. {@link ArrayDouble}), the loops run on the backing
+ * arrays directly. Arrays of at least {@link #PARALLEL_THRESHOLD}
+ * elements are split across a fork/join pool.
+ *
+ * @author carcassi
+ */
+final class ArrayMath {
+
+    private ArrayMath() {
+        // No instances
+    }
+
+    /**
+     * Number of elements above which the calculation is split
+     * across multiple threads.
+     */
+    static final int PARALLEL_THRESHOLD = 256 * 1024;
+
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    private static class PoolHolder {
+        static final ForkJoinPool pool = new ForkJoinPool();
+    }
+
+    /**
+     * An element-wise operation that can be calculated on any
+     * range of the result independently.
+     */
+    private static abstract class Operation {
+
+        final int size;
+
+        Operation(int size) {
+            this.size = size;
+        }
+
+        abstract void calculate(double[] result, int from, int to);
+    }
+
+    private static abstract class UnaryOperation extends Operation {
+
+        private final ListNumber arg;
+        private final Object array;
+
+        UnaryOperation(ListNumber arg) {
+            super(arg.size());
+            this.arg = arg;
+            this.array = CollectionNumbers.wrappedArray(arg);
+        }
+
+        @Override
+        final void calculate(double[] result, int from, int to) {
+            // Arguments that are not doubles are converted in the result first
+            double[] values = toDoubles(arg, array, result, 0, from, to);
+            calculate(values, result, from, to);
+        }
+
+        abstract void calculate(double[] values, double[] result, int from, int to);
+    }
+
+    private static abstract class BinaryOperation extends Operation {
+
+        private final ListNumber arg1;
+        private final ListNumber arg2;
+        private final Object array1;
+        private final Object array2;
+
+        BinaryOperation(ListNumber arg1, ListNumber arg2) {
+            super(arg1.size());
+            if (arg1.size() != arg2.size()) {
+                throw new IllegalArgumentException("Can't operate on arrays of different size (" + arg1.size() + " - " + arg2.size() + ")");
+            }
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.array1 = CollectionNumbers.wrappedArray(arg1);
+            this.array2 = CollectionNumbers.wrappedArray(arg2);
+        }
+
+        @Override
+        final void calculate(double[] result, int from, int to) {
+            double[] values1 = toDoubles(arg1, array1, result, 0, from, to);
+            double[] values2;
+            int offset2;
+            if (array2 instanceof double[]) {
+                values2 = (double[]) array2;
+                offset2 = 0;
+            } else {
+                values2 = toDoubles(arg2, array2, new double[to - from], from, from, to);
+                offset2 = from;
+            }
+            calculate(values1, values2, offset2, result, from, to);
+        }
+
+        /**
+         * Calculates result[i] from values1[i] and values2[i - offset2].
+         */
+        abstract void calculate(double[] values1, double[] values2, int offset2, double[] result, int from, int to);
+    }
+
+    private static class OperationTask extends RecursiveAction {
+
+        private final Operation operation;
+        private final double[] result;
+        private final int from;
+        private final int to;
+
+        OperationTask(Operation operation, double[] result, int from, int to) {
+            this.operation = operation;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_CHUNK_SIZE * 2) {
+                operation.calculate(result, from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new OperationTask(operation, result, from, middle),
+                        new OperationTask(operation, result, middle, to));
+            }
+        }
+    }
+
+    /**
+     * Returns the values of the list from {@code from} to {@code to} as doubles.
+     * If the list is backed by a double array, the array is returned.
+     * Otherwise the values are copied in the buffer at position
+     * {@code index - offset}, and the buffer is returned.
+     */
+    private static double[] toDoubles(ListNumber list, Object array, double[] buffer, int offset, int from, int to) {
+        if (array instanceof double[]) {
+            return (double[]) array;
+        } else if (array instanceof float[]) {
+            float[] values = (float[]) array;
+            for (int i = from; i < to; i++) {
+                buffer[i - offset] = values[i];
+            }
+        } else if (array instanceof int[]) {
+            int[] values = (int[]) array;
+            for (int i = from; i < to; i++) {
+                buffer[i - offset] = values[i];
+            }
+        } else if (array instanceof short[]) {
+            short[] values = (short[]) array;
+            for (int i = from; i < to; i++) {
+                buffer[i - offset] = values[i];
+            }
+        } else if (array instanceof byte[]) {
+            byte[] values = (byte[]) array;
+            for (int i = from; i < to; i++) {
+                buffer[i - offset] = values[i];
+            }
+        } else if (array instanceof long[]) {
+            long[] values = (long[]) array;
+            for (int i = from; i < to; i++) {
+                buffer[i - offset] = values[i];
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                buffer[i - offset] = list.getDouble(i);
+            }
+        }
+        return buffer;
+    }
+
+    private static ListDouble calculate(Operation operation) {
+        double[] result = new double[operation.size];
+        if (operation.size < PARALLEL_THRESHOLD) {
+            operation.calculate(result, 0, operation.size);
+        } else {
+            PoolHolder.pool.invoke(new OperationTask(operation, result, 0, operation.size));
+        }
+        return new ArrayDouble(result);
+    }
+
+    /**
+     * Returns result[x] = arg1[x] + arg2[x].
+     *
+     * @param arg1 the first array; can't be null
+     * @param arg2 the second array; must have the same size of the first
+     * @return the sum
+     */
+    static ListDouble add(ListNumber arg1, ListNumber arg2) {
+        return calculate(new BinaryOperation(arg1, arg2) {
+
+            @Override
+            void calculate(double[] values1, double[] values2, int offset2, double[] result, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    result[i] = values1[i] + values2[i - offset2];
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns result[x] = arg1[x] - arg2[x].
+     *
+     * @param arg1 the first array; can't be null
+     * @param arg2 the second array; must have the same size of the first
+     * @return the difference
+     */
+    static ListDouble subtract(ListNumber arg1, ListNumber arg2) {
+        return calculate(new BinaryOperation(arg1, arg2) {
+
+            @Override
+            void calculate(double[] values1, double[] values2, int offset2, double[] result, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    result[i] = values1[i] - values2[i - offset2];
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns result[x] = arg1[x] * arg2[x].
+     *
+     * @param arg1 the first array; can't be null
+     * @param arg2 the second array; must have the same size of the first
+     * @return the product
+     */
+    static ListDouble multiply(ListNumber arg1, ListNumber arg2) {
+        return calculate(new BinaryOperation(arg1, arg2) {
+
+            @Override
+            void calculate(double[] values1, double[] values2, int offset2, double[] result, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    result[i] = values1[i] * values2[i - offset2];
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns result[x] = arg1[x] / arg2[x].
+     *
+     * @param arg1 the first array; can't be null
+     * @param arg2 the second array; must have the same size of the first
+     * @return the ratio
+     */
+    static ListDouble divide(ListNumber arg1, ListNumber arg2) {
+        return calculate(new BinaryOperation(arg1, arg2) {
+
+            @Override
+            void calculate(double[] values1, double[] values2, int offset2, double[] result, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    result[i] = values1[i] / values2[i - offset2];
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns result[x] = factor * arg[x] + offset.
+     *
+     * @param arg the array; can't be null
+     * @param factor the multiplicative factor
+     * @param offset the additive offset
+     * @return the rescaled array
+     */
+    static ListDouble rescale(ListNumber arg, final double factor, final double offset) {
+        return calculate(new UnaryOperation(arg) {
+
+            @Override
+            void calculate(double[] values, double[] result, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    result[i] = factor * values[i] + offset;
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns result[x] = numerator / arg[x] + offset.
+     *
+     * @param arg the array; can't be null
+     * @param numerator the numerator
+     * @param offset the additive offset
+     * @return the rescaled array
+     */
+    static ListDouble inverseRescale(ListNumber arg, final double numerator, final double offset) {
+        return calculate(new UnaryOperation(arg) {
+
+            @Override
+            void calculate(double[] values, double[] result, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    result[i] = numerator / values[i] + offset;
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns result[x] = pow(arg[x], exponent).
+     *
+     * @param arg the array; can't be null
+     * @param exponent the exponent
+     * @return the power
+     */
+    static ListDouble pow(ListNumber arg, final double exponent) {
+        return calculate(new UnaryOperation(arg) {
+
+            @Override
+            void calculate(double[] values, double[] result, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    result[i] = Math.pow(values[i], exponent);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns result[x] = pow(base, arg[x]).
+     *
+     * @param base the base
+     * @param arg the array; can't be null
+     * @return the power
+     */
+    static ListDouble pow(final double base, ListNumber arg) {
+        return calculate(new UnaryOperation(arg) {
+
+            @Override
+            void calculate(double[] values, double[] result, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    result[i] = Math.pow(base, values[i]);
+                }
+            }
+        });
+    }
+}
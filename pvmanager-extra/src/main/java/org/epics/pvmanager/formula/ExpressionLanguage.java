@@ -99,10 +99,17 @@ public class ExpressionLanguage {
         
         RuntimeException parsingError;
         try {
+            // Only the parse tree is cached: the expression is always new
+            FormulaAst cached = FormulaCache.getDefault().lookupFormula(formula);
+            if (cached != null) {
+                return cached.toExpression();
+            }
+            
             DesiredRateExpression<?> exp = createParser(formula).formula();
             if (exp == null) {
                 throw new NullPointerException("Parsing failed");
             }
+            FormulaCache.getDefault().putFormula(formula, FormulaAst.of(exp));
             return exp;
         } catch (RecognitionException ex) {
             parsingError = new IllegalArgumentException("Error parsing formula: " + ex.getMessage(), ex);
@@ -196,14 +203,40 @@ public class ExpressionLanguage {
     }
     
     static DesiredRateExpression<?> function(String function, DesiredRateExpressionList<?> args) {
+        DesiredRateExpression<?> expression = functionExpression(function, args);
+        
+        // Pure functions of channels are calculated once for all the
+        // readers that contain them
+        if (expression instanceof FormulaFunctionReadExpression) {
+            FormulaFunctionReadExpression functionExpression = (FormulaFunctionReadExpression) expression;
+            if (SharedFormulaExpression.isShareable(functionExpression)) {
+                return new SharedFormulaExpression(functionExpression);
+            }
+        }
+        return expression;
+    }
+    
+    static DesiredRateExpression<?> functionExpression(String function, DesiredRateExpressionList<?> args) {
         Collection<FormulaFunction> matchedFunctions = FormulaRegistry.getDefault().findFunctions(function, args.getDesiredRateExpressions().size());
         if (matchedFunctions.size() > 0) {
-            FormulaReadFunction readFunction = new FormulaReadFunction(Expressions.functionsOf(args), matchedFunctions);
             List<String> argNames = new ArrayList<>(args.getDesiredRateExpressions().size());
             for (DesiredRateExpression<? extends Object> arg : args.getDesiredRateExpressions()) {
                 argNames.add(arg.getName());
             }
-            return new FormulaFunctionReadExpression(args, readFunction, FormulaFunctions.format(function, argNames));
+            
+            // Parse tree, so that the formula can be cached
+            List<FormulaAst> argAsts = FormulaAst.of(args);
+            FormulaAst ast = argAsts == null ? null : FormulaAst.function(function, argAsts);
+            
+            // Scalar numeric operations are compiled together with
+            // their numeric arguments in a single function
+            FormulaFunction numericKernel = FusedFormulaReadFunction.numericKernelOf(matchedFunctions);
+            if (numericKernel != null) {
+                return FusedFormulaReadExpression.of(numericKernel, matchedFunctions, args, FormulaFunctions.format(function, argNames), ast);
+            }
+            
+            FormulaReadFunction readFunction = new FormulaReadFunction(Expressions.functionsOf(args), matchedFunctions);
+            return new FormulaFunctionReadExpression(args, readFunction, FormulaFunctions.format(function, argNames), ast);
         }
         
         throw new IllegalArgumentException("No function named '" + function + "' is defined");
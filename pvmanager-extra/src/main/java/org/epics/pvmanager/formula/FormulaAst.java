@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.formula;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.epics.pvmanager.ValueCacheImpl;
+import org.epics.pvmanager.expression.DesiredRateExpression;
+import org.epics.pvmanager.expression.DesiredRateExpressionImpl;
+import org.epics.pvmanager.expression.DesiredRateExpressionList;
+import org.epics.pvmanager.expression.DesiredRateExpressionListImpl;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VInt;
+import org.epics.vtype.VString;
+import static org.epics.pvmanager.vtype.ExpressionLanguage.*;
+
+/**
+ * The parse tree of a formula: channels, literals and function
+ * applications. It holds no state, so it can be kept in the
+ * {@link FormulaCache}: each call to {@link #toExpression() } creates
+ * new expressions, with their own functions and channel caches.
+ * <p>
+ * The key identifies the tree by its structure, so that
+ * the same subexpression can be found in different formulas.
+ *
+ * @author carcassi
+ */
+class FormulaAst {
+    
+    enum Type {CHANNEL, LITERAL, FUNCTION}
+    
+    private final Type type;
+    private final String name;
+    private final Object value;
+    private final List<FormulaAst> children;
+    private final String key;
+    private final boolean channels;
+
+    private FormulaAst(Type type, String name, Object value, List<FormulaAst> children) {
+        this.type = type;
+        this.name = name;
+        this.value = value;
+        this.children = children;
+        StringBuilder sb = new StringBuilder();
+        boolean hasChannels = false;
+        switch (type) {
+            case CHANNEL:
+                sb.append('c');
+                appendQuoted(sb, name);
+                hasChannels = true;
+                break;
+            case LITERAL:
+                if (value instanceof String) {
+                    sb.append('s');
+                    appendQuoted(sb, (String) value);
+                } else {
+                    sb.append(value instanceof Integer ? 'i' : 'd').append(value);
+                }
+                break;
+            default:
+                sb.append(name).append('(');
+                for (int i = 0; i < children.size(); i++) {
+                    if (i != 0) {
+                        sb.append(',');
+                    }
+                    sb.append(children.get(i).key);
+                    hasChannels = hasChannels || children.get(i).channels;
+                }
+                sb.append(')');
+        }
+        this.key = sb.toString();
+        this.channels = hasChannels;
+    }
+    
+    private static void appendQuoted(StringBuilder sb, String text) {
+        sb.append('"').append(text.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+    }
+    
+    static FormulaAst channel(String channelName) {
+        return new FormulaAst(Type.CHANNEL, channelName, null, null);
+    }
+    
+    static FormulaAst literal(Object value) {
+        return new FormulaAst(Type.LITERAL, null, value, null);
+    }
+    
+    static FormulaAst function(String functionName, List<FormulaAst> args) {
+        return new FormulaAst(Type.FUNCTION, functionName, null, Collections.unmodifiableList(new ArrayList<>(args)));
+    }
+    
+    /**
+     * The parse tree for an expression created by the formula parser.
+     * 
+     * @param expression a parsed expression
+     * @return the parse tree, or null if the expression was not created by the parser
+     */
+    static FormulaAst of(DesiredRateExpression<?> expression) {
+        if (expression instanceof LastOfChannelExpression) {
+            return channel(expression.getName());
+        }
+        if (expression instanceof FormulaFunctionReadExpression) {
+            return ((FormulaFunctionReadExpression) expression).getAst();
+        }
+        if (expression instanceof FusedFormulaReadExpression) {
+            return ((FusedFormulaReadExpression) expression).getAst();
+        }
+        if (expression instanceof SharedFormulaExpression) {
+            return ((SharedFormulaExpression) expression).getAst();
+        }
+        if (expression instanceof DesiredRateExpressionImpl && expression.getFunction() instanceof ValueCacheImpl) {
+            // Literal: keep the value that was parsed, and not the VType
+            // created at that time, so that the timestamp is always new
+            Object constant = expression.getFunction().readValue();
+            if (constant instanceof VInt) {
+                return literal(((VInt) constant).getValue());
+            } else if (constant instanceof VDouble) {
+                return literal(((VDouble) constant).getValue());
+            } else if (constant instanceof VString) {
+                return literal(((VString) constant).getValue());
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * The parse trees for the given expressions.
+     * 
+     * @param expressions parsed expressions
+     * @return the parse trees, or null if one of the expressions was not created by the parser
+     */
+    static List<FormulaAst> of(DesiredRateExpressionList<?> expressions) {
+        List<FormulaAst> asts = new ArrayList<>(expressions.getDesiredRateExpressions().size());
+        for (DesiredRateExpression<?> expression : expressions.getDesiredRateExpressions()) {
+            FormulaAst ast = of(expression);
+            if (ast == null) {
+                return null;
+            }
+            asts.add(ast);
+        }
+        return asts;
+    }
+
+    /**
+     * A text that identifies the tree: trees with the same key
+     * calculate the same value.
+     * 
+     * @return the key
+     */
+    String getKey() {
+        return key;
+    }
+    
+    /**
+     * Whether the tree reads at least one channel.
+     * 
+     * @return true if there are channels
+     */
+    boolean hasChannels() {
+        return channels;
+    }
+
+    /**
+     * Creates a new expression for this parse tree.
+     * 
+     * @return a new expression
+     */
+    DesiredRateExpression<?> toExpression() {
+        switch (type) {
+            case CHANNEL:
+                return ExpressionLanguage.cachedPv(name);
+            case LITERAL:
+                if (value instanceof Integer) {
+                    return vConst(((Integer) value).intValue());
+                } else if (value instanceof Double) {
+                    return vConst(((Double) value).doubleValue());
+                } else {
+                    return vConst((String) value);
+                }
+            default:
+                return ExpressionLanguage.function(name, childExpressions());
+        }
+    }
+    
+    /**
+     * Creates a new expression for this function application that is
+     * never shared with other readers. The arguments may still be.
+     * 
+     * @return a new expression
+     */
+    DesiredRateExpression<?> toUnsharedExpression() {
+        if (type != Type.FUNCTION) {
+            return toExpression();
+        }
+        return ExpressionLanguage.functionExpression(name, childExpressions());
+    }
+    
+    private DesiredRateExpressionList<Object> childExpressions() {
+        DesiredRateExpressionList<Object> args = new DesiredRateExpressionListImpl<>();
+        for (FormulaAst child : children) {
+            args.and(child.toExpression());
+        }
+        return args;
+    }
+    
+}
@@ -0,0 +1,348 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.formula;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.epics.pvmanager.DataSource;
+
+/**
+ * A cache of the parsed formulas, so that formulas that are opened
+ * repeatedly are not parsed again, and of the pure subexpressions
+ * that are calculated once for all the readers that contain them.
+ * <p>
+ * Formulas are keyed by their text without whitespace. Only the parse tree
+ * is kept: each lookup creates new expressions, with their own functions
+ * and channel caches.
+ * <p>
+ * Pure functions of channels, like {@code mean(arrayPV)}, are keyed by
+ * their parse tree and by the data source of the reader. Identical
+ * subexpressions in formulas read from the same data source are calculated
+ * by a single {@link SharedSubexpression}, while each reader keeps its own
+ * channel subscriptions. A subexpression counts its readers and is removed
+ * when the last one is closed.
+ * <p>
+ * The cache is disabled until a maximum size is set. The maximum applies
+ * to formulas and subexpressions separately: above it, the least recently
+ * used are removed. A subexpression that is removed keeps working for its
+ * current readers, and new readers will use a new one.
+ *
+ * @author carcassi
+ */
+public class FormulaCache {
+    private final static FormulaCache cache = new FormulaCache();
+
+    /**
+     * Returns the default formula cache.
+     *
+     * @return the default cache
+     */
+    public static FormulaCache getDefault() {
+        return cache;
+    }
+
+    private final Map<String, FormulaAst> formulas = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxSize = 0;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private final Map<SubexpressionKey, SharedSubexpression> subexpressions = new LinkedHashMap<>(16, 0.75f, true);
+    private long subexpressionHitCount;
+    private long subexpressionMissCount;
+    private long subexpressionEvictionCount;
+
+    FormulaCache() {
+    }
+
+    /**
+     * Changes the maximum number of parsed formulas, and of shared
+     * subexpressions, kept in the cache. Zero, the default, disables
+     * the cache and the sharing.
+     *
+     * @param maxSize the maximum number of formulas and of subexpressions; can't be negative
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize can't be negative (was " + maxSize + ")");
+        }
+        this.maxSize = maxSize;
+        evict();
+        evictSubexpressions();
+    }
+
+    /**
+     * The maximum number of parsed formulas, and of shared subexpressions,
+     * kept in the cache.
+     *
+     * @return the maximum number of formulas
+     */
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * The number of parsed formulas currently in the cache.
+     *
+     * @return the number of formulas
+     */
+    public synchronized int getSize() {
+        return formulas.size();
+    }
+
+    /**
+     * The number of lookups that found a parsed formula.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * The number of lookups that required the formula to be parsed.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * The number of parsed formulas removed because the cache
+     * was full.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * The number of subexpressions currently shared.
+     *
+     * @return the number of subexpressions
+     */
+    public synchronized int getSubexpressionCount() {
+        return subexpressions.size();
+    }
+
+    /**
+     * The number of readers that found the subexpression already
+     * calculated for other readers.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getSubexpressionHitCount() {
+        return subexpressionHitCount;
+    }
+
+    /**
+     * The number of readers that had to create a new shared subexpression.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getSubexpressionMissCount() {
+        return subexpressionMissCount;
+    }
+
+    /**
+     * The number of subexpressions that are no longer shared with
+     * new readers because the cache was full.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getSubexpressionEvictionCount() {
+        return subexpressionEvictionCount;
+    }
+
+    /**
+     * Removes all the parsed formulas and subexpressions. The subexpressions
+     * keep working for their current readers.
+     */
+    public synchronized void clear() {
+        formulas.clear();
+        subexpressions.clear();
+    }
+
+    /**
+     * Returns the parse tree of the formula, or null if the formula
+     * is not cached.
+     *
+     * @param formula the formula text
+     * @return the parse tree or null
+     */
+    synchronized FormulaAst lookupFormula(String formula) {
+        if (maxSize == 0) {
+            return null;
+        }
+        FormulaAst ast = formulas.get(normalize(formula));
+        if (ast == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return ast;
+    }
+
+    /**
+     * Caches the parse tree of the formula.
+     *
+     * @param formula the formula text
+     * @param ast the parse tree; if null, the formula is not cached
+     */
+    synchronized void putFormula(String formula, FormulaAst ast) {
+        if (maxSize == 0 || ast == null) {
+            return;
+        }
+        formulas.put(normalize(formula), ast);
+        evict();
+    }
+
+    private void evict() {
+        Iterator<FormulaAst> iter = formulas.values().iterator();
+        while (formulas.size() > maxSize && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Returns the subexpression for the parse tree and the data source,
+     * creating it if needed, and adds a reader to it.
+     *
+     * @param dataSource the data source of the reader
+     * @param ast the parse tree of a pure function of channels
+     * @return the subexpression, or null if sharing is disabled
+     */
+    synchronized SharedSubexpression acquireSubexpression(DataSource dataSource, FormulaAst ast) {
+        if (maxSize == 0) {
+            return null;
+        }
+        SubexpressionKey key = new SubexpressionKey(dataSource, ast.getKey());
+        SharedSubexpression subexpression = subexpressions.get(key);
+        if (subexpression == null) {
+            subexpressionMissCount++;
+            subexpression = new SharedSubexpression(dataSource, ast);
+            subexpressions.put(key, subexpression);
+            evictSubexpressions();
+        } else {
+            subexpressionHitCount++;
+        }
+        subexpression.referenceCount++;
+        return subexpression;
+    }
+
+    /**
+     * Adds a reader to a subexpression that was already acquired.
+     *
+     * @param subexpression the subexpression
+     */
+    synchronized void retainSubexpression(SharedSubexpression subexpression) {
+        subexpression.referenceCount++;
+    }
+
+    /**
+     * Removes a reader from the subexpression. The subexpression is
+     * no longer shared once it has no readers.
+     *
+     * @param subexpression the subexpression
+     */
+    synchronized void releaseSubexpression(SharedSubexpression subexpression) {
+        subexpression.referenceCount--;
+        if (subexpression.referenceCount == 0) {
+            SubexpressionKey key = new SubexpressionKey(subexpression.getDataSource(), subexpression.getAst().getKey());
+            if (subexpressions.get(key) == subexpression) {
+                subexpressions.remove(key);
+            }
+        }
+    }
+
+    private void evictSubexpressions() {
+        Iterator<SharedSubexpression> iter = subexpressions.values().iterator();
+        while (subexpressions.size() > maxSize && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            subexpressionEvictionCount++;
+        }
+    }
+
+    private static class SubexpressionKey {
+
+        private final DataSource dataSource;
+        private final String astKey;
+
+        public SubexpressionKey(DataSource dataSource, String astKey) {
+            this.dataSource = dataSource;
+            this.astKey = astKey;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(dataSource) + astKey.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof SubexpressionKey)) {
+                return false;
+            }
+            SubexpressionKey other = (SubexpressionKey) obj;
+            return dataSource == other.dataSource && Objects.equals(astKey, other.astKey);
+        }
+    }
+
+    /**
+     * Removes the whitespace outside of quoted text, unless it
+     * separates two tokens that would otherwise be read as one.
+     *
+     * @param formula the formula text
+     * @return the formula without whitespace
+     */
+    static String normalize(String formula) {
+        StringBuilder sb = new StringBuilder(formula.length());
+        char quote = 0;
+        boolean whitespace = false;
+        for (int i = 0; i < formula.length(); i++) {
+            char ch = formula.charAt(i);
+            if (quote != 0) {
+                sb.append(ch);
+                if (ch == '\\' && i + 1 < formula.length()) {
+                    i++;
+                    sb.append(formula.charAt(i));
+                } else if (ch == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(ch)) {
+                whitespace = true;
+            } else {
+                if (whitespace && sb.length() > 0 && sameTokenClass(sb.charAt(sb.length() - 1), ch)) {
+                    sb.append(' ');
+                }
+                whitespace = false;
+                if (ch == '\'' || ch == '"') {
+                    quote = ch;
+                }
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static final String OPERATOR_CHARS = "+-*/%^<>=!&|?:";
+
+    private static boolean sameTokenClass(char ch1, char ch2) {
+        if (isWordChar(ch1) && isWordChar(ch2)) {
+            return true;
+        }
+        return OPERATOR_CHARS.indexOf(ch1) != -1 && OPERATOR_CHARS.indexOf(ch2) != -1;
+    }
+
+    private static boolean isWordChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '.';
+    }
+}
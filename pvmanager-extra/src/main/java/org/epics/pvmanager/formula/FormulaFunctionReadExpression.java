@@ -15,8 +15,24 @@ import org.epics.pvmanager.expression.DesiredRateExpressionList;
  */
 class FormulaFunctionReadExpression extends DesiredRateExpressionImpl<Object> {
 
+    private final FormulaAst ast;
+
     public FormulaFunctionReadExpression(DesiredRateExpressionList<?> childExpressions, FormulaReadFunction function, String defaultName) {
+        this(childExpressions, function, defaultName, null);
+    }
+
+    FormulaFunctionReadExpression(DesiredRateExpressionList<?> childExpressions, FormulaReadFunction function, String defaultName, FormulaAst ast) {
         super(childExpressions, function, defaultName);
+        this.ast = ast;
+    }
+
+    /**
+     * The parse tree of the function application.
+     * 
+     * @return the parse tree; null if not created by the parser
+     */
+    FormulaAst getAst() {
+        return ast;
     }
 
     @Override
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.formula;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.epics.pvmanager.PVReaderDirector;
+import org.epics.pvmanager.ReadRecipeBuilder;
+import org.epics.pvmanager.expression.DesiredRateExpression;
+import org.epics.pvmanager.expression.DesiredRateExpressionImpl;
+import org.epics.pvmanager.expression.DesiredRateExpressionList;
+import org.epics.pvmanager.expression.DesiredRateExpressionListImpl;
+
+/**
+ * An expression for a tree of numeric operations evaluated by a single
+ * {@link FusedFormulaReadFunction}. Arguments that are themselves fused
+ * expressions are merged in the tree, so that only the outermost
+ * expression is evaluated.
+ *
+ * @author carcassi
+ */
+class FusedFormulaReadExpression extends DesiredRateExpressionImpl<Object> {
+    
+    private final FusedFormulaReadFunction.Operation operation;
+    private final DesiredRateExpressionList<Object> leafExpressions;
+    private final FormulaAst ast;
+
+    private FusedFormulaReadExpression(FusedFormulaReadFunction.Operation operation, DesiredRateExpressionList<Object> leafExpressions, String defaultName, FormulaAst ast) {
+        super(leafExpressions, new FusedFormulaReadFunction(operation), defaultName);
+        this.operation = operation;
+        this.leafExpressions = leafExpressions;
+        this.ast = ast;
+    }
+    
+    static FusedFormulaReadExpression of(FormulaFunction kernel, Collection<FormulaFunction> formulaMatches,
+            DesiredRateExpressionList<?> args, String defaultName, FormulaAst ast) {
+        List<FusedFormulaReadFunction.Node> arguments = new ArrayList<>(args.getDesiredRateExpressions().size());
+        DesiredRateExpressionList<Object> leafExpressions = new DesiredRateExpressionListImpl<>();
+        for (DesiredRateExpression<?> arg : args.getDesiredRateExpressions()) {
+            if (arg instanceof FusedFormulaReadExpression) {
+                FusedFormulaReadExpression fused = (FusedFormulaReadExpression) arg;
+                arguments.add(fused.operation);
+                leafExpressions.and(fused.leafExpressions);
+            } else {
+                arguments.add(new FusedFormulaReadFunction.Leaf(arg.getFunction()));
+                leafExpressions.and(arg);
+            }
+        }
+        return new FusedFormulaReadExpression(new FusedFormulaReadFunction.Operation(kernel, formulaMatches, arguments),
+                leafExpressions, defaultName, ast);
+    }
+
+    /**
+     * The parse tree of the operation, before fusing.
+     * 
+     * @return the parse tree; null if not created by the parser
+     */
+    FormulaAst getAst() {
+        return ast;
+    }
+
+    @Override
+    public void fillReadRecipe(PVReaderDirector director, ReadRecipeBuilder builder) {
+        super.fillReadRecipe(director, builder);
+        ((FusedFormulaReadFunction) getFunction()).setDirector(director);
+    }
+    
+}
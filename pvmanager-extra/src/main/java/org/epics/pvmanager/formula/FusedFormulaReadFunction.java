@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import org.epics.pvmanager.PVReaderDirector;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Time;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VType;
+import org.epics.vtype.ValueFactory;
+import org.epics.vtype.ValueUtil;
+
+/**
+ * Evaluates a whole tree of scalar numeric operations (e.g. {@code ('x' + 2) * 'y'})
+ * as a single function.
+ * <p>
+ * When all the leaves of the tree are {@link VNumber}s, the tree is evaluated
+ * on primitive doubles and only the final value is wrapped, with the highest
+ * alarm and the latest time of the leaves. This gives the same result as
+ * evaluating each operation on its own, without creating the intermediate
+ * values. For any other input the evaluation falls back to a regular
+ * {@link FormulaReadFunction} for each operation, which receive the leaf
+ * values already read.
+ *
+ * @author carcassi
+ */
+class FusedFormulaReadFunction implements ReadFunction<Object> {
+
+    /**
+     * A node of a fused operation tree.
+     */
+    static abstract class Node {
+
+        abstract double evaluate(double[] leaves);
+
+        abstract ReadFunction<?> createFallback(FusedFormulaReadFunction function);
+
+        abstract Node bind(List<Leaf> leaves);
+    }
+
+    /**
+     * An argument of the tree that cannot be fused: it is read as is.
+     */
+    static class Leaf extends Node {
+
+        final ReadFunction<?> function;
+        final int index;
+
+        Leaf(ReadFunction<?> function) {
+            this(function, -1);
+        }
+
+        private Leaf(ReadFunction<?> function, int index) {
+            this.function = function;
+            this.index = index;
+        }
+
+        @Override
+        double evaluate(double[] leaves) {
+            return leaves[index];
+        }
+
+        @Override
+        ReadFunction<?> createFallback(final FusedFormulaReadFunction function) {
+            return new ReadFunction<Object>() {
+
+                @Override
+                public Object readValue() {
+                    return function.leafValues[index];
+                }
+            };
+        }
+
+        @Override
+        Node bind(List<Leaf> leaves) {
+            Leaf leaf = new Leaf(function, leaves.size());
+            leaves.add(leaf);
+            return leaf;
+        }
+    }
+
+    /**
+     * A numeric operation, with all the functions that were registered
+     * with the same name and number of arguments.
+     */
+    static class Operation extends Node {
+
+        final FormulaFunction kernel;
+        final Collection<FormulaFunction> formulaMatches;
+        final List<Node> arguments;
+
+        Operation(FormulaFunction kernel, Collection<FormulaFunction> formulaMatches, List<Node> arguments) {
+            this.kernel = kernel;
+            this.formulaMatches = formulaMatches;
+            this.arguments = arguments;
+        }
+
+        @Override
+        double evaluate(double[] leaves) {
+            if (kernel instanceof OneArgNumericFormulaFunction) {
+                return ((OneArgNumericFormulaFunction) kernel).calculate(arguments.get(0).evaluate(leaves));
+            } else {
+                return ((TwoArgNumericFormulaFunction) kernel).calculate(arguments.get(0).evaluate(leaves),
+                        arguments.get(1).evaluate(leaves));
+            }
+        }
+
+        @Override
+        ReadFunction<?> createFallback(FusedFormulaReadFunction function) {
+            List<ReadFunction<?>> argumentFunctions = new ArrayList<>(arguments.size());
+            for (Node node : arguments) {
+                argumentFunctions.add(node.createFallback(function));
+            }
+            FormulaReadFunction fallback = new FormulaReadFunction(argumentFunctions, formulaMatches);
+            function.fallbacks.add(fallback);
+            return fallback;
+        }
+
+        @Override
+        Node bind(List<Leaf> leaves) {
+            List<Node> boundArguments = new ArrayList<>(arguments.size());
+            for (Node node : arguments) {
+                boundArguments.add(node.bind(leaves));
+            }
+            return new Operation(kernel, formulaMatches, boundArguments);
+        }
+    }
+
+    /**
+     * Returns the function that would be matched for every set of numeric
+     * scalar arguments, if it is one of the numeric operations that can be fused.
+     * Returns null if no function or more than one function could match
+     * numeric arguments, as the choice then depends on the actual values.
+     *
+     * @param formulaMatches the functions with the same name and number of arguments
+     * @return the numeric operation or null
+     */
+    static FormulaFunction numericKernelOf(Collection<FormulaFunction> formulaMatches) {
+        FormulaFunction kernel = null;
+        for (FormulaFunction function : formulaMatches) {
+            if (mayMatchNumbers(function)) {
+                if (kernel != null) {
+                    return null;
+                }
+                kernel = function;
+            }
+        }
+
+        if (kernel instanceof OneArgNumericFormulaFunction || kernel instanceof TwoArgNumericFormulaFunction) {
+            return kernel;
+        }
+        return null;
+    }
+
+    private static boolean mayMatchNumbers(FormulaFunction function) {
+        for (Class<?> type : function.getArgumentTypes()) {
+            boolean mayMatch = type.isAssignableFrom(VNumber.class) ||
+                    VNumber.class.isAssignableFrom(type) ||
+                    (type.isInterface() && !VType.class.isAssignableFrom(type));
+            if (!mayMatch) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final Node root;
+    private final List<ReadFunction<?>> leafFunctions;
+    private final Object[] leafValues;
+    private final List<Object> leafValueList;
+    private final double[] leafNumbers;
+    private final List<FormulaReadFunction> fallbacks = new ArrayList<>();
+    private final ReadFunction<?> fallback;
+    private boolean lastNumeric;
+    private Object lastValue;
+
+    FusedFormulaReadFunction(Operation operation) {
+        List<Leaf> leaves = new ArrayList<>();
+        this.root = operation.bind(leaves);
+        this.leafFunctions = new ArrayList<>(leaves.size());
+        for (Leaf leaf : leaves) {
+            leafFunctions.add(leaf.function);
+        }
+        this.leafValues = new Object[leaves.size()];
+        this.leafValueList = Arrays.asList(leafValues);
+        this.leafNumbers = new double[leaves.size()];
+        this.fallback = this.root.createFallback(this);
+    }
+
+    void setDirector(PVReaderDirector<?> director) {
+        for (FormulaReadFunction formulaReadFunction : fallbacks) {
+            formulaReadFunction.setDirectory(director);
+        }
+    }
+
+    @Override
+    public Object readValue() {
+        boolean changed = false;
+        boolean numeric = true;
+        for (int i = 0; i < leafValues.length; i++) {
+            Object value = leafFunctions.get(i).readValue();
+            if (!Objects.equals(value, leafValues[i])) {
+                changed = true;
+            }
+            leafValues[i] = value;
+            if (value instanceof VNumber) {
+                leafNumbers[i] = ((VNumber) value).getValue().doubleValue();
+            } else {
+                numeric = false;
+            }
+        }
+
+        if (!numeric) {
+            lastNumeric = false;
+            lastValue = fallback.readValue();
+            return lastValue;
+        }
+
+        if (!changed && lastNumeric) {
+            return lastValue;
+        }
+
+        Alarm alarm = ValueUtil.highestSeverityOf(leafValueList, false);
+        Time time = ValueUtil.latestTimeOf(leafValueList);
+        if (time == null) {
+            time = ValueFactory.timeNow();
+        }
+        lastNumeric = true;
+        lastValue = ValueFactory.newVDouble(root.evaluate(leafNumbers), alarm, time, ValueFactory.displayNone());
+        return lastValue;
+    }
+
+}
@@ -4,6 +4,7 @@
  */
 package org.epics.pvmanager.formula;
 
+import java.util.Collections;
 import java.util.List;
 import org.epics.pvmanager.ReadRecipe;
 import org.epics.pvmanager.ReadRecipeBuilder;
@@ -11,6 +12,7 @@ import org.epics.pvmanager.ReadFunction;
 import org.epics.pvmanager.expression.DesiredRateExpression;
 import org.epics.pvmanager.expression.DesiredRateExpressionImpl;
 import org.epics.pvmanager.expression.DesiredRateExpressionList;
+import org.epics.pvmanager.expression.DesiredRateExpressionListImpl;
 import static org.epics.pvmanager.ExpressionLanguage.*;
 import org.epics.pvmanager.PVReaderDirector;
 
@@ -55,12 +57,14 @@ class LastOfChannelExpression<T> implements DesiredRateExpression<T> {
 
     @Override
     public DesiredRateExpressionList<T> and(DesiredRateExpressionList<? extends T> expressions) {
-        return expression.and(expressions);
+        return new DesiredRateExpressionListImpl<T>().and(this).and(expressions);
     }
 
     @Override
     public List<DesiredRateExpression<T>> getDesiredRateExpressions() {
-        return expression.getDesiredRateExpressions();
+        // The channel expression itself, so that functions can recognize
+        // their channel arguments
+        return Collections.<DesiredRateExpression<T>>singletonList(this);
     }
     
     public <N> LastOfChannelExpression<N> cast(Class<N> clazz) {
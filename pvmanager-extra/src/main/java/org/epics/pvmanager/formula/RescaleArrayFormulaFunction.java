@@ -11,7 +11,6 @@ import java.util.Arrays;
 import java.util.List;
 import org.epics.pvmanager.util.NullUtils;
 
-import org.epics.util.array.ListMath;
 import org.epics.vtype.VNumber;
 import org.epics.vtype.VNumberArray;
 import org.epics.vtype.ValueUtil;
@@ -69,7 +68,7 @@ class RescaleArrayFormulaFunction implements FormulaFunction {
         VNumber arg3 = (VNumber) args.get(2);
 
         return newVNumberArray(
-		ListMath.rescale(arg1.getData(), arg2.getValue().doubleValue(), arg3.getValue().doubleValue()),
+		ArrayMath.rescale(arg1.getData(), arg2.getValue().doubleValue(), arg3.getValue().doubleValue()),
                 ValueUtil.highestSeverityOf(args, false),
 		ValueUtil.latestValidTimeOrNowOf(args),
                 displayNone());
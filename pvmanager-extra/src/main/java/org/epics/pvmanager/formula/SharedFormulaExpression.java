@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.formula;
+
+import org.epics.pvmanager.DataSource;
+import org.epics.pvmanager.PVReaderDirector;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.pvmanager.ReadRecipeBuilder;
+import org.epics.pvmanager.expression.DesiredRateExpressionImpl;
+
+/**
+ * A pure function of channels that is calculated once for all the readers
+ * that contain it.
+ * <p>
+ * The expression is created with its own private expression. When a reader
+ * is connected, the calculation moves to the {@link SharedSubexpression}
+ * for the same function and data source, which is released when the reader
+ * is closed. Without a data source, or if sharing is disabled, the
+ * private expression is used.
+ *
+ * @author carcassi
+ */
+class SharedFormulaExpression extends DesiredRateExpressionImpl<Object> {
+
+    private final FormulaAst ast;
+    private final FormulaFunctionReadExpression privateExpression;
+    private volatile SharedSubexpression subexpression;
+
+    SharedFormulaExpression(FormulaFunctionReadExpression privateExpression) {
+        super(privateExpression, new SwitchableReadFunction(privateExpression.getFunction()), privateExpression.getName());
+        this.ast = privateExpression.getAst();
+        this.privateExpression = privateExpression;
+    }
+
+    /**
+     * Whether the given function application can be shared: all the functions
+     * are pure, it reads at least one channel and sharing is enabled.
+     *
+     * @param expression a function application created by the parser
+     * @return true if it can be shared
+     */
+    static boolean isShareable(FormulaFunctionReadExpression expression) {
+        if (expression.getAst() == null || !expression.getAst().hasChannels()
+                || FormulaCache.getDefault().getMaxSize() == 0) {
+            return false;
+        }
+        for (FormulaFunction formulaFunction : ((FormulaReadFunction) expression.getFunction()).formulaMatches) {
+            if (!formulaFunction.isPure()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The parse tree of the function application.
+     *
+     * @return the parse tree
+     */
+    FormulaAst getAst() {
+        return ast;
+    }
+
+    @Override
+    public void fillReadRecipe(PVReaderDirector director, ReadRecipeBuilder builder) {
+        DataSource dataSource = director == null ? null : director.getDataSource();
+        final SharedSubexpression shared;
+        if (dataSource == null) {
+            shared = null;
+        } else if (subexpression == null) {
+            shared = FormulaCache.getDefault().acquireSubexpression(dataSource, ast);
+        } else if (subexpression.getDataSource() == dataSource) {
+            // Expressions within a shared subexpression are filled once
+            // per reader of that subexpression: keep using the same one
+            shared = subexpression;
+            FormulaCache.getDefault().retainSubexpression(shared);
+        } else {
+            shared = null;
+        }
+
+        if (shared == null) {
+            privateExpression.fillReadRecipe(director, builder);
+            return;
+        }
+
+        subexpression = shared;
+        ((SwitchableReadFunction) getFunction()).function = shared.getFunction();
+        shared.fillReadRecipe(director, builder);
+        director.addCloseListener(new Runnable() {
+
+            @Override
+            public void run() {
+                FormulaCache.getDefault().releaseSubexpression(shared);
+            }
+        });
+    }
+
+    /**
+     * Reads from the private expression until the shared
+     * subexpression is used.
+     */
+    private static class SwitchableReadFunction implements ReadFunction<Object> {
+
+        private volatile ReadFunction<?> function;
+
+        public SwitchableReadFunction(ReadFunction<?> function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object readValue() {
+            return function.readValue();
+        }
+
+    }
+
+}
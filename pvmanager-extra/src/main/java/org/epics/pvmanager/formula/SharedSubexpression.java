@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.formula;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.epics.pvmanager.DataSource;
+import org.epics.pvmanager.PVReaderDirector;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.pvmanager.ReadRecipeBuilder;
+import org.epics.pvmanager.ValueCache;
+import org.epics.pvmanager.expression.DesiredRateExpression;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VTypeValueEquals;
+
+/**
+ * The calculation of a pure function of channels, shared by all the readers
+ * on the same data source that contain it.
+ * <p>
+ * Each reader connects the channels of the subexpression with its own
+ * subscriptions, so that connection and errors are still reported to each
+ * reader, and closing a reader does not affect the others. All the
+ * subscriptions write in the same caches: since they all receive the same
+ * samples, a sample already written by one is skipped, and the function
+ * is calculated only once for each new sample.
+ * <p>
+ * The number of readers is counted by the {@link FormulaCache}.
+ *
+ * @author carcassi
+ */
+class SharedSubexpression {
+
+    private final DataSource dataSource;
+    private final FormulaAst ast;
+    private final DesiredRateExpression<?> expression;
+    private final ReadFunction<Object> function;
+    private final Map<String, Object> lastValues = new HashMap<>();
+
+    // Guarded by the FormulaCache
+    int referenceCount;
+
+    SharedSubexpression(DataSource dataSource, FormulaAst ast) {
+        this.dataSource = dataSource;
+        this.ast = ast;
+        this.expression = ast.toUnsharedExpression();
+        this.function = new ReadFunction<Object>() {
+
+            @Override
+            public Object readValue() {
+                // Readers scan on different threads
+                synchronized (SharedSubexpression.this) {
+                    return expression.getFunction().readValue();
+                }
+            }
+        };
+    }
+
+    DataSource getDataSource() {
+        return dataSource;
+    }
+
+    FormulaAst getAst() {
+        return ast;
+    }
+
+    /**
+     * The function that calculates the value for all the readers.
+     *
+     * @return the shared function
+     */
+    ReadFunction<Object> getFunction() {
+        return function;
+    }
+
+    /**
+     * Adds the channels of the subexpression to the recipe of a reader.
+     *
+     * @param director the director of the reader
+     * @param builder the recipe of the reader
+     */
+    void fillReadRecipe(PVReaderDirector<?> director, final ReadRecipeBuilder builder) {
+        expression.fillReadRecipe(director, new ReadRecipeBuilder() {
+            
+            // The same channel may be read by more than one cache:
+            // the caches are added in the same order for every reader
+            private final Map<String, Integer> occurrences = new HashMap<>();
+
+            @Override
+            public ReadRecipeBuilder addChannel(String channelName, ValueCache<?> cache) {
+                Integer occurrence = occurrences.get(channelName);
+                occurrence = occurrence == null ? 0 : occurrence + 1;
+                occurrences.put(channelName, occurrence);
+                builder.addChannel(channelName, skipRepeated(channelName + "#" + occurrence, cache));
+                return this;
+            }
+        });
+    }
+
+    private <T> ValueCache<T> skipRepeated(final String cacheKey, final ValueCache<T> cache) {
+        return new ValueCache<T>() {
+
+            @Override
+            public Class<T> getType() {
+                return cache.getType();
+            }
+
+            @Override
+            public T readValue() {
+                return cache.readValue();
+            }
+
+            @Override
+            public void writeValue(T newValue) {
+                synchronized (lastValues) {
+                    if (sameSample(lastValues.get(cacheKey), newValue)) {
+                        return;
+                    }
+                    lastValues.put(cacheKey, newValue);
+                    cache.writeValue(newValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * Whether the two values are the same sample from a channel. Only
+     * values with a timestamp can be recognized.
+     *
+     * @param oldValue the value already written
+     * @param newValue the new value
+     * @return true if the new value does not need to be written
+     */
+    static boolean sameSample(Object oldValue, Object newValue) {
+        if (!(oldValue instanceof Time) || !(newValue instanceof Time)
+                || !VTypeValueEquals.typeEquals(oldValue, newValue)
+                || !VTypeValueEquals.timeEquals((Time) oldValue, (Time) newValue)) {
+            return false;
+        }
+        if (oldValue instanceof Alarm && !VTypeValueEquals.alarmEquals((Alarm) oldValue, (Alarm) newValue)) {
+            return false;
+        }
+        if (oldValue instanceof Display && !displayEquals((Display) oldValue, (Display) newValue)) {
+            return false;
+        }
+        return VTypeValueEquals.valueEquals(oldValue, newValue);
+    }
+
+    private static boolean displayEquals(Display display1, Display display2) {
+        return Objects.equals(display1.getUnits(), display2.getUnits()) &&
+                Objects.equals(display1.getLowerDisplayLimit(), display2.getLowerDisplayLimit()) &&
+                Objects.equals(display1.getUpperDisplayLimit(), display2.getUpperDisplayLimit()) &&
+                Objects.equals(display1.getLowerAlarmLimit(), display2.getLowerAlarmLimit()) &&
+                Objects.equals(display1.getUpperAlarmLimit(), display2.getUpperAlarmLimit()) &&
+                Objects.equals(display1.getLowerWarningLimit(), display2.getLowerWarningLimit()) &&
+                Objects.equals(display1.getUpperWarningLimit(), display2.getUpperWarningLimit()) &&
+                Objects.equals(display1.getLowerCtrlLimit(), display2.getLowerCtrlLimit()) &&
+                Objects.equals(display1.getUpperCtrlLimit(), display2.getUpperCtrlLimit());
+    }
+
+}
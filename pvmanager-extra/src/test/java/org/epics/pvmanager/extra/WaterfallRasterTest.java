@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.extra;
+
+import java.awt.Color;
+import org.epics.util.array.ArrayDouble;
+import org.epics.util.text.NumberFormats;
+import org.epics.vtype.Display;
+import org.epics.vtype.VImage;
+import org.epics.vtype.ValueFactory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class WaterfallRasterTest {
+
+    public WaterfallRasterTest() {
+    }
+
+    private static final Display display = ValueFactory.newDisplay(0.0, 0.0, 0.0, "", NumberFormats.toStringFormat(),
+            255.0, 255.0, 255.0, 0.0, 255.0);
+    private static final ColorScheme grayScale = ColorScheme.singleRangeGradient(Color.BLACK, Color.WHITE);
+
+    private static int pixel(VImage image, int x, int y) {
+        return image.getData()[3 * (y * image.getWidth() + x)] & 0xFF;
+    }
+
+    private static final ColorLookupTable colors = ColorLookupTable.of(grayScale, display, null);
+
+    private static int gray(double value) {
+        return colors.color(value) & 0xFF;
+    }
+
+    private static WaterfallRaster threeRows() {
+        WaterfallRaster raster = new WaterfallRaster(2, 3);
+        raster.drawRow(2, new ArrayDouble(10, 10), colors);
+        raster.scroll(1);
+        raster.drawRow(0, new ArrayDouble(20, 20), colors);
+        raster.scroll(1);
+        raster.drawRow(0, new ArrayDouble(30), colors);
+        return raster;
+    }
+
+    @Test
+    public void toVImage1() {
+        VImage image = threeRows().toVImage(true);
+        assertThat(image.getWidth(), equalTo(2));
+        assertThat(image.getHeight(), equalTo(3));
+        assertThat(pixel(image, 0, 0), equalTo(gray(30)));
+        assertThat(pixel(image, 1, 0), equalTo(0));
+        assertThat(pixel(image, 0, 1), equalTo(gray(20)));
+        assertThat(pixel(image, 0, 2), equalTo(0));
+    }
+
+    @Test
+    public void toVImage2() {
+        VImage image = threeRows().toVImage(false);
+        assertThat(pixel(image, 0, 2), equalTo(gray(30)));
+        assertThat(pixel(image, 0, 1), equalTo(gray(20)));
+        assertThat(pixel(image, 0, 0), equalTo(0));
+    }
+
+    @Test
+    public void toVImage3() {
+        // The previous image is not modified by the next one
+        WaterfallRaster raster = threeRows();
+        VImage image1 = raster.toVImage(true);
+        raster.scroll(1);
+        VImage image2 = raster.toVImage(true);
+        assertThat(image2, not(sameInstance(image1)));
+        assertThat(pixel(image1, 0, 0), equalTo(gray(30)));
+        assertThat(pixel(image2, 0, 0), equalTo(0));
+        assertThat(pixel(image2, 0, 1), equalTo(gray(30)));
+        assertThat(pixel(image2, 0, 2), equalTo(gray(20)));
+    }
+
+    @Test
+    public void copyPreviousRow1() {
+        WaterfallRaster raster = threeRows();
+        raster.scroll(1);
+        raster.copyPreviousRow(0);
+        VImage image = raster.toVImage(true);
+        assertThat(pixel(image, 0, 0), equalTo(gray(30)));
+        assertThat(pixel(image, 0, 1), equalTo(gray(30)));
+        assertThat(pixel(image, 0, 2), equalTo(gray(20)));
+    }
+
+    @Test
+    public void copyFrom1() {
+        WaterfallRaster raster = new WaterfallRaster(4, 3);
+        raster.copyFrom(threeRows());
+        VImage image = raster.toVImage(true);
+        assertThat(pixel(image, 0, 0), equalTo(gray(30)));
+        assertThat(pixel(image, 1, 1), equalTo(gray(20)));
+        assertThat(pixel(image, 3, 1), equalTo(0));
+    }
+
+    @Test
+    public void fill1() {
+        WaterfallRaster raster = threeRows();
+        raster.fill(0x102030);
+        VImage image = raster.toVImage(true);
+        assertThat(image.getData()[9], equalTo((byte) 0x30));
+        assertThat(image.getData()[10], equalTo((byte) 0x20));
+        assertThat(image.getData()[11], equalTo((byte) 0x10));
+    }
+
+    @Test
+    public void colorLookupTable1() {
+        for (double value = -10; value < 300; value += 0.7) {
+            int expected = grayScale.color(value, display) & 0xFF;
+            assertThat(Math.abs((colors.color(value) & 0xFF) - expected), lessThanOrEqualTo(1));
+        }
+        assertThat(colors.color(Double.NaN), equalTo(Color.BLACK.getRGB()));
+        assertThat(ColorLookupTable.of(grayScale, display, colors), sameInstance(colors));
+    }
+
+}
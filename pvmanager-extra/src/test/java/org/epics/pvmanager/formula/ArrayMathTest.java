@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.formula;
+
+import org.epics.util.array.ArrayDouble;
+import org.epics.util.array.ArrayFloat;
+import org.epics.util.array.ArrayInt;
+import org.epics.util.array.ListDouble;
+import org.epics.util.array.ListNumber;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class ArrayMathTest {
+
+    @Test
+    public void add1() {
+        ListDouble result = ArrayMath.add(new ArrayDouble(1, 2, 3), new ArrayDouble(4, 5, 6));
+        assertThat(result, equalTo((ListDouble) new ArrayDouble(5, 7, 9)));
+    }
+
+    @Test
+    public void add2() {
+        // Arguments of different types
+        ListDouble result = ArrayMath.add(new ArrayFloat(1, 2, 3), new ArrayInt(4, 5, 6));
+        assertThat(result, equalTo((ListDouble) new ArrayDouble(5, 7, 9)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add3() {
+        ArrayMath.add(new ArrayDouble(1, 2, 3), new ArrayDouble(4, 5));
+    }
+
+    @Test
+    public void subtractMultiplyDivide() {
+        ListNumber arg1 = new ArrayInt(6, 8, 10);
+        ListNumber arg2 = new ArrayDouble(2, 4, 5);
+        assertThat(ArrayMath.subtract(arg1, arg2), equalTo((ListDouble) new ArrayDouble(4, 4, 5)));
+        assertThat(ArrayMath.multiply(arg1, arg2), equalTo((ListDouble) new ArrayDouble(12, 32, 50)));
+        assertThat(ArrayMath.divide(arg1, arg2), equalTo((ListDouble) new ArrayDouble(3, 2, 2)));
+    }
+
+    @Test
+    public void rescale() {
+        assertThat(ArrayMath.rescale(new ArrayInt(1, 2, 3), 2.0, 1.0), equalTo((ListDouble) new ArrayDouble(3, 5, 7)));
+        assertThat(ArrayMath.inverseRescale(new ArrayFloat(1, 2, 4), 4.0, 1.0), equalTo((ListDouble) new ArrayDouble(5, 3, 2)));
+        assertThat(ArrayMath.pow(new ArrayDouble(1, 2, 3), 2.0), equalTo((ListDouble) new ArrayDouble(1, 4, 9)));
+        assertThat(ArrayMath.pow(2.0, new ArrayInt(1, 2, 3)), equalTo((ListDouble) new ArrayDouble(2, 4, 8)));
+    }
+
+    @Test
+    public void parallel() {
+        // Large arrays are split across threads
+        int size = ArrayMath.PARALLEL_THRESHOLD * 3 + 7;
+        int[] values1 = new int[size];
+        float[] values2 = new float[size];
+        for (int i = 0; i < size; i++) {
+            values1[i] = i;
+            values2[i] = 2 * i;
+        }
+        ListDouble result = ArrayMath.add(new ArrayInt(values1), new ArrayFloat(values2));
+        assertThat(result.size(), equalTo(size));
+        for (int i = 0; i < size; i++) {
+            if (result.getDouble(i) != 3.0 * i) {
+                fail("Wrong value at " + i + ": " + result.getDouble(i));
+            }
+        }
+    }
+}
@@ -4,9 +4,12 @@
  */
 package org.epics.pvmanager.formula;
 
+import java.util.concurrent.Callable;
 import org.antlr.runtime.RecognitionException;
+import org.epics.pvmanager.ChannelReadRecipe;
 import org.epics.pvmanager.DataSource;
 import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.PVReader;
 import org.epics.pvmanager.PVReaderListener;
 import org.epics.pvmanager.PVWriter;
 import org.epics.pvmanager.ReadExpressionTester;
@@ -21,8 +24,12 @@ import static org.epics.pvmanager.formula.ExpressionLanguage.*;
 import org.epics.pvmanager.expression.ChannelExpression;
 import org.epics.pvmanager.test.CountDownPVWriterListener;
 import org.epics.pvmanager.test.MockDataSource;
+import org.epics.pvmanager.test.ThreadTestingUtil;
+import org.epics.pvmanager.vtype.DataTypeSupport;
 import org.epics.util.array.*;
 import org.epics.util.time.TimeDuration;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
 import org.epics.vtype.VBoolean;
 import org.epics.vtype.VInt;
 import org.epics.vtype.VNumberArray;
@@ -581,6 +588,185 @@ public class ExpressionLanguageTest extends BaseTestForFormula {
         VInt result = (VInt) exp.getFunction().readValue();
         assertThat(result.getValue(), equalTo(3));
     }
+
+    @Test
+    public void fusedFormula1() throws RecognitionException {
+        // Nested numeric operations: alarm and time come from the arguments
+        ReadExpressionTester exp = new ReadExpressionTester(formula("=('x' + 1) * -'y'"));
+        assertThat(exp.getExpression().getName(), equalTo("((x + 1) * -y)"));
+        Timestamp time1 = Timestamp.of(1000, 0);
+        Timestamp time2 = Timestamp.of(2000, 0);
+        exp.writeValue("x", ValueFactory.newVDouble(3.0, ValueFactory.newAlarm(AlarmSeverity.MINOR, "LOW"),
+                ValueFactory.newTime(time2), ValueFactory.displayNone()));
+        exp.writeValue("y", ValueFactory.newVDouble(2.0, ValueFactory.newAlarm(AlarmSeverity.MAJOR, "HIHI"),
+                ValueFactory.newTime(time1), ValueFactory.displayNone()));
+        VDouble result = (VDouble) exp.getFunction().readValue();
+        assertThat(result.getValue(), equalTo(-8.0));
+        assertThat(result.getAlarmSeverity(), equalTo(AlarmSeverity.MAJOR));
+        assertThat(result.getAlarmName(), equalTo("HIHI"));
+        assertThat(result.getTimestamp(), equalTo(time2));
+        
+        // Same arguments: same result
+        assertThat(exp.getFunction().readValue(), sameInstance((Object) result));
+        
+        exp.writeValue("y", ValueFactory.newVDouble(1.0));
+        result = (VDouble) exp.getFunction().readValue();
+        assertThat(result.getValue(), equalTo(-4.0));
+        assertThat(result.getAlarmSeverity(), equalTo(AlarmSeverity.MINOR));
+    }
+
+    @Test
+    public void fusedFormula2() throws RecognitionException {
+        // Non numeric arguments are evaluated by the regular functions
+        ReadExpressionTester exp = new ReadExpressionTester(formula("='x' * 2 * 3"));
+        assertThat(exp.getExpression().getName(), equalTo("((x * 2) * 3)"));
+        exp.writeValue("x", ValueFactory.newVDoubleArray(new ArrayDouble(1, 2, 3), ValueFactory.alarmNone(),
+                ValueFactory.timeNow(), ValueFactory.displayNone()));
+        VNumberArray result = (VNumberArray) exp.getFunction().readValue();
+        assertThat(result.getData(), equalTo((ListNumber) new ArrayDouble(6, 12, 18)));
+        
+        exp.writeValue("x", ValueFactory.newVDouble(2.0));
+        VDouble result2 = (VDouble) exp.getFunction().readValue();
+        assertThat(result2.getValue(), equalTo(12.0));
+    }
+
+
+    @Test
+    public void cachedFormula1() throws RecognitionException {
+        // The same formula, with different whitespace, is parsed once,
+        // but each expression is evaluated separately
+        int maxSize = FormulaCache.getDefault().getMaxSize();
+        try {
+            FormulaCache.getDefault().setMaxSize(10);
+            long hits = FormulaCache.getDefault().getHitCount();
+            ReadExpressionTester exp1 = new ReadExpressionTester(formula("=('x' + 1) * 2"));
+            ReadExpressionTester exp2 = new ReadExpressionTester(formula("= ( 'x'+1 )*2"));
+            assertThat(FormulaCache.getDefault().getHitCount(), equalTo(hits + 1));
+            assertThat(exp2.getExpression().getName(), equalTo("((x + 1) * 2)"));
+            assertThat(exp2.getFunction(), not(sameInstance((Object) exp1.getFunction())));
+            exp1.writeValue("x", ValueFactory.newVDouble(2.0));
+            exp2.writeValue("x", ValueFactory.newVDouble(5.0));
+            assertThat(((VDouble) exp1.getFunction().readValue()).getValue(), equalTo(6.0));
+            assertThat(((VDouble) exp2.getFunction().readValue()).getValue(), equalTo(12.0));
+        } finally {
+            FormulaCache.getDefault().setMaxSize(maxSize);
+            FormulaCache.getDefault().clear();
+        }
+    }
+
+    @Test
+    public void cachedFormula2() throws RecognitionException {
+        // The cache is disabled by default
+        assertThat(FormulaCache.getDefault().getMaxSize(), equalTo(0));
+        long hits = FormulaCache.getDefault().getHitCount();
+        ReadExpressionTester exp1 = new ReadExpressionTester(formula("='x' < 'y'"));
+        ReadExpressionTester exp2 = new ReadExpressionTester(formula("='x' < 'y'"));
+        assertThat(FormulaCache.getDefault().getHitCount(), equalTo(hits));
+        assertThat(FormulaCache.getDefault().getSize(), equalTo(0));
+    }
+
+    @Test
+    public void cachedFormula3() throws RecognitionException {
+        // Least recently used formulas are evicted
+        int maxSize = FormulaCache.getDefault().getMaxSize();
+        try {
+            FormulaCache.getDefault().setMaxSize(1);
+            long evictions = FormulaCache.getDefault().getEvictionCount();
+            long hits = FormulaCache.getDefault().getHitCount();
+            ReadExpressionTester exp1 = new ReadExpressionTester(formula("='x' < 'y'"));
+            ReadExpressionTester exp2 = new ReadExpressionTester(formula("='x' > 'y'"));
+            assertThat(FormulaCache.getDefault().getEvictionCount(), equalTo(evictions + 1));
+            assertThat(FormulaCache.getDefault().getSize(), equalTo(1));
+            ReadExpressionTester exp3 = new ReadExpressionTester(formula("='x' < 'y'"));
+            assertThat(FormulaCache.getDefault().getHitCount(), equalTo(hits));
+            exp3.writeValue("x", ValueFactory.newVDouble(1.0));
+            exp3.writeValue("y", ValueFactory.newVDouble(2.0));
+            assertThat(((VBoolean) exp3.getFunction().readValue()).getValue(), equalTo(true));
+        } finally {
+            FormulaCache.getDefault().setMaxSize(maxSize);
+            FormulaCache.getDefault().clear();
+        }
+    }
+    
+    @Test
+    public void sharedSubexpression1() throws Exception {
+        // The same pure function of channels is calculated once for
+        // all the readers, and each reader releases it when closed
+        DataTypeSupport.install();
+        int maxSize = FormulaCache.getDefault().getMaxSize();
+        final MockDataSource dataSource = new MockDataSource();
+        PVReader<?> pv1 = null;
+        PVReader<?> pv2 = null;
+        try {
+            FormulaCache.getDefault().setMaxSize(10);
+            long hits = FormulaCache.getDefault().getSubexpressionHitCount();
+            pv1 = PVManager.read(formula("=arrayOf('x', 'y')")).from(dataSource).maxRate(TimeDuration.ofMillis(10));
+            pv2 = PVManager.read(formula("=arrayOf('x','y')")).from(dataSource).maxRate(TimeDuration.ofMillis(10));
+            waitForChannels(dataSource, 4);
+            assertThat(FormulaCache.getDefault().getSubexpressionCount(), equalTo(1));
+            assertThat(FormulaCache.getDefault().getSubexpressionHitCount(), equalTo(hits + 1));
+            
+            // The data source writes the same samples for both readers
+            writeSample(dataSource, "x", ValueFactory.newVDouble(1.0, ValueFactory.timeNow()));
+            writeSample(dataSource, "y", ValueFactory.newVDouble(2.0, ValueFactory.timeNow()));
+            ThreadTestingUtil.waitForValue(pv1, TimeDuration.ofMillis(1000));
+            ThreadTestingUtil.waitForValue(pv2, TimeDuration.ofMillis(1000));
+            assertThat(((VNumberArray) pv1.getValue()).getData(), equalTo((ListNumber) new ArrayDouble(1.0, 2.0)));
+            assertThat(pv2.getValue(), sameInstance((Object) pv1.getValue()));
+            
+            // Closing a reader does not disconnect the other
+            pv1.close();
+            waitForChannels(dataSource, 2);
+            assertThat(FormulaCache.getDefault().getSubexpressionCount(), equalTo(1));
+            writeSample(dataSource, "x", ValueFactory.newVDouble(3.0, ValueFactory.timeNow()));
+            final PVReader<?> reader = pv2;
+            ThreadTestingUtil.waitFor(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    return ((VNumberArray) reader.getValue()).getData().getDouble(0) == 3.0 ? reader.getValue() : null;
+                }
+            }, TimeDuration.ofMillis(1000));
+            assertThat(((VNumberArray) pv2.getValue()).getData(), equalTo((ListNumber) new ArrayDouble(3.0, 2.0)));
+            
+            // The last reader removes it
+            pv2.close();
+            waitForChannels(dataSource, 0);
+            assertThat(FormulaCache.getDefault().getSubexpressionCount(), equalTo(0));
+        } finally {
+            if (pv1 != null) {
+                pv1.close();
+            }
+            if (pv2 != null) {
+                pv2.close();
+            }
+            FormulaCache.getDefault().setMaxSize(maxSize);
+            FormulaCache.getDefault().clear();
+        }
+    }
+    
+    private static void waitForChannels(final MockDataSource dataSource, final int nChannels) throws Exception {
+        ThreadTestingUtil.waitFor(new Callable<Object>() {
+
+            @Override
+            public Object call() throws Exception {
+                return dataSource.getConnectedReadRecipes().size() == nChannels ? dataSource : null;
+            }
+        }, TimeDuration.ofMillis(1000));
+        // The close listeners run after the channels are disconnected
+        Thread.sleep(50);
+    }
+    
+    private static void writeSample(MockDataSource dataSource, String channelName, Object sample) {
+        for (ChannelReadRecipe recipe : dataSource.getConnectedReadRecipes()) {
+            if (recipe.getChannelName().equals(channelName)) {
+                @SuppressWarnings("unchecked")
+                ValueCache<Object> cache = (ValueCache<Object>) recipe.getReadSubscription().getValueCache();
+                cache.writeValue(sample);
+                recipe.getReadSubscription().getConnectionWriteFunction().writeValue(true);
+            }
+        }
+    }
     
     @Test(expected = RuntimeException.class)
     public void formulaCast1() {
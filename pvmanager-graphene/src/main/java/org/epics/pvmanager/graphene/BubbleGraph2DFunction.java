@@ -4,16 +4,13 @@
  */
 package org.epics.pvmanager.graphene;
 
-import java.awt.image.BufferedImage;
 import java.util.List;
 import org.epics.graphene.BubbleGraph2DRenderer;
 import org.epics.graphene.BubbleGraph2DRendererUpdate;
 import org.epics.graphene.Point3DWithLabelDataset;
 import org.epics.pvmanager.QueueCollector;
 import org.epics.pvmanager.ReadFunction;
-import org.epics.vtype.VImage;
 import org.epics.vtype.VTable;
-import org.epics.vtype.ValueUtil;
 
 import static org.epics.pvmanager.graphene.ArgumentExpressions.*;
 
@@ -30,7 +27,9 @@ public class BubbleGraph2DFunction implements ReadFunction<Graph2DResult> {
     private ReadFunctionArgument<String> colorColumnName;
     private BubbleGraph2DRenderer renderer = new BubbleGraph2DRenderer(300,
             200);
-    private VImage previousImage;
+    private final GraphImageBuffer imageBuffer = new GraphImageBuffer();
+    private VTable previousData;
+    private Graph2DResult previousResult;
     private final QueueCollector<BubbleGraph2DRendererUpdate> rendererUpdateQueue = new QueueCollector<>(
             100);
 
@@ -63,11 +62,17 @@ public class BubbleGraph2DFunction implements ReadFunction<Graph2DResult> {
             return null;
         }
 
+        // If data, arguments and renderer did not change, the previous result is still valid
+        List<BubbleGraph2DRendererUpdate> updates = rendererUpdateQueue.readValue();
+        if (previousResult != null && vTable == previousData && updates.isEmpty() &&
+                !xColumnName.isChanged() && !yColumnName.isChanged() && !sizeColumnName.isChanged() && !colorColumnName.isChanged()) {
+            return previousResult;
+        }
+        previousData = vTable;
+
         // Prepare new dataset
         Point3DWithLabelDataset dataset = DatasetConversions.point3DDatasetFromVTable(vTable, xColumnName.getValue(), yColumnName.getValue(), sizeColumnName.getValue(), colorColumnName.getValue());
 
-        List<BubbleGraph2DRendererUpdate> updates = rendererUpdateQueue
-                .readValue();
         for (BubbleGraph2DRendererUpdate scatterGraph2DRendererUpdate : updates) {
             renderer.update(scatterGraph2DRendererUpdate);
         }
@@ -76,19 +81,15 @@ public class BubbleGraph2DFunction implements ReadFunction<Graph2DResult> {
             return null;
         }
 
-        BufferedImage image = new BufferedImage(renderer.getImageWidth(),
-                renderer.getImageHeight(), BufferedImage.TYPE_3BYTE_BGR);
-        renderer.draw(image.createGraphics(), dataset);
-
-        previousImage = ValueUtil.toVImage(image);
+        renderer.draw(imageBuffer.nextGraphics(renderer.getImageWidth(), renderer.getImageHeight()), dataset);
         int focusValueIndex = -1;
         if (renderer.getFocusValueIndex() != null) {
             focusValueIndex = renderer.getFocusValueIndex();
         }
-        return new Graph2DResult(vTable, previousImage,
+        previousResult = new Graph2DResult(vTable, imageBuffer.getVImage(),
                 new GraphDataRange(renderer.getXPlotRange(), renderer.getXPlotRange(), renderer.getXAggregatedRange()), new GraphDataRange(
                 renderer.getYPlotRange(), renderer.getYPlotRange(), renderer.getYAggregatedRange()),
                 focusValueIndex);
-
+        return previousResult;
     }
 }
@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.graphene;
+
+import org.epics.graphene.LineGraph2DRenderer;
+
+/**
+ * A line graph renderer that gives the pixel columns of the plot area
+ * of the last draw, so that the lines can be decimated to them.
+ * <p>
+ * The plot area is calculated while drawing, from the data ranges and the
+ * labels: since the decimation preserves the data ranges, the decimated
+ * lines give the same plot area as the full lines.
+ *
+ * @author carcassi
+ */
+class DecimatingLineGraph2DRenderer extends LineGraph2DRenderer {
+
+    DecimatingLineGraph2DRenderer(int imageWidth, int imageHeight) {
+        super(imageWidth, imageHeight);
+    }
+
+    /**
+     * The pixel columns of the plot area of the last draw.
+     *
+     * @return the columns, or null if nothing was drawn yet
+     */
+    LineDecimation.Columns getColumns() {
+        return LineDecimation.Columns.plotArea(xPlotValueStart, xPlotValueEnd,
+                xPlotCoordStart, xPlotCoordEnd, getImageWidth());
+    }
+
+}
@@ -19,6 +19,7 @@ import org.epics.pvmanager.expression.DesiredRateExpressionImpl;
 import org.epics.pvmanager.expression.DesiredRateExpressionList;
 import org.epics.pvmanager.expression.DesiredRateExpressionListImpl;
 import org.epics.pvmanager.expression.SourceRateExpression;
+import org.epics.util.array.ListNumber;
 import org.epics.util.array.ListNumbers;
 import org.epics.vtype.VTable;
 import org.epics.vtype.ValueFactory;
@@ -147,6 +148,46 @@ public class ExpressionLanguage {
 	return new BubbleGraph2DExpression(tableData, xColumnName, yColumnName, sizeColumnName, tooltipColumnName);
     }
 
+    /**
+     * Reduces an array to a table with the points that can be distinguished
+     * on the given number of pixel columns: for each column, only the first,
+     * minimum, maximum and last point are kept. The X column is the
+     * index of the element in the original array. If the array is small
+     * enough, or contains NaNs, all the points are kept.
+     *
+     * @param yArray the array to decimate
+     * @param nColumns the number of pixel columns
+     * @return a table with the X and Y columns
+     */
+    public static DesiredRateExpression<VTable> decimate(final DesiredRateExpression<? extends VNumberArray> yArray,
+            final int nColumns) {
+        return new DesiredRateExpressionImpl<>(createList(yArray),
+        new ReadFunction<VTable>() {
+
+            @Override
+            public VTable readValue() {
+                VNumberArray values = yArray.getFunction().readValue();
+
+                if (values == null) {
+                    return null;
+                }
+
+                ListNumber xValues = ListNumbers.linearList(0, 1, values.getData().size());
+                ListNumber yValues = values.getData();
+                LineDecimation decimation = LineDecimation.of(xValues, yValues, nColumns);
+                if (decimation != null) {
+                    xValues = decimation.getDataset().getXValues();
+                    yValues = decimation.getDataset().getYValues();
+                }
+
+                return ValueFactory.newVTable(Arrays.<Class<?>>asList(double.class, double.class),
+                        Arrays.asList("X", "Y"),
+                        Arrays.<Object>asList(new ListDoubleView(xValues),
+                        new ListDoubleView(yValues)));
+            }
+        }, "decimate(" + yArray.getName() + ")");
+    }
+
     @SafeVarargs
     static <T> DesiredRateExpressionList<T> createList(DesiredRateExpressionList<? extends T>... expressions) {
         DesiredRateExpressionList<T> list = new DesiredRateExpressionListImpl<T>();
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.graphene;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import org.epics.vtype.VImage;
+import org.epics.vtype.ValueUtil;
+
+/**
+ * Two images, used in turn to draw the graph, so that the image
+ * of the previous result is not modified while the next one is drawn.
+ * <p>
+ * The images are reused as long as the size does not change: the image
+ * of a result is valid until two more results are calculated.
+ *
+ * @author carcassi
+ */
+class GraphImageBuffer {
+
+    private final BufferedImage[] images = new BufferedImage[2];
+    private final VImage[] vImages = new VImage[2];
+    private int current = 1;
+
+    /**
+     * Switches to the other image, resizing it if needed, and returns
+     * the graphics to draw on it.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the graphics of the next image
+     */
+    public Graphics2D nextGraphics(int width, int height) {
+        current = 1 - current;
+        BufferedImage image = images[current];
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            images[current] = image;
+            vImages[current] = ValueUtil.toVImage(image);
+        }
+        return image.createGraphics();
+    }
+
+    /**
+     * Returns the graphics to draw again on the current image.
+     *
+     * @return the graphics of the current image
+     */
+    public Graphics2D currentGraphics() {
+        return images[current].createGraphics();
+    }
+
+    /**
+     * The image last drawn, sharing the same buffer.
+     *
+     * @return the image
+     */
+    public VImage getVImage() {
+        return vImages[current];
+    }
+
+}
@@ -4,7 +4,6 @@
  */
 package org.epics.pvmanager.graphene;
 
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -16,7 +15,6 @@ import org.epics.vtype.VNumber;
 import org.epics.vtype.VNumberArray;
 import org.epics.vtype.VTable;
 import org.epics.vtype.VType;
-import org.epics.vtype.ValueUtil;
 
 /**
  *
@@ -28,7 +26,9 @@ class HistogramGraph2DFunction implements ReadFunction<Graph2DResult> {
     
     private AreaGraph2DRenderer renderer = new AreaGraph2DRenderer(300, 200);
     
-    private Graph2DResult previousImage;
+    private final GraphImageBuffer imageBuffer = new GraphImageBuffer();
+    private VNumberArray previousData;
+    private Graph2DResult previousResult;
     private final QueueCollector<AreaGraph2DRendererUpdate> rendererUpdateQueue = new QueueCollector<>(100);
 
     public HistogramGraph2DFunction(ReadFunction<?> arrayData) {
@@ -47,6 +47,13 @@ class HistogramGraph2DFunction implements ReadFunction<Graph2DResult> {
         if (data == null) {
             return null;
         }
+
+        // If data and renderer did not change, the previous result is still valid
+        List<AreaGraph2DRendererUpdate> updates = getUpdateQueue().readValue();
+        if (previousResult != null && data == previousData && updates.isEmpty()) {
+            return previousResult;
+        }
+        previousData = data;
         
         // TODO: check array is one dimensional
 
@@ -57,7 +64,7 @@ class HistogramGraph2DFunction implements ReadFunction<Graph2DResult> {
             e.printStackTrace();
         }
         // Process all renderer updates
-        for (AreaGraph2DRendererUpdate rendererUpdate : getUpdateQueue().readValue()) {
+        for (AreaGraph2DRendererUpdate rendererUpdate : updates) {
             renderer.update(rendererUpdate);
         }
         
@@ -65,17 +72,17 @@ class HistogramGraph2DFunction implements ReadFunction<Graph2DResult> {
         if (renderer.getImageHeight() == 0 && renderer.getImageWidth() == 0)
             return null;
         
-        BufferedImage image = new BufferedImage(renderer.getImageWidth(), renderer.getImageHeight(), BufferedImage.TYPE_3BYTE_BGR);
-        renderer.draw(image.createGraphics(), dataset);
+        renderer.draw(imageBuffer.nextGraphics(renderer.getImageWidth(), renderer.getImageHeight()), dataset);
         int index = -1;
         if (renderer.getFocusValueIndex() != null) {
             index = renderer.getFocusValueIndex();
         }
         
-        return new Graph2DResult(data, ValueUtil.toVImage(image),
+        previousResult = new Graph2DResult(data, imageBuffer.getVImage(),
                 new GraphDataRange(renderer.getXPlotRange(), dataset.getXRange(), renderer.getXAggregatedRange()),
                 new GraphDataRange(renderer.getYPlotRange(), dataset.getStatistics(), renderer.getYAggregatedRange()),
                 index);
+        return previousResult;
     }
     
 }
@@ -75,10 +75,11 @@ class IntensityGraph2DFunction implements ReadFunction<Graph2DResult> {
         GraphBuffer buffer = new GraphBuffer(renderer);
         renderer.draw(buffer, dataset);
         
-        return new Graph2DResult(null, ValueUtil.toVImage(buffer.getImage()),
+        previousResult = new Graph2DResult(null, ValueUtil.toVImage(buffer.getImage()),
                 new GraphDataRange(renderer.getXPlotRange(), dataset.getXRange(), renderer.getXAggregatedRange()),
                 new GraphDataRange(renderer.getYPlotRange(), dataset.getStatistics(), renderer.getYAggregatedRange()),
                 -1);
+        return previousResult;
     }
     
 }
@@ -0,0 +1,275 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.graphene;
+
+import org.epics.graphene.Point2DDataset;
+import org.epics.graphene.Point2DDatasets;
+import org.epics.util.array.ArrayDouble;
+import org.epics.util.array.ListNumber;
+
+/**
+ * Reduces a line to the points that can be distinguished at a given
+ * number of pixel columns (M4 decimation).
+ * <p>
+ * The x values are divided in columns and, for each column, only
+ * the first, minimum, maximum and last point are kept, in their original
+ * order. When the columns are the pixel columns of the plot, as given
+ * by {@link Columns}, the line drawn through these points covers the same
+ * pixels as the full line: the extent of each column and the connections
+ * between columns are the same. The data range of the line is also
+ * preserved, so that the plot ranges calculated from the decimated line
+ * are the same. The values are read as primitives, in a single pass.
+ * <p>
+ * The decimation is only possible if the x values are sorted and all
+ * the values are numbers; otherwise the line is left untouched.
+ *
+ * @author carcassi
+ */
+class LineDecimation {
+
+    /**
+     * The pixel columns of a plot area: the x values from valueStart to
+     * valueEnd are drawn at the coordinates from coordStart to coordEnd,
+     * and each pixel column covers one unit of coordinates. The values
+     * before the first column are in the first column, and the ones after
+     * the last column are in the last column.
+     */
+    static class Columns {
+
+        private final double valueStart;
+        private final double valueEnd;
+        private final double coordStart;
+        private final double coordEnd;
+        private final int firstColumn;
+        private final int lastColumn;
+        private final double coordsPerValue;
+
+        Columns(double valueStart, double valueEnd, double coordStart, double coordEnd, int firstColumn, int lastColumn) {
+            this.valueStart = valueStart;
+            this.valueEnd = valueEnd;
+            this.coordStart = coordStart;
+            this.coordEnd = coordEnd;
+            this.firstColumn = firstColumn;
+            this.lastColumn = lastColumn;
+            this.coordsPerValue = (coordEnd - coordStart) / (valueEnd - valueStart);
+        }
+
+        /**
+         * The columns of a plot area, with one more column on each side
+         * for the values outside the image.
+         *
+         * @param valueStart the value at the start of the plot
+         * @param valueEnd the value at the end of the plot
+         * @param coordStart the coordinate of the start of the plot
+         * @param coordEnd the coordinate of the end of the plot
+         * @param imageWidth the width of the image
+         * @return the columns, or null if the range is empty
+         */
+        static Columns plotArea(double valueStart, double valueEnd, double coordStart, double coordEnd, int imageWidth) {
+            if (!(valueEnd > valueStart) || !(coordEnd > coordStart) || imageWidth <= 0) {
+                return null;
+            }
+            return new Columns(valueStart, valueEnd, coordStart, coordEnd, -1, imageWidth);
+        }
+
+        /**
+         * The number of columns.
+         *
+         * @return the number of columns
+         */
+        int size() {
+            return lastColumn - firstColumn + 1;
+        }
+
+        /**
+         * The column of the given value.
+         *
+         * @param value an x value
+         * @return the column
+         */
+        int columnOf(double value) {
+            double coord = Math.floor(coordStart + (value - valueStart) * coordsPerValue);
+            if (coord < firstColumn) {
+                return firstColumn;
+            }
+            if (coord > lastColumn) {
+                return lastColumn;
+            }
+            return (int) coord;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Columns)) {
+                return false;
+            }
+            Columns other = (Columns) obj;
+            return valueStart == other.valueStart && valueEnd == other.valueEnd &&
+                    coordStart == other.coordStart && coordEnd == other.coordEnd &&
+                    firstColumn == other.firstColumn && lastColumn == other.lastColumn;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 29 * hash + Double.valueOf(valueStart).hashCode();
+            hash = 29 * hash + Double.valueOf(valueEnd).hashCode();
+            hash = 29 * hash + Double.valueOf(coordStart).hashCode();
+            hash = 29 * hash + Double.valueOf(coordEnd).hashCode();
+            hash = 29 * hash + firstColumn;
+            hash = 29 * hash + lastColumn;
+            return hash;
+        }
+    }
+
+    private final Point2DDataset dataset;
+    private final int[] indexes;
+
+    private LineDecimation(Point2DDataset dataset, int[] indexes) {
+        this.dataset = dataset;
+        this.indexes = indexes;
+    }
+
+    /**
+     * The decimated line.
+     *
+     * @return the dataset with the points kept
+     */
+    public Point2DDataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * The index in the original line of a point of the decimated line.
+     *
+     * @param index the index in the decimated line
+     * @return the index in the original line
+     */
+    public int originalIndex(int index) {
+        return indexes[index];
+    }
+
+    /**
+     * Decimates the dataset to the pixel columns of a plot area, if it has
+     * more points than can be shown.
+     *
+     * @param dataset the line to decimate
+     * @param columns the pixel columns of the plot area
+     * @return the decimated line, or null if the line is to be used as is
+     */
+    public static LineDecimation of(Point2DDataset dataset, Columns columns) {
+        return of(dataset.getXValues(), dataset.getYValues(), columns);
+    }
+
+    /**
+     * Decimates the line to columns of equal width over its x range,
+     * if it has more points than can be shown.
+     *
+     * @param xValues the x values of the line; must be sorted
+     * @param yValues the y values of the line
+     * @param nColumns the number of pixel columns
+     * @return the decimated line, or null if the line is to be used as is
+     */
+    public static LineDecimation of(ListNumber xValues, ListNumber yValues, int nColumns) {
+        int size = Math.min(xValues.size(), yValues.size());
+        if (nColumns <= 0 || size <= 4 * nColumns) {
+            return null;
+        }
+
+        double xMin = xValues.getDouble(0);
+        double xMax = xValues.getDouble(size - 1);
+        if (!(xMax > xMin)) {
+            return null;
+        }
+        return of(xValues, yValues, new Columns(xMin, xMax, 0, nColumns, 0, nColumns - 1));
+    }
+
+    /**
+     * Decimates the line to the given columns, if it has more points
+     * than can be shown.
+     *
+     * @param xValues the x values of the line; must be sorted
+     * @param yValues the y values of the line
+     * @param columns the pixel columns
+     * @return the decimated line, or null if the line is to be used as is
+     */
+    public static LineDecimation of(ListNumber xValues, ListNumber yValues, Columns columns) {
+        int size = Math.min(xValues.size(), yValues.size());
+        int nColumns = columns.size();
+        if (size <= 4 * nColumns) {
+            return null;
+        }
+
+        double[] newX = new double[4 * nColumns];
+        double[] newY = new double[4 * nColumns];
+        int[] indexes = new int[4 * nColumns];
+        int count = 0;
+
+        int column = Integer.MIN_VALUE;
+        int first = 0;
+        int min = 0;
+        int max = 0;
+        double minValue = 0;
+        double maxValue = 0;
+        double previousX = xValues.getDouble(0);
+        for (int i = 0; i < size; i++) {
+            double x = xValues.getDouble(i);
+            double y = yValues.getDouble(i);
+            // Unsorted or missing values: the line is not decimated
+            if (!(x >= previousX) || Double.isNaN(y)) {
+                return null;
+            }
+            previousX = x;
+
+            int newColumn = columns.columnOf(x);
+            if (newColumn != column) {
+                if (column != Integer.MIN_VALUE) {
+                    count = addColumn(xValues, yValues, first, min, max, i - 1, newX, newY, indexes, count);
+                }
+                column = newColumn;
+                first = i;
+                min = i;
+                max = i;
+                minValue = y;
+                maxValue = y;
+            } else if (y < minValue) {
+                min = i;
+                minValue = y;
+            } else if (y > maxValue) {
+                max = i;
+                maxValue = y;
+            }
+        }
+        count = addColumn(xValues, yValues, first, min, max, size - 1, newX, newY, indexes, count);
+
+        Point2DDataset decimated = Point2DDatasets.lineData(new ArrayDouble(newX, 0, count, true),
+                new ArrayDouble(newY, 0, count, true));
+        return new LineDecimation(decimated, indexes);
+    }
+
+    /**
+     * Adds the first, min, max and last point of the column, in order
+     * and without repetitions.
+     */
+    private static int addColumn(ListNumber xValues, ListNumber yValues,
+            int first, int min, int max, int last,
+            double[] newX, double[] newY, int[] indexes, int count) {
+        int low = Math.min(min, max);
+        int high = Math.max(min, max);
+        int[] points = {first, low, high, last};
+        int previous = -1;
+        for (int point : points) {
+            if (point != previous) {
+                newX[count] = xValues.getDouble(point);
+                newY[count] = yValues.getDouble(point);
+                indexes[count] = point;
+                count++;
+                previous = point;
+            }
+        }
+        return count;
+    }
+
+}
@@ -5,9 +5,6 @@
 package org.epics.pvmanager.graphene;
 
 import org.epics.vtype.VNumberArray;
-import org.epics.vtype.VImage;
-import org.epics.vtype.ValueUtil;
-import java.awt.image.BufferedImage;
 import java.util.List;
 import org.epics.graphene.*;
 import org.epics.pvmanager.QueueCollector;
@@ -27,9 +24,11 @@ class LineGraph2DFunction implements ReadFunction<Graph2DResult> {
     private ReadFunctionArgument<String> yColumnName;
     private ReadFunctionArgument<String> tooltipColumnName;
     
-    private LineGraph2DRenderer renderer = new LineGraph2DRenderer(300, 200);
+    private DecimatingLineGraph2DRenderer renderer = new DecimatingLineGraph2DRenderer(300, 200);
     
-    private VImage previousImage;
+    private final GraphImageBuffer imageBuffer = new GraphImageBuffer();
+    private VType previousData;
+    private Graph2DResult previousResult;
     private final QueueCollector<LineGraph2DRendererUpdate> rendererUpdateQueue = new QueueCollector<>(100);
 
     LineGraph2DFunction(ReadFunction<?> tableData,
@@ -58,6 +57,14 @@ class LineGraph2DFunction implements ReadFunction<Graph2DResult> {
             return null;
         }
 
+        // If data, arguments and renderer did not change, the previous result is still valid
+        List<LineGraph2DRendererUpdate> updates = rendererUpdateQueue.readValue();
+        if (previousResult != null && vType == previousData && updates.isEmpty() &&
+                !xColumnName.isChanged() && !yColumnName.isChanged() && !tooltipColumnName.isChanged()) {
+            return previousResult;
+        }
+        previousData = vType;
+
         // Prepare new dataset
         Point2DDataset dataset;
         if (vType instanceof VNumberArray) {
@@ -67,7 +74,6 @@ class LineGraph2DFunction implements ReadFunction<Graph2DResult> {
         }
         
         // Process all renderer updates
-        List<LineGraph2DRendererUpdate> updates = rendererUpdateQueue.readValue();
         for (LineGraph2DRendererUpdate rendererUpdate : updates) {
             renderer.update(rendererUpdate);
         }
@@ -76,14 +82,33 @@ class LineGraph2DFunction implements ReadFunction<Graph2DResult> {
         if (renderer.getImageHeight() == 0 && renderer.getImageWidth() == 0)
             return null;
         
-        BufferedImage image = new BufferedImage(renderer.getImageWidth(), renderer.getImageHeight(), BufferedImage.TYPE_3BYTE_BGR);
-        renderer.draw(image.createGraphics(), dataset);
+        // Only draw the points that can be seen, using the plot area of
+        // the previous draw. If the plot area changed, the decimation
+        // does not match the pixels: draw again the full line.
+        LineDecimation decimation = null;
+        LineDecimation.Columns columns = renderer.getColumns();
+        if (renderer.getInterpolation() != InterpolationScheme.CUBIC && columns != null) {
+            decimation = LineDecimation.of(dataset, columns);
+        }
         
-        previousImage = ValueUtil.toVImage(image);
-        return new Graph2DResult(vType, previousImage,
+        if (decimation != null) {
+            renderer.draw(imageBuffer.nextGraphics(renderer.getImageWidth(), renderer.getImageHeight()), decimation.getDataset());
+            if (!columns.equals(renderer.getColumns())) {
+                decimation = null;
+                renderer.draw(imageBuffer.currentGraphics(), dataset);
+            }
+        } else {
+            renderer.draw(imageBuffer.nextGraphics(renderer.getImageWidth(), renderer.getImageHeight()), dataset);
+        }
+        Integer focusValueIndex = renderer.getFocusValueIndex();
+        if (decimation != null && focusValueIndex != null && focusValueIndex != -1) {
+            focusValueIndex = decimation.originalIndex(focusValueIndex);
+        }
+        previousResult = new Graph2DResult(vType, imageBuffer.getVImage(),
                 new GraphDataRange(renderer.getXPlotRange(), dataset.getXStatistics(), renderer.getXAggregatedRange()),
                 new GraphDataRange(renderer.getYPlotRange(), dataset.getYStatistics(), renderer.getYAggregatedRange()),
-                renderer.getFocusValueIndex());
+                focusValueIndex);
+        return previousResult;
     }
     
 }
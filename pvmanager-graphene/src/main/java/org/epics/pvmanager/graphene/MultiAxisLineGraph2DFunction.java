@@ -5,9 +5,6 @@
 package org.epics.pvmanager.graphene;
 
 import org.epics.vtype.VNumberArray;
-import org.epics.vtype.VImage;
-import org.epics.vtype.ValueUtil;
-import java.awt.image.BufferedImage;
 import java.util.AbstractList;
 import java.util.Collections;
 import java.util.List;
@@ -30,7 +27,9 @@ class MultiAxisLineGraph2DFunction implements ReadFunction<Graph2DResult> {
     
     private MultiAxisLineGraph2DRenderer renderer = new MultiAxisLineGraph2DRenderer(300, 200);
     
-    private VImage previousImage;
+    private final GraphImageBuffer imageBuffer = new GraphImageBuffer();
+    private VType previousData;
+    private Graph2DResult previousResult;
     private final QueueCollector<MultiAxisLineGraph2DRendererUpdate> rendererUpdateQueue = new QueueCollector<>(100);
 
     MultiAxisLineGraph2DFunction(ReadFunction<?> tableData,
@@ -56,6 +55,14 @@ class MultiAxisLineGraph2DFunction implements ReadFunction<Graph2DResult> {
             return null;
         }
 
+        // If data, arguments and renderer did not change, the previous result is still valid
+        List<MultiAxisLineGraph2DRendererUpdate> updates = rendererUpdateQueue.readValue();
+        if (previousResult != null && vType == previousData && updates.isEmpty() &&
+                !xColumnNames.isChanged() && !yColumnNames.isChanged()) {
+            return previousResult;
+        }
+        previousData = vType;
+
         // Prepare new dataset
         final List<Point2DDataset> dataset;
         if (vType instanceof VNumberArray) {
@@ -65,7 +72,6 @@ class MultiAxisLineGraph2DFunction implements ReadFunction<Graph2DResult> {
         }
         
         // Process all renderer updates
-        List<MultiAxisLineGraph2DRendererUpdate> updates = rendererUpdateQueue.readValue();
         for (MultiAxisLineGraph2DRendererUpdate rendererUpdate : updates) {
             renderer.update(rendererUpdate);
         }
@@ -74,10 +80,7 @@ class MultiAxisLineGraph2DFunction implements ReadFunction<Graph2DResult> {
         if (renderer.getImageHeight() == 0 && renderer.getImageWidth() == 0)
             return null;
         
-        BufferedImage image = new BufferedImage(renderer.getImageWidth(), renderer.getImageHeight(), BufferedImage.TYPE_3BYTE_BGR);
-        renderer.draw(image.createGraphics(), dataset);
-        
-        previousImage = ValueUtil.toVImage(image);
+        renderer.draw(imageBuffer.nextGraphics(renderer.getImageWidth(), renderer.getImageHeight()), dataset);
         Statistics xDataRange = StatisticsUtil.statisticsOf(new AbstractList<Statistics>() {
             
             @Override
@@ -104,10 +107,11 @@ class MultiAxisLineGraph2DFunction implements ReadFunction<Graph2DResult> {
             }
         });
         
-        return new Graph2DResult(vType, previousImage,
+        previousResult = new Graph2DResult(vType, imageBuffer.getVImage(),
                 new GraphDataRange(renderer.getXPlotRange(), xDataRange, renderer.getXAggregatedRange()),
                 new GraphDataRange(renderer.getYPlotRange(), yDataRange, renderer.getYAggregatedRange()),
                 -1);
+        return previousResult;
     }
     
 }
@@ -5,10 +5,8 @@
 package org.epics.pvmanager.graphene;
 
 import org.epics.vtype.VNumberArray;
-import org.epics.vtype.VImage;
-import org.epics.vtype.ValueUtil;
-import java.awt.image.BufferedImage;
 import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import org.epics.graphene.*;
@@ -28,9 +26,11 @@ class MultilineGraph2DFunction implements ReadFunction<Graph2DResult> {
     private ReadFunctionArgument<List<String>> xColumnNames;
     private ReadFunctionArgument<List<String>> yColumnNames;
     
-    private LineGraph2DRenderer renderer = new LineGraph2DRenderer(300, 200);
+    private DecimatingLineGraph2DRenderer renderer = new DecimatingLineGraph2DRenderer(300, 200);
     
-    private VImage previousImage;
+    private final GraphImageBuffer imageBuffer = new GraphImageBuffer();
+    private VType previousData;
+    private Graph2DResult previousResult;
     private final QueueCollector<LineGraph2DRendererUpdate> rendererUpdateQueue = new QueueCollector<>(100);
 
     MultilineGraph2DFunction(ReadFunction<?> tableData,
@@ -56,6 +56,14 @@ class MultilineGraph2DFunction implements ReadFunction<Graph2DResult> {
             return null;
         }
 
+        // If data, arguments and renderer did not change, the previous result is still valid
+        List<LineGraph2DRendererUpdate> updates = rendererUpdateQueue.readValue();
+        if (previousResult != null && vType == previousData && updates.isEmpty() &&
+                !xColumnNames.isChanged() && !yColumnNames.isChanged()) {
+            return previousResult;
+        }
+        previousData = vType;
+
         // Prepare new dataset
         final List<Point2DDataset> dataset;
         if (vType instanceof VNumberArray) {
@@ -65,7 +73,6 @@ class MultilineGraph2DFunction implements ReadFunction<Graph2DResult> {
         }
         
         // Process all renderer updates
-        List<LineGraph2DRendererUpdate> updates = rendererUpdateQueue.readValue();
         for (LineGraph2DRendererUpdate rendererUpdate : updates) {
             renderer.update(rendererUpdate);
         }
@@ -74,10 +81,31 @@ class MultilineGraph2DFunction implements ReadFunction<Graph2DResult> {
         if (renderer.getImageHeight() == 0 && renderer.getImageWidth() == 0)
             return null;
         
-        BufferedImage image = new BufferedImage(renderer.getImageWidth(), renderer.getImageHeight(), BufferedImage.TYPE_3BYTE_BGR);
-        renderer.draw(image.createGraphics(), dataset);
+        // Only draw the points that can be seen, using the plot area of
+        // the previous draw. If the plot area changed, the decimation
+        // does not match the pixels: draw again the full lines.
+        List<Point2DDataset> decimatedDataset = null;
+        LineDecimation.Columns columns = renderer.getColumns();
+        if (renderer.getInterpolation() != InterpolationScheme.CUBIC && columns != null) {
+            for (int i = 0; i < dataset.size(); i++) {
+                LineDecimation decimation = LineDecimation.of(dataset.get(i), columns);
+                if (decimation != null) {
+                    if (decimatedDataset == null) {
+                        decimatedDataset = new ArrayList<>(dataset);
+                    }
+                    decimatedDataset.set(i, decimation.getDataset());
+                }
+            }
+        }
         
-        previousImage = ValueUtil.toVImage(image);
+        if (decimatedDataset != null) {
+            renderer.draw(imageBuffer.nextGraphics(renderer.getImageWidth(), renderer.getImageHeight()), decimatedDataset);
+            if (!columns.equals(renderer.getColumns())) {
+                renderer.draw(imageBuffer.currentGraphics(), dataset);
+            }
+        } else {
+            renderer.draw(imageBuffer.nextGraphics(renderer.getImageWidth(), renderer.getImageHeight()), dataset);
+        }
         Statistics xDataRange = StatisticsUtil.statisticsOf(new AbstractList<Statistics>() {
             
             @Override
@@ -104,10 +132,11 @@ class MultilineGraph2DFunction implements ReadFunction<Graph2DResult> {
             }
         });
         
-        return new Graph2DResult(vType, previousImage,
+        previousResult = new Graph2DResult(vType, imageBuffer.getVImage(),
                 new GraphDataRange(renderer.getXPlotRange(), xDataRange, renderer.getXAggregatedRange()),
                 new GraphDataRange(renderer.getYPlotRange(), yDataRange, renderer.getYAggregatedRange()),
                 -1);
+        return previousResult;
     }
     
 }
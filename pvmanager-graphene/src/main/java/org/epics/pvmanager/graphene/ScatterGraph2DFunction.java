@@ -4,7 +4,6 @@
  */
 package org.epics.pvmanager.graphene;
 
-import java.awt.image.BufferedImage;
 import java.util.List;
 
 import org.epics.graphene.Point2DDataset;
@@ -12,9 +11,7 @@ import org.epics.graphene.ScatterGraph2DRenderer;
 import org.epics.graphene.ScatterGraph2DRendererUpdate;
 import org.epics.pvmanager.QueueCollector;
 import org.epics.pvmanager.ReadFunction;
-import org.epics.vtype.VImage;
 import org.epics.vtype.VTable;
-import org.epics.vtype.ValueUtil;
 
 import static org.epics.pvmanager.graphene.ArgumentExpressions.*;
 
@@ -30,7 +27,9 @@ public class ScatterGraph2DFunction implements ReadFunction<Graph2DResult> {
     private ReadFunctionArgument<String> tooltipColumnName;
     private ScatterGraph2DRenderer renderer = new ScatterGraph2DRenderer(300,
             200);
-    private VImage previousImage;
+    private final GraphImageBuffer imageBuffer = new GraphImageBuffer();
+    private VTable previousData;
+    private Graph2DResult previousResult;
     private final QueueCollector<ScatterGraph2DRendererUpdate> rendererUpdateQueue = new QueueCollector<>(
             100);
 
@@ -60,11 +59,17 @@ public class ScatterGraph2DFunction implements ReadFunction<Graph2DResult> {
             return null;
         }
 
+        // If data, arguments and renderer did not change, the previous result is still valid
+        List<ScatterGraph2DRendererUpdate> updates = rendererUpdateQueue.readValue();
+        if (previousResult != null && vTable == previousData && updates.isEmpty() &&
+                !xColumnName.isChanged() && !yColumnName.isChanged() && !tooltipColumnName.isChanged()) {
+            return previousResult;
+        }
+        previousData = vTable;
+
         // Prepare new dataset
         Point2DDataset dataset = DatasetConversions.point2DDatasetFromVTable(vTable, xColumnName.getValue(), yColumnName.getValue());
 
-        List<ScatterGraph2DRendererUpdate> updates = rendererUpdateQueue
-                .readValue();
         for (ScatterGraph2DRendererUpdate scatterGraph2DRendererUpdate : updates) {
             renderer.update(scatterGraph2DRendererUpdate);
         }
@@ -73,15 +78,11 @@ public class ScatterGraph2DFunction implements ReadFunction<Graph2DResult> {
             return null;
         }
 
-        BufferedImage image = new BufferedImage(renderer.getImageWidth(),
-                renderer.getImageHeight(), BufferedImage.TYPE_3BYTE_BGR);
-        renderer.draw(image.createGraphics(), dataset);
-
-        previousImage = ValueUtil.toVImage(image);
-        return new Graph2DResult(vTable, previousImage,
+        renderer.draw(imageBuffer.nextGraphics(renderer.getImageWidth(), renderer.getImageHeight()), dataset);
+        previousResult = new Graph2DResult(vTable, imageBuffer.getVImage(),
                 new GraphDataRange(renderer.getXPlotRange(), renderer.getXPlotRange(), renderer.getXAggregatedRange()), new GraphDataRange(
                 renderer.getYPlotRange(), renderer.getYPlotRange(), renderer.getYAggregatedRange()),
                 -1);
-
+        return previousResult;
     }
 }
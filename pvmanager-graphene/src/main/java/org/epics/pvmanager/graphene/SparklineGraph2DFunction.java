@@ -5,9 +5,6 @@
 package org.epics.pvmanager.graphene;
 
 import org.epics.vtype.VNumberArray;
-import org.epics.vtype.VImage;
-import org.epics.vtype.ValueUtil;
-import java.awt.image.BufferedImage;
 import java.util.List;
 import org.epics.graphene.*;
 import org.epics.pvmanager.QueueCollector;
@@ -28,7 +25,9 @@ class SparklineGraph2DFunction implements ReadFunction<Graph2DResult> {
     
     private SparklineGraph2DRenderer renderer = new SparklineGraph2DRenderer(300, 200);
     
-    private VImage previousImage;
+    private final GraphImageBuffer imageBuffer = new GraphImageBuffer();
+    private VType previousData;
+    private Graph2DResult previousResult;
     private final QueueCollector<SparklineGraph2DRendererUpdate> rendererUpdateQueue = new QueueCollector<>(100);
 
     SparklineGraph2DFunction(ReadFunction<?> tableData,
@@ -54,6 +53,14 @@ class SparklineGraph2DFunction implements ReadFunction<Graph2DResult> {
             return null;
         }
 
+        // If data, arguments and renderer did not change, the previous result is still valid
+        List<SparklineGraph2DRendererUpdate> updates = rendererUpdateQueue.readValue();
+        if (previousResult != null && vType == previousData && updates.isEmpty() &&
+                !xColumnName.isChanged() && !yColumnName.isChanged()) {
+            return previousResult;
+        }
+        previousData = vType;
+
         // Prepare new dataset
         Point2DDataset dataset;
         if (vType instanceof VNumberArray) {
@@ -63,7 +70,6 @@ class SparklineGraph2DFunction implements ReadFunction<Graph2DResult> {
         }
         
         // Process all renderer updates
-        List<SparklineGraph2DRendererUpdate> updates = rendererUpdateQueue.readValue();
         for (SparklineGraph2DRendererUpdate rendererUpdate : updates) {
             renderer.update(rendererUpdate);
         }
@@ -72,14 +78,12 @@ class SparklineGraph2DFunction implements ReadFunction<Graph2DResult> {
         if (renderer.getImageHeight() == 0 && renderer.getImageWidth() == 0)
             return null;
         
-        BufferedImage image = new BufferedImage(renderer.getImageWidth(), renderer.getImageHeight(), BufferedImage.TYPE_3BYTE_BGR);
-        renderer.draw(image.createGraphics(), dataset);
-        
-        previousImage = ValueUtil.toVImage(image);
-        return new Graph2DResult(vType, previousImage,
+        renderer.draw(imageBuffer.nextGraphics(renderer.getImageWidth(), renderer.getImageHeight()), dataset);
+        previousResult = new Graph2DResult(vType, imageBuffer.getVImage(),
                 new GraphDataRange(renderer.getXPlotRange(), dataset.getXStatistics(), renderer.getXAggregatedRange()),
                 new GraphDataRange(renderer.getYPlotRange(), dataset.getYStatistics(), renderer.getYAggregatedRange()),
                 -1);
+        return previousResult;
     }
     
 }
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.graphene;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import org.epics.vtype.VImage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class GraphImageBufferTest {
+
+    public GraphImageBufferTest() {
+    }
+
+    private static void fill(Graphics2D graphics, Color color) {
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 10, 10);
+        graphics.dispose();
+    }
+
+    @Test
+    public void nextGraphics1() {
+        GraphImageBuffer buffer = new GraphImageBuffer();
+        fill(buffer.nextGraphics(10, 5), Color.WHITE);
+        VImage image1 = buffer.getVImage();
+        assertThat(image1.getWidth(), equalTo(10));
+        assertThat(image1.getHeight(), equalTo(5));
+        assertThat(image1.getData()[0], equalTo((byte) 255));
+
+        // The previous image is not touched by the next draw
+        fill(buffer.nextGraphics(10, 5), Color.BLACK);
+        VImage image2 = buffer.getVImage();
+        assertThat(image2, not(sameInstance(image1)));
+        assertThat(image1.getData()[0], equalTo((byte) 255));
+        assertThat(image2.getData()[0], equalTo((byte) 0));
+
+        // Same size: the first image is reused
+        fill(buffer.nextGraphics(10, 5), Color.BLACK);
+        assertThat(buffer.getVImage(), sameInstance(image1));
+        assertThat(image1.getData()[0], equalTo((byte) 0));
+    }
+
+    @Test
+    public void nextGraphics2() {
+        GraphImageBuffer buffer = new GraphImageBuffer();
+        fill(buffer.nextGraphics(10, 5), Color.WHITE);
+        VImage image1 = buffer.getVImage();
+        fill(buffer.nextGraphics(10, 5), Color.WHITE);
+
+        // Size changed: a new image is needed
+        fill(buffer.nextGraphics(8, 5), Color.WHITE);
+        assertThat(buffer.getVImage(), not(sameInstance(image1)));
+        assertThat(buffer.getVImage().getWidth(), equalTo(8));
+    }
+
+}
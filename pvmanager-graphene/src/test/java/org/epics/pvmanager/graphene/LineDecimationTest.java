@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.graphene;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import org.epics.graphene.Point2DDataset;
+import org.epics.graphene.Point2DDatasets;
+import org.epics.util.array.ArrayDouble;
+import org.epics.util.array.ListNumber;
+import org.epics.util.array.ListNumbers;
+import org.epics.vtype.ValueUtil;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class LineDecimationTest {
+
+    public LineDecimationTest() {
+    }
+
+    @Test
+    public void of1() {
+        // Not enough points: nothing to decimate
+        ListNumber x = ListNumbers.linearList(0, 1, 20);
+        ListNumber y = ListNumbers.linearList(0, 1, 20);
+        assertThat(LineDecimation.of(x, y, 5), nullValue());
+    }
+
+    @Test
+    public void of2() {
+        // Two columns of 10 points each
+        ListNumber x = ListNumbers.linearList(0, 1, 20);
+        ListNumber y = new ArrayDouble(3, 1, 4, 1, 5, 9, 2, 6, 5, 3,
+                5, 8, 9, 7, 9, 3, 2, 3, 8, 4);
+        LineDecimation decimation = LineDecimation.of(x, y, 2);
+        Point2DDataset dataset = decimation.getDataset();
+        assertThat(dataset.getXValues(), equalTo((ListNumber) new ArrayDouble(0, 1, 5, 9, 10, 12, 16, 19)));
+        assertThat(dataset.getYValues(), equalTo((ListNumber) new ArrayDouble(3, 1, 9, 3, 5, 9, 2, 4)));
+        assertThat(decimation.originalIndex(0), equalTo(0));
+        assertThat(decimation.originalIndex(2), equalTo(5));
+        assertThat(decimation.originalIndex(7), equalTo(19));
+    }
+
+    @Test
+    public void of3() {
+        // Points repeated in a column are kept once
+        ListNumber x = ListNumbers.linearList(0, 1, 10);
+        ListNumber y = ListNumbers.linearList(0, 1, 10);
+        LineDecimation decimation = LineDecimation.of(x, y, 2);
+        assertThat(decimation.getDataset().getXValues(), equalTo((ListNumber) new ArrayDouble(0, 4, 5, 9)));
+        assertThat(decimation.getDataset().getYValues(), equalTo((ListNumber) new ArrayDouble(0, 4, 5, 9)));
+    }
+
+    @Test
+    public void of4() {
+        // Unsorted x or NaN y: the line is left as is
+        ListNumber y = ListNumbers.linearList(0, 1, 10);
+        assertThat(LineDecimation.of(new ArrayDouble(0, 1, 2, 3, 4, 6, 5, 7, 8, 9), y, 2), nullValue());
+        assertThat(LineDecimation.of(ListNumbers.linearList(0, 1, 10),
+                new ArrayDouble(0, 1, 2, 3, Double.NaN, 5, 6, 7, 8, 9), 2), nullValue());
+    }
+
+    @Test
+    public void columnOf1() {
+        // Plot from 10.5 to 20.5 for values from 0 to 100, in an image 30 pixels wide
+        LineDecimation.Columns columns = LineDecimation.Columns.plotArea(0, 100, 10.5, 20.5, 30);
+        assertThat(columns.size(), equalTo(32));
+        assertThat(columns.columnOf(0), equalTo(10));
+        assertThat(columns.columnOf(4), equalTo(10));
+        assertThat(columns.columnOf(5), equalTo(11));
+        assertThat(columns.columnOf(100), equalTo(20));
+        assertThat(columns.columnOf(-200), equalTo(-1));
+        assertThat(columns.columnOf(500), equalTo(30));
+        assertThat(LineDecimation.Columns.plotArea(0, 0, 10.5, 20.5, 30), nullValue());
+    }
+
+    @Test
+    public void render1() {
+        // The line decimated to the plot area is drawn as the full line
+        Random random = new Random(1);
+        double[] values = new double[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.sin(i / 5000.0) * 5 + random.nextGaussian();
+        }
+        Point2DDataset dataset = Point2DDatasets.lineData(new ArrayDouble(values));
+
+        DecimatingLineGraph2DRenderer renderer = new DecimatingLineGraph2DRenderer(300, 200);
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_3BYTE_BGR);
+        renderer.draw(image.createGraphics(), dataset);
+        LineDecimation.Columns columns = renderer.getColumns();
+        LineDecimation decimation = LineDecimation.of(dataset, columns);
+        assertThat(decimation.getDataset().getCount(), lessThanOrEqualTo(4 * columns.size()));
+
+        DecimatingLineGraph2DRenderer decimatedRenderer = new DecimatingLineGraph2DRenderer(300, 200);
+        BufferedImage decimatedImage = new BufferedImage(300, 200, BufferedImage.TYPE_3BYTE_BGR);
+        decimatedRenderer.draw(decimatedImage.createGraphics(), decimation.getDataset());
+        assertThat(decimatedRenderer.getColumns(), equalTo(columns));
+        assertThat(ValueUtil.toVImage(decimatedImage).getData(), equalTo(ValueUtil.toVImage(image).getData()));
+    }
+
+}
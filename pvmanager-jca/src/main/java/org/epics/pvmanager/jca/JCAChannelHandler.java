@@ -228,10 +228,15 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
         } else {
             throw new RuntimeException("Unsupported type for CA: " + newValue.getClass());
         }
-        jcaDataSource.getContext().flushIO();
     }
 
-    private void put(Object newValue, final ChannelWriteCallback callback) throws CAException {
+    /**
+     * Queues a put without callback.
+     * 
+     * @return true if the put was queued, false if the callback was already
+     * called with an error
+     */
+    private boolean put(Object newValue, final ChannelWriteCallback callback) throws CAException {
         // If it's a ListNumber, extract the array
         if (newValue instanceof ListNumber) {
             ListNumber data = (ListNumber) newValue;
@@ -289,10 +294,9 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
             channel.put(((Number) newValue).doubleValue());
         } else {
             callback.channelWritten(new Exception(new RuntimeException("Unsupported type for CA: " + newValue.getClass())));
-            return;
+            return false;
         }
-        jcaDataSource.getContext().flushIO();
-        callback.channelWritten(null);
+        return true;
     }
 
     private void setup(Channel channel) throws CAException {
@@ -539,12 +543,45 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
     @Override
     public void write(Object newValue, final ChannelWriteCallback callback) {
         try {
-            if (isPutCallback())
+            if (isPutCallback()) {
                 putWithCallback(newValue, callback);
-            else
-                put(newValue, callback);
+                jcaDataSource.getContext().flushIO();
+            } else if (put(newValue, callback)) {
+                jcaDataSource.getContext().flushIO();
+                callback.channelWritten(null);
+            }
+        } catch (CAException ex) {
+            callback.channelWritten(ex);
+        }
+    }
+    
+    /**
+     * Queues the write without flushing the context, so that the writes
+     * for many channels can be sent together. For a put without callback,
+     * the callback is not called: the caller must call it after the flush.
+     * <p>
+     * Must be called on the worker of this channel, so that the channel
+     * is not disconnected while the put is queued.
+     * 
+     * @param newValue the value to write
+     * @param callback the callback for the write
+     * @return true if the callback must be called after the flush
+     */
+    boolean queueWrite(Object newValue, final ChannelWriteCallback callback) {
+        if (channel == null) {
+            callback.channelWritten(new RuntimeException("Channel '" + getChannelName() + "' is disconnected"));
+            return false;
+        }
+        try {
+            if (isPutCallback()) {
+                putWithCallback(newValue, callback);
+                return false;
+            } else {
+                return put(newValue, callback);
+            }
         } catch (CAException ex) {
             callback.channelWritten(ex);
+            return false;
         }
     }
     
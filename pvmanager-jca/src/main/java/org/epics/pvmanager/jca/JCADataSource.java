@@ -8,9 +8,11 @@ import gov.aps.jca.CAException;
 import gov.aps.jca.Context;
 import gov.aps.jca.JCALibrary;
 import gov.aps.jca.Monitor;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.epics.pvmanager.ChannelHandler;
+import org.epics.pvmanager.ChannelWriteCallback;
 import org.epics.pvmanager.DataSource;
 import org.epics.pvmanager.vtype.DataTypeSupport;
 import com.cosylab.epics.caj.CAJContext;
@@ -21,6 +23,7 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.epics.pvmanager.util.Executors.namedPool;
 
 /**
@@ -200,6 +203,60 @@ public class JCADataSource extends DataSource {
         return new JCAChannelHandler(channelName, this);
     }
 
+    /**
+     * Queues the puts for all the channels and sends them with a single
+     * flush of the context. Each put is queued on the worker of its channel,
+     * so that it can't race the disconnection of the channel, and the last
+     * one flushes the context. With the JNI context, each channel is
+     * written and flushed separately.
+     * 
+     * @param values the channels to write and the values to write
+     * @param callback the callback to call for each channel
+     */
+    @Override
+    protected void writeChannels(Map<ChannelHandler, Object> values, final ChannelWriteCallback callback) {
+        if (ctxt instanceof JNIContext) {
+            super.writeChannels(values, callback);
+            return;
+        }
+        
+        final AtomicInteger remainingChannels = new AtomicInteger(values.size());
+        final AtomicInteger queuedPuts = new AtomicInteger();
+        for (Map.Entry<ChannelHandler, Object> entry : values.entrySet()) {
+            final JCAChannelHandler channelHandler = (JCAChannelHandler) entry.getKey();
+            final Object value = entry.getValue();
+            executeOnWorker(channelHandler, new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        if (channelHandler.queueWrite(value, callback)) {
+                            queuedPuts.incrementAndGet();
+                        }
+                    } catch (RuntimeException ex) {
+                        callback.channelWritten(ex);
+                    }
+                    if (remainingChannels.decrementAndGet() == 0) {
+                        flushPuts(queuedPuts.get(), callback);
+                    }
+                }
+            });
+        }
+    }
+    
+    private void flushPuts(int queuedPuts, ChannelWriteCallback callback) {
+        Exception flushException = null;
+        try {
+            ctxt.flushIO();
+        } catch (CAException ex) {
+            flushException = ex;
+        }
+        // Puts without callback are done once sent
+        for (int i = 0; i < queuedPuts; i++) {
+            callback.channelWritten(flushException);
+        }
+    }
+
     JCATypeSupport getTypeSupport() {
         return typeSupport;
     }
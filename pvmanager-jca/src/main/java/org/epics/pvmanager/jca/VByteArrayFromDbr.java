@@ -22,18 +22,25 @@ import org.epics.vtype.ValueUtil;
  */
 class VByteArrayFromDbr extends VNumberMetadata<DBR_TIME_Byte, DBR_CTRL_Double> implements VByteArray {
 
+    private final ListByte data;
+    private final ListInt sizes;
+
     public VByteArrayFromDbr(DBR_TIME_Byte dbrValue, DBR_CTRL_Double metadata, JCAConnectionPayload connPayload) {
         super(dbrValue, metadata, connPayload);
+        // Wrap the array once, instead of at each call
+        byte[] array = dbrValue.getByteValue();
+        data = new ArrayByte(array);
+        sizes = new ArrayInt(array.length);
     }
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getByteValue().length);
+        return sizes;
     }
 
     @Override
     public ListByte getData() {
-        return new ArrayByte(dbrValue.getByteValue());
+        return data;
     }
     
     @Override
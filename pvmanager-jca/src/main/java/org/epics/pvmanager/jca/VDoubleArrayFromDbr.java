@@ -22,18 +22,25 @@ import org.epics.vtype.ValueUtil;
  */
 class VDoubleArrayFromDbr extends VNumberMetadata<DBR_TIME_Double, DBR_CTRL_Double> implements VDoubleArray {
 
+    private final ListDouble data;
+    private final ListInt sizes;
+
     public VDoubleArrayFromDbr(DBR_TIME_Double dbrValue, DBR_CTRL_Double metadata, JCAConnectionPayload connPayload) {
         super(dbrValue, metadata, connPayload);
+        // Wrap the array once, instead of at each call
+        double[] array = dbrValue.getDoubleValue();
+        data = new ArrayDouble(array);
+        sizes = new ArrayInt(array.length);
     }
 
     @Override
     public ListDouble getData() {
-        return new ArrayDouble(dbrValue.getDoubleValue());
+        return data;
     }
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getDoubleValue().length);
+        return sizes;
     }
     
     @Override
@@ -22,18 +22,25 @@ import org.epics.vtype.ValueUtil;
  */
 class VFloatArrayFromDbr extends VNumberMetadata<DBR_TIME_Float, DBR_CTRL_Double> implements VFloatArray {
 
+    private final ListFloat data;
+    private final ListInt sizes;
+
     public VFloatArrayFromDbr(DBR_TIME_Float dbrValue, DBR_CTRL_Double metadata, JCAConnectionPayload connPayload) {
         super(dbrValue, metadata, connPayload);
+        // Wrap the array once, instead of at each call
+        float[] array = dbrValue.getFloatValue();
+        data = new ArrayFloat(array);
+        sizes = new ArrayInt(array.length);
     }
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getFloatValue().length);
+        return sizes;
     }
 
     @Override
     public ListFloat getData() {
-        return new ArrayFloat(dbrValue.getFloatValue());
+        return data;
     }
     
     @Override
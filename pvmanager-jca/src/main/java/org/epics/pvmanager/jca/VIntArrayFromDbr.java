@@ -20,18 +20,25 @@ import org.epics.vtype.ValueUtil;
  */
 class VIntArrayFromDbr extends VNumberMetadata<DBR_TIME_Int, DBR_CTRL_Double> implements VIntArray {
 
+    private final ListInt data;
+    private final ListInt sizes;
+
     public VIntArrayFromDbr(DBR_TIME_Int dbrValue, DBR_CTRL_Double metadata, JCAConnectionPayload connPayload) {
         super(dbrValue, metadata, connPayload);
+        // Wrap the array once, instead of at each call
+        int[] array = dbrValue.getIntValue();
+        data = new ArrayInt(array);
+        sizes = new ArrayInt(array.length);
     }
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getIntValue().length);
+        return sizes;
     }
 
     @Override
     public ListInt getData() {
-        return new ArrayInt(dbrValue.getIntValue());
+        return data;
     }
     
     @Override
@@ -22,18 +22,25 @@ import org.epics.vtype.ValueUtil;
  */
 class VShortArrayFromDbr extends VNumberMetadata<DBR_TIME_Short, DBR_CTRL_Double> implements VShortArray {
 
+    private final ListShort data;
+    private final ListInt sizes;
+
     public VShortArrayFromDbr(DBR_TIME_Short dbrValue, DBR_CTRL_Double metadata, JCAConnectionPayload connPayload) {
         super(dbrValue, metadata, connPayload);
+        // Wrap the array once, instead of at each call
+        short[] array = dbrValue.getShortValue();
+        data = new ArrayShort(array);
+        sizes = new ArrayInt(array.length);
     }
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getShortValue().length);
+        return sizes;
     }
 
     @Override
     public ListShort getData() {
-        return new ArrayShort(dbrValue.getShortValue());
+        return data;
     }
     
     @Override
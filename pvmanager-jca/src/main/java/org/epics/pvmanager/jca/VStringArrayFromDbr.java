@@ -19,11 +19,13 @@ import org.epics.util.array.ListInt;
  */
 class VStringArrayFromDbr extends VMetadata<DBR_TIME_String> implements VStringArray {
     
-    private List<String> data;
+    private final List<String> data;
+    private final ListInt sizes;
 
     public VStringArrayFromDbr(DBR_TIME_String dbrValue, JCAConnectionPayload connPayload) {
         super(dbrValue, connPayload);
         data = Collections.unmodifiableList(Arrays.asList(dbrValue.getStringValue()));
+        sizes = new ArrayInt(data.size());
     }
     
     @Override
@@ -33,7 +35,7 @@ class VStringArrayFromDbr extends VMetadata<DBR_TIME_String> implements VStringA
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getStringValue().length);
+        return sizes;
     }
     
     @Override
@@ -48,7 +48,8 @@ public class LocalDataSource extends DataSource {
      */
     @Deprecated
     public LocalDataSource(boolean zeroInitialization) {
-        super(true);
+        // Channel handlers are synchronized and can be processed in parallel
+        super(true, Runtime.getRuntime().availableProcessors());
         this.zeroInitialization = zeroInitialization;
     }
 
@@ -6,12 +6,17 @@ package org.epics.pvmanager.pva;
 
 import java.lang.reflect.Array;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.epics.pvaccess.client.Channel;
 import org.epics.pvaccess.client.Channel.ConnectionState;
@@ -43,8 +48,12 @@ import org.epics.pvmanager.ChannelHandlerReadSubscription;
 import org.epics.pvmanager.ChannelWriteCallback;
 import org.epics.pvmanager.MultiplexedChannelHandler;
 import org.epics.pvmanager.ValueCache;
+import org.epics.pvmanager.pva.adapters.AlarmTimeDisplayExtractor;
+import org.epics.pvmanager.pva.adapters.AlarmTimeExtractor;
 import org.epics.util.array.CollectionNumbers;
 import org.epics.util.array.ListNumber;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
 
 /**
  * 
@@ -57,12 +66,28 @@ public class PVAChannelHandler extends
 	private final ChannelProvider pvaChannelProvider;
 	private final short priority;
 	private final PVATypeSupport pvaTypeSupport;
+	
+	// monitor options, parsed from the channel name
+	private final String pvaChannelName;
+	private final int queueSize;
+	private final boolean pipeline;
+	private final boolean coalesce;
 
 	private volatile Channel channel = null;
 
 	private final AtomicBoolean monitorCreated = new AtomicBoolean(false);
 	private final AtomicLong monitorLossCounter = new AtomicLong(0);
-	//private volatile Monitor monitor = null;
+	private final AtomicLong monitorCoalescedCounter = new AtomicLong(0);
+	private final AtomicInteger monitorQueueDepth = new AtomicInteger(0);
+	private final AtomicInteger monitorMaxQueueDepth = new AtomicInteger(0);
+	private volatile Monitor monitor = null;
+	// top level fields requested by the monitor, null for all fields (guarded by this)
+	private Set<String> monitorFields = null;
+	
+	// alarm and display extracted from the previous messages,
+	// null if they changed since (guarded by this)
+	private Alarm lastAlarm = null;
+	private Display lastDisplay = null;
 	
 	private volatile Field channelType = null;
 	private volatile boolean isChannelEnumType = false;
@@ -73,12 +98,18 @@ public class PVAChannelHandler extends
 
 
 	private static final Logger logger = Logger.getLogger(PVAChannelHandler.class.getName());
+	
+	private final static Pattern hasOptions = Pattern.compile("(.*) (\\{.*\\})");
+	private final static Pattern hasOption = Pattern.compile("\\s*\"(\\w+)\"\\s*:\\s*(\\S+)\\s*");
 
 	private static CreateRequest createRequest = CreateRequest.create();
 	private static PVStructure allPVRequest = createRequest.createRequest("field()");
 	private static PVStructure standardPutPVRequest = createRequest.createRequest("field(value)");
 	private static PVStructure enumPutPVRequest = createRequest.createRequest("field(value.index)");
 	
+	private static final String[] alarmFields = { "alarm" };
+	private static final String[] displayFields = { "display", "control", "valueAlarm" };
+	
 	public PVAChannelHandler(String channelName,
 			ChannelProvider channelProvider, short priority,
 			PVATypeSupport typeSupport) {
@@ -86,6 +117,99 @@ public class PVAChannelHandler extends
 		this.pvaChannelProvider = channelProvider;
 		this.priority = priority;
 		this.pvaTypeSupport = typeSupport;
+		
+		// Parse parameters, e.g. "name {"queueSize":10,"pipeline":true,"coalesce":true}"
+		// Done here so that they can be immutable
+		int queueSize = 0;
+		boolean pipeline = false;
+		boolean coalesce = false;
+		Matcher matcher = hasOptions.matcher(channelName);
+		if (matcher.matches()) {
+			pvaChannelName = matcher.group(1);
+			String clientOptions = matcher.group(2);
+			// TODO: Hack, this should have a real JSON parser
+			for (String clientOption : clientOptions.substring(1, clientOptions.length() - 1).split(",")) {
+				Matcher optionMatcher = hasOption.matcher(clientOption);
+				if (!optionMatcher.matches())
+					throw new IllegalArgumentException("Option not recognized for " + channelName);
+				String value = optionMatcher.group(2);
+				switch (optionMatcher.group(1)) {
+					case "queueSize":
+						try {
+							queueSize = Integer.parseInt(value);
+						} catch (NumberFormatException ex) {
+							queueSize = 0;
+						}
+						if (queueSize <= 0)
+							throw new IllegalArgumentException("queueSize must be a positive integer for " + channelName);
+						break;
+					case "pipeline":
+						pipeline = parseBoolean(value, channelName);
+						break;
+					case "coalesce":
+						coalesce = parseBoolean(value, channelName);
+						break;
+					default:
+						throw new IllegalArgumentException("Option not recognized for " + channelName);
+				}
+			}
+		} else {
+			pvaChannelName = channelName;
+		}
+		this.queueSize = queueSize;
+		this.pipeline = pipeline;
+		this.coalesce = coalesce;
+	}
+	
+	private static boolean parseBoolean(String value, String channelName) {
+		switch (value) {
+			case "true":
+				return true;
+			case "false":
+				return false;
+			default:
+				throw new IllegalArgumentException("Option not recognized for " + channelName);
+		}
+	}
+
+	/**
+	 * The name of the pvAccess channel, without the options.
+	 * 
+	 * @return the pvAccess channel name
+	 */
+	public String getPVAChannelName() {
+		return pvaChannelName;
+	}
+
+	/**
+	 * The size of the monitor queue requested to the server.
+	 * 
+	 * @return the queue size, 0 if the default is used
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * Whether the monitor uses pipelining. The elements are released,
+	 * and therefore acknowledged to the server, only after they are processed,
+	 * so that a slow client limits the rate of the server.
+	 * 
+	 * @return true if the monitor is pipelined
+	 */
+	public boolean isPipeline() {
+		return pipeline;
+	}
+
+	/**
+	 * Whether the elements found in the monitor queue are coalesced, so that
+	 * only the latest is given to the readers, or are all processed
+	 * in order, so that queue readers receive all of them.
+	 * 
+	 * @return true if only the latest element in the queue is processed
+	 */
+	public boolean isCoalesce() {
+		return coalesce;
 	}
 
 	/**
@@ -145,7 +269,7 @@ public class PVAChannelHandler extends
 	
 	@Override
 	public void connect() {
-		pvaChannelProvider.createChannel(getChannelName(), this, priority);
+		pvaChannelProvider.createChannel(pvaChannelName, this, priority);
 	}
 
 	@Override
@@ -223,6 +347,12 @@ public class PVAChannelHandler extends
                 //properties.put("Write access", channel.getWriteAccess());
             }
             properties.put("Monitor loss count", monitorLossCounter.get());
+            properties.put("Monitor coalesced count", monitorCoalescedCounter.get());
+            properties.put("Monitor queue depth", monitorQueueDepth.get());
+            properties.put("Monitor max queue depth", monitorMaxQueueDepth.get());
+            properties.put("Monitor queue size", queueSize == 0 ? "default" : queueSize);
+            properties.put("Monitor pipeline", pipeline);
+            properties.put("Monitor coalesce", coalesce);
         }
         return properties;
     }
@@ -235,8 +365,15 @@ public class PVAChannelHandler extends
 		} finally {
 			channel = null;
 			
-			//monitor = null;
-			monitorCreated.set(false);
+			// guarded by this, as in addReader
+			synchronized (this)
+			{
+				monitor = null;
+				monitorCreated.set(false);
+				monitorFields = null;
+				lastAlarm = null;
+				lastDisplay = null;
+			}
 			
 			channelType = null;
 			
@@ -525,7 +662,7 @@ public class PVAChannelHandler extends
 	public void addReader(ChannelHandlerReadSubscription subscription) {
 		super.addReader(subscription);
 		
-		if (!monitorCreated.getAndSet(true))
+		if (!monitorCreated.get())
 		{
 			// TODO remove this....
 			for (int i = 0; i < 100 && channel.getConnectionState() == ConnectionState.NEVER_CONNECTED; i++)
@@ -534,9 +671,160 @@ public class PVAChannelHandler extends
 					Thread.sleep(100);
 				} catch (InterruptedException e) { }
 			}
-			// TODO optimize fields
-			channel.createMonitor(this, allPVRequest);
 		}
+		
+		synchronized (this)
+		{
+			Set<String> fields = getRequiredFields(subscription);
+			if (!monitorCreated.getAndSet(true))
+			{
+				monitorFields = fields;
+			}
+			else
+			{
+				if (monitorFields == null || (fields != null && monitorFields.containsAll(fields)))
+					return;
+				
+				// the new reader needs more fields, replace the monitor
+				if (fields == null)
+					monitorFields = null;
+				else
+					monitorFields.addAll(fields);
+				
+				if (monitor != null)
+				{
+					monitor.destroy();
+					monitor = null;
+				}
+			}
+			
+			lastAlarm = null;
+			lastDisplay = null;
+			monitor = channel.createMonitor(this, createMonitorRequest(monitorFields));
+		}
+	}
+	
+	/**
+	 * The top level fields of the channel the type adapter of the reader needs.
+	 * 
+	 * @param subscription the reader
+	 * @return the field names, <code>null</code> if all fields are needed or the type adapter is not known
+	 */
+	private Set<String> getRequiredFields(ChannelHandlerReadSubscription subscription)
+	{
+		Field type = channelType;
+		if (!(type instanceof Structure))
+			return null;
+		
+		String[] requiredFields;
+		try {
+			requiredFields = pvaTypeSupport.find(subscription.getValueCache(), this).getRequiredFields();
+		} catch (RuntimeException ex) {
+			// no type adapter, the error is reported to the reader
+			return null;
+		}
+		if (requiredFields == null)
+			return null;
+
+		// request only the fields the channel has
+		Set<String> fields = new HashSet<String>();
+		for (String fieldName : requiredFields)
+		{
+			if (((Structure)type).getField(fieldName) != null)
+				fields.add(fieldName);
+		}
+		return fields.isEmpty() ? null : fields;
+	}
+	
+	private PVStructure createMonitorRequest(Set<String> fields)
+	{
+		if (fields == null && queueSize == 0 && !pipeline)
+			return allPVRequest;
+		
+		StringBuilder request = new StringBuilder();
+		if (queueSize != 0 || pipeline)
+		{
+			request.append("record[");
+			if (queueSize != 0)
+				request.append("queueSize=").append(queueSize);
+			if (queueSize != 0 && pipeline)
+				request.append(',');
+			if (pipeline)
+				request.append("pipeline=true");
+			request.append(']');
+		}
+		
+		request.append("field(");
+		if (fields != null)
+		{
+			boolean first = true;
+			for (String fieldName : fields)
+			{
+				if (!first)
+					request.append(',');
+				request.append(fieldName);
+				first = false;
+			}
+		}
+		request.append(')');
+		// CreateRequest is not thread-safe
+		return CreateRequest.create().createRequest(request.toString());
+	}
+	
+	/**
+	 * The alarm of the message being processed. It is extracted only
+	 * if the alarm structure changed since the previous message.
+	 * 
+	 * @param message the message being processed
+	 * @return the alarm
+	 */
+	synchronized Alarm getAlarm(PVStructure message)
+	{
+		if (lastAlarm == null)
+			lastAlarm = AlarmTimeExtractor.extractAlarm(message);
+		return lastAlarm;
+	}
+	
+	/**
+	 * The display of the message being processed. It is extracted only
+	 * if the display, control or valueAlarm structures changed since the
+	 * previous message.
+	 * 
+	 * @param message the message being processed
+	 * @return the display
+	 */
+	synchronized Display getDisplay(PVStructure message)
+	{
+		if (lastDisplay == null)
+			lastDisplay = AlarmTimeDisplayExtractor.extractDisplay(message);
+		return lastDisplay;
+	}
+	
+	/**
+	 * Whether any of the given top level fields is marked as changed.
+	 * 
+	 * @param changedBitSet the changed bits of the monitor element
+	 * @param message the structure of the monitor element
+	 * @param fieldNames the top level fields
+	 * @return true if one of the fields, or the whole structure, changed
+	 */
+	private static boolean isChanged(BitSet changedBitSet, PVStructure message, String[] fieldNames)
+	{
+		if (changedBitSet.get(0))
+			return true;
+		
+		for (String fieldName : fieldNames)
+		{
+			PVField field = message.getSubField(fieldName);
+			if (field != null)
+			{
+				// the bit of the structure or of any of its subfields
+				int changed = changedBitSet.nextSetBit(field.getFieldOffset());
+				if (changed >= 0 && changed < field.getNextFieldOffset())
+					return true;
+			}
+		}
+		return false;
 	}
 
 	/* (non-Javadoc)
@@ -558,14 +846,72 @@ public class PVAChannelHandler extends
 	 */
 	@Override
 	public void monitorEvent(Monitor monitor) {
+		int queueDepth = 0;
+		boolean alarmChanged = false;
+		boolean displayChanged = false;
+		MonitorElement latestElement = null;
 		MonitorElement monitorElement;
 		while ((monitorElement = monitor.poll()) != null)
 		{
+			queueDepth++;
 			if (monitorElement.getOverrunBitSet().cardinality() > 0)
 				monitorLossCounter.incrementAndGet();
 			
-			// TODO combine bitSet, etc.... do we need to copy structure?
-			processMessage(monitorElement.getPVStructure());
+			PVStructure message = monitorElement.getPVStructure();
+			BitSet changedBitSet = monitorElement.getChangedBitSet();
+			alarmChanged |= isChanged(changedBitSet, message, alarmFields);
+			displayChanged |= isChanged(changedBitSet, message, displayFields);
+			
+			if (coalesce)
+			{
+				// keep only the latest element, the changes of the ones
+				// skipped are accounted for in the flags
+				if (latestElement != null)
+				{
+					monitor.release(latestElement);
+					monitorCoalescedCounter.incrementAndGet();
+				}
+				latestElement = monitorElement;
+			}
+			else
+			{
+				processElement(monitor, monitorElement, alarmChanged, displayChanged);
+				alarmChanged = false;
+				displayChanged = false;
+			}
+		}
+		
+		if (latestElement != null)
+			processElement(monitor, latestElement, alarmChanged, displayChanged);
+		
+		monitorQueueDepth.set(queueDepth);
+		int maxQueueDepth = monitorMaxQueueDepth.get();
+		while (queueDepth > maxQueueDepth && !monitorMaxQueueDepth.compareAndSet(maxQueueDepth, queueDepth))
+			maxQueueDepth = monitorMaxQueueDepth.get();
+	}
+	
+	/**
+	 * Processes the element and releases it. With pipelining, the release
+	 * is what acknowledges the element to the server.
+	 */
+	private void processElement(Monitor monitor, MonitorElement monitorElement, boolean alarmChanged, boolean displayChanged)
+	{
+		try {
+			synchronized (this)
+			{
+				// skip monitors replaced by one with more fields
+				if (this.monitor == null || this.monitor == monitor)
+				{
+					if (alarmChanged)
+						lastAlarm = null;
+					if (displayChanged)
+						lastDisplay = null;
+					
+					// TODO combine bitSet, etc.... do we need to copy structure?
+					processMessage(monitorElement.getPVStructure());
+				}
+			}
+		} finally {
 			monitor.release(monitorElement);
 		}
 	}
@@ -120,6 +120,17 @@ public abstract class PVATypeAdapter implements DataSourceTypeAdapter<PVAChannel
         return true;
     }
 
+    /**
+     * The names of the top level fields of the channel structure this adapter
+     * reads. The monitor of the channel requests only the fields needed
+     * by all its readers.
+     * 
+     * @return the field names, <code>null</code> if all fields are needed
+     */
+    public String[] getRequiredFields() {
+        return null;
+    }
+
     /**
      * Given the value create the new value.
      * 
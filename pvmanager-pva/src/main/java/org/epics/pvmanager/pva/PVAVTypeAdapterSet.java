@@ -16,6 +16,7 @@ import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVScalarArray;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvmanager.ValueCache;
 import org.epics.pvmanager.pva.adapters.PVFieldNTHistogramToVIntArray;
 import org.epics.pvmanager.pva.adapters.PVFieldNTHistogramToVLongArray;
 import org.epics.pvmanager.pva.adapters.PVFieldNTHistogramToVShortArray;
@@ -40,6 +41,8 @@ import org.epics.pvmanager.pva.adapters.PVFieldToVStatistics;
 import org.epics.pvmanager.pva.adapters.PVFieldToVString;
 import org.epics.pvmanager.pva.adapters.PVFieldToVStringArray;
 import org.epics.pvmanager.pva.adapters.PVFieldToVTable;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
 import org.epics.vtype.VBoolean;
 import org.epics.vtype.VByte;
 import org.epics.vtype.VByteArray;
@@ -68,13 +71,62 @@ import org.epics.vtype.VTable;
 public class PVAVTypeAdapterSet implements PVATypeAdapterSet {
     
 	private static final FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+
+    /**
+     * Type adapter for values with alarm, time and display. Requests only the fields
+     * it reads, and reuses the alarm and display that the channel extracted
+     * from the previous messages if they did not change.
+     */
+    static abstract class AlarmTimeDisplayTypeAdapter extends PVATypeAdapter {
+
+        private static final String[] requiredFields =
+                { "value", "alarm", "timeStamp", "display", "control", "valueAlarm" };
+
+        AlarmTimeDisplayTypeAdapter(Class<?> typeClass, String[] ntIds, Field[] fieldTypes) {
+            super(typeClass, ntIds, fieldTypes);
+        }
+
+        @Override
+        public String[] getRequiredFields() {
+            return requiredFields.clone();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean updateCache(@SuppressWarnings("rawtypes") ValueCache cache, PVAChannelHandler channel, PVStructure message) {
+            Object value;
+            if (channel.isConnected())
+                value = createValue(message, channel.getChannelType(), false, channel.getAlarm(message), channel.getDisplay(message));
+            else
+                value = createValue(message, channel.getChannelType(), true, null, null);
+            cache.writeValue(value);
+            return true;
+        }
+
+        @Override
+        public Object createValue(PVStructure message, Field valueType, boolean disconnected) {
+            return createValue(message, valueType, disconnected, null, null);
+        }
+
+        /**
+         * Given the value create the new value.
+         * 
+         * @param message the value taken from the monitor
+         * @param valueType the value introspection data
+         * @param disconnected true if the value should report the channel is currently disconnected
+         * @param alarm the alarm of the message if already extracted, <code>null</code> otherwise
+         * @param display the display of the message if already extracted, <code>null</code> otherwise
+         * @return the new value
+         */
+        public abstract Object createValue(PVStructure message, Field valueType, boolean disconnected, Alarm alarm, Display display);
+    }
     @Override
     public Set<PVATypeAdapter> getAdapters() {
         return converters;
     }
     
     //  -> VDouble
-    final static PVATypeAdapter ToVDouble = new PVATypeAdapter(
+    final static PVATypeAdapter ToVDouble = new AlarmTimeDisplayTypeAdapter(
     		VDouble.class, 
     		new String[] { "uri:ev4:nt/2012/pwd:NTScalar", "scalar_t" }, 
     		new Field[]
@@ -83,13 +135,13 @@ public class PVAVTypeAdapterSet implements PVATypeAdapterSet {
     				})
     	{
             @Override
-            public VDouble createValue(PVStructure message, Field valueType, boolean disconnected) {
-                return new PVFieldToVDouble(message, disconnected);
+            public VDouble createValue(PVStructure message, Field valueType, boolean disconnected, Alarm alarm, Display display) {
+                return new PVFieldToVDouble(message, disconnected, alarm, display);
             }
         };
 
     //  -> VFloat
-    final static PVATypeAdapter ToVFloat = new PVATypeAdapter(
+    final static PVATypeAdapter ToVFloat = new AlarmTimeDisplayTypeAdapter(
     		VFloat.class, 
     		new String[] { "uri:ev4:nt/2012/pwd:NTScalar", "scalar_t" }, 
     		new Field[]
@@ -98,13 +150,13 @@ public class PVAVTypeAdapterSet implements PVATypeAdapterSet {
     				})
     	{
             @Override
-            public VFloat createValue(PVStructure message, Field valueType, boolean disconnected) {
-                return new PVFieldToVFloat(message, disconnected);
+            public VFloat createValue(PVStructure message, Field valueType, boolean disconnected, Alarm alarm, Display display) {
+                return new PVFieldToVFloat(message, disconnected, alarm, display);
             }
         };
         
     //  -> VByte
-    final static PVATypeAdapter ToVByte = new PVATypeAdapter(
+    final static PVATypeAdapter ToVByte = new AlarmTimeDisplayTypeAdapter(
     		VByte.class,
     		new String[] { "uri:ev4:nt/2012/pwd:NTScalar", "scalar_t" },
     		new Field[]
@@ -115,13 +167,13 @@ public class PVAVTypeAdapterSet implements PVATypeAdapterSet {
     	{
 
             @Override
-            public VByte createValue(final PVStructure message, Field valueType, boolean disconnected) {
-            	return new PVFieldToVByte(message, disconnected);
+            public VByte createValue(final PVStructure message, Field valueType, boolean disconnected, Alarm alarm, Display display) {
+            	return new PVFieldToVByte(message, disconnected, alarm, display);
             }
         };
 
     //  -> VShort
-    final static PVATypeAdapter ToVShort = new PVATypeAdapter(
+    final static PVATypeAdapter ToVShort = new AlarmTimeDisplayTypeAdapter(
     		VShort.class,
     		new String[] { "uri:ev4:nt/2012/pwd:NTScalar", "scalar_t" },
     		new Field[]
@@ -132,13 +184,13 @@ public class PVAVTypeAdapterSet implements PVATypeAdapterSet {
     	{
 
             @Override
-            public VShort createValue(final PVStructure message, Field valueType, boolean disconnected) {
-            	return new PVFieldToVShort(message, disconnected);
+            public VShort createValue(final PVStructure message, Field valueType, boolean disconnected, Alarm alarm, Display display) {
+            	return new PVFieldToVShort(message, disconnected, alarm, display);
             }
         };
 
     //  -> VInt
-    final static PVATypeAdapter ToVInt = new PVATypeAdapter(
+    final static PVATypeAdapter ToVInt = new AlarmTimeDisplayTypeAdapter(
     		VInt.class,
     		new String[] { "uri:ev4:nt/2012/pwd:NTScalar", "scalar_t" },
     		new Field[]
@@ -149,13 +201,13 @@ public class PVAVTypeAdapterSet implements PVATypeAdapterSet {
     	{
 
             @Override
-            public VInt createValue(final PVStructure message, Field valueType, boolean disconnected) {
-            	return new PVFieldToVInt(message, disconnected);
+            public VInt createValue(final PVStructure message, Field valueType, boolean disconnected, Alarm alarm, Display display) {
+            	return new PVFieldToVInt(message, disconnected, alarm, display);
             }
         };
         
     //  -> VLong
-    final static PVATypeAdapter ToVLong = new PVATypeAdapter(
+    final static PVATypeAdapter ToVLong = new AlarmTimeDisplayTypeAdapter(
     		VLong.class,
     		new String[] { "uri:ev4:nt/2012/pwd:NTScalar", "scalar_t" },
     		new Field[]
@@ -166,8 +218,8 @@ public class PVAVTypeAdapterSet implements PVATypeAdapterSet {
     	{
 
             @Override
-            public VLong createValue(final PVStructure message, Field valueType, boolean disconnected) {
-            	return new PVFieldToVLong(message, disconnected);
+            public VLong createValue(final PVStructure message, Field valueType, boolean disconnected, Alarm alarm, Display display) {
+            	return new PVFieldToVLong(message, disconnected, alarm, display);
             }
         };
         
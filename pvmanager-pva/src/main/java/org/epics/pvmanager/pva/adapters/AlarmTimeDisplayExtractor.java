@@ -17,6 +17,7 @@ import org.epics.pvdata.pv.PVScalar;
 import org.epics.pvdata.pv.PVString;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.util.text.NumberFormats;
+import org.epics.vtype.Alarm;
 import org.epics.vtype.Display;
 import org.epics.vtype.ValueFactory;
 
@@ -105,7 +106,55 @@ public class AlarmTimeDisplayExtractor extends AlarmTimeExtractor implements Dis
 	
 	public AlarmTimeDisplayExtractor(PVStructure pvField, boolean disconnected)
 	{
-		super(pvField, disconnected);
+		this(pvField, disconnected, null, null);
+	}
+	
+	/**
+	 * @param pvField
+	 * @param disconnected
+	 * @param alarm the alarm already extracted from an unchanged alarm structure,
+	 *              <code>null</code> to extract it from <code>pvField</code>
+	 * @param display the display already extracted from unchanged display, control
+	 *                and valueAlarm structures, <code>null</code> to extract it from <code>pvField</code>
+	 */
+	public AlarmTimeDisplayExtractor(PVStructure pvField, boolean disconnected, Alarm alarm, Display display)
+	{
+		super(pvField, disconnected, alarm);
+		
+		if (display == null)
+			display = extractDisplay(pvField);
+		
+		lowerDisplayLimit = display.getLowerDisplayLimit();
+		lowerCtrlLimit = display.getLowerCtrlLimit();
+		lowerAlarmLimit = display.getLowerAlarmLimit();
+		lowerWarningLimit = display.getLowerWarningLimit();
+		units = display.getUnits();
+		format = display.getFormat();
+		upperWarningLimit = display.getUpperWarningLimit();
+		upperAlarmLimit = display.getUpperAlarmLimit();
+		upperCtrlLimit = display.getUpperCtrlLimit();
+		upperDisplayLimit = display.getUpperDisplayLimit();
+	}
+	
+	/**
+	 * Extracts the display_t, control_t and valueAlarm_t structures
+	 * of the given structure.
+	 * 
+	 * @param pvField the structure with the display information
+	 * @return the display; never null
+	 */
+	public static Display extractDisplay(PVStructure pvField)
+	{
+		Double lowerDisplayLimit;
+		Double lowerCtrlLimit;
+		Double lowerAlarmLimit;
+		Double lowerWarningLimit;
+		String units;
+		NumberFormat format;
+		Double upperWarningLimit;
+		Double upperAlarmLimit;
+		Double upperCtrlLimit;
+		Double upperDisplayLimit;
 		
 		// display_t
 		PVStructure displayStructure = pvField.getStructureField("display");
@@ -164,6 +213,9 @@ public class AlarmTimeDisplayExtractor extends AlarmTimeExtractor implements Dis
 			upperWarningLimit = noDisplay.getUpperWarningLimit();
 			upperAlarmLimit = noDisplay.getUpperAlarmLimit();
 		}
+		
+		return ValueFactory.newDisplay(lowerDisplayLimit, lowerAlarmLimit, lowerWarningLimit, units, format,
+				upperWarningLimit, upperAlarmLimit, upperDisplayLimit, lowerCtrlLimit, upperCtrlLimit);
 	}
 	
 	protected static final Convert convert = ConvertFactory.getConvert();
@@ -27,6 +27,17 @@ public class AlarmTimeExtractor implements Alarm, Time {
 	private static final Integer noTimeUserTag = null;
 	
 	public AlarmTimeExtractor(PVStructure pvField, boolean disconnected)
+	{
+		this(pvField, disconnected, null);
+	}
+	
+	/**
+	 * @param pvField
+	 * @param disconnected
+	 * @param alarm the alarm already extracted from an unchanged alarm structure,
+	 *              <code>null</code> to extract it from <code>pvField</code>
+	 */
+	public AlarmTimeExtractor(PVStructure pvField, boolean disconnected, Alarm alarm)
 	{
 		// alarm_t
 		if (disconnected)
@@ -36,30 +47,10 @@ public class AlarmTimeExtractor implements Alarm, Time {
 		}
 		else
 		{
-			PVStructure alarmStructure = pvField.getStructureField("alarm");
-			if (alarmStructure != null)
-			{
-				PVInt severityField = alarmStructure.getIntField("severity");
-				if (severityField == null)
-					alarmSeverity = AlarmSeverity.UNDEFINED;
-				else
-					alarmSeverity = alarmSeverityMapLUT[severityField.get()];
-				// no explicit out-of-bounds check
-				
-				
-				PVInt statusField = alarmStructure.getIntField("status");
-				if (statusField == null)
-					alarmStatus = "UNDEFINED";
-				else
-					alarmStatus = alarmStatusMapLUT[statusField.get()];
-				// no explicit out-of-bounds check
-				
-			}
-			else
-			{
-				alarmSeverity = noAlarm.getAlarmSeverity();
-				alarmStatus = noAlarm.getAlarmName();
-			}
+			if (alarm == null)
+				alarm = extractAlarm(pvField);
+			alarmSeverity = alarm.getAlarmSeverity();
+			alarmStatus = alarm.getAlarmName();
 		}
 		
 		// timeStamp_t
@@ -91,6 +82,37 @@ public class AlarmTimeExtractor implements Alarm, Time {
 		
 	}
 	
+	/**
+	 * Extracts the alarm_t structure of the given structure.
+	 * 
+	 * @param pvField the structure with the alarm
+	 * @return the alarm; never null
+	 */
+	public static Alarm extractAlarm(PVStructure pvField)
+	{
+		PVStructure alarmStructure = pvField.getStructureField("alarm");
+		if (alarmStructure == null)
+			return noAlarm;
+		
+		AlarmSeverity alarmSeverity;
+		PVInt severityField = alarmStructure.getIntField("severity");
+		if (severityField == null)
+			alarmSeverity = AlarmSeverity.UNDEFINED;
+		else
+			alarmSeverity = alarmSeverityMapLUT[severityField.get()];
+		// no explicit out-of-bounds check
+		
+		String alarmStatus;
+		PVInt statusField = alarmStructure.getIntField("status");
+		if (statusField == null)
+			alarmStatus = "UNDEFINED";
+		else
+			alarmStatus = alarmStatusMapLUT[statusField.get()];
+		// no explicit out-of-bounds check
+		
+		return ValueFactory.newAlarm(alarmSeverity, alarmStatus);
+	}
+	
 	// org.epics.pvdata.property.AlarmSeverity to pvmanager.AlarmSeverity
 	protected static final AlarmSeverity alarmSeverityMapLUT[] =
 	{
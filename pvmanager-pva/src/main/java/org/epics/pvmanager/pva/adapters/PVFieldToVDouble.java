@@ -5,6 +5,8 @@
 package org.epics.pvmanager.pva.adapters;
 
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
 import org.epics.vtype.VDouble;
 import org.epics.vtype.VTypeToString;
 
@@ -21,7 +23,17 @@ public class PVFieldToVDouble extends AlarmTimeDisplayExtractor implements VDoub
 	 * @param disconnected
 	 */
 	public PVFieldToVDouble(PVStructure pvField, boolean disconnected) {
-		super(pvField, disconnected);
+		this(pvField, disconnected, null, null);
+	}
+
+	/**
+	 * @param pvField
+	 * @param disconnected
+	 * @param alarm the previously extracted alarm, <code>null</code> to extract it
+	 * @param display the previously extracted display, <code>null</code> to extract it
+	 */
+	public PVFieldToVDouble(PVStructure pvField, boolean disconnected, Alarm alarm, Display display) {
+		super(pvField, disconnected, alarm, display);
 		
 		value = getDoubleValue(pvField, "value", null);
 	}
@@ -6,6 +6,8 @@ package org.epics.pvmanager.pva.adapters;
 
 import org.epics.pvdata.pv.PVFloat;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
 import org.epics.vtype.VFloat;
 import org.epics.vtype.VTypeToString;
 
@@ -22,7 +24,17 @@ public class PVFieldToVFloat extends AlarmTimeDisplayExtractor implements VFloat
    * @param disconnected
    */
   public PVFieldToVFloat(PVStructure pvField, boolean disconnected) {
-    super(pvField, disconnected);
+    this(pvField, disconnected, null, null);
+  }
+
+  /**
+   * @param pvField
+   * @param disconnected
+   * @param alarm the previously extracted alarm, <code>null</code> to extract it
+   * @param display the previously extracted display, <code>null</code> to extract it
+   */
+  public PVFieldToVFloat(PVStructure pvField, boolean disconnected, Alarm alarm, Display display) {
+    super(pvField, disconnected, alarm, display);
 
     PVFloat floatField = pvField.getFloatField("value");
     if (floatField != null) {
@@ -7,6 +7,8 @@ package org.epics.pvmanager.pva.adapters;
 import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVScalar;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
 import org.epics.vtype.VLong;
 import org.epics.vtype.VTypeToString;
 
@@ -23,7 +25,17 @@ public class PVFieldToVLong extends AlarmTimeDisplayExtractor implements VLong {
 	 * @param disconnected
 	 */
 	public PVFieldToVLong(PVStructure pvField, boolean disconnected) {
-		super(pvField, disconnected);
+		this(pvField, disconnected, null, null);
+	}
+
+	/**
+	 * @param pvField
+	 * @param disconnected
+	 * @param alarm the previously extracted alarm, <code>null</code> to extract it
+	 * @param display the previously extracted display, <code>null</code> to extract it
+	 */
+	public PVFieldToVLong(PVStructure pvField, boolean disconnected, Alarm alarm, Display display) {
+		super(pvField, disconnected, alarm, display);
 		
 		PVField field = pvField.getSubField("value");
 		if (field instanceof PVScalar)
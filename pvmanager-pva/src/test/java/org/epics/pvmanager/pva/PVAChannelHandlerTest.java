@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.pva;
+
+import org.epics.pvaccess.client.ChannelProvider;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author msekoranja
+ */
+public class PVAChannelHandlerTest {
+    
+    public PVAChannelHandlerTest() {
+    }
+
+    private static PVAChannelHandler createChannel(String channelName) {
+        return new PVAChannelHandler(channelName, null, ChannelProvider.PRIORITY_DEFAULT, null);
+    }
+
+    @Test
+    public void new1() {
+        PVAChannelHandler channel = createChannel("test");
+        assertThat(channel.getChannelName(), equalTo("test"));
+        assertThat(channel.getPVAChannelName(), equalTo("test"));
+        assertThat(channel.getQueueSize(), equalTo(0));
+        assertThat(channel.isPipeline(), equalTo(false));
+        assertThat(channel.isCoalesce(), equalTo(false));
+    }
+
+    @Test
+    public void new2() {
+        PVAChannelHandler channel = createChannel("test {\"queueSize\":10}");
+        assertThat(channel.getChannelName(), equalTo("test {\"queueSize\":10}"));
+        assertThat(channel.getPVAChannelName(), equalTo("test"));
+        assertThat(channel.getQueueSize(), equalTo(10));
+        assertThat(channel.isPipeline(), equalTo(false));
+        assertThat(channel.isCoalesce(), equalTo(false));
+    }
+
+    @Test
+    public void new3() {
+        PVAChannelHandler channel = createChannel("test {\"queueSize\": 4, \"pipeline\": true, \"coalesce\": true}");
+        assertThat(channel.getPVAChannelName(), equalTo("test"));
+        assertThat(channel.getQueueSize(), equalTo(4));
+        assertThat(channel.isPipeline(), equalTo(true));
+        assertThat(channel.isCoalesce(), equalTo(true));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void new4() {
+        createChannel("test {\"pipeline\":tru}");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void new5() {
+        createChannel("test {\"queueSize\":0}");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void new6() {
+        createChannel("test {\"queueLength\":10}");
+    }
+}
@@ -26,7 +26,8 @@ public final class SimulationDataSource extends DataSource {
     }
 
     public SimulationDataSource() {
-        super(false);
+        // Channels are independent and can be processed in parallel
+        super(false, Runtime.getRuntime().availableProcessors());
     }
 
     /**
@@ -14,9 +14,16 @@ import org.epics.pvmanager.*;
  * @author carcassi
  */
 class DelayedWriteChannel extends MultiplexedChannelHandler<Object, Object> {
+    
+    private final long delayMs;
 
     DelayedWriteChannel(String channelName) {
+        this(channelName, 1000);
+    }
+
+    DelayedWriteChannel(String channelName, long delayMs) {
         super(channelName);
+        this.delayMs = delayMs;
     }
 
     @Override
@@ -32,7 +39,7 @@ class DelayedWriteChannel extends MultiplexedChannelHandler<Object, Object> {
     @Override
     public void write(Object newValue, ChannelWriteCallback callback) {
         try {
-            Thread.sleep(1000);
+            Thread.sleep(delayMs);
             processMessage(newValue);
             callback.channelWritten(null);
         } catch (Exception ex) {
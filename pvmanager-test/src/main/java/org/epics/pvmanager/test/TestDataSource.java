@@ -25,7 +25,8 @@ public final class TestDataSource extends DataSource {
      * Creates a new data source.
      */
     public TestDataSource() {
-        super(true);
+        // Channels are independent and can be processed in parallel
+        super(true, Runtime.getRuntime().availableProcessors());
     }
 
     @Override
@@ -33,6 +34,11 @@ public final class TestDataSource extends DataSource {
         if ("delayedWrite".equals(channelName)) {
             return new DelayedWriteChannel(channelName);
         }
+        // delayedWrite/<delay in ms>/<any id>
+        if (channelName.startsWith("delayedWrite/")) {
+            String[] tokens = channelName.split("/");
+            return new DelayedWriteChannel(channelName, Long.parseLong(tokens[1]));
+        }
         if ("delayedConnection".equals(channelName)) {
             return new DelayedConnectionChannel(channelName);
         }
@@ -4,7 +4,9 @@
  */
 package org.epics.pvmanager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import org.epics.pvmanager.ConnectionCollector;
 import org.epics.pvmanager.WriteFunction;
 import static org.hamcrest.Matchers.*;
@@ -76,4 +78,42 @@ public class ConnectionCollectorTest {
         collector.removeChannel("first");
         assertThat(collector.readValue(), equalTo(true));
     }
+    
+    @Test
+    public void concurrentChanges() throws Exception {
+        // Channels flipping on different threads
+        final ConnectionCollector collector = new ConnectionCollector();
+        final List<WriteFunction<Boolean>> writeFunctions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            writeFunctions.add(collector.addChannel("channel" + i));
+        }
+        assertThat(collector.readValue(), equalTo(false));
+        
+        List<Thread> threads = new ArrayList<>();
+        for (int n = 0; n < 4; n++) {
+            final int offset = n;
+            Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int repeat = 0; repeat < 1000; repeat++) {
+                        for (int i = offset; i < writeFunctions.size(); i += 4) {
+                            writeFunctions.get(i).writeValue(repeat % 2 == 1);
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(collector.readValue(), equalTo(true));
+        
+        writeFunctions.get(50).writeValue(false);
+        assertThat(collector.readValue(), equalTo(false));
+        collector.removeChannel("channel50");
+        assertThat(collector.readValue(), equalTo(true));
+    }
 }
@@ -4,6 +4,9 @@
  */
 package org.epics.pvmanager;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.epics.util.time.TimeDuration;
 import org.junit.*;
 import static org.junit.Assert.*;
 import org.mockito.Mock;
@@ -32,6 +35,10 @@ public class DatasourceTest {
             super(writeable);
         }
 
+        public MockDataSource(boolean writeable, int workerThreads) {
+            super(writeable, workerThreads);
+        }
+
         @Override
         protected String channelHandlerLookupName(String channelName) {
             if ("changeit".equals(channelName))
@@ -49,6 +56,84 @@ public class DatasourceTest {
     @Mock ChannelHandler channel1;
     @Mock ChannelHandler channel2;
 
+    /**
+     * A channel that waits, while adding a reader, for all the other
+     * channels to do the same. The hash code selects the worker.
+     */
+    private static class ParallelChannel extends ChannelHandler {
+
+        private final int hash;
+        private final CountDownLatch started;
+        private final CountDownLatch done;
+        private volatile Thread readerThread;
+        private volatile boolean parallel;
+
+        public ParallelChannel(String channelName, int hash, CountDownLatch started, CountDownLatch done) {
+            super(channelName);
+            this.hash = hash;
+            this.started = started;
+            this.done = done;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return this == obj;
+        }
+
+        @Override
+        protected void addReader(ChannelHandlerReadSubscription subscription) {
+            readerThread = Thread.currentThread();
+            started.countDown();
+            try {
+                parallel = started.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        }
+
+        @Override
+        public int getUsageCounter() {
+            return 0;
+        }
+
+        @Override
+        public int getReadUsageCounter() {
+            return 0;
+        }
+
+        @Override
+        public int getWriteUsageCounter() {
+            return 0;
+        }
+
+        @Override
+        protected void removeReader(ChannelHandlerReadSubscription subscription) {
+        }
+
+        @Override
+        protected void addWriter(ChannelHandlerWriteSubscription subscription) {
+        }
+
+        @Override
+        protected void removeWrite(ChannelHandlerWriteSubscription subscription) {
+        }
+
+        @Override
+        protected void write(Object newValue, ChannelWriteCallback callback) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return false;
+        }
+    }
+
     @Test
     public void connect1() {
         // A simple recipe with one channel
@@ -62,7 +147,7 @@ public class DatasourceTest {
         dataSource.connectRead(dataRecipe);
         
         verify(dataSource).channel("first");
-        verify(channel1).addReader(exp.recipeFor("first").getReadSubscription());
+        verify(channel1, timeout(1000)).addReader(exp.recipeFor("first").getReadSubscription());
     }
 
     @Test
@@ -80,8 +165,8 @@ public class DatasourceTest {
         
         verify(dataSource).channel("first");
         verify(dataSource).channel("second");
-        verify(channel1).addReader(exp.recipeFor("first").getReadSubscription());
-        verify(channel2).addReader(exp.recipeFor("second").getReadSubscription());
+        verify(channel1, timeout(1000)).addReader(exp.recipeFor("first").getReadSubscription());
+        verify(channel2, timeout(1000)).addReader(exp.recipeFor("second").getReadSubscription());
     }
 
     @Test
@@ -101,8 +186,8 @@ public class DatasourceTest {
         
         verify(dataSource, times(2)).channel("first");
         verify(dataSource).createChannel("first");
-        verify(channel1).addReader(exp1.recipeFor("first").getReadSubscription());
-        verify(channel1).addReader(exp2.recipeFor("first").getReadSubscription());
+        verify(channel1, timeout(1000)).addReader(exp1.recipeFor("first").getReadSubscription());
+        verify(channel1, timeout(1000)).addReader(exp2.recipeFor("first").getReadSubscription());
     }
 
     @Test
@@ -119,8 +204,133 @@ public class DatasourceTest {
         
         verify(dataSource).channel("changeit");
         verify(dataSource).createChannel("changeit");
-        verify(channel1).addReader(exp.recipeFor("changeit").getReadSubscription());
+        verify(channel1, timeout(1000)).addReader(exp.recipeFor("changeit").getReadSubscription());
         assertThat(dataSource.getChannels().get("first"), not(equalTo(null)));
         assertThat(dataSource.getChannels().get("changeit"), equalTo(null));
     }
+
+    @Test
+    public void evictIdle1() {
+        // Channels are kept by default
+        
+        ReadExpressionTester exp = new ReadExpressionTester(latestValueOf(channel("first")));
+        ReadRecipe dataRecipe = exp.getReadRecipe();
+        
+        DataSource dataSource = spy(new MockDataSource(true));
+        doReturn(channel1).when(dataSource).createChannel("first");
+        
+        dataSource.connectRead(dataRecipe);
+        dataSource.disconnectRead(dataRecipe);
+        
+        verify(channel1, timeout(1000)).removeReader(exp.recipeFor("first").getReadSubscription());
+        assertThat(dataSource.getChannels().get("first"), sameInstance(channel1));
+        assertThat(dataSource.getCreatedChannelCount(), equalTo(1L));
+        assertThat(dataSource.getEvictedChannelCount(), equalTo(0L));
+    }
+
+    @Test
+    public void evictIdle2() {
+        // Only the oldest idle channels above the maximum are evicted
+        
+        ReadExpressionTester exp1 = new ReadExpressionTester(latestValueOf(channel("first")));
+        ReadExpressionTester exp2 = new ReadExpressionTester(latestValueOf(channel("second")));
+        ReadRecipe dataRecipe1 = exp1.getReadRecipe();
+        ReadRecipe dataRecipe2 = exp2.getReadRecipe();
+        
+        DataSource dataSource = spy(new MockDataSource(true));
+        dataSource.setIdleChannelEviction(null, 1);
+        doReturn(channel1).when(dataSource).createChannel("first");
+        doReturn(channel2).when(dataSource).createChannel("second");
+        
+        dataSource.connectRead(dataRecipe1);
+        dataSource.connectRead(dataRecipe2);
+        assertThat(dataSource.getChannels().size(), equalTo(2));
+        
+        dataSource.disconnectRead(dataRecipe1);
+        assertThat(dataSource.getChannels().size(), equalTo(2));
+        assertThat(dataSource.getEvictedChannelCount(), equalTo(0L));
+        
+        dataSource.disconnectRead(dataRecipe2);
+        assertThat(dataSource.getChannels().get("first"), equalTo(null));
+        assertThat(dataSource.getChannels().get("second"), sameInstance(channel2));
+        assertThat(dataSource.getEvictedChannelCount(), equalTo(1L));
+        verify(channel1, timeout(1000)).removeReader(exp1.recipeFor("first").getReadSubscription());
+    }
+
+    @Test
+    public void evictIdle3() throws Exception {
+        // Channels used again within the grace period are revived,
+        // the others are evicted
+        
+        ReadExpressionTester exp1 = new ReadExpressionTester(latestValueOf(channel("first")));
+        ReadExpressionTester exp2 = new ReadExpressionTester(latestValueOf(channel("first")));
+        ReadExpressionTester exp3 = new ReadExpressionTester(latestValueOf(channel("second")));
+        
+        DataSource dataSource = spy(new MockDataSource(true));
+        dataSource.setIdleChannelEviction(TimeDuration.ofMillis(100), -1);
+        doReturn(channel1).when(dataSource).createChannel("first");
+        doReturn(channel2).when(dataSource).createChannel("second");
+        
+        dataSource.connectRead(exp1.getReadRecipe());
+        dataSource.disconnectRead(exp1.getReadRecipe());
+        dataSource.connectRead(exp2.getReadRecipe());
+        assertThat(dataSource.getRevivedChannelCount(), equalTo(1L));
+        assertThat(dataSource.getChannels().get("first"), sameInstance(channel1));
+        dataSource.disconnectRead(exp2.getReadRecipe());
+        
+        Thread.sleep(150);
+        dataSource.connectRead(exp3.getReadRecipe());
+        assertThat(dataSource.getChannels().get("first"), equalTo(null));
+        assertThat(dataSource.getChannels().get("second"), sameInstance(channel2));
+        assertThat(dataSource.getCreatedChannelCount(), equalTo(2L));
+        assertThat(dataSource.getEvictedChannelCount(), equalTo(1L));
+        verify(dataSource).createChannel("first");
+    }
+
+    @Test
+    public void evictIdle4() throws Exception {
+        // Channels past the grace period are evicted even if
+        // no other channel is opened or closed
+        
+        ReadExpressionTester exp = new ReadExpressionTester(latestValueOf(channel("first")));
+        
+        DataSource dataSource = spy(new MockDataSource(true));
+        dataSource.setIdleChannelEviction(TimeDuration.ofMillis(100), -1);
+        doReturn(channel1).when(dataSource).createChannel("first");
+        
+        dataSource.connectRead(exp.getReadRecipe());
+        Thread.sleep(150);
+        assertThat(dataSource.getChannels().get("first"), sameInstance(channel1));
+        
+        dataSource.disconnectRead(exp.getReadRecipe());
+        Thread.sleep(50);
+        assertThat(dataSource.getChannels().get("first"), sameInstance(channel1));
+        Thread.sleep(150);
+        assertThat(dataSource.getChannels().get("first"), equalTo(null));
+        assertThat(dataSource.getEvictedChannelCount(), equalTo(1L));
+        dataSource.close();
+    }
+
+    @Test
+    public void workerThreads1() throws Exception {
+        // Channels on different workers are connected in parallel
+        
+        ReadExpressionTester exp = new ReadExpressionTester(mapOf(latestValueOf(channel("first").and(channel("second")))));
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch done = new CountDownLatch(2);
+        ParallelChannel first = new ParallelChannel("first", 0, started, done);
+        ParallelChannel second = new ParallelChannel("second", 1, started, done);
+        
+        DataSource dataSource = spy(new MockDataSource(true, 2));
+        doReturn(first).when(dataSource).createChannel("first");
+        doReturn(second).when(dataSource).createChannel("second");
+        
+        dataSource.connectRead(exp.getReadRecipe());
+        
+        assertThat(done.await(3, TimeUnit.SECONDS), equalTo(true));
+        assertThat(first.parallel, equalTo(true));
+        assertThat(second.parallel, equalTo(true));
+        assertThat(first.readerThread, not(sameInstance(second.readerThread)));
+        assertThat(dataSource.getWorkerStatistics().size(), equalTo(2));
+    }
 }
@@ -20,6 +20,7 @@ import org.epics.pvmanager.expression.Queue;
 import static org.junit.Assert.*;
 import org.junit.*;
 import static org.epics.pvmanager.ExpressionLanguage.*;
+import org.epics.pvmanager.expression.DeltaReadMap;
 import org.epics.pvmanager.expression.ReadMap;
 import org.epics.pvmanager.expression.WriteMap;
 import static org.epics.util.time.TimeDuration.*;
@@ -86,6 +87,19 @@ public class MapExpressionTest {
         assertThat(dataSource.getConnectedReadRecipes(), hasSize(1));
     }
 
+    @Test
+    public void deltaMap1() {
+        DeltaReadMap<Object> map = deltaReadMapOf(Object.class);
+        pvReader = PVManager.read(map).from(dataSource).maxRate(ofMillis(100));
+        map.add(latestValueOf(channels("test1", "test2")));
+        assertThat(dataSource.getConnectedReadRecipes(), hasSize(2));
+        map.remove("test2");
+        assertThat(dataSource.getConnectedReadRecipes(), hasSize(1));
+        map.clear();
+        assertThat(dataSource.getConnectedReadRecipes(), hasSize(0));
+        assertThat(map.size(), equalTo(0));
+    }
+
     @Test
     public void map3() throws Exception {
         WriteMap<Object> map = writeMapOf(Object.class);
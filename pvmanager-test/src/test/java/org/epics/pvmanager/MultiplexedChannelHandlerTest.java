@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class MultiplexedChannelHandlerTest {
+    
+    private static class CountingTypeAdapter implements DataSourceTypeAdapter<Object, Object> {
+        
+        private final Class<?> typeClass;
+        private final AtomicInteger conversions = new AtomicInteger();
+
+        public CountingTypeAdapter(Class<?> typeClass) {
+            this.typeClass = typeClass;
+        }
+
+        @Override
+        public int match(ValueCache<?> cache, Object connection) {
+            return cache.getType().isAssignableFrom(typeClass) ? 1 : 0;
+        }
+
+        @Override
+        public Object getSubscriptionParameter(ValueCache<?> cache, Object connection) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean updateCache(ValueCache cache, Object connection, Object message) {
+            conversions.incrementAndGet();
+            if (typeClass == String.class) {
+                cache.writeValue(new String(message.toString()));
+            } else {
+                cache.writeValue(new StringBuilder(message.toString()));
+            }
+            return true;
+        }
+    }
+    
+    private static class MockChannelHandler extends MultiplexedChannelHandler<Object, Object> {
+        
+        private final CountingTypeAdapter stringAdapter = new CountingTypeAdapter(String.class);
+        private final CountingTypeAdapter builderAdapter = new CountingTypeAdapter(StringBuilder.class);
+
+        public MockChannelHandler(String channelName) {
+            super(channelName);
+        }
+
+        @Override
+        protected DataSourceTypeAdapter<Object, Object> findTypeAdapter(ValueCache<?> cache, Object connection) {
+            if (stringAdapter.match(cache, connection) != 0) {
+                return stringAdapter;
+            }
+            return builderAdapter;
+        }
+
+        @Override
+        protected void connect() {
+            processConnection(new Object());
+        }
+
+        @Override
+        protected void disconnect() {
+            processConnection(null);
+        }
+
+        @Override
+        protected void write(Object newValue, ChannelWriteCallback callback) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static ChannelHandlerReadSubscription subscription(ValueCache<?> cache) {
+        return new ChannelHandlerReadSubscription(cache, mock(WriteFunction.class), mock(WriteFunction.class));
+    }
+
+    @Test
+    public void processMessage1() {
+        // Readers with the same type share the same converted value
+        MockChannelHandler handler = new MockChannelHandler("test");
+        ValueCache<String> cache1 = new ValueCacheImpl<>(String.class);
+        ValueCache<String> cache2 = new ValueCacheImpl<>(String.class);
+        ValueCache<String> cache3 = new ValueCacheImpl<>(String.class);
+        handler.addReader(subscription(cache1));
+        handler.addReader(subscription(cache2));
+        handler.addReader(subscription(cache3));
+        
+        handler.processMessage("Value");
+        assertThat(handler.stringAdapter.conversions.get(), equalTo(1));
+        assertThat(cache1.readValue(), equalTo("Value"));
+        assertThat(cache2.readValue(), sameInstance(cache1.readValue()));
+        assertThat(cache3.readValue(), sameInstance(cache1.readValue()));
+    }
+
+    @Test
+    public void processMessage2() {
+        // Readers with different types get a different conversion
+        MockChannelHandler handler = new MockChannelHandler("test");
+        ValueCache<String> cache1 = new ValueCacheImpl<>(String.class);
+        ValueCache<StringBuilder> cache2 = new ValueCacheImpl<>(StringBuilder.class);
+        ValueCache<StringBuilder> cache3 = new ValueCacheImpl<>(StringBuilder.class);
+        handler.addReader(subscription(cache1));
+        handler.addReader(subscription(cache2));
+        handler.addReader(subscription(cache3));
+        
+        handler.processMessage("Value");
+        assertThat(handler.stringAdapter.conversions.get(), equalTo(1));
+        assertThat(handler.builderAdapter.conversions.get(), equalTo(1));
+        assertThat(cache1.readValue(), equalTo("Value"));
+        assertThat(cache2.readValue().toString(), equalTo("Value"));
+        assertThat(cache3.readValue(), sameInstance(cache2.readValue()));
+    }
+}
@@ -4,6 +4,7 @@
  */
 package org.epics.pvmanager;
 
+import java.util.Arrays;
 import org.epics.pvmanager.PV;
 import org.epics.pvmanager.PVManager;
 import org.epics.pvmanager.PVReader;
@@ -113,4 +114,21 @@ public class PVManagerTest {
         assertThat(overrideExecutor.getCommand(), not(equalTo(null)));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void readAll() {
+        MockDataSource dataSource = new MockDataSource();
+        PVReaderGroup<Object> group = PVManager.readAll(Arrays.asList(channel("a"), channel("b"), channel("c")))
+                .from(dataSource).maxRate(ofHertz(10));
+        
+        // All channels are connected with a single request
+        assertThat(group.size(), equalTo(3));
+        assertThat(group.get(1).getName(), equalTo("b"));
+        assertThat(dataSource.getReadRecipe().getChannelReadRecipes().size(), equalTo(3));
+        assertThat(dataSource.getConnectedReadRecipes().size(), equalTo(3));
+        
+        group.close();
+        for (PVReader<Object> reader : group.getReaders()) {
+            assertThat(reader.isClosed(), equalTo(true));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.Arrays;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests the RingBufferCacheCollector.
+ *
+ * @author carcassi
+ */
+public class RingBufferCacheCollectorTest {
+
+    @Test
+    public void inputOutput() {
+        RingBufferCacheCollector<Integer> collector = new RingBufferCacheCollector<>(5);
+        assertThat(collector.readValue().size(), equalTo(0));
+        collector.writeValue(0);
+        assertThat(collector.readValue(), equalTo(Arrays.asList(0)));
+        assertThat(collector.readValue(), equalTo(Arrays.asList(0)));
+        collector.writeValue(1);
+        collector.writeValue(2);
+        collector.writeValue(3);
+        assertThat(collector.readValue(), equalTo(Arrays.asList(0,1,2,3)));
+        collector.writeValue(4);
+        collector.writeValue(5);
+        collector.writeValue(6);
+        assertThat(collector.readValue(), equalTo(Arrays.asList(2,3,4,5,6)));
+        assertThat(collector.readValue(), equalTo(Arrays.asList(2,3,4,5,6)));
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests the RingBufferQueueCollector.
+ *
+ * @author carcassi
+ */
+public class RingBufferQueueCollectorTest {
+
+    @Test
+    public void inputOutput() {
+        RingBufferQueueCollector<Integer> collector = new RingBufferQueueCollector<>(5);
+        assertThat(collector.readValue().size(), equalTo(0));
+        collector.writeValue(0);
+        assertThat(collector.readValue(), equalTo(Arrays.asList(0)));
+        assertThat(collector.readValue().size(), equalTo(0));
+        collector.writeValue(1);
+        collector.writeValue(2);
+        collector.writeValue(3);
+        assertThat(collector.readValue(), equalTo(Arrays.asList(1,2,3)));
+        assertThat(collector.readValue().size(), equalTo(0));
+        collector.writeValue(1);
+        collector.writeValue(2);
+        collector.writeValue(3);
+        collector.writeValue(4);
+        collector.writeValue(5);
+        collector.writeValue(6);
+        assertThat(collector.readValue(), equalTo(Arrays.asList(2,3,4,5,6)));
+        assertThat(collector.readValue().size(), equalTo(0));
+        assertThat(collector.getDroppedCount(), equalTo(1L));
+    }
+
+    @Test
+    public void drainTo() {
+        RingBufferQueueCollector<Integer> collector = new RingBufferQueueCollector<>(3);
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            collector.writeValue(i);
+        }
+        assertThat(collector.drainTo(values), equalTo(3));
+        assertThat(values, equalTo(Arrays.asList(7,8,9)));
+        collector.writeValue(10);
+        assertThat(collector.drainTo(values), equalTo(1));
+        assertThat(values, equalTo(Arrays.asList(7,8,9,10)));
+        assertThat(collector.getDroppedCount(), equalTo(7L));
+    }
+
+    @Test
+    public void concurrentWrites() throws Exception {
+        // Values read must be in order, and read or dropped exactly once
+        final RingBufferQueueCollector<Integer> collector = new RingBufferQueueCollector<>(16);
+        final int nValues = 1000000;
+        Thread writer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < nValues; i++) {
+                    collector.writeValue(i);
+                }
+            }
+        });
+        writer.start();
+        int last = -1;
+        long read = 0;
+        while (writer.isAlive() || read + collector.getDroppedCount() < nValues) {
+            for (Integer value : collector.readValue()) {
+                assertThat(value, greaterThan(last));
+                last = value;
+                read++;
+            }
+        }
+        assertThat(last, equalTo(nValues - 1));
+        assertThat(read + collector.getDroppedCount(), equalTo((long) nValues));
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.epics.pvmanager.test.MockDataSource;
+import org.epics.pvmanager.test.WriteRecipeUtil;
+import org.junit.After;
+import org.junit.Test;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that asynchronous writes are coalesced while a write is in flight.
+ *
+ * @author carcassi
+ */
+public class WriteCoalescingTest {
+
+    /**
+     * A data source that completes the writes only when asked.
+     */
+    private static class SlowDataSource extends MockDataSource {
+        
+        private final List<Runnable> callbacks = new CopyOnWriteArrayList<>();
+        private final List<Object> writtenValues = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void write(WriteRecipe writeRecipe, Runnable callback, ExceptionHandler exceptionHandler) {
+            super.write(writeRecipe, callback, exceptionHandler);
+            writtenValues.add(WriteRecipeUtil.valueFor(writeRecipe, "test"));
+            callbacks.add(callback);
+        }
+        
+        void completeWrite() {
+            callbacks.remove(0).run();
+        }
+    }
+    
+    private final SlowDataSource dataSource = new SlowDataSource();
+    private PVWriter<Object> pvWriter;
+
+    @After
+    public void tearDown() {
+        if (pvWriter != null) {
+            pvWriter.close();
+        }
+    }
+
+    @Test
+    public void coalesceWrites1() throws Exception {
+        pvWriter = PVManager.write(channel("test")).from(dataSource).coalesceWrites().async();
+        pvWriter.write(1);
+        Thread.sleep(100);
+        for (int i = 2; i <= 10; i++) {
+            pvWriter.write(i);
+        }
+        Thread.sleep(100);
+        
+        // Only the first was sent, the last is pending
+        assertThat(dataSource.writtenValues, contains((Object) 1));
+        dataSource.completeWrite();
+        Thread.sleep(100);
+        assertThat(dataSource.writtenValues, contains((Object) 1, 10));
+        dataSource.completeWrite();
+        Thread.sleep(100);
+        
+        WriteStatistics statistics = pvWriter.getWriteStatistics();
+        assertThat(statistics.getRequestedWrites(), equalTo(10L));
+        assertThat(statistics.getCoalescedWrites(), equalTo(8L));
+        assertThat(statistics.getCompletedWrites(), equalTo(2L));
+        assertThat(statistics.getMaxLatency().toNanosLong(), greaterThan(0L));
+        
+        // Channel is free: the next write is sent right away
+        pvWriter.write(11);
+        Thread.sleep(100);
+        assertThat(dataSource.writtenValues, contains((Object) 1, 10, 11));
+    }
+
+    @Test
+    public void noCoalescing1() throws Exception {
+        pvWriter = PVManager.write(channel("test")).from(dataSource).async();
+        for (int i = 1; i <= 10; i++) {
+            pvWriter.write(i);
+        }
+        Thread.sleep(100);
+        
+        assertThat(dataSource.writtenValues, hasSize(10));
+        WriteStatistics statistics = pvWriter.getWriteStatistics();
+        assertThat(statistics.getRequestedWrites(), equalTo(10L));
+        assertThat(statistics.getCoalescedWrites(), equalTo(0L));
+        assertThat(statistics.getCompletedWrites(), equalTo(0L));
+    }
+}
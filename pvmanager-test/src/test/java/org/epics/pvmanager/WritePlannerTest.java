@@ -4,17 +4,11 @@
  */
 package org.epics.pvmanager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
-import java.util.Collections;
-import org.epics.pvmanager.ChannelHandler;
+import java.util.List;
 import org.epics.pvmanager.WritePlanner;
-import org.junit.AfterClass;
-import org.junit.Before;
-import org.junit.BeforeClass;
 import org.junit.Test;
-import org.mockito.Mock;
-import org.mockito.MockitoAnnotations;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import static org.hamcrest.Matchers.*;
@@ -27,171 +21,85 @@ public class WritePlannerTest {
     
     public WritePlannerTest() {
     }
-
-    @BeforeClass
-    public static void setUpClass() throws Exception {
-    }
-
-    @AfterClass
-    public static void tearDownClass() throws Exception {
-    }
-
-    @Before
-    public void initMocks() {
-        MockitoAnnotations.initMocks(this);
-    }
     
-    @Mock ChannelHandler channel1;
-    @Mock ChannelHandler channel2;
-    @Mock ChannelHandler channel3;
-    @Mock ChannelHandler channel4;
+    private static ChannelWriteRecipe recipe(String channelName, String... precedingChannels) {
+        WriteCache<Object> cache = new WriteCache<>(channelName);
+        cache.setPrecedingChannels(Arrays.asList(precedingChannels));
+        @SuppressWarnings("unchecked")
+        WriteFunction<Exception> exceptionWriteFunction = mock(WriteFunction.class);
+        @SuppressWarnings("unchecked")
+        WriteFunction<Boolean> connectionWriteFunction = mock(WriteFunction.class);
+        return new ChannelWriteRecipe(channelName, new ChannelHandlerWriteSubscription(cache, exceptionWriteFunction, connectionWriteFunction));
+    }
 
     @Test
     public void noDependencies() {
-        when(channel1.getChannelName()).thenReturn("channel1");
-        when(channel2.getChannelName()).thenReturn("channel2");
-        when(channel3.getChannelName()).thenReturn("channel3");
-        
-        WritePlanner planner = new WritePlanner();
-        planner.addChannel(channel1, 6.28, Collections.<String>emptySet());
-        planner.addChannel(channel2, 3.14, Collections.<String>emptySet());
-        planner.addChannel(channel3, 1.57, Collections.<String>emptySet());
+        ChannelWriteRecipe channel1 = recipe("channel1");
+        ChannelWriteRecipe channel2 = recipe("channel2");
+        ChannelWriteRecipe channel3 = recipe("channel3");
         
-        Map<ChannelHandler, Object> nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(3));
-        assertThat(nextChannels.get(channel1), equalTo((Object) 6.28));
-        assertThat(nextChannels.get(channel2), equalTo((Object) 3.14));
-        assertThat(nextChannels.get(channel3), equalTo((Object) 1.57));
-        assertThat(planner.isDone(), equalTo(false));
-        
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(0));
-        planner.removeChannel("channel1");
-        assertThat(planner.isDone(), equalTo(false));
-        planner.removeChannel("channel2");
-        assertThat(planner.isDone(), equalTo(false));
-        planner.removeChannel("channel3");
-        assertThat(planner.isDone(), equalTo(true));
+        List<List<ChannelWriteRecipe>> levels = WritePlanner.levels(Arrays.asList(channel1, channel2, channel3));
+        assertThat(levels.size(), equalTo(1));
+        assertThat(levels.get(0), containsInAnyOrder(channel1, channel2, channel3));
     }
 
     @Test
     public void someDependencies1() {
-        when(channel1.getChannelName()).thenReturn("channel1");
-        when(channel2.getChannelName()).thenReturn("channel2");
-        when(channel3.getChannelName()).thenReturn("channel3");
-        
-        WritePlanner planner = new WritePlanner();
-        planner.addChannel(channel1, 6.28, Collections.<String>emptySet());
-        planner.addChannel(channel2, 3.14, Collections.singletonList("channel1"));
-        planner.addChannel(channel3, 1.57, Collections.singletonList("channel1"));
-        
-        Map<ChannelHandler, Object> nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(1));
-        assertThat(nextChannels.get(channel1), equalTo((Object) 6.28));
-        
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(0));
-        
-        planner.removeChannel("channel1");
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(2));
-        assertThat(nextChannels.get(channel2), equalTo((Object) 3.14));
-        assertThat(nextChannels.get(channel3), equalTo((Object) 1.57));
-        
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(0));
-        
-        planner.removeChannel("channel2");
-        assertThat(planner.isDone(), equalTo(false));
-        planner.removeChannel("channel3");
-        assertThat(planner.isDone(), equalTo(true));
+        ChannelWriteRecipe channel1 = recipe("channel1");
+        ChannelWriteRecipe channel2 = recipe("channel2", "channel1");
+        ChannelWriteRecipe channel3 = recipe("channel3", "channel1");
+        
+        List<List<ChannelWriteRecipe>> levels = WritePlanner.levels(Arrays.asList(channel1, channel2, channel3));
+        assertThat(levels.size(), equalTo(2));
+        assertThat(levels.get(0), contains(channel1));
+        assertThat(levels.get(1), containsInAnyOrder(channel2, channel3));
     }
 
     @Test
     public void someDependencies2() {
-        when(channel1.getChannelName()).thenReturn("channel1");
-        when(channel2.getChannelName()).thenReturn("channel2");
-        when(channel3.getChannelName()).thenReturn("channel3");
-        
-        WritePlanner planner = new WritePlanner();
-        planner.addChannel(channel1, 6.28, Collections.<String>emptySet());
-        planner.addChannel(channel2, 3.14, Collections.singletonList("channel1"));
-        planner.addChannel(channel3, 1.57, Collections.singletonList("channel2"));
-        
-        Map<ChannelHandler, Object> nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(1));
-        assertThat(nextChannels.get(channel1), equalTo((Object) 6.28));
-        
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(0));
-        
-        planner.removeChannel("channel1");
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(1));
-        assertThat(nextChannels.get(channel2), equalTo((Object) 3.14));
-        assertThat(planner.isDone(), equalTo(false));
-        
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(0));
-        
-        planner.removeChannel("channel2");
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(1));
-        assertThat(nextChannels.get(channel3), equalTo((Object) 1.57));
-        assertThat(planner.isDone(), equalTo(false));
-        
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(0));
-        
-        planner.removeChannel("channel3");
-        assertThat(planner.isDone(), equalTo(true));
+        ChannelWriteRecipe channel1 = recipe("channel1");
+        ChannelWriteRecipe channel2 = recipe("channel2", "channel1");
+        ChannelWriteRecipe channel3 = recipe("channel3", "channel2");
+        
+        List<List<ChannelWriteRecipe>> levels = WritePlanner.levels(Arrays.asList(channel3, channel2, channel1));
+        assertThat(levels.size(), equalTo(3));
+        assertThat(levels.get(0), contains(channel1));
+        assertThat(levels.get(1), contains(channel2));
+        assertThat(levels.get(2), contains(channel3));
     }
 
     @Test
     public void someDependencies3() {
-        when(channel1.getChannelName()).thenReturn("channel1");
-        when(channel2.getChannelName()).thenReturn("channel2");
-        when(channel3.getChannelName()).thenReturn("channel3");
-        when(channel4.getChannelName()).thenReturn("channel4");
-        
-        WritePlanner planner = new WritePlanner();
-        planner.addChannel(channel1, 6.28, Collections.<String>emptySet());
-        planner.addChannel(channel2, 3.14, Collections.singletonList("channel1"));
-        planner.addChannel(channel3, 1.57, Collections.singletonList("channel1"));
-        planner.addChannel(channel4, 12.56, Arrays.asList("channel2", "channel3"));
-        
-        Map<ChannelHandler, Object> nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(1));
-        assertThat(nextChannels.get(channel1), equalTo((Object) 6.28));
-        
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(0));
-        
-        planner.removeChannel("channel1");
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(2));
-        assertThat(nextChannels.get(channel2), equalTo((Object) 3.14));
-        assertThat(nextChannels.get(channel3), equalTo((Object) 1.57));
-        assertThat(planner.isDone(), equalTo(false));
-        
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(0));
-        
-        planner.removeChannel("channel2");
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(0));
-        assertThat(planner.isDone(), equalTo(false));
-        
-        planner.removeChannel("channel3");
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(1));
-        assertThat(nextChannels.get(channel4), equalTo((Object) 12.56));
-        assertThat(planner.isDone(), equalTo(false));
-        
-        nextChannels = planner.nextChannels();
-        assertThat(nextChannels.size(), equalTo(0));
-        planner.removeChannel("channel4");
-        assertThat(planner.isDone(), equalTo(true));
-        
+        // Preceding channels that are not written are ignored
+        ChannelWriteRecipe channel1 = recipe("channel1");
+        ChannelWriteRecipe channel2 = recipe("channel2", "channel1");
+        ChannelWriteRecipe channel3 = recipe("channel3", "channel1", "missing");
+        ChannelWriteRecipe channel4 = recipe("channel4", "channel2", "channel3");
+        
+        List<List<ChannelWriteRecipe>> levels = WritePlanner.levels(Arrays.asList(channel1, channel2, channel3, channel4));
+        assertThat(levels.size(), equalTo(3));
+        assertThat(levels.get(0), contains(channel1));
+        assertThat(levels.get(1), containsInAnyOrder(channel2, channel3));
+        assertThat(levels.get(2), contains(channel4));
+    }
+
+    @Test
+    public void noChannels() {
+        List<List<ChannelWriteRecipe>> levels = WritePlanner.levels(new ArrayList<ChannelWriteRecipe>());
+        assertThat(levels.size(), equalTo(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void circularDependencies() {
+        WritePlanner.levels(Arrays.asList(recipe("channel1", "channel2"), recipe("channel2", "channel1")));
+    }
+
+    @Test
+    public void writeRecipeLevels() {
+        // The levels are calculated once for each recipe
+        WriteRecipe recipe = new WriteRecipe(Arrays.asList(recipe("channel1"), recipe("channel2", "channel1")));
+        List<List<ChannelWriteRecipe>> levels = recipe.getLevels();
+        assertThat(levels.size(), equalTo(2));
+        assertThat(recipe.getLevels(), sameInstance(levels));
     }
 }
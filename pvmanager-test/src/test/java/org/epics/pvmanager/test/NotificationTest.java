@@ -6,9 +6,11 @@ package org.epics.pvmanager.test;
 
 import org.epics.pvmanager.PVManager;
 import org.epics.pvmanager.PVReader;
+import org.epics.pvmanager.ValueCache;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
+import static org.epics.pvmanager.ExpressionLanguage.*;
 import static org.epics.pvmanager.test.ExpressionLanguage.*;
 import org.epics.pvmanager.test.TestDataSource;
 import static org.epics.util.time.TimeDuration.*;
@@ -56,4 +58,44 @@ public class NotificationTest {
             fail("listener received wrong notifications");
         reader.close();
     }
+
+    @Test
+    public void eventDrivenNotifications() throws Exception{
+        CounterTestListener listener = new CounterTestListener();
+        PVReader<Integer> reader = PVManager.read(counter())
+                .readListener(listener)
+                .from(new TestDataSource()).eventDriven().maxRate(ofMillis(10));
+        Thread.sleep(100);
+        
+        // No data source activity: only the initial notification
+        assertThat(listener.getNextExpected(), equalTo(1));
+        
+        // Resuming triggers a new scan
+        reader.setPaused(true);
+        reader.setPaused(false);
+        Thread.sleep(100);
+        assertThat(listener.getNextExpected(), equalTo(2));
+        if (listener.isFailed())
+            fail("listener received wrong notifications");
+        reader.close();
+    }
+
+    @Test
+    public void eventDrivenNewValue() throws Exception{
+        MockDataSource dataSource = new MockDataSource();
+        CountDownPVReaderListener listener = new CountDownPVReaderListener(1);
+        PVReader<Object> reader = PVManager.read(channel("test"))
+                .readListener(listener)
+                .from(dataSource).eventDriven().maxRate(ofMillis(10));
+        Thread.sleep(50);
+        assertThat(listener.getCount(), equalTo(1));
+        
+        @SuppressWarnings("unchecked")
+        ValueCache<Object> cache = (ValueCache<Object>) dataSource.getReadRecipe().getChannelReadRecipes().iterator().next()
+                .getReadSubscription().getValueCache();
+        cache.writeValue("Value");
+        assertThat(listener.await(ofMillis(100)), equalTo(true));
+        assertThat(reader.getValue(), equalTo((Object) "Value"));
+        reader.close();
+    }
 }
@@ -4,6 +4,10 @@
  */
 package org.epics.pvmanager.test;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.epics.pvmanager.DataSource;
 import static org.epics.pvmanager.ExpressionLanguage.*;
 import org.epics.pvmanager.PV;
@@ -11,6 +15,7 @@ import org.epics.pvmanager.PVManager;
 import org.epics.pvmanager.PVReader;
 import org.epics.pvmanager.PVWriter;
 import org.epics.pvmanager.TimeoutException;
+import org.epics.pvmanager.expression.WriteMap;
 import org.epics.util.time.TimeDuration;
 import static org.epics.util.time.TimeDuration.*;
 import org.epics.util.time.TimeInterval;
@@ -165,6 +170,34 @@ public class TestDataSourceTest {
         assertThat(ex, nullValue());
     }
     
+    @Test
+    public void delayedWriteLevels() throws Exception {
+        // Two levels of ten channels each: the second level is written
+        // only after all the channels of the first
+        List<String> firstLevel = new ArrayList<>();
+        List<String> secondLevel = new ArrayList<>();
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            firstLevel.add("delayedWrite/100/a" + i);
+            secondLevel.add("delayedWrite/100/b" + i);
+            values.put("delayedWrite/100/a" + i, i);
+            values.put("delayedWrite/100/b" + i, i);
+        }
+        WriteMap<Object> map = writeMapOf(Object.class);
+        map.add(channels(firstLevel));
+        map.add(channels(secondLevel).after(firstLevel.toArray(new String[firstLevel.size()])));
+        PVWriter<Map<String, Object>> mapWriter = PVManager.write(map).from(dataSource).sync();
+        try {
+            long start = System.nanoTime();
+            mapWriter.write(values);
+            long elapsedMs = (System.nanoTime() - start) / 1000000;
+            assertThat(elapsedMs, greaterThanOrEqualTo(200L));
+            assertThat(mapWriter.lastWriteException(), nullValue());
+        } finally {
+            mapWriter.close();
+        }
+    }
+    
     @Test
     public void delayedWriteWithTimeout() throws Exception {
         CountDownPVWriterListener<Object> writerListener = new CountDownPVWriterListener<>(1);
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.timecache.impl;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory budget shared by {@link SegmentedMemoryStorage}s: when the samples
+ * of all the storages exceed it, the least recently used segments are
+ * evicted, whatever storage they belong to.
+ * @author Fred Arnaud (Sopra Group) - ITER
+ */
+public class MemoryBudget {
+
+	/** Default memory budget: 256 MB. */
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	private static final MemoryBudget defaultBudget = new MemoryBudget(DEFAULT_MAX_BYTES);
+
+	/** The budget shared by all the storages that do not have their own. */
+	public static MemoryBudget getDefault() {
+		return defaultBudget;
+	}
+
+	/** Reference to a storage, with the memory it uses. */
+	private static class StorageReference extends WeakReference<SegmentedMemoryStorage> {
+
+		final AtomicLong usedBytes;
+
+		StorageReference(SegmentedMemoryStorage storage, AtomicLong usedBytes,
+				ReferenceQueue<SegmentedMemoryStorage> queue) {
+			super(storage, queue);
+			this.usedBytes = usedBytes;
+		}
+
+	}
+
+	private volatile long maxBytes;
+	private final AtomicLong usedBytes = new AtomicLong();
+	private final AtomicLong clock = new AtomicLong();
+	private final Set<StorageReference> storages = new HashSet<StorageReference>();
+	private final ReferenceQueue<SegmentedMemoryStorage> queue = new ReferenceQueue<SegmentedMemoryStorage>();
+
+	/**
+	 * Build a budget.
+	 * @param maxBytes estimated memory the samples of all the storages can use.
+	 */
+	public MemoryBudget(long maxBytes) {
+		setMaxBytes(maxBytes);
+	}
+
+	/** Estimated memory the samples of all the storages can use. */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Changes the budget: it is enforced at the next store.
+	 * @param maxBytes estimated memory the samples of all the storages can use.
+	 */
+	public void setMaxBytes(long maxBytes) {
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("Budget must be positive");
+		this.maxBytes = maxBytes;
+	}
+
+	/** Estimated memory used by the samples of all the storages, in bytes. */
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	/**
+	 * Adds a storage to the budget.
+	 * @param storage the storage.
+	 * @param storageUsedBytes memory used by the samples of the storage,
+	 *            released when the storage is garbage collected.
+	 */
+	synchronized void register(SegmentedMemoryStorage storage, AtomicLong storageUsedBytes) {
+		expunge();
+		storages.add(new StorageReference(storage, storageUsedBytes, queue));
+	}
+
+	/** Releases the memory of the storages that were garbage collected. */
+	private void expunge() {
+		StorageReference reference = (StorageReference) queue.poll();
+		while (reference != null) {
+			if (storages.remove(reference))
+				usedBytes.addAndGet(-reference.usedBytes.get());
+			reference = (StorageReference) queue.poll();
+		}
+	}
+
+	/** A time, to sort the segments from the least to the most recently used. */
+	long tick() {
+		return clock.incrementAndGet();
+	}
+
+	void add(long bytes) {
+		usedBytes.addAndGet(bytes);
+	}
+
+	/**
+	 * Removes the least recently used segments, across the storages, until
+	 * within budget. Must not be called while holding the lock of a storage.
+	 */
+	void enforce() {
+		while (usedBytes.get() > maxBytes) {
+			List<SegmentedMemoryStorage> candidates = new ArrayList<SegmentedMemoryStorage>();
+			synchronized (this) {
+				expunge();
+				for (StorageReference reference : storages) {
+					SegmentedMemoryStorage storage = reference.get();
+					if (storage != null)
+						candidates.add(storage);
+				}
+			}
+			SegmentedMemoryStorage oldest = null;
+			long oldestAccess = Long.MAX_VALUE;
+			for (SegmentedMemoryStorage storage : candidates) {
+				long access = storage.oldestAccess();
+				if (access < oldestAccess) {
+					oldestAccess = access;
+					oldest = storage;
+				}
+			}
+			if (oldest == null || !oldest.evictOldest())
+				return;
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.timecache.impl;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+import org.epics.pvmanager.timecache.Data;
+import org.epics.pvmanager.timecache.impl.SegmentedMemoryStorage.Segment;
+import org.epics.pvmanager.timecache.source.SourceData;
+
+/**
+ * Read-only {@link SortedSet} of {@link Data} over consecutive slices of
+ * {@link SegmentedMemoryStorage} segments. Samples are not copied: each
+ * {@link Data} is created when accessed.
+ * @author Fred Arnaud (Sopra Group) - ITER
+ */
+class SegmentedDataSet extends AbstractSet<Data> implements SortedSet<Data> {
+
+	/** The samples of a segment from start, included, to end, excluded. */
+	static class Slice {
+
+		final Segment segment;
+		final int start;
+		final int end;
+
+		Slice(Segment segment, int start, int end) {
+			this.segment = segment;
+			this.start = start;
+			this.end = end;
+		}
+
+		Data get(int index) {
+			return new SourceData(SegmentedMemoryStorage.toTimestamp(segment.times[index]),
+					segment.values[index]);
+		}
+
+	}
+
+	private final List<Slice> slices;
+	private final int size;
+
+	SegmentedDataSet(List<Slice> slices) {
+		this.slices = slices;
+		int count = 0;
+		for (Slice slice : slices)
+			count += slice.end - slice.start;
+		this.size = count;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Iterator<Data> iterator() {
+		return new Iterator<Data>() {
+
+			private int sliceIndex = 0;
+			private int index = slices.isEmpty() ? 0 : slices.get(0).start;
+
+			@Override
+			public boolean hasNext() {
+				return sliceIndex < slices.size();
+			}
+
+			@Override
+			public Data next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Slice slice = slices.get(sliceIndex);
+				Data data = slice.get(index);
+				index++;
+				if (index == slice.end) {
+					sliceIndex++;
+					if (sliceIndex < slices.size())
+						index = slices.get(sliceIndex).start;
+				}
+				return data;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Read only set");
+			}
+		};
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Data) || ((Data) o).getTimestamp() == null)
+			return false;
+		long time = SegmentedMemoryStorage.toNanos(((Data) o).getTimestamp());
+		return !range(time, time + 1).isEmpty();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Comparator<? super Data> comparator() {
+		return null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public SortedSet<Data> subSet(Data fromElement, Data toElement) {
+		return range(SegmentedMemoryStorage.toNanos(fromElement.getTimestamp()),
+				SegmentedMemoryStorage.toNanos(toElement.getTimestamp()));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public SortedSet<Data> headSet(Data toElement) {
+		return range(Long.MIN_VALUE, SegmentedMemoryStorage.toNanos(toElement.getTimestamp()));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public SortedSet<Data> tailSet(Data fromElement) {
+		return range(SegmentedMemoryStorage.toNanos(fromElement.getTimestamp()), Long.MAX_VALUE);
+	}
+
+	/** The samples from the given time, included, to the other, excluded. */
+	private SegmentedDataSet range(long from, long to) {
+		List<Slice> newSlices = new ArrayList<Slice>();
+		for (Slice slice : slices) {
+			int start = slice.segment.lowerBound(from, slice.start, slice.end);
+			int end = slice.segment.lowerBound(to, start, slice.end);
+			if (start < end)
+				newSlices.add(new Slice(slice.segment, start, end));
+		}
+		return new SegmentedDataSet(newSlices);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Data first() {
+		if (slices.isEmpty())
+			throw new NoSuchElementException();
+		Slice slice = slices.get(0);
+		return slice.get(slice.start);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Data last() {
+		if (slices.isEmpty())
+			throw new NoSuchElementException();
+		Slice slice = slices.get(slices.size() - 1);
+		return slice.get(slice.end - 1);
+	}
+
+}
@@ -0,0 +1,390 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.timecache.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.epics.pvmanager.timecache.Data;
+import org.epics.pvmanager.timecache.DataChunk;
+import org.epics.pvmanager.timecache.storage.DataStorage;
+import org.epics.pvmanager.timecache.storage.DataStorageListener;
+import org.epics.pvmanager.timecache.util.CacheHelper;
+import org.epics.pvmanager.timecache.util.TimestampsSet;
+import org.epics.util.time.TimeInterval;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.VNumberArray;
+import org.epics.vtype.VString;
+import org.epics.vtype.VType;
+
+/**
+ * {@link DataStorage} which handles only memory, with samples stored by
+ * column in segments: a sorted array of times, as nanoseconds from the epoch,
+ * and an array of values.
+ * <p>
+ * Memory is bounded by an explicit budget, by default shared with the other
+ * storages ({@link MemoryBudget#getDefault()}): when the estimated size of
+ * the samples exceeds it, whole segments are evicted, least recently used
+ * first across the storages, and listeners are notified of the lost samples.
+ * Samples are never lost individually.
+ * <p>
+ * Sets returned by {@link #getAvailableData(TimeInterval)} and
+ * {@link #storeData(DataChunk)} are views over the segments: no sample is
+ * copied, and each {@link Data} is created when accessed. Segments are never
+ * modified once visible to a view: samples are either appended past the end
+ * of all views or stored in new segments.
+ * @author Fred Arnaud (Sopra Group) - ITER
+ */
+public class SegmentedMemoryStorage implements DataStorage {
+
+	/** Default number of samples per segment. */
+	public static final int DEFAULT_SEGMENT_SIZE = 1024;
+
+	/** Estimated size of a sample, not counting the arrays. */
+	static final int SAMPLE_BYTES = 80;
+
+	private static final long NANOS_PER_SEC = 1000000000L;
+
+	/** Samples of a period of time, ordered by time. */
+	static class Segment {
+
+		final long[] times;
+		final VType[] values;
+		int size;
+		long bytes;
+		long lastAccess;
+
+		Segment(int capacity) {
+			times = new long[capacity];
+			values = new VType[capacity];
+		}
+
+		long firstTime() {
+			return times[0];
+		}
+
+		long lastTime() {
+			return times[size - 1];
+		}
+
+		boolean isFull() {
+			return size == times.length;
+		}
+
+		void add(long time, VType value) {
+			times[size] = time;
+			values[size] = value;
+			bytes += sizeOf(value);
+			size++;
+		}
+
+		/** The first index with a time not before the given one. */
+		int lowerBound(long time) {
+			return lowerBound(time, 0, size);
+		}
+
+		/**
+		 * The first index between low, included, and high, excluded, with
+		 * a time not before the given one, or high if there is none.
+		 */
+		int lowerBound(long time, int low, int high) {
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (times[middle] < time) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+	}
+
+	/** Segments by time of the first sample. */
+	private final NavigableMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+
+	/** Segments from the least to the most recently used. */
+	private final Map<Segment, Segment> lru = new LinkedHashMap<Segment, Segment>(16, 0.75f, true);
+
+	private final MemoryBudget budget;
+	private final int segmentSize;
+	private final AtomicLong usedBytes = new AtomicLong();
+
+	private List<DataStorageListener> listeners = new CopyOnWriteArrayList<DataStorageListener>();
+
+	/** Build a storage with the default shared budget and segment size. */
+	public SegmentedMemoryStorage() {
+		this(MemoryBudget.getDefault(), DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Build a storage with its own budget and the given segment size.
+	 * @param maxBytes estimated memory the samples can use.
+	 * @param segmentSize maximum number of samples in a segment.
+	 */
+	public SegmentedMemoryStorage(long maxBytes, int segmentSize) {
+		this(new MemoryBudget(maxBytes), segmentSize);
+	}
+
+	/**
+	 * Build a storage with the given budget and segment size.
+	 * @param budget memory budget, possibly shared with other storages.
+	 * @param segmentSize maximum number of samples in a segment.
+	 */
+	public SegmentedMemoryStorage(MemoryBudget budget, int segmentSize) {
+		if (budget == null || segmentSize <= 0)
+			throw new IllegalArgumentException("Budget and segment size must be defined");
+		this.budget = budget;
+		this.segmentSize = segmentSize;
+		budget.register(this, usedBytes);
+	}
+
+	/** The memory budget of the storage. */
+	public MemoryBudget getBudget() {
+		return budget;
+	}
+
+	/** Estimated memory used by the stored samples, in bytes. */
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	/** Estimated memory used by the given value. */
+	static long sizeOf(VType value) {
+		if (value instanceof VNumberArray)
+			return SAMPLE_BYTES + 8L * ((VNumberArray) value).getData().size();
+		if (value instanceof VString && ((VString) value).getValue() != null)
+			return SAMPLE_BYTES + 2L * ((VString) value).getValue().length();
+		return SAMPLE_BYTES;
+	}
+
+	static long toNanos(Timestamp timestamp) {
+		return timestamp.getSec() * NANOS_PER_SEC + timestamp.getNanoSec();
+	}
+
+	static Timestamp toTimestamp(long nanos) {
+		long sec = nanos / NANOS_PER_SEC;
+		int nanoSec = (int) (nanos % NANOS_PER_SEC);
+		if (nanoSec < 0) {
+			sec--;
+			nanoSec += NANOS_PER_SEC;
+		}
+		return Timestamp.of(sec, nanoSec);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized DataChunk getData(String channelName, Timestamp from) {
+		DataChunk chunk = new DataChunk();
+		long fromTime = from == null ? Long.MIN_VALUE : toNanos(from);
+		for (Data data : view(fromTime, Long.MAX_VALUE)) {
+			if (!chunk.add(data))
+				break;
+		}
+		return chunk;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized SortedSet<Data> getAvailableData(TimeInterval interval) {
+		if (interval == null)
+			return new SegmentedDataSet(new ArrayList<SegmentedDataSet.Slice>());
+		interval = CacheHelper.arrange(interval);
+		long from = interval.getStart() == null ? Long.MIN_VALUE : toNanos(interval.getStart());
+		long to = interval.getEnd() == null ? Long.MAX_VALUE : toNanos(interval.getEnd());
+		return view(from, to);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized boolean hasAvailableData(TimeInterval interval) {
+		if (interval == null)
+			return false;
+		interval = CacheHelper.arrange(interval);
+		long from = interval.getStart() == null ? Long.MIN_VALUE : toNanos(interval.getStart());
+		long to = interval.getEnd() == null ? Long.MAX_VALUE : toNanos(interval.getEnd());
+		for (Segment segment : segmentsBetween(from, to)) {
+			int index = segment.lowerBound(from);
+			if (index < segment.size && segment.times[index] <= to)
+				return true;
+		}
+		return false;
+	}
+
+	/** The segments that may contain samples between the given times. */
+	private Iterable<Segment> segmentsBetween(long from, long to) {
+		Long first = segments.floorKey(from);
+		if (first == null)
+			first = Long.MIN_VALUE;
+		return segments.subMap(first, true, to, true).values();
+	}
+
+	/** A view of the samples between the given times, included. */
+	private SegmentedDataSet view(long from, long to) {
+		List<SegmentedDataSet.Slice> slices = new ArrayList<SegmentedDataSet.Slice>();
+		for (Segment segment : segmentsBetween(from, to)) {
+			int start = segment.lowerBound(from);
+			int end = to == Long.MAX_VALUE ? segment.size : segment.lowerBound(to + 1);
+			if (start < end) {
+				slices.add(new SegmentedDataSet.Slice(segment, start, end));
+				lru.get(segment);
+				segment.lastAccess = budget.tick();
+			}
+		}
+		return new SegmentedDataSet(slices);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public SortedSet<Data> storeData(DataChunk chunk) {
+		if (chunk == null || chunk.isEmpty())
+			return new SegmentedDataSet(new ArrayList<SegmentedDataSet.Slice>());
+		SortedSet<Data> stored;
+		synchronized (this) {
+			long from = toNanos(chunk.getDatas().first().getTimestamp());
+			long to = toNanos(chunk.getDatas().last().getTimestamp());
+			Map.Entry<Long, Segment> lastEntry = segments.lastEntry();
+			if (lastEntry == null || lastEntry.getValue().lastTime() < from) {
+				append(chunk.getDatas());
+			} else {
+				merge(chunk.getDatas(), from, to);
+			}
+			stored = view(from, to);
+		}
+		budget.enforce();
+		return stored;
+	}
+
+	/** Appends samples that are all after the stored ones. */
+	private void append(SortedSet<Data> datas) {
+		Map.Entry<Long, Segment> lastEntry = segments.lastEntry();
+		Segment segment = lastEntry == null ? null : lastEntry.getValue();
+		for (Data data : datas) {
+			if (segment == null || segment.isFull()) {
+				segment = newSegment(toNanos(data.getTimestamp()));
+			}
+			long previousBytes = segment.bytes;
+			segment.add(toNanos(data.getTimestamp()), data.getValue());
+			addBytes(segment.bytes - previousBytes);
+		}
+	}
+
+	/**
+	 * Stores samples that overlap the stored ones: the overlapping segments
+	 * are replaced by new ones with the samples of both, the new samples
+	 * replacing the stored ones with the same time.
+	 */
+	private void merge(SortedSet<Data> datas, long from, long to) {
+		List<Segment> overlapping = new ArrayList<Segment>();
+		for (Segment segment : segmentsBetween(from, to)) {
+			if (segment.lastTime() >= from)
+				overlapping.add(segment);
+		}
+		for (Segment segment : overlapping) {
+			removeSegment(segment);
+		}
+
+		Iterator<Data> newDatas = datas.iterator();
+		Data newData = newDatas.next();
+		Segment segment = null;
+		for (Segment old : overlapping) {
+			for (int i = 0; i < old.size; i++) {
+				long oldTime = old.times[i];
+				while (newData != null && toNanos(newData.getTimestamp()) <= oldTime) {
+					segment = addToNewSegment(segment, toNanos(newData.getTimestamp()), newData.getValue());
+					if (toNanos(newData.getTimestamp()) == oldTime)
+						oldTime = Long.MIN_VALUE;
+					newData = newDatas.hasNext() ? newDatas.next() : null;
+				}
+				if (oldTime != Long.MIN_VALUE)
+					segment = addToNewSegment(segment, oldTime, old.values[i]);
+			}
+		}
+		while (newData != null) {
+			segment = addToNewSegment(segment, toNanos(newData.getTimestamp()), newData.getValue());
+			newData = newDatas.hasNext() ? newDatas.next() : null;
+		}
+	}
+
+	private Segment addToNewSegment(Segment segment, long time, VType value) {
+		if (segment == null || segment.isFull()) {
+			segment = newSegment(time);
+		}
+		long previousBytes = segment.bytes;
+		segment.add(time, value);
+		addBytes(segment.bytes - previousBytes);
+		return segment;
+	}
+
+	private Segment newSegment(long firstTime) {
+		Segment segment = new Segment(segmentSize);
+		segment.lastAccess = budget.tick();
+		segments.put(firstTime, segment);
+		lru.put(segment, segment);
+		return segment;
+	}
+
+	private void removeSegment(Segment segment) {
+		segments.remove(segment.firstTime());
+		lru.remove(segment);
+		addBytes(-segment.bytes);
+	}
+
+	private void addBytes(long bytes) {
+		usedBytes.addAndGet(bytes);
+		budget.add(bytes);
+	}
+
+	/** Last access to the least recently used segment. */
+	synchronized long oldestAccess() {
+		if (lru.isEmpty())
+			return Long.MAX_VALUE;
+		return lru.keySet().iterator().next().lastAccess;
+	}
+
+	/**
+	 * Removes the least recently used segment and notifies the listeners.
+	 * @return false if there was no segment to remove.
+	 */
+	boolean evictOldest() {
+		TimestampsSet lostSet = new TimestampsSet();
+		synchronized (this) {
+			Iterator<Segment> iterator = lru.keySet().iterator();
+			if (!iterator.hasNext())
+				return false;
+			Segment segment = iterator.next();
+			removeSegment(segment);
+			for (int i = 0; i < segment.size; i++)
+				lostSet.add(toTimestamp(segment.times[i]));
+		}
+		for (DataStorageListener l : listeners)
+			l.dataLoss(lostSet);
+		return true;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void addListener(DataStorageListener listener) {
+		if (listener != null)
+			listeners.add(listener);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void removeListener(DataStorageListener listener) {
+		if (listener != null)
+			listeners.remove(listener);
+	}
+
+}
@@ -6,7 +6,8 @@ package org.epics.pvmanager.timecache.storage;
 
 import java.util.Collection;
 
-import org.epics.pvmanager.timecache.impl.SimpleMemoryStorage;
+import org.epics.pvmanager.timecache.impl.MemoryBudget;
+import org.epics.pvmanager.timecache.impl.SegmentedMemoryStorage;
 import org.epics.vtype.VType;
 
 /**
@@ -23,7 +24,21 @@ public class DataStorageFactory {
 	 * @throws Exception
 	 */
 	public static <V extends VType> DataStorage createStorage(Class<V> type) {
-		return new SimpleMemoryStorage();
+		return new SegmentedMemoryStorage(MemoryBudget.getDefault(),
+				SegmentedMemoryStorage.DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Change the memory budget shared by all the storages.
+	 * @param maxBytes estimated memory the samples of all the channels can use.
+	 */
+	public static void setMaxMemory(long maxBytes) {
+		MemoryBudget.getDefault().setMaxBytes(maxBytes);
+	}
+
+	/** Estimated memory the samples of all the channels can use. */
+	public static long getMaxMemory() {
+		return MemoryBudget.getDefault().getMaxBytes();
 	}
 
 }
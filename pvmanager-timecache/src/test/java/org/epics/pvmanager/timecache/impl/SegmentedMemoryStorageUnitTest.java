@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.timecache.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+
+import org.epics.pvmanager.timecache.Data;
+import org.epics.pvmanager.timecache.DataChunk;
+import org.epics.pvmanager.timecache.source.SourceData;
+import org.epics.pvmanager.timecache.storage.DataStorageListener;
+import org.epics.pvmanager.timecache.util.TimestampsSet;
+import org.epics.util.time.TimeInterval;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.ValueFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test {@link SegmentedMemoryStorage}: stores samples in segments and
+ * evicts whole segments when over budget.
+ * @author Fred Arnaud (Sopra Group) - ITER
+ */
+public class SegmentedMemoryStorageUnitTest {
+
+	private static Timestamp time(int sec) {
+		return Timestamp.of(1400000000L + sec, 0);
+	}
+
+	/** Chunk with one sample per second, valued as the second. */
+	private static DataChunk chunk(int from, int to) {
+		DataChunk chunk = new DataChunk();
+		for (int sec = from; sec <= to; sec++) {
+			chunk.add(new SourceData(time(sec), ValueFactory.newVDouble((double) sec)));
+		}
+		return chunk;
+	}
+
+	private static void assertSamples(SortedSet<Data> dataSet, int from, int to) {
+		Assert.assertEquals(to - from + 1, dataSet.size());
+		Iterator<Data> iterator = dataSet.iterator();
+		for (int sec = from; sec <= to; sec++) {
+			Data data = iterator.next();
+			Assert.assertEquals(time(sec), data.getTimestamp());
+			Assert.assertEquals(sec, ((VDouble) data.getValue()).getValue(), 0.0);
+		}
+		Assert.assertFalse(iterator.hasNext());
+	}
+
+	/**
+	 * Test that samples appended in order or overlapping the stored ones are
+	 * returned in order and without repetitions, across segments.
+	 */
+	@Test
+	public void testStoreAndRetrieve() {
+		SegmentedMemoryStorage storage = new SegmentedMemoryStorage(
+				MemoryBudget.DEFAULT_MAX_BYTES, 10);
+		Assert.assertTrue(storage.getAvailableData(null).isEmpty());
+		Assert.assertFalse(storage.hasAvailableData(TimeInterval.between(time(0), time(100))));
+
+		assertSamples(storage.storeData(chunk(0, 24)), 0, 24);
+		assertSamples(storage.storeData(chunk(40, 49)), 40, 49);
+		// Fills the gap, overlapping both sides
+		assertSamples(storage.storeData(chunk(20, 45)), 20, 45);
+
+		assertSamples(storage.getAvailableData(TimeInterval.between(time(0), time(49))), 0, 49);
+		assertSamples(storage.getAvailableData(TimeInterval.between(time(15), time(42))), 15, 42);
+		assertSamples(storage.getAvailableData(TimeInterval.between(null, time(5))), 0, 5);
+		assertSamples(storage.getAvailableData(TimeInterval.between(time(47), null)), 47, 49);
+		assertSamples(storage.getAvailableData(TimeInterval.between(time(42), time(15))), 15, 42);
+		Assert.assertTrue(storage.hasAvailableData(TimeInterval.between(time(10), time(11))));
+		Assert.assertFalse(storage.hasAvailableData(TimeInterval.between(time(60), time(70))));
+
+		DataChunk chunk = storage.getData("test", time(30));
+		Assert.assertEquals(20, chunk.getDatas().size());
+		Assert.assertEquals(time(30), chunk.getDatas().first().getTimestamp());
+	}
+
+	/**
+	 * Test that returned sets are views that are not modified by later
+	 * stores, and that support the {@link SortedSet} operations.
+	 */
+	@Test
+	public void testViews() {
+		SegmentedMemoryStorage storage = new SegmentedMemoryStorage(
+				MemoryBudget.DEFAULT_MAX_BYTES, 10);
+		storage.storeData(chunk(0, 14));
+		SortedSet<Data> dataSet = storage.getAvailableData(TimeInterval.between(null, null));
+		storage.storeData(chunk(15, 19));
+		storage.storeData(chunk(5, 7));
+		assertSamples(dataSet, 0, 14);
+
+		Assert.assertEquals(time(0), dataSet.first().getTimestamp());
+		Assert.assertEquals(time(14), dataSet.last().getTimestamp());
+		assertSamples(dataSet.subSet(new SourceData(time(3), null), new SourceData(time(12), null)), 3, 11);
+		assertSamples(dataSet.headSet(new SourceData(time(4), null)), 0, 3);
+		assertSamples(dataSet.tailSet(new SourceData(time(9), null)), 9, 14);
+		Assert.assertTrue(dataSet.contains(new SourceData(time(11), null)));
+		Assert.assertFalse(dataSet.contains(new SourceData(time(17), null)));
+	}
+
+	/**
+	 * Test that least recently used segments are evicted as a whole when the
+	 * budget is exceeded, and that listeners are notified.
+	 */
+	@Test
+	public void testEviction() {
+		SegmentedMemoryStorage storage = new SegmentedMemoryStorage(
+				30 * SegmentedMemoryStorage.SAMPLE_BYTES, 10);
+		final List<TimestampsSet> losses = new ArrayList<TimestampsSet>();
+		storage.addListener(new DataStorageListener() {
+			@Override
+			public void dataLoss(TimestampsSet lostSet) {
+				losses.add(lostSet);
+			}
+		});
+
+		storage.storeData(chunk(0, 29));
+		Assert.assertTrue(losses.isEmpty());
+		// Use the first segment, so that the second is evicted
+		storage.getAvailableData(TimeInterval.between(time(0), time(5)));
+		storage.storeData(chunk(30, 35));
+		Assert.assertEquals(1, losses.size());
+		Assert.assertEquals(10, losses.get(0).getSize());
+		Assert.assertTrue(storage.getUsedBytes() <= 30 * SegmentedMemoryStorage.SAMPLE_BYTES);
+
+		assertSamples(storage.getAvailableData(TimeInterval.between(time(0), time(9))), 0, 9);
+		Assert.assertTrue(storage.getAvailableData(TimeInterval.between(time(10), time(19))).isEmpty());
+		assertSamples(storage.getAvailableData(TimeInterval.between(time(20), time(35))), 20, 35);
+	}
+
+	/**
+	 * Test that storages sharing a budget evict the least recently used
+	 * segments of all the storages.
+	 */
+	@Test
+	public void testSharedBudget() {
+		MemoryBudget budget = new MemoryBudget(30 * SegmentedMemoryStorage.SAMPLE_BYTES);
+		SegmentedMemoryStorage storage1 = new SegmentedMemoryStorage(budget, 10);
+		SegmentedMemoryStorage storage2 = new SegmentedMemoryStorage(budget, 10);
+		final List<TimestampsSet> losses1 = new ArrayList<TimestampsSet>();
+		storage1.addListener(new DataStorageListener() {
+			@Override
+			public void dataLoss(TimestampsSet lostSet) {
+				losses1.add(lostSet);
+			}
+		});
+
+		storage1.storeData(chunk(0, 19));
+		storage2.storeData(chunk(0, 9));
+		Assert.assertEquals(30 * SegmentedMemoryStorage.SAMPLE_BYTES, budget.getUsedBytes());
+		// Use the first segment of the first storage, so that its second is evicted
+		storage1.getAvailableData(TimeInterval.between(time(0), time(5)));
+		storage2.storeData(chunk(10, 19));
+		Assert.assertEquals(1, losses1.size());
+		Assert.assertEquals(10, losses1.get(0).getSize());
+		Assert.assertEquals(10 * SegmentedMemoryStorage.SAMPLE_BYTES, storage1.getUsedBytes());
+		Assert.assertEquals(20 * SegmentedMemoryStorage.SAMPLE_BYTES, storage2.getUsedBytes());
+		Assert.assertEquals(30 * SegmentedMemoryStorage.SAMPLE_BYTES, budget.getUsedBytes());
+
+		assertSamples(storage1.getAvailableData(TimeInterval.between(time(0), time(19))), 0, 9);
+		assertSamples(storage2.getAvailableData(TimeInterval.between(time(0), time(19))), 0, 19);
+	}
+
+}
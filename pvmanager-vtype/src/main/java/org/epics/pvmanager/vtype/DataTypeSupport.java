@@ -29,6 +29,8 @@ public final class DataTypeSupport {
 
         // Add notification support for all immutable types
         TypeSupport.addTypeSupport(NotificationSupport.immutableTypeSupport(VType.class));
+        // The cache is an immutable list: it must not be copied as a list
+        TypeSupport.addTypeSupport(NotificationSupport.immutableTypeSupport(TimedNumberCache.class));
 
         installed = true;
     }
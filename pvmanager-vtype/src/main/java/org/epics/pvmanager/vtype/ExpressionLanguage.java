@@ -485,6 +485,65 @@ public class ExpressionLanguage {
                 new StatisticsDoubleAggregator(queue.getFunction()), "stats(" + doublePv.getName() + ")");
     }
 
+    /**
+     * Calculates statistical information over the last nSamples of the expression.
+     * <p>
+     * Differently from {@link #statisticsOf(org.epics.pvmanager.expression.SourceRateExpression)},
+     * the statistics are updated as each sample arrives, in constant time,
+     * so that the window can be large and the source fast.
+     *
+     * <p>
+     * Samples that arrive between two scans are queued up to nSamples:
+     * older ones would be out of the window anyway.
+     *
+     * @param doublePv the expression to calculate the statistics information on; can't be null
+     * @param nSamples the number of samples in the sliding window; must be positive
+     * @return an expression representing the statistical information of the expression
+     */
+    public static DesiredRateExpression<VStatistics> statisticsOf(SourceRateExpression<VDouble> doublePv, int nSamples) {
+        DesiredRateExpression<List<VDouble>> queue = ringBufferOf(doublePv, nSamples);
+        return new DesiredRateExpressionImpl<VStatistics>(queue,
+                WindowedStatisticsFunction.slidingCount(queue.getFunction(), nSamples), "stats(" + doublePv.getName() + ", " + nSamples + ")");
+    }
+
+    /**
+     * Calculates statistical information over the samples of the expression
+     * that are within the given time window from the latest.
+     * <p>
+     * The statistics are updated as each sample arrives, in constant time.
+     * Samples that arrive between two scans are queued only while within
+     * the time window from the latest, so no sample in the window is lost
+     * and the queue is bounded by the samples in one window.
+     *
+     * @param doublePv the expression to calculate the statistics information on; can't be null
+     * @param timeWindow the duration of the sliding window; must be positive
+     * @return an expression representing the statistical information of the expression
+     */
+    public static DesiredRateExpression<VStatistics> statisticsOf(SourceRateExpression<VDouble> doublePv, TimeDuration timeWindow) {
+        DesiredRateExpression<List<VDouble>> queue = new DesiredRateExpressionImpl<List<VDouble>>(doublePv,
+                new TimedQueueCollector<VDouble>(timeWindow), doublePv.getName());
+        return new DesiredRateExpressionImpl<VStatistics>(queue,
+                WindowedStatisticsFunction.slidingTime(queue.getFunction(), timeWindow), "stats(" + doublePv.getName() + ", " + timeWindow + ")");
+    }
+
+    /**
+     * Calculates statistical information over consecutive blocks of nSamples
+     * of the expression. The value is the statistics of the last complete block,
+     * and it's null until the first block is complete.
+     * <p>
+     * Samples that arrive between two scans are queued up to nSamples:
+     * if more arrive, only the latest nSamples are used.
+     *
+     * @param doublePv the expression to calculate the statistics information on; can't be null
+     * @param nSamples the number of samples in each block; must be positive
+     * @return an expression representing the statistical information of the expression
+     */
+    public static DesiredRateExpression<VStatistics> tumblingStatisticsOf(SourceRateExpression<VDouble> doublePv, int nSamples) {
+        DesiredRateExpression<List<VDouble>> queue = ringBufferOf(doublePv, nSamples);
+        return new DesiredRateExpressionImpl<VStatistics>(queue,
+                WindowedStatisticsFunction.tumbling(queue.getFunction(), nSamples), "tumblingStats(" + doublePv.getName() + ", " + nSamples + ")");
+    }
+
     /**
      * Applies {@link #statisticsOf(org.epics.pvmanager.expression.SourceRateExpression)} to all
      * arguments.
@@ -527,10 +586,10 @@ public class ExpressionLanguage {
         if (cacheDepth.equals(TimeDuration.ofMillis(0)) && cacheDepth.getSec() > 0)
             throw new IllegalArgumentException("Distance between samples must be non-zero and positive");
         List<String> names = new ArrayList<String>();
-        List<ReadFunction<List<VDouble>>> collectors = new ArrayList<ReadFunction<List<VDouble>>>();
-        DesiredRateExpressionList<List<VDouble>> desiredRateExpressions = new DesiredRateExpressionListImpl<List<VDouble>>();
+        List<ReadFunction<TimedNumberCache>> collectors = new ArrayList<ReadFunction<TimedNumberCache>>();
+        DesiredRateExpressionList<TimedNumberCache> desiredRateExpressions = new DesiredRateExpressionListImpl<TimedNumberCache>();
         for (SourceRateExpression<VDouble> expression : expressions.getSourceRateExpressions()) {
-            DesiredRateExpression<List<VDouble>> collectorExp = timedCacheOf(expression, cacheDepth);
+            DesiredRateExpression<TimedNumberCache> collectorExp = timedNumberCacheOf(expression, cacheDepth);
             desiredRateExpressions.and(collectorExp);
             collectors.add(collectorExp.getFunction());
             names.add(expression.getName());
@@ -541,6 +600,34 @@ public class ExpressionLanguage {
                 (ReadFunction<VMultiDouble>) aggregator, "syncArray");
     }
 
+    /**
+     * A synchronized array from the given expression, as a single array of doubles.
+     * <p>
+     * Same as {@link #synchronizedArrayOf(org.epics.util.time.TimeDuration, org.epics.util.time.TimeDuration, org.epics.pvmanager.expression.SourceRateExpressionList) },
+     * but the values are returned in a primitive array instead of
+     * a VDouble for each channel. The channels that have no value within
+     * the tolerance are NaN.
+     *
+     * @param tolerance maximum time difference between samples in the
+     * reconstructed array
+     * @param cacheDepth maximum time difference between samples in the caches
+     * used to reconstruct the array
+     * @param expressions the expressions from which to reconstruct the array
+     * @return an expression for the array
+     */
+    public static DesiredRateExpression<VNumberArray>
+            synchronizedNumberArrayOf(TimeDuration tolerance, TimeDuration cacheDepth, SourceRateExpressionList<? extends VNumber> expressions) {
+        List<ReadFunction<TimedNumberCache>> collectors = new ArrayList<ReadFunction<TimedNumberCache>>();
+        DesiredRateExpressionList<TimedNumberCache> desiredRateExpressions = new DesiredRateExpressionListImpl<TimedNumberCache>();
+        for (SourceRateExpression<? extends VNumber> expression : expressions.getSourceRateExpressions()) {
+            DesiredRateExpression<TimedNumberCache> collectorExp = timedNumberCacheOf(expression, cacheDepth);
+            desiredRateExpressions.and(collectorExp);
+            collectors.add(collectorExp.getFunction());
+        }
+        return new DesiredRateExpressionImpl<VNumberArray>(desiredRateExpressions,
+                new SynchronizedVNumberArrayAggregator(collectors, tolerance), "syncArray");
+    }
+
     /**
      * Returns all the values starting the latest value and older up to
      * the time difference given by the interval.
@@ -557,6 +644,25 @@ public class ExpressionLanguage {
                 expression.getName());
     }
 
+    /**
+     * Returns all the numeric values starting the latest value and older up to
+     * the time difference given by the interval.
+     * <p>
+     * Same as {@link #timedCacheOf(org.epics.pvmanager.expression.SourceRateExpression, org.epics.util.time.TimeDuration) },
+     * but the values are kept in primitive arrays and are not copied
+     * at each notification. Suitable for large caches of high rate sources.
+     * 
+     * @param expression expression to read
+     * @param maxIntervalBetweenSamples maximum time difference between values
+     * @return a new expression
+     */
+    public static DesiredRateExpression<TimedNumberCache>
+            timedNumberCacheOf(SourceRateExpression<? extends VNumber> expression, TimeDuration maxIntervalBetweenSamples) {
+        return new DesiredRateExpressionImpl<TimedNumberCache>(expression,
+                new TimedNumberCacheCollector(maxIntervalBetweenSamples),
+                expression.getName());
+    }
+
     /**
      * A column for an aggregated vTable.
      * 
@@ -20,6 +20,9 @@ import org.epics.util.time.Timestamp;
 /**
  * Provides an aggregator that returns a synchronized set of data by looking
  * into a timed cache.
+ * <p>
+ * Each cache is read once per scan, and the sample closest to the reference
+ * time is found with a binary search on the timestamps.
  *
  * @author carcassi
  */
@@ -27,7 +30,8 @@ class SynchronizedVDoubleAggregator implements ReadFunction<VMultiDouble> {
 
     private static final Logger log = Logger.getLogger(SynchronizedVDoubleAggregator.class.getName());
     private final TimeDuration tolerance;
-    private final List<ReadFunction<List<VDouble>>> collectors;
+    private final List<ReadFunction<TimedNumberCache>> collectors;
+    private final TimedNumberCache[] caches;
 
     /**
      * Creates a new aggregators, that takes a list of collectors
@@ -37,78 +41,119 @@ class SynchronizedVDoubleAggregator implements ReadFunction<VMultiDouble> {
      * @param collectors collectors that contain the past few samples
      * @param tolerance the tolerance around the reference time for samples to be included
      */
-    @SuppressWarnings("unchecked")
-    public SynchronizedVDoubleAggregator(List<String> names, List<ReadFunction<List<VDouble>>> collectors, TimeDuration tolerance) {
-        if (!tolerance.isPositive())
-            throw new IllegalArgumentException("Tolerance between samples must be non-zero and positive");
+    public SynchronizedVDoubleAggregator(List<String> names, List<ReadFunction<TimedNumberCache>> collectors, TimeDuration tolerance) {
+        checkTolerance(tolerance);
         this.tolerance = tolerance;
         this.collectors = collectors;
+        this.caches = new TimedNumberCache[collectors.size()];
+    }
+
+    static void checkTolerance(TimeDuration tolerance) {
+        if (!tolerance.isPositive())
+            throw new IllegalArgumentException("Tolerance between samples must be non-zero and positive");
     }
 
     @Override
     public VMultiDouble readValue() {
-        Timestamp reference = electReferenceTimeStamp(collectors);
+        Timestamp reference = readCaches(collectors, caches);
         if (reference == null)
             return null;
 
         TimeInterval allowedInterval = tolerance.around(reference);
-        List<VDouble> values = new ArrayList<VDouble>(collectors.size());
-        StringBuilder buffer = new StringBuilder();
-        for (ReadFunction<List<VDouble>> collector : collectors) {
-            List<VDouble> data = collector.readValue();
-            if (log.isLoggable(Level.FINE)) {
-                buffer.append(data.size()).append(", ");
-            }
-            VDouble value = closestElement(data, allowedInterval, reference);
-            values.add(value);
+        List<VDouble> values = new ArrayList<VDouble>(caches.length);
+        for (TimedNumberCache cache : caches) {
+            values.add(closestElement(cache, allowedInterval, reference));
         }
+        return ValueFactory.newVMultiDouble(values, ValueFactory.alarmNone(),
+                ValueFactory.newTime(reference), ValueFactory.displayNone());
+    }
+
+    /**
+     * Reads all the collectors, once, and returns the reference time for
+     * the synchronized array.
+     *
+     * @param collectors the collectors to read
+     * @param caches where the caches read are stored
+     * @return the reference time or null if there is not enough data
+     */
+    static Timestamp readCaches(List<ReadFunction<TimedNumberCache>> collectors, TimedNumberCache[] caches) {
+        StringBuilder buffer = null;
         if (log.isLoggable(Level.FINE)) {
+            buffer = new StringBuilder();
+        }
+        for (int i = 0; i < caches.length; i++) {
+            caches[i] = collectors.get(i).readValue();
+            if (buffer != null) {
+                buffer.append(caches[i].size()).append(", ");
+            }
+        }
+        if (buffer != null) {
             log.fine(buffer.toString());
         }
-        return ValueFactory.newVMultiDouble(values, ValueFactory.alarmNone(),
-                ValueFactory.newTime(reference), ValueFactory.displayNone());
+        return electReferenceTimeStamp(caches);
     }
 
-    static <T extends Time> Timestamp electReferenceTimeStamp(List<ReadFunction<List<T>>> collectors) {
-        for (ReadFunction<List<T>> collector : collectors) {
-            List<T> data = collector.readValue();
-            if (data.size() > 1) {
-                Timestamp time = data.get(data.size() - 2).getTimestamp();
-                if (time != null)
-                    return time;
+    static Timestamp electReferenceTimeStamp(TimedNumberCache[] caches) {
+        for (TimedNumberCache cache : caches) {
+            if (cache.size() > 1) {
+                return cache.getTimestamp(cache.size() - 2);
             }
         }
         return null;
     }
 
+    /**
+     * Returns the element closest to the reference, if it is within the
+     * interval. The elements must be in time order; a {@link TimedNumberCache}
+     * is searched on its timestamps.
+     *
+     * @param data the samples
+     * @param interval the allowed interval, centered on the reference
+     * @param reference the reference time
+     * @return the closest element or null if there is none within the interval
+     */
     static <T extends Time> T closestElement(List<T> data, TimeInterval interval, Timestamp reference) {
-        StringBuilder buffer = new StringBuilder();
-        T latest = null;
-        long latestDistance = Long.MAX_VALUE;
-        for (T value : data) {
-            Timestamp newTime = value.getTimestamp();
-            if (log.isLoggable(Level.FINEST)) {
-                buffer.append(newTime.getNanoSec()).append(", ");
+        if (data instanceof TimedNumberCache) {
+            TimedNumberCache cache = (TimedNumberCache) data;
+            int index = closestIndex(cache, interval, reference);
+            if (index == -1) {
+                return null;
             }
+            @SuppressWarnings("unchecked")
+            T value = (T) cache.get(index);
+            return value;
+        }
 
-            if (interval.contains(newTime)) {
-                if (latest == null) {
-                    latest = value;
-                    latestDistance = newTime.durationBetween(reference).getNanoSec();
-                } else {
-                    long newDistance = newTime.durationBetween(reference).getNanoSec();
-                    if (newDistance < latestDistance) {
-                        latest = value;
-                        latestDistance = newDistance;
-                    }
+        T closest = null;
+        long closestDistance = Long.MAX_VALUE;
+        for (T value : data) {
+            Timestamp newTime = value.getTimestamp();
+            if (newTime != null && interval.contains(newTime)) {
+                long newDistance = newTime.durationBetween(reference).toNanosLong();
+                if (newDistance < closestDistance) {
+                    closest = value;
+                    closestDistance = newDistance;
                 }
             }
         }
-        if (log.isLoggable(Level.FINEST)) {
-            buffer.append("[").append(latest.getTimestamp().getNanoSec()).append("|").append(reference.getNanoSec()).append("]");
-            log.finest(buffer.toString());
+        return closest;
+    }
+
+    /**
+     * Returns the index of the sample closest to the reference, if it
+     * is within the interval.
+     *
+     * @param cache the samples
+     * @param interval the allowed interval, centered on the reference
+     * @param reference the reference time
+     * @return the index of the sample or -1 if there is none within the interval
+     */
+    static int closestIndex(TimedNumberCache cache, TimeInterval interval, Timestamp reference) {
+        int index = cache.indexOfClosest(reference);
+        if (index == -1 || !interval.contains(cache.getTimestamp(index))) {
+            return -1;
         }
-        return latest;
+        return index;
     }
 
 }
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.vtype;
+
+import java.util.List;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.util.array.ArrayDouble;
+import org.epics.util.time.TimeDuration;
+import org.epics.util.time.TimeInterval;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.VNumberArray;
+import org.epics.vtype.ValueFactory;
+
+/**
+ * Provides an aggregator that returns a synchronized set of data by looking
+ * into a timed cache, as a single array of doubles.
+ * <p>
+ * Same as {@link SynchronizedVDoubleAggregator}, but the values are copied
+ * in a primitive array without creating a {@link org.epics.vtype.VDouble} for each.
+ * Channels without a sample within the tolerance are NaN.
+ *
+ * @author carcassi
+ */
+class SynchronizedVNumberArrayAggregator implements ReadFunction<VNumberArray> {
+
+    private final TimeDuration tolerance;
+    private final List<ReadFunction<TimedNumberCache>> collectors;
+    private final TimedNumberCache[] caches;
+
+    /**
+     * Creates a new aggregators, that takes a list of collectors
+     * and reconstructs a synchronized array.
+     *
+     * @param collectors collectors that contain the past few samples
+     * @param tolerance the tolerance around the reference time for samples to be included
+     */
+    public SynchronizedVNumberArrayAggregator(List<ReadFunction<TimedNumberCache>> collectors, TimeDuration tolerance) {
+        SynchronizedVDoubleAggregator.checkTolerance(tolerance);
+        this.tolerance = tolerance;
+        this.collectors = collectors;
+        this.caches = new TimedNumberCache[collectors.size()];
+    }
+
+    @Override
+    public VNumberArray readValue() {
+        Timestamp reference = SynchronizedVDoubleAggregator.readCaches(collectors, caches);
+        if (reference == null)
+            return null;
+
+        TimeInterval allowedInterval = tolerance.around(reference);
+        double[] values = new double[caches.length];
+        for (int i = 0; i < caches.length; i++) {
+            int index = SynchronizedVDoubleAggregator.closestIndex(caches[i], allowedInterval, reference);
+            values[i] = index == -1 ? Double.NaN : caches[i].getValues().getDouble(index);
+        }
+        return ValueFactory.newVDoubleArray(new ArrayDouble(values), ValueFactory.alarmNone(),
+                ValueFactory.newTime(reference), ValueFactory.displayNone());
+    }
+
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.vtype;
+
+import java.util.AbstractList;
+import org.epics.util.array.ListDouble;
+import org.epics.util.array.ListLong;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.ValueFactory;
+
+/**
+ * The samples of a numeric channel within a period of time, stored
+ * by column: the timestamps as epoch nanoseconds and the values as doubles.
+ * <p>
+ * The cache is immutable: it is a view over the arrays kept by the collector,
+ * which never modifies the part that was already made visible. The columns
+ * can be accessed directly through {@link #getTimestamps()} and {@link #getValues()},
+ * without creating a {@link VDouble} for each sample. As a {@code List<VDouble>},
+ * the cache returns the samples as they were received, and only creates
+ * a {@link VDouble} for samples of other numeric types.
+ * <p>
+ * Samples are expected to arrive in time order, so that the timestamps
+ * are sorted and can be searched.
+ *
+ * @author carcassi
+ */
+public final class TimedNumberCache extends AbstractList<VDouble> {
+
+    private static final long NANOS_PER_SEC = 1000000000L;
+
+    private final long[] timestamps;
+    private final double[] values;
+    private final VNumber[] samples;
+    private final int start;
+    private final int end;
+
+    TimedNumberCache(long[] timestamps, double[] values, VNumber[] samples, int start, int end) {
+        this.timestamps = timestamps;
+        this.values = values;
+        this.samples = samples;
+        this.start = start;
+        this.end = end;
+    }
+
+    static long toEpochNanos(Timestamp timestamp) {
+        return timestamp.getSec() * NANOS_PER_SEC + timestamp.getNanoSec();
+    }
+
+    static Timestamp fromEpochNanos(long nanos) {
+        long sec = nanos / NANOS_PER_SEC;
+        int nanoSec = (int) (nanos % NANOS_PER_SEC);
+        if (nanoSec < 0) {
+            sec--;
+            nanoSec += NANOS_PER_SEC;
+        }
+        return Timestamp.of(sec, nanoSec);
+    }
+
+    @Override
+    public int size() {
+        return end - start;
+    }
+
+    @Override
+    public VDouble get(int index) {
+        checkIndex(index);
+        VNumber sample = samples[start + index];
+        if (sample instanceof VDouble) {
+            return (VDouble) sample;
+        }
+        return ValueFactory.newVDouble(values[start + index], sample, sample, sample);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    /**
+     * The timestamps of the samples, in nanoseconds from the epoch.
+     *
+     * @return the timestamps; never null
+     */
+    public ListLong getTimestamps() {
+        return new ListLong() {
+
+            @Override
+            public int size() {
+                return end - start;
+            }
+
+            @Override
+            public long getLong(int index) {
+                checkIndex(index);
+                return timestamps[start + index];
+            }
+        };
+    }
+
+    /**
+     * The values of the samples.
+     *
+     * @return the values; never null
+     */
+    public ListDouble getValues() {
+        return new ListDouble() {
+
+            @Override
+            public int size() {
+                return end - start;
+            }
+
+            @Override
+            public double getDouble(int index) {
+                checkIndex(index);
+                return values[start + index];
+            }
+        };
+    }
+
+    long getEpochNanos(int index) {
+        checkIndex(index);
+        return timestamps[start + index];
+    }
+
+    /**
+     * The timestamp of the given sample.
+     *
+     * @param index the index of the sample
+     * @return the timestamp; never null
+     */
+    public Timestamp getTimestamp(int index) {
+        checkIndex(index);
+        return fromEpochNanos(timestamps[start + index]);
+    }
+
+    /**
+     * The alarm of the given sample.
+     *
+     * @param index the index of the sample
+     * @return the alarm; never null
+     */
+    public Alarm getAlarm(int index) {
+        checkIndex(index);
+        return samples[start + index];
+    }
+
+    /**
+     * The display of the latest sample.
+     *
+     * @return the display; null if there are no samples
+     */
+    public Display getDisplay() {
+        if (start == end) {
+            return null;
+        }
+        return samples[end - 1];
+    }
+
+    /**
+     * The samples with a timestamp between the given ones, included.
+     * The samples are not copied.
+     *
+     * @param from the start of the window
+     * @param to the end of the window
+     * @return the samples within the window
+     */
+    public TimedNumberCache window(Timestamp from, Timestamp to) {
+        int newStart = lowerBound(toEpochNanos(from));
+        int newEnd = Math.max(newStart, lowerBound(toEpochNanos(to) + 1));
+        return new TimedNumberCache(timestamps, values, samples, newStart, newEnd);
+    }
+
+    /**
+     * The index of the sample closest in time to the given one.
+     *
+     * @param timestamp a timestamp
+     * @return the index of the closest sample, or -1 if there are no samples
+     */
+    public int indexOfClosest(Timestamp timestamp) {
+        return indexOfClosest(toEpochNanos(timestamp));
+    }
+
+    int indexOfClosest(long nanos) {
+        if (start == end) {
+            return -1;
+        }
+        int index = lowerBound(nanos);
+        if (index == end) {
+            return end - 1 - start;
+        }
+        if (index > start && nanos - timestamps[index - 1] <= timestamps[index] - nanos) {
+            return index - 1 - start;
+        }
+        return index - start;
+    }
+
+    /**
+     * The first position in the backing arrays with a timestamp not before the given one.
+     */
+    private int lowerBound(long nanos) {
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < nanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+}
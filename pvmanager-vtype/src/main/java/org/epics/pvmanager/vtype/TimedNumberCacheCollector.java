@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.vtype;
+
+import org.epics.pvmanager.Collector;
+import org.epics.util.time.TimeDuration;
+import org.epics.vtype.VNumber;
+
+/**
+ * Keeps the numeric values within a period of time from the latest,
+ * like {@link TimedCacheCollector}, but in primitive arrays instead
+ * of a queue of objects.
+ * <p>
+ * New samples are only appended after the ones that were already read,
+ * and samples are discarded by moving the start index, so each
+ * {@link TimedNumberCache} returned can be a view on the same arrays.
+ * When the arrays are full, the samples still in the period are moved
+ * into new arrays: the old ones are left untouched for the caches
+ * already returned. The samples themselves are kept as well, so that
+ * their alarm, display and time are available from the cache.
+ *
+ * @author carcassi
+ */
+class TimedNumberCacheCollector implements Collector<VNumber, TimedNumberCache> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final long cachedPeriodNanos;
+    private long[] timestamps = new long[MIN_CAPACITY];
+    private double[] values = new double[MIN_CAPACITY];
+    private VNumber[] samples = new VNumber[MIN_CAPACITY];
+    private int start;
+    private int end;
+    private TimedNumberCache lastCache;
+
+    public TimedNumberCacheCollector(TimeDuration cachedPeriod) {
+        this.cachedPeriodNanos = cachedPeriod.getSec() * 1000000000L + cachedPeriod.getNanoSec();
+    }
+
+    @Override
+    public synchronized void writeValue(VNumber newValue) {
+        if (newValue == null || newValue.getTimestamp() == null || newValue.getValue() == null) {
+            return;
+        }
+
+        if (end == values.length) {
+            compact();
+        }
+
+        long timestamp = TimedNumberCache.toEpochNanos(newValue.getTimestamp());
+        timestamps[end] = timestamp;
+        values[end] = newValue.getValue().doubleValue();
+        samples[end] = newValue;
+        end++;
+        lastCache = null;
+
+        // Remove all values that are too old
+        long periodStart = timestamp - cachedPeriodNanos;
+        while (start < end && timestamps[start] < periodStart) {
+            start++;
+        }
+    }
+
+    /**
+     * Moves the samples in the period to new arrays, with at least
+     * the same space free.
+     */
+    private void compact() {
+        int size = end - start;
+        int capacity = Math.max(MIN_CAPACITY, size * 2);
+        long[] newTimestamps = new long[capacity];
+        double[] newValues = new double[capacity];
+        System.arraycopy(timestamps, start, newTimestamps, 0, size);
+        System.arraycopy(values, start, newValues, 0, size);
+        VNumber[] newSamples = new VNumber[capacity];
+        System.arraycopy(samples, start, newSamples, 0, size);
+        timestamps = newTimestamps;
+        values = newValues;
+        samples = newSamples;
+        start = 0;
+        end = size;
+    }
+
+    /**
+     * Returns all the samples in the period. The same cache is
+     * returned until a new sample arrives.
+     *
+     * @return the samples in the period; never null
+     */
+    @Override
+    public synchronized TimedNumberCache readValue() {
+        if (lastCache == null) {
+            lastCache = new TimedNumberCache(timestamps, values, samples, start, end);
+        }
+        return lastCache;
+    }
+
+}
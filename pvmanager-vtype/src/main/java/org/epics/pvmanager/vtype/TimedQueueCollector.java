@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.vtype;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import org.epics.pvmanager.Collector;
+import org.epics.util.time.TimeDuration;
+import org.epics.util.time.TimeInterval;
+import org.epics.vtype.Time;
+
+/**
+ * Collects the new values like a {@link org.epics.pvmanager.QueueCollector},
+ * but bounded by time instead of by number: the values that are more than
+ * the given period older than the latest are discarded.
+ * <p>
+ * The queue holds at most the values that arrived within one period
+ * since the last read, however fast the source.
+ *
+ * @param <T> the type contained in the queue
+ * @author carcassi
+ */
+class TimedQueueCollector<T extends Time> implements Collector<T, List<T>> {
+
+    private final Deque<T> buffer = new ArrayDeque<T>();
+    private final TimeDuration period;
+
+    public TimedQueueCollector(TimeDuration period) {
+        this.period = period;
+    }
+
+    @Override
+    public void writeValue(T newValue) {
+        if (newValue != null) {
+            synchronized(buffer) {
+                buffer.add(newValue);
+                prune();
+            }
+        }
+    }
+
+    /**
+     * Returns all the values since the last read, and removes them
+     * from the queue.
+     *
+     * @return the new values, oldest first; never null
+     */
+    @Override
+    public List<T> readValue() {
+        synchronized(buffer) {
+            if (buffer.isEmpty())
+                return Collections.emptyList();
+
+            List<T> data = new ArrayList<T>(buffer);
+            buffer.clear();
+            return data;
+        }
+    }
+
+    private void prune() {
+        // Remove all values that are too old
+        TimeInterval periodAllowed = period.before(buffer.getLast().getTimestamp());
+        while (!buffer.isEmpty() && !periodAllowed.contains(buffer.getFirst().getTimestamp())) {
+            buffer.removeFirst();
+        }
+    }
+
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.vtype;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.util.time.TimeDuration;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VStatistics;
+import static org.epics.vtype.AlarmSeverity.*;
+import static org.epics.vtype.ValueFactory.*;
+
+/**
+ * Calculates statistics over a window of VDoubles, updating them
+ * as each new sample arrives.
+ * <p>
+ * Mean and standard deviation are kept with Welford's algorithm, minimum
+ * and maximum with monotonic queues, so that adding or removing a sample
+ * from the window takes constant (amortized) time, regardless of the size
+ * of the window.
+ * <p>
+ * The window can be tumbling (statistics of the last complete block of
+ * n samples), sliding over the last n samples or sliding over the samples
+ * within a time duration from the latest one. As in
+ * {@link StatisticsDoubleAggregator}, only the samples with severity NONE,
+ * MINOR and MAJOR are used for the calculation, while all of them
+ * contribute to the alarm. The time and the display are the ones
+ * of the latest sample.
+ *
+ * @author carcassi
+ */
+class WindowedStatisticsFunction implements ReadFunction<VStatistics> {
+
+    /**
+     * A double ended queue of samples, ordered by sequence number, where
+     * the values are monotonic. The first value is the minimum (or maximum)
+     * of all the samples added since the sequence number of the first.
+     */
+    private static class MonotonicQueue {
+
+        private final boolean max;
+        private long[] sequences = new long[16];
+        private double[] values = new double[16];
+        private int head;
+        private int size;
+
+        MonotonicQueue(boolean max) {
+            this.max = max;
+        }
+
+        void add(long sequence, double value) {
+            // Remove all the values that can't be the extreme anymore
+            while (size > 0) {
+                double last = values[(head + size - 1) & (values.length - 1)];
+                if (max ? last <= value : last >= value) {
+                    size--;
+                } else {
+                    break;
+                }
+            }
+            if (size == values.length) {
+                grow();
+            }
+            int index = (head + size) & (values.length - 1);
+            sequences[index] = sequence;
+            values[index] = value;
+            size++;
+        }
+
+        void removeBefore(long sequence) {
+            while (size > 0 && sequences[head] < sequence) {
+                head = (head + 1) & (values.length - 1);
+                size--;
+            }
+        }
+
+        double first() {
+            if (size == 0) {
+                return Double.NaN;
+            }
+            return values[head];
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        private void grow() {
+            long[] newSequences = new long[sequences.length * 2];
+            double[] newValues = new double[values.length * 2];
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) & (values.length - 1);
+                newSequences[i] = sequences[index];
+                newValues[i] = values[index];
+            }
+            sequences = newSequences;
+            values = newValues;
+            head = 0;
+        }
+    }
+
+    private final ReadFunction<List<VDouble>> collector;
+    private final int nSamples;
+    private final TimeDuration timeWindow;
+    private final boolean tumbling;
+
+    // The samples currently in the window, used only by sliding windows
+    private final ArrayDeque<VDouble> window = new ArrayDeque<>();
+    private int windowSize;
+    private long firstSequence;
+    private long nextSequence;
+    private VDouble latest;
+
+    // Welford's algorithm on the valid samples
+    private int nValues;
+    private double mean;
+    private double m2;
+
+    private final MonotonicQueue minQueue = new MonotonicQueue(false);
+    private final MonotonicQueue maxQueue = new MonotonicQueue(true);
+    private final int[] severityCounts = new int[AlarmSeverity.values().length];
+
+    private VStatistics lastValue;
+
+    private WindowedStatisticsFunction(ReadFunction<List<VDouble>> collector, int nSamples, TimeDuration timeWindow, boolean tumbling) {
+        this.collector = collector;
+        this.nSamples = nSamples;
+        this.timeWindow = timeWindow;
+        this.tumbling = tumbling;
+    }
+
+    /**
+     * Statistics of the last complete block of nSamples.
+     *
+     * @param collector the source of new samples
+     * @param nSamples the number of samples in each block; must be positive
+     * @return a new function
+     */
+    static WindowedStatisticsFunction tumbling(ReadFunction<List<VDouble>> collector, int nSamples) {
+        checkSamples(nSamples);
+        return new WindowedStatisticsFunction(collector, nSamples, null, true);
+    }
+
+    /**
+     * Statistics of the last nSamples.
+     *
+     * @param collector the source of new samples
+     * @param nSamples the number of samples in the window; must be positive
+     * @return a new function
+     */
+    static WindowedStatisticsFunction slidingCount(ReadFunction<List<VDouble>> collector, int nSamples) {
+        checkSamples(nSamples);
+        return new WindowedStatisticsFunction(collector, nSamples, null, false);
+    }
+
+    /**
+     * Statistics of the samples that are within the given time window
+     * from the latest.
+     *
+     * @param collector the source of new samples
+     * @param timeWindow the duration of the window; must be positive
+     * @return a new function
+     */
+    static WindowedStatisticsFunction slidingTime(ReadFunction<List<VDouble>> collector, TimeDuration timeWindow) {
+        if (timeWindow == null || !timeWindow.isPositive()) {
+            throw new IllegalArgumentException("Time window must be positive (was " + timeWindow + ")");
+        }
+        return new WindowedStatisticsFunction(collector, -1, timeWindow, false);
+    }
+
+    private static void checkSamples(int nSamples) {
+        if (nSamples <= 0) {
+            throw new IllegalArgumentException("Number of samples must be positive (was " + nSamples + ")");
+        }
+    }
+
+    @Override
+    public VStatistics readValue() {
+        List<VDouble> data = collector.readValue();
+        if (data == null || data.isEmpty()) {
+            return lastValue;
+        }
+
+        for (VDouble value : data) {
+            if (value == null) {
+                continue;
+            }
+            add(value);
+            if (tumbling) {
+                if (windowSize == nSamples) {
+                    lastValue = statistics();
+                    clear();
+                }
+            } else if (timeWindow == null) {
+                while (windowSize > nSamples) {
+                    removeFirst();
+                }
+            } else {
+                Timestamp start = value.getTimestamp().minus(timeWindow);
+                while (window.peekFirst().getTimestamp().compareTo(start) < 0) {
+                    removeFirst();
+                }
+            }
+        }
+
+        if (!tumbling && windowSize > 0) {
+            lastValue = statistics();
+        }
+        return lastValue;
+    }
+
+    private static boolean isValid(AlarmSeverity severity) {
+        return severity == NONE || severity == MINOR || severity == MAJOR;
+    }
+
+    private void add(VDouble value) {
+        AlarmSeverity severity = value.getAlarmSeverity();
+        severityCounts[severity.ordinal()]++;
+        if (isValid(severity)) {
+            double x = value.getValue();
+            nValues++;
+            double delta = x - mean;
+            mean += delta / nValues;
+            m2 += delta * (x - mean);
+            minQueue.add(nextSequence, x);
+            maxQueue.add(nextSequence, x);
+        }
+        if (!tumbling) {
+            window.addLast(value);
+        }
+        windowSize++;
+        nextSequence++;
+        latest = value;
+    }
+
+    private void removeFirst() {
+        VDouble value = window.removeFirst();
+        AlarmSeverity severity = value.getAlarmSeverity();
+        severityCounts[severity.ordinal()]--;
+        if (isValid(severity)) {
+            double x = value.getValue();
+            if (nValues == 1) {
+                nValues = 0;
+                mean = 0;
+                m2 = 0;
+            } else {
+                double delta = x - mean;
+                nValues--;
+                mean -= delta / nValues;
+                m2 -= delta * (x - mean);
+            }
+        }
+        windowSize--;
+        firstSequence++;
+        minQueue.removeBefore(firstSequence);
+        maxQueue.removeBefore(firstSequence);
+    }
+
+    private void clear() {
+        window.clear();
+        windowSize = 0;
+        firstSequence = nextSequence;
+        nValues = 0;
+        mean = 0;
+        m2 = 0;
+        minQueue.clear();
+        maxQueue.clear();
+        Arrays.fill(severityCounts, 0);
+    }
+
+    private AlarmSeverity severity() {
+        if (severityCounts[MAJOR.ordinal()] > 0) {
+            return MAJOR;
+        } else if (severityCounts[MINOR.ordinal()] > 0) {
+            return MINOR;
+        } else if (severityCounts[NONE.ordinal()] > 0) {
+            return NONE;
+        } else if (severityCounts[INVALID.ordinal()] > 0) {
+            return INVALID;
+        } else {
+            return UNDEFINED;
+        }
+    }
+
+    private VStatistics statistics() {
+        double average = Double.NaN;
+        double stdDev = Double.NaN;
+        if (nValues > 0) {
+            average = mean;
+            // Removing samples can leave a tiny negative rounding error
+            stdDev = Math.sqrt(Math.max(0.0, m2 / nValues));
+        }
+        return newVStatistics(average, stdDev, minQueue.first(), maxQueue.first(), nValues,
+                newAlarm(severity(), "NONE"), newTime(latest.getTimestamp()), latest);
+    }
+
+}
@@ -179,6 +179,14 @@ public class ExpressionLanguageTest {
         assertThat(statsOfMyPV.getName(), equalTo("stats(my pv)"));
     }
 
+    @Test
+    public void statisticsOf2() {
+        DesiredRateExpression<VStatistics> statsOfMyPV = statisticsOf(vDouble("my pv"), 100);
+        assertThat(statsOfMyPV.getName(), equalTo("stats(my pv, 100)"));
+        statsOfMyPV = tumblingStatisticsOf(vDouble("my pv"), 100);
+        assertThat(statsOfMyPV.getName(), equalTo("tumblingStats(my pv, 100)"));
+    }
+
     @Test
     public void vStringOf1() {
         ReadExpressionTester exp = new ReadExpressionTester(vStringOf(latestValueOf(vType("pv"))));
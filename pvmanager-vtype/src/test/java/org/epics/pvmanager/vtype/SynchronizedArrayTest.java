@@ -10,6 +10,7 @@ import java.util.Arrays;
 import org.epics.pvmanager.ReadExpressionTester;
 import org.epics.pvmanager.vtype.DataTypeSupport;
 import org.epics.vtype.VMultiDouble;
+import org.epics.vtype.VNumberArray;
 import static org.epics.vtype.ValueFactory.*;
 import static org.epics.pvmanager.vtype.ExpressionLanguage.*;
 import static org.epics.util.time.TimeDuration.*;
@@ -104,4 +105,28 @@ public class SynchronizedArrayTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void numberArray() throws InterruptedException {
+        ReadExpressionTester exp = new ReadExpressionTester(synchronizedNumberArrayOf(ofMillis(5), ofMillis(10), vDoubles(Arrays.asList("pv1","pv2","pv3"))));
+
+        Timestamp reference = Timestamp.now();
+        Timestamp future1 = reference.plus(ofMillis(1));
+        Timestamp past1 = reference.minus(ofMillis(1));
+        Timestamp past10 = reference.minus(ofMillis(10));
+
+        exp.writeValue("pv1", newVDouble(1.0, newTime(reference)));
+        exp.writeValue("pv1", newVDouble(2.0, newTime(future1)));
+
+        exp.writeValue("pv2", newVDouble(3.0, newTime(past1)));
+
+        exp.writeValue("pv3", newVDouble(4.0, newTime(past10)));
+
+        VNumberArray array = (VNumberArray) exp.getValue();
+        assertEquals(3, array.getData().size());
+        assertEquals(1.0, array.getData().getDouble(0), 0.0);
+        assertEquals(3.0, array.getData().getDouble(1), 0.0);
+        assertTrue(Double.isNaN(array.getData().getDouble(2)));
+        assertEquals(reference, array.getTimestamp());
+    }
+
+}
@@ -58,4 +58,17 @@ public class SynchronizedVDoubleAggregatorTest {
         VDouble result = SynchronizedVDoubleAggregator.closestElement(data, ofMillis(10).around(reference), reference);
         assertEquals(-1.0, result.getValue(), 0.000001);
     }
+
+    @Test
+    public void testClosestElementInCache() {
+        TimedNumberCacheCollector collector = new TimedNumberCacheCollector(ofSeconds(1));
+        Timestamp reference = Timestamp.now();
+        collector.writeValue(newVDouble(-1.0, newTime(reference.minus(ofMillis(6)))));
+        collector.writeValue(newVDouble(1.0, newTime(reference.plus(ofMillis(4)))));
+        TimedNumberCache cache = collector.readValue();
+        VDouble result = SynchronizedVDoubleAggregator.closestElement(cache, ofMillis(10).around(reference), reference);
+        assertEquals(1.0, result.getValue(), 0.000001);
+        result = SynchronizedVDoubleAggregator.closestElement(cache, ofMillis(6).around(reference), reference);
+        assertEquals(null, result);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.vtype;
+
+import java.util.concurrent.Callable;
+import org.epics.pvmanager.ChannelReadRecipe;
+import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.PVReader;
+import org.epics.pvmanager.ReadExpressionTester;
+import org.epics.pvmanager.ValueCache;
+import org.epics.pvmanager.test.CountDownPVReaderListener;
+import org.epics.pvmanager.test.MockDataSource;
+import org.epics.pvmanager.test.ThreadTestingUtil;
+import org.epics.util.array.ArrayDouble;
+import org.epics.util.time.TimeDuration;
+import org.epics.util.time.Timestamp;
+import org.epics.util.text.NumberFormats;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.VDouble;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.epics.pvmanager.vtype.ExpressionLanguage.*;
+import static org.epics.vtype.ValueFactory.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class TimedNumberCacheCollectorTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        // Force type support loading
+        DataTypeSupport.install();
+    }
+
+    private static final Timestamp reference = Timestamp.of(1354719441, 521786982);
+
+    private static Timestamp time(int millis) {
+        return reference.plus(TimeDuration.ofMillis(millis));
+    }
+
+    @Test
+    public void correctNumberOfValuesInCache() {
+        ReadExpressionTester exp = new ReadExpressionTester(timedNumberCacheOf(vDouble("x"), TimeDuration.ofMillis(100)));
+
+        exp.writeValue("x", newVDouble(0.0, newTime(time(0))));
+        assertThat(((TimedNumberCache) exp.getValue()).size(), equalTo(1));
+
+        exp.writeValue("x", newVDouble(1.0, newTime(time(10))));
+        exp.writeValue("x", newVDouble(2.0, newTime(time(20))));
+        exp.writeValue("x", newVDouble(3.0, newTime(time(30))));
+        assertThat(((TimedNumberCache) exp.getValue()).size(), equalTo(4));
+
+        exp.writeValue("x", newVDouble(4.0, newTime(time(40))));
+        exp.writeValue("x", newVDouble(5.0, newTime(time(50))));
+        exp.writeValue("x", newVDouble(6.0, newTime(time(60))));
+        assertThat(((TimedNumberCache) exp.getValue()).size(), equalTo(7));
+
+        exp.writeValue("x", newVDouble(7.0, newTime(time(115))));
+        assertThat(((TimedNumberCache) exp.getValue()).size(), equalTo(6));
+
+        exp.writeValue("x", newVDouble(8.0, newTime(time(155))));
+        TimedNumberCache cache = (TimedNumberCache) exp.getValue();
+        assertThat(cache.size(), equalTo(3));
+        assertThat(cache.getValues(), equalTo(new ArrayDouble(6.0, 7.0, 8.0)));
+        assertThat(cache.getTimestamps().getLong(0), equalTo(TimedNumberCache.toEpochNanos(time(60))));
+        assertThat(cache.get(2).getValue(), equalTo(8.0));
+        assertThat(cache.get(2).getTimestamp(), equalTo(time(155)));
+    }
+
+    @Test
+    public void readCachesAreNotModified() {
+        TimedNumberCacheCollector collector = new TimedNumberCacheCollector(TimeDuration.ofMillis(50));
+        TimedNumberCache empty = collector.readValue();
+        assertThat(empty.size(), equalTo(0));
+        assertThat(collector.readValue(), sameInstance(empty));
+
+        collector.writeValue(newVDouble(0.0, newTime(time(0))));
+        TimedNumberCache first = collector.readValue();
+        assertThat(collector.readValue(), sameInstance(first));
+
+        // Enough values to reallocate the arrays a few times
+        for (int i = 1; i < 1000; i++) {
+            collector.writeValue(newVDouble((double) i, newTime(time(i))));
+        }
+        assertThat(empty.size(), equalTo(0));
+        assertThat(first.size(), equalTo(1));
+        assertThat(first.getValues(), equalTo(new ArrayDouble(0.0)));
+
+        TimedNumberCache last = collector.readValue();
+        assertThat(last.size(), equalTo(51));
+        assertThat(last.getValues().getDouble(0), equalTo(949.0));
+        assertThat(last.getValues().getDouble(50), equalTo(999.0));
+    }
+
+    @Test
+    public void alarms() {
+        TimedNumberCacheCollector collector = new TimedNumberCacheCollector(TimeDuration.ofMillis(50));
+        collector.writeValue(newVDouble(0.0, newTime(time(0))));
+        collector.writeValue(newVDouble(1.0, newAlarm(AlarmSeverity.MINOR, "LOW"), newTime(time(10)), displayNone()));
+        collector.writeValue(newVDouble(2.0, newTime(time(20))));
+        TimedNumberCache cache = collector.readValue();
+        assertThat(cache.getAlarm(0).getAlarmSeverity(), equalTo(AlarmSeverity.NONE));
+        assertThat(cache.getAlarm(1).getAlarmSeverity(), equalTo(AlarmSeverity.MINOR));
+        assertThat(cache.get(1).getAlarmName(), equalTo("LOW"));
+        assertThat(cache.getAlarm(2).getAlarmSeverity(), equalTo(AlarmSeverity.NONE));
+    }
+
+    @Test
+    public void originalSamples() {
+        TimedNumberCacheCollector collector = new TimedNumberCacheCollector(TimeDuration.ofMillis(50));
+        VDouble sample = newVDouble(1.0, newAlarm(AlarmSeverity.MINOR, "LOW"), newTime(time(0), 3, true), newDisplay(0.0, 1.0, 2.0, "mm", NumberFormats.format(2), 8.0, 9.0, 10.0, 0.0, 10.0));
+        collector.writeValue(sample);
+        collector.writeValue(newVInt(2, alarmNone(), newTime(time(10)), displayNone()));
+        TimedNumberCache cache = collector.readValue();
+        assertThat(cache.get(0), sameInstance(sample));
+        assertThat(cache.get(0).getTimeUserTag(), equalTo(3));
+        assertThat(cache.get(1).getValue(), equalTo(2.0));
+        assertThat(cache.get(1).getTimestamp(), equalTo(time(10)));
+    }
+
+    @Test
+    public void readThroughPVManager() throws Exception {
+        final MockDataSource dataSource = new MockDataSource();
+        CountDownPVReaderListener listener = new CountDownPVReaderListener(1);
+        PVReader<TimedNumberCache> pv = PVManager.read(timedNumberCacheOf(vDouble("x"), TimeDuration.ofMillis(100)))
+                .readListener(listener).from(dataSource).maxRate(TimeDuration.ofMillis(10));
+        try {
+            ChannelReadRecipe recipe = ThreadTestingUtil.waitFor(new Callable<ChannelReadRecipe>() {
+
+                @Override
+                public ChannelReadRecipe call() throws Exception {
+                    return dataSource.getConnectedReadRecipes().isEmpty() ? null : dataSource.getConnectedReadRecipes().get(0);
+                }
+            }, TimeDuration.ofMillis(1000));
+            @SuppressWarnings("unchecked")
+            ValueCache<Object> cache = (ValueCache<Object>) recipe.getReadSubscription().getValueCache();
+            VDouble sample = newVDouble(1.0, newTime(time(0)));
+            cache.writeValue(sample);
+            recipe.getReadSubscription().getConnectionWriteFunction().writeValue(true);
+            assertThat(listener.await(TimeDuration.ofMillis(1000)), equalTo(true));
+
+            // The cache is notified as it is, and not copied as a List
+            TimedNumberCache value = pv.getValue();
+            assertThat(value.size(), equalTo(1));
+            assertThat(value.get(0), sameInstance(sample));
+        } finally {
+            pv.close();
+        }
+    }
+
+    @Test
+    public void window() {
+        TimedNumberCacheCollector collector = new TimedNumberCacheCollector(TimeDuration.ofSeconds(1));
+        for (int i = 0; i < 10; i++) {
+            collector.writeValue(newVDouble((double) i, newTime(time(i * 10))));
+        }
+        TimedNumberCache cache = collector.readValue();
+        TimedNumberCache window = cache.window(time(15), time(40));
+        assertThat(window.getValues(), equalTo(new ArrayDouble(2.0, 3.0, 4.0)));
+        assertThat(cache.window(time(200), time(300)).size(), equalTo(0));
+
+        assertThat(cache.indexOfClosest(time(-100)), equalTo(0));
+        assertThat(cache.indexOfClosest(time(14)), equalTo(1));
+        assertThat(cache.indexOfClosest(time(16)), equalTo(2));
+        assertThat(cache.indexOfClosest(time(1000)), equalTo(9));
+        assertThat(window.indexOfClosest(time(0)), equalTo(0));
+    }
+
+}
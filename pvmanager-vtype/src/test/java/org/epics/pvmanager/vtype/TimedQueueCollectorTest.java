@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.vtype;
+
+import java.util.List;
+import org.epics.util.time.TimeDuration;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.VDouble;
+import org.junit.Test;
+
+import static org.epics.vtype.ValueFactory.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class TimedQueueCollectorTest {
+
+    @Test
+    public void newValuesWithinPeriod() {
+        TimedQueueCollector<VDouble> collector = new TimedQueueCollector<>(TimeDuration.ofMillis(100));
+        assertThat(collector.readValue().size(), equalTo(0));
+
+        Timestamp reference = Timestamp.now();
+        for (int i = 0; i < 5; i++) {
+            collector.writeValue(newVDouble((double) i, newTime(reference.plus(TimeDuration.ofMillis(i * 10)))));
+        }
+        List<VDouble> values = collector.readValue();
+        assertThat(values.size(), equalTo(5));
+        assertThat(values.get(0).getValue(), equalTo(0.0));
+
+        // Values are returned only once
+        assertThat(collector.readValue().size(), equalTo(0));
+
+        // Values older than the period from the latest are discarded,
+        // however many arrived
+        for (int i = 5; i < 1000; i++) {
+            collector.writeValue(newVDouble((double) i, newTime(reference.plus(TimeDuration.ofMillis(i * 10)))));
+        }
+        values = collector.readValue();
+        assertThat(values.size(), equalTo(11));
+        assertThat(values.get(0).getValue(), equalTo(989.0));
+        assertThat(values.get(10).getValue(), equalTo(999.0));
+    }
+
+}
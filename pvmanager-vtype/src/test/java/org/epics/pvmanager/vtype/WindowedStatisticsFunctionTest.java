@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.vtype;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.util.time.TimeDuration;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VStatistics;
+import static org.epics.vtype.ValueFactory.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class WindowedStatisticsFunctionTest {
+
+    private static class Collector implements ReadFunction<List<VDouble>> {
+
+        private List<VDouble> values = new ArrayList<>();
+
+        void add(VDouble... newValues) {
+            values.addAll(Arrays.asList(newValues));
+        }
+
+        @Override
+        public List<VDouble> readValue() {
+            List<VDouble> data = values;
+            values = new ArrayList<>();
+            return data;
+        }
+    }
+
+    private static final Timestamp start = Timestamp.of(1354719441, 0);
+
+    private static VDouble value(double value, int second) {
+        return value(value, second, AlarmSeverity.NONE);
+    }
+
+    private static VDouble value(double value, int second, AlarmSeverity severity) {
+        return newVDouble(value, newAlarm(severity, "NONE"), newTime(start.plus(TimeDuration.ofSeconds(second))), displayNone());
+    }
+
+    @Test
+    public void slidingCount1() {
+        Collector collector = new Collector();
+        WindowedStatisticsFunction function = WindowedStatisticsFunction.slidingCount(collector, 3);
+        assertThat(function.readValue(), nullValue());
+
+        collector.add(value(5, 0), value(1, 1));
+        VStatistics stats = function.readValue();
+        assertThat(stats.getAverage(), closeTo(3.0, 0.0001));
+        assertThat(stats.getStdDev(), closeTo(2.0, 0.0001));
+        assertThat(stats.getMin(), equalTo(1.0));
+        assertThat(stats.getMax(), equalTo(5.0));
+        assertThat(stats.getNSamples(), equalTo(2));
+
+        // 5 and 1 fall out of the window
+        collector.add(value(2, 2), value(3, 3), value(4, 4));
+        stats = function.readValue();
+        assertThat(stats.getAverage(), closeTo(3.0, 0.0001));
+        assertThat(stats.getStdDev(), closeTo(Math.sqrt(2.0 / 3.0), 0.0001));
+        assertThat(stats.getMin(), equalTo(2.0));
+        assertThat(stats.getMax(), equalTo(4.0));
+        assertThat(stats.getNSamples(), equalTo(3));
+        assertThat(stats.getTimestamp(), equalTo(start.plus(TimeDuration.ofSeconds(4))));
+
+        // No new values: same statistics
+        assertThat(function.readValue(), sameInstance(stats));
+    }
+
+    @Test
+    public void slidingCount2() {
+        Collector collector = new Collector();
+        WindowedStatisticsFunction function = WindowedStatisticsFunction.slidingCount(collector, 2);
+
+        // Invalid values are not part of the statistics but of the alarm
+        collector.add(value(1, 0, AlarmSeverity.MINOR), value(100, 1, AlarmSeverity.INVALID));
+        VStatistics stats = function.readValue();
+        assertThat(stats.getAverage(), equalTo(1.0));
+        assertThat(stats.getNSamples(), equalTo(1));
+        assertThat(stats.getAlarmSeverity(), equalTo(AlarmSeverity.MINOR));
+
+        collector.add(value(3, 2));
+        stats = function.readValue();
+        assertThat(stats.getAverage(), equalTo(3.0));
+        assertThat(stats.getNSamples(), equalTo(1));
+        assertThat(stats.getAlarmSeverity(), equalTo(AlarmSeverity.NONE));
+
+        collector.add(value(7, 3, AlarmSeverity.UNDEFINED));
+        collector.add(value(7, 4, AlarmSeverity.UNDEFINED));
+        stats = function.readValue();
+        assertThat(stats.getAverage(), equalTo(Double.NaN));
+        assertThat(stats.getMin(), equalTo(Double.NaN));
+        assertThat(stats.getNSamples(), equalTo(0));
+        assertThat(stats.getAlarmSeverity(), equalTo(AlarmSeverity.UNDEFINED));
+    }
+
+    @Test
+    public void tumbling1() {
+        Collector collector = new Collector();
+        WindowedStatisticsFunction function = WindowedStatisticsFunction.tumbling(collector, 3);
+
+        collector.add(value(1, 0), value(2, 1));
+        assertThat(function.readValue(), nullValue());
+
+        collector.add(value(3, 2), value(10, 3));
+        VStatistics stats = function.readValue();
+        assertThat(stats.getAverage(), equalTo(2.0));
+        assertThat(stats.getMin(), equalTo(1.0));
+        assertThat(stats.getMax(), equalTo(3.0));
+        assertThat(stats.getNSamples(), equalTo(3));
+        assertThat(stats.getTimestamp(), equalTo(start.plus(TimeDuration.ofSeconds(2))));
+
+        collector.add(value(20, 4), value(30, 5), value(40, 6));
+        stats = function.readValue();
+        assertThat(stats.getAverage(), equalTo(20.0));
+        assertThat(stats.getMin(), equalTo(10.0));
+        assertThat(stats.getMax(), equalTo(30.0));
+    }
+
+    @Test
+    public void slidingTime1() {
+        Collector collector = new Collector();
+        WindowedStatisticsFunction function = WindowedStatisticsFunction.slidingTime(collector, TimeDuration.ofSeconds(2));
+
+        collector.add(value(9, 0), value(1, 1), value(2, 2));
+        VStatistics stats = function.readValue();
+        assertThat(stats.getNSamples(), equalTo(3));
+        assertThat(stats.getMax(), equalTo(9.0));
+
+        collector.add(value(3, 4));
+        stats = function.readValue();
+        assertThat(stats.getNSamples(), equalTo(2));
+        assertThat(stats.getAverage(), equalTo(2.5));
+        assertThat(stats.getMin(), equalTo(2.0));
+        assertThat(stats.getMax(), equalTo(3.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void slidingCountInvalid() {
+        WindowedStatisticsFunction.slidingCount(new Collector(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void slidingTimeInvalid() {
+        WindowedStatisticsFunction.slidingTime(new Collector(), TimeDuration.ofSeconds(0));
+    }
+}